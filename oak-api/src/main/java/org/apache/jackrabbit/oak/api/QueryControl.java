@@ -0,0 +1,121 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.api;
+
+/**
+ * Controls the execution of a query: the query can be cancelled (from any
+ * thread), and is stopped once its deadline is reached. The query engine
+ * checks this while reading the result, so that a cancelled query stops
+ * reading from the indexes and the repository, and releases its resources.
+ * <p>
+ * This class is thread-safe.
+ */
+public final class QueryControl {
+
+    private final long deadline;
+
+    private volatile boolean cancelled;
+
+    private QueryControl(long deadline) {
+        this.deadline = deadline;
+    }
+
+    /**
+     * Create a control without a deadline. The query can only be stopped by
+     * cancelling it.
+     * 
+     * @return the control
+     */
+    public static QueryControl newInstance() {
+        return new QueryControl(Long.MAX_VALUE);
+    }
+
+    /**
+     * Create a control with a deadline relative to the current time.
+     * 
+     * @param timeoutMillis the time the query may run, in milliseconds
+     * @return the control
+     */
+    public static QueryControl withTimeout(long timeoutMillis) {
+        long now = System.currentTimeMillis();
+        long deadline = timeoutMillis > Long.MAX_VALUE - now ? Long.MAX_VALUE : now + timeoutMillis;
+        return new QueryControl(deadline);
+    }
+
+    /**
+     * Create a control with the given deadline.
+     * 
+     * @param deadlineMillis the time (as in {@link System#currentTimeMillis()})
+     *            at which the query is stopped
+     * @return the control
+     */
+    public static QueryControl withDeadline(long deadlineMillis) {
+        return new QueryControl(deadlineMillis);
+    }
+
+    /**
+     * Get the deadline.
+     * 
+     * @return the time at which the query is stopped, or
+     *         {@link Long#MAX_VALUE} if there is no deadline
+     */
+    public long getDeadline() {
+        return deadline;
+    }
+
+    /**
+     * Cancel the query. The thread that reads the result gets an exception
+     * the next time the query engine checks this control.
+     */
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    public boolean isExpired() {
+        return deadline != Long.MAX_VALUE && System.currentTimeMillis() > deadline;
+    }
+
+    /**
+     * Check whether the query may continue.
+     * 
+     * @throws UnsupportedOperationException if the query was cancelled, or
+     *             the deadline was reached
+     */
+    public void check() {
+        if (cancelled) {
+            throw new UnsupportedOperationException(
+                    "The query was cancelled; processing was stopped.");
+        }
+        if (isExpired()) {
+            throw new UnsupportedOperationException(
+                    "The query reached its deadline; processing was stopped.");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "QueryControl{" +
+                "deadline=" + deadline +
+                ", cancelled=" + cancelled +
+                '}';
+    }
+
+}
@@ -109,4 +109,27 @@ public interface QueryEngine {
             Map<String, ? extends PropertyValue> bindings,
             Map<String, String> mappings) throws ParseException;    
 
+    /**
+     * Execute a query that can be cancelled, and that is stopped when the
+     * deadline of the control is reached. The result is read lazily: the
+     * rows can be processed while the query runs, and the control can be
+     * used to abort the query from any thread. Once the query is stopped,
+     * reading the result fails with an {@link UnsupportedOperationException}.
+     *
+     * @param statement the query statement
+     * @param language the language
+     * @param limit the maximum result set size (may not be negative)
+     * @param offset the number of rows to skip (may not be negative)
+     * @param bindings the bind variable value bindings
+     * @param mappings namespace prefix mappings
+     * @param control the query control
+     * @return the result
+     * @throws ParseException if the statement could not be parsed
+     * @throws IllegalArgumentException if there was an error executing the query
+     */
+    Result executeQuery(
+            String statement, String language, long limit, long offset,
+            Map<String, ? extends PropertyValue> bindings,
+            Map<String, String> mappings, QueryControl control) throws ParseException;
+
 }
@@ -432,26 +432,33 @@ public class DataStoreBlobStore
         int count = 0;
         if (delegate instanceof MultiDataStoreAware) {
             List<String> deleted = Lists.newArrayListWithExpectedSize(512);
-            for (String chunkId : chunkIds) {
-                String blobId = extractBlobId(chunkId);
-                DataIdentifier identifier = new DataIdentifier(blobId);
-                DataRecord dataRecord = getRecordForId(identifier);
-                boolean success = (maxLastModifiedTime <= 0)
-                        || dataRecord.getLastModified() <= maxLastModifiedTime;
-                log.trace("Deleting blob [{}] with last modified date [{}] : [{}]", blobId,
-                    dataRecord.getLastModified(), success);
-                if (success) {
-                    ((MultiDataStoreAware) delegate).deleteRecord(identifier);
-                    deleted.add(blobId);
-                    count++;
-                    if (count % 512 == 0) {
-                        log.info("Deleted blobs {}", deleted);
-                        deleted.clear();
+            try {
+                for (String chunkId : chunkIds) {
+                    String blobId = extractBlobId(chunkId);
+                    DataIdentifier identifier = new DataIdentifier(blobId);
+                    DataRecord dataRecord = getRecordForId(identifier);
+                    boolean success = (maxLastModifiedTime <= 0)
+                            || dataRecord.getLastModified() <= maxLastModifiedTime;
+                    log.trace("Deleting blob [{}] with last modified date [{}] : [{}]", blobId,
+                        dataRecord.getLastModified(), success);
+                    if (success) {
+                        ((MultiDataStoreAware) delegate).deleteRecord(identifier);
+                        deleted.add(blobId);
+                        count++;
+                        if (count % 512 == 0) {
+                            log.info("Deleted blobs {}", deleted);
+                            deleted.clear();
+                        }
                     }
                 }
-            }
-            if (!deleted.isEmpty()) {
-                log.info("Deleted blobs {}", deleted);
+                if (!deleted.isEmpty()) {
+                    log.info("Deleted blobs {}", deleted);
+                }
+            } finally {
+                if (count > 0 && delegate instanceof OakFileDataStore) {
+                    // free the space of pack files that are now mostly deleted
+                    ((OakFileDataStore) delegate).compactPacks();
+                }
             }
         }
         return count;
@@ -19,11 +19,15 @@
 
 package org.apache.jackrabbit.oak.plugins.blob.datastore;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.lang.ref.WeakReference;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.AbstractMap;
 import java.util.ArrayList;
 import java.util.Collections;
@@ -34,10 +38,13 @@ import java.util.Set;
 import com.google.common.base.Charsets;
 import com.google.common.base.Function;
 import com.google.common.base.Predicate;
+import com.google.common.base.Predicates;
 import com.google.common.base.Strings;
+import com.google.common.collect.Iterators;
 import com.google.common.io.BaseEncoding;
 import com.google.common.io.Closeables;
 import com.google.common.io.Files;
+import org.apache.commons.codec.binary.Hex;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.io.filefilter.FileFilterUtils;
@@ -55,14 +62,39 @@ import static org.apache.commons.io.FilenameUtils.normalizeNoEndSeparator;
 
 /**
  *  Oak specific extension of JR2 FileDataStore which enables
- *  provisioning the signing key via OSGi config
+ *  provisioning the signing key via OSGi config.
+ *  <p>
+ *  Optionally, records up to {@link #setPackThreshold(int) packThreshold} bytes
+ *  are appended to pack files in the {@code packs} directory instead of being
+ *  stored as a file each. Packed records keep their content hash as identifier
+ *  and are thus transparent to the users of the data store, including blob
+ *  garbage collection.
  */
 public class OakFileDataStore extends FileDataStore implements SharedDataStore {
     public static final Logger LOG = LoggerFactory.getLogger(OakFileDataStore.class);
     private static final int DEFAULT_MIN_RECORD_LENGTH = 4096;
 
+    /**
+     * Name of the directory containing the pack files.
+     */
+    static final String PACK_DIRECTORY = "packs";
+
+    private static final long DEFAULT_MAX_PACK_SIZE = 64 * FileUtils.ONE_MB;
+
+    /**
+     * Digest used for the identifiers of packed records. Same as the one used
+     * by the FileDataStore for regular records.
+     */
+    private static final String DIGEST = System.getProperty("ds.digest.algorithm", "SHA-256");
+
     private byte[] referenceKey;
 
+    private int packThreshold;
+
+    private long maxPackSize = DEFAULT_MAX_PACK_SIZE;
+
+    private PackedRecordStore packs;
+
     public OakFileDataStore() {
         //TODO FIXME Temporary workaround for OAK-1666. Override the default
         //synchronized map with a Noop. This should be removed when fix
@@ -72,15 +104,195 @@ public class OakFileDataStore extends FileDataStore implements SharedDataStore {
         setMinRecordLength(DEFAULT_MIN_RECORD_LENGTH);
     }
 
+    @Override
+    public void init(String homeDir) {
+        super.init(homeDir);
+        try {
+            packs = new PackedRecordStore(new File(getPath(), PACK_DIRECTORY), maxPackSize);
+        } catch (IOException e) {
+            throw new RuntimeException("Failed to open the pack files of " + getPath(), e);
+        }
+    }
+
+    @Override
+    public void close() {
+        super.close();
+        if (packs != null) {
+            try {
+                packs.close();
+            } catch (IOException e) {
+                LOG.warn("Failed to close the pack files of {}", getPath(), e);
+            }
+        }
+    }
+
+    /**
+     * Records of up to this number of bytes are appended to pack files instead
+     * of being stored in a file each. {@code 0} disables packing, which is the
+     * default. Records packed before packing has been disabled stay readable.
+     */
+    public void setPackThreshold(int packThreshold) {
+        this.packThreshold = packThreshold;
+    }
+
+    public int getPackThreshold() {
+        return packThreshold;
+    }
+
+    /**
+     * Size in bytes after which a new pack file is started.
+     */
+    public void setMaxPackSize(long maxPackSize) {
+        this.maxPackSize = maxPackSize;
+    }
+
+    public long getMaxPackSize() {
+        return maxPackSize;
+    }
+
+    @Override
+    public DataRecord addRecord(InputStream input) throws DataStoreException {
+        if (packThreshold <= 0) {
+            return super.addRecord(input);
+        }
+
+        try {
+            byte[] buffer = new byte[packThreshold + 1];
+            int length = IOUtils.read(input, buffer);
+            if (length > packThreshold) {
+                return super.addRecord(new SequenceInputStream(new ByteArrayInputStream(buffer, 0, length), input));
+            }
+
+            MessageDigest digest = MessageDigest.getInstance(DIGEST);
+            digest.update(buffer, 0, length);
+            String id = Hex.encodeHexString(digest.digest());
+
+            // Records stored before packing was enabled are not moved
+            if (super.getRecordIfStored(new DataIdentifier(id)) != null) {
+                return super.addRecord(new ByteArrayInputStream(buffer, 0, length));
+            }
+
+            packs.add(id, buffer, length);
+            return packs.getRecord(this, id);
+        } catch (IOException | NoSuchAlgorithmException e) {
+            throw new DataStoreException("Could not add record", e);
+        }
+    }
+
+    @Override
+    public DataRecord getRecordIfStored(DataIdentifier identifier) throws DataStoreException {
+        DataRecord record = packs == null ? null : packs.getRecord(this, identifier.toString());
+        if (record != null) {
+            return record;
+        }
+        return super.getRecordIfStored(identifier);
+    }
+
+    @Override
+    public DataRecord getRecord(DataIdentifier identifier) throws DataStoreException {
+        DataRecord record = packs == null ? null : packs.getRecord(this, identifier.toString());
+        if (record != null) {
+            return record;
+        }
+        return super.getRecord(identifier);
+    }
+
+    @Override
+    public void deleteRecord(DataIdentifier identifier) throws DataStoreException {
+        try {
+            if (packs == null || !packs.delete(identifier.toString())) {
+                super.deleteRecord(identifier);
+            }
+        } catch (IOException e) {
+            throw new DataStoreException("Could not delete record " + identifier, e);
+        }
+    }
+
+    /**
+     * Delete all records last modified before {@code min}. Unlike the
+     * inherited implementation this does not walk the pack directory, whose
+     * files hold records of varying age: packed records are deleted by the
+     * {@link PackedRecordStore} instead.
+     */
+    @Override
+    public int deleteAllOlderThan(long min) {
+        int count = 0;
+        File[] files = new File(getPath()).listFiles();
+        if (files != null) {
+            for (File file : files) {
+                // skip top-level files and the pack directory
+                if (file.isDirectory() && !PACK_DIRECTORY.equals(file.getName())) {
+                    count += deleteOlderRecursive(file, min);
+                }
+            }
+        }
+        if (packs != null) {
+            try {
+                count += packs.deleteAllOlderThan(min);
+            } catch (IOException e) {
+                LOG.warn("Failed to delete packed records of {}", getPath(), e);
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Compact the pack files whose records were mostly deleted, so that their
+     * space is freed before the last record is deleted. This is called by
+     * blob garbage collection after deleting records one by one (see
+     * {@link DataStoreBlobStore#countDeleteChunks(List, long)}).
+     */
+    public void compactPacks() throws DataStoreException {
+        if (packs != null) {
+            try {
+                packs.compact();
+            } catch (IOException e) {
+                throw new DataStoreException("Could not compact the pack files of " + getPath(), e);
+            }
+        }
+    }
+
+    private int deleteOlderRecursive(File file, long min) {
+        int count = 0;
+        if (file.isFile() && file.canWrite()) {
+            synchronized (this) {
+                if (file.lastModified() < min && !inUse.containsKey(new DataIdentifier(file.getName()))) {
+                    if (file.delete()) {
+                        count++;
+                    } else {
+                        LOG.warn("Failed to delete old file {}", file.getAbsolutePath());
+                    }
+                }
+            }
+        } else if (file.isDirectory()) {
+            File[] list = file.listFiles();
+            if (list != null) {
+                for (File f : list) {
+                    count += deleteOlderRecursive(f, min);
+                }
+            }
+            // remove empty directories, but never the root
+            synchronized (this) {
+                list = file.listFiles();
+                if (list != null && list.length == 0 && !file.delete()) {
+                    LOG.debug("Failed to delete empty directory {}", file.getAbsolutePath());
+                }
+            }
+        }
+        return count;
+    }
+
     @Override
     public Iterator<DataIdentifier> getAllIdentifiers() {
         final String path = normalizeNoEndSeparator(new File(getPath()).getAbsolutePath());
-        return Files.fileTreeTraverser().postOrderTraversal(new File(path))
+        final String packPath = new File(path, PACK_DIRECTORY).getPath();
+        Iterator<DataIdentifier> files = Files.fileTreeTraverser().postOrderTraversal(new File(path))
                 .filter(new Predicate<File>() {
                     @Override
                     public boolean apply(File input) {
                         return input.isFile() &&
-                            !input.getParent().equals(path);
+                            !input.getParent().equals(path) &&
+                            !input.getParent().equals(packPath);
                     }
                 })
                 .transform(new Function<File, DataIdentifier>() {
@@ -89,6 +301,17 @@ public class OakFileDataStore extends FileDataStore implements SharedDataStore {
                         return new DataIdentifier(input.getName());
                     }
                 }).iterator();
+        return Iterators.concat(files, Iterators.transform(getPackedIdentifiers().iterator(),
+                new Function<String, DataIdentifier>() {
+                    @Override
+                    public DataIdentifier apply(String input) {
+                        return new DataIdentifier(input);
+                    }
+                }));
+    }
+
+    private List<String> getPackedIdentifiers() {
+        return packs == null ? Collections.<String>emptyList() : packs.getIdentifiers();
     }
 
     @Override
@@ -273,13 +496,15 @@ public class OakFileDataStore extends FileDataStore implements SharedDataStore {
     @Override
     public Iterator<DataRecord> getAllRecords() {
         final String path = normalizeNoEndSeparator(new File(getPath()).getAbsolutePath());
+        final String packPath = new File(path, PACK_DIRECTORY).getPath();
         final OakFileDataStore store = this;
-        return Files.fileTreeTraverser().postOrderTraversal(new File(path))
+        Iterator<DataRecord> files = Files.fileTreeTraverser().postOrderTraversal(new File(path))
             .filter(new Predicate<File>() {
                 @Override
                 public boolean apply(File input) {
                     return input.isFile() &&
-                        !input.getParent().equals(path);
+                        !input.getParent().equals(path) &&
+                        !input.getParent().equals(packPath);
                 }
             })
             .transform(new Function<File, DataRecord>() {
@@ -288,6 +513,15 @@ public class OakFileDataStore extends FileDataStore implements SharedDataStore {
                     return new FileDataRecord(store, new DataIdentifier(input.getName()), input);
                 }
             }).iterator();
+        Iterator<DataRecord> packed = Iterators.filter(Iterators.transform(getPackedIdentifiers().iterator(),
+            new Function<String, DataRecord>() {
+                @Override
+                public DataRecord apply(String input) {
+                    // null if deleted concurrently
+                    return packs.getRecord(store, input);
+                }
+            }), Predicates.notNull());
+        return Iterators.concat(files, packed);
     }
 
     @Override
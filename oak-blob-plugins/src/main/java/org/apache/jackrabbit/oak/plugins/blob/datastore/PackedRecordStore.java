@@ -0,0 +1,473 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.plugins.blob.datastore;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.RandomAccessFile;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.apache.jackrabbit.core.data.AbstractDataRecord;
+import org.apache.jackrabbit.core.data.AbstractDataStore;
+import org.apache.jackrabbit.core.data.DataIdentifier;
+import org.apache.jackrabbit.core.data.DataRecord;
+import org.apache.jackrabbit.core.data.DataStoreException;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Stores small data records by appending them to large pack files instead of
+ * creating a file per record. Each pack file {@code pack-nnnnnnnn.data} comes
+ * with an index file {@code pack-nnnnnnnn.idx} listing the records in the pack
+ * as lines of text:
+ * <ul>
+ *     <li>{@code + <id> <offset> <length> <lastModified>} for added (or
+ *     touched) records and</li>
+ *     <li>{@code - <id>} for deleted records.</li>
+ * </ul>
+ * The records are still addressed by their content hash, so they share the
+ * identifier space of the regular records of the data store. A pack file is
+ * removed once all its records have been deleted.
+ * <p>
+ * Deleting records leaves holes in the pack files. After garbage collection
+ * deleted records with {@link #deleteAllOlderThan(long)}, every pack file
+ * whose live records take less than half of its size is compacted: the live
+ * records are copied to the current pack file, keeping their last modified
+ * time, and the old pack file is removed.
+ * <p>
+ * Records are only ever appended to the pack file created last by this
+ * instance. On startup, a new pack file is created, so that partially written
+ * pack files are never appended to. Index lines that point beyond the end of
+ * their pack file are ignored.
+ */
+class PackedRecordStore implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(PackedRecordStore.class);
+
+    private static final String PREFIX = "pack-";
+
+    private static final String DATA_SUFFIX = ".data";
+
+    private static final String INDEX_SUFFIX = ".idx";
+
+    private static final class Pack {
+
+        final File data;
+
+        final File index;
+
+        /**
+         * Number of records in this pack that have not been deleted.
+         */
+        int live;
+
+        /**
+         * Number of bytes of the records in this pack that have not been
+         * deleted.
+         */
+        long liveBytes;
+
+        Pack(File directory, String name) {
+            this.data = new File(directory, name + DATA_SUFFIX);
+            this.index = new File(directory, name + INDEX_SUFFIX);
+        }
+
+    }
+
+    private static final class Location {
+
+        final Pack pack;
+
+        final long offset;
+
+        final int length;
+
+        final long lastModified;
+
+        Location(Pack pack, long offset, int length, long lastModified) {
+            this.pack = pack;
+            this.offset = offset;
+            this.length = length;
+            this.lastModified = lastModified;
+        }
+
+    }
+
+    private final File directory;
+
+    private final long maxPackSize;
+
+    private final ConcurrentMap<String, Location> locations = new ConcurrentHashMap<>();
+
+    private int nextPack;
+
+    @Nullable
+    private Pack current;
+
+    @Nullable
+    private RandomAccessFile currentData;
+
+    @Nullable
+    private FileOutputStream currentIndexStream;
+
+    @Nullable
+    private Writer currentIndex;
+
+    /**
+     * Open the pack files in {@code directory}.
+     * @param directory    directory containing the pack files. It is created
+     *                     when the first record is added.
+     * @param maxPackSize  size in bytes after which a new pack file is started
+     */
+    PackedRecordStore(@NotNull File directory, long maxPackSize) throws IOException {
+        this.directory = directory;
+        this.maxPackSize = maxPackSize;
+
+        File[] indexes = directory.listFiles((dir, name) -> name.startsWith(PREFIX) && name.endsWith(INDEX_SUFFIX));
+        if (indexes != null) {
+            Arrays.sort(indexes);
+            List<Pack> packs = new ArrayList<>();
+            for (File index : indexes) {
+                String name = index.getName().substring(0, index.getName().length() - INDEX_SUFFIX.length());
+                Pack pack = new Pack(directory, name);
+                load(pack);
+                packs.add(pack);
+                nextPack = Math.max(nextPack, sequence(name) + 1);
+            }
+
+            // Records copied by a compaction are superseded by the entries of
+            // the newer pack, so a pack is only known to be empty once all the
+            // packs have been loaded.
+
+            for (Pack pack : packs) {
+                if (pack.live == 0) {
+                    removePack(pack);
+                }
+            }
+        }
+    }
+
+    private static int sequence(String name) {
+        try {
+            return Integer.parseInt(name.substring(PREFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private void load(Pack pack) throws IOException {
+        long dataLength = pack.data.length();
+        try (BufferedReader reader = Files.newReader(pack.index, Charsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] fields = line.split(" ");
+                if (fields.length == 5 && "+".equals(fields[0])) {
+                    long offset = Long.parseLong(fields[2]);
+                    int length = Integer.parseInt(fields[3]);
+                    if (offset + length <= dataLength) {
+                        put(fields[1], new Location(pack, offset, length, Long.parseLong(fields[4])));
+                    }
+                } else if (fields.length == 2 && "-".equals(fields[0])) {
+                    remove(fields[1]);
+                } else {
+                    LOG.warn("Ignoring invalid line in pack index {}: {}", pack.index, line);
+                }
+            }
+        } catch (NumberFormatException e) {
+            LOG.warn("Ignoring the remaining lines of the corrupt pack index {}", pack.index, e);
+        }
+    }
+
+    private void put(String id, Location location) {
+        Location previous = locations.put(id, location);
+        if (previous != null) {
+            previous.pack.live--;
+            previous.pack.liveBytes -= previous.length;
+        }
+        location.pack.live++;
+        location.pack.liveBytes += location.length;
+    }
+
+    @Nullable
+    private Location remove(String id) {
+        Location previous = locations.remove(id);
+        if (previous != null) {
+            previous.pack.live--;
+            previous.pack.liveBytes -= previous.length;
+        }
+        return previous;
+    }
+
+    private static void removePack(Pack pack) {
+        if (pack.data.exists() && !pack.data.delete()) {
+            LOG.warn("Failed to delete pack file {}", pack.data);
+        }
+        if (pack.index.exists() && !pack.index.delete()) {
+            LOG.warn("Failed to delete pack index {}", pack.index);
+        }
+    }
+
+    /**
+     * @return  {@code true} if a record with the given identifier is stored
+     *          in a pack file
+     */
+    boolean contains(@NotNull String id) {
+        return locations.containsKey(id);
+    }
+
+    /**
+     * @return  the identifiers of the records stored in pack files
+     */
+    @NotNull
+    List<String> getIdentifiers() {
+        return new ArrayList<>(locations.keySet());
+    }
+
+    /**
+     * @return  the record with the given identifier or {@code null} if it is
+     *          not stored in a pack file
+     */
+    @Nullable
+    DataRecord getRecord(@NotNull AbstractDataStore store, @NotNull String id) {
+        Location location = locations.get(id);
+        if (location == null) {
+            return null;
+        }
+        return new PackedDataRecord(store, new DataIdentifier(id), location);
+    }
+
+    /**
+     * Read a record. If its pack file has been compacted in the meantime,
+     * the record is read from its new location.
+     */
+    private byte[] read(String id, Location location) throws IOException {
+        try {
+            return read(location);
+        } catch (IOException e) {
+            Location moved = locations.get(id);
+            if (moved == null || moved == location) {
+                throw e;
+            }
+            return read(moved);
+        }
+    }
+
+    /**
+     * Append a record to the current pack file. If a record with the same
+     * identifier is already stored, only its last modified time is updated.
+     */
+    synchronized void add(@NotNull String id, @NotNull byte[] data, int length) throws IOException {
+        long now = System.currentTimeMillis();
+
+        Location existing = locations.get(id);
+        if (existing != null) {
+            Location touched = new Location(existing.pack, existing.offset, existing.length, now);
+            appendIndex(existing.pack, "+ " + id + " " + existing.offset + " " + existing.length + " " + now);
+            put(id, touched);
+            return;
+        }
+
+        append(id, data, length, now);
+    }
+
+    private void append(String id, byte[] data, int length, long lastModified) throws IOException {
+        if (current == null || currentData.length() + length > maxPackSize) {
+            startPack();
+        }
+
+        long offset = currentData.length();
+        currentData.seek(offset);
+        currentData.write(data, 0, length);
+        currentIndex.write("+ " + id + " " + offset + " " + length + " " + lastModified + "\n");
+        currentIndex.flush();
+        put(id, new Location(current, offset, length, lastModified));
+    }
+
+    private void startPack() throws IOException {
+        closeCurrent();
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create pack directory " + directory);
+        }
+        Pack pack = new Pack(directory, String.format("%s%08d", PREFIX, nextPack++));
+        currentData = new RandomAccessFile(pack.data, "rw");
+        currentIndexStream = new FileOutputStream(pack.index, true);
+        currentIndex = new OutputStreamWriter(currentIndexStream, Charsets.UTF_8);
+        current = pack;
+    }
+
+    private void appendIndex(Pack pack, String line) throws IOException {
+        if (pack == current) {
+            currentIndex.write(line + "\n");
+            currentIndex.flush();
+        } else {
+            try (Writer writer = new OutputStreamWriter(new FileOutputStream(pack.index, true), Charsets.UTF_8)) {
+                writer.write(line + "\n");
+            }
+        }
+    }
+
+    /**
+     * Delete a record. The pack file containing the record is removed if this
+     * was its last record.
+     * @return  {@code true} if the record was stored in a pack file
+     */
+    synchronized boolean delete(@NotNull String id) throws IOException {
+        Location location = locations.get(id);
+        if (location == null) {
+            return false;
+        }
+        appendIndex(location.pack, "- " + id);
+        remove(id);
+        if (location.pack.live == 0 && location.pack != current) {
+            removePack(location.pack);
+        }
+        return true;
+    }
+
+    /**
+     * Delete all records last modified before {@code min}.
+     * @return  the number of deleted records
+     */
+    synchronized int deleteAllOlderThan(long min) throws IOException {
+        Map<String, Location> old = new HashMap<>();
+        for (Map.Entry<String, Location> entry : locations.entrySet()) {
+            if (entry.getValue().lastModified < min) {
+                old.put(entry.getKey(), entry.getValue());
+            }
+        }
+        for (String id : old.keySet()) {
+            delete(id);
+        }
+        compact();
+        return old.size();
+    }
+
+    /**
+     * Copy the live records of every pack file, except the current one, whose
+     * live records take less than half of its size to the current pack file
+     * and remove the old pack file.
+     */
+    synchronized void compact() throws IOException {
+        Map<Pack, List<String>> sparse = new HashMap<>();
+        for (Map.Entry<String, Location> entry : locations.entrySet()) {
+            Pack pack = entry.getValue().pack;
+            if (pack != current && pack.liveBytes * 2 < pack.data.length()) {
+                sparse.computeIfAbsent(pack, k -> new ArrayList<>()).add(entry.getKey());
+            }
+        }
+        for (Map.Entry<Pack, List<String>> entry : sparse.entrySet()) {
+            Pack pack = entry.getKey();
+            LOG.info("Compacting pack file {} with {} live records", pack.data, pack.live);
+            for (String id : entry.getValue()) {
+                Location location = locations.get(id);
+                append(id, read(location), location.length, location.lastModified);
+            }
+
+            // The copies must be durable before the originals are removed
+            sync();
+            removePack(pack);
+        }
+    }
+
+    private void sync() throws IOException {
+        if (current != null) {
+            currentIndex.flush();
+            currentIndexStream.getFD().sync();
+            currentData.getFD().sync();
+        }
+    }
+
+    private void closeCurrent() throws IOException {
+        if (current != null) {
+            sync();
+            currentIndex.close();
+            currentData.close();
+            if (current.live == 0) {
+                removePack(current);
+            }
+            current = null;
+            currentIndexStream = null;
+            currentIndex = null;
+            currentData = null;
+        }
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        closeCurrent();
+    }
+
+    private static byte[] read(Location location) throws IOException {
+        byte[] data = new byte[location.length];
+        try (RandomAccessFile file = new RandomAccessFile(location.pack.data, "r")) {
+            file.seek(location.offset);
+            file.readFully(data);
+        }
+        return data;
+    }
+
+    private class PackedDataRecord extends AbstractDataRecord {
+
+        private final Location location;
+
+        PackedDataRecord(AbstractDataStore store, DataIdentifier identifier, Location location) {
+            super(store, identifier);
+            this.location = location;
+        }
+
+        @Override
+        public long getLength() {
+            return location.length;
+        }
+
+        @Override
+        public InputStream getStream() throws DataStoreException {
+            try {
+                return new ByteArrayInputStream(read(getIdentifier().toString(), location));
+            } catch (IOException e) {
+                throw new DataStoreException("Failed to read record " + getIdentifier()
+                        + " from pack file " + location.pack.data, e);
+            }
+        }
+
+        @Override
+        public long getLastModified() {
+            return location.lastModified;
+        }
+
+    }
+
+}
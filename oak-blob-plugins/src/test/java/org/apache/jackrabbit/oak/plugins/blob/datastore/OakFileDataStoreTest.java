@@ -19,17 +19,22 @@
 
 package org.apache.jackrabbit.oak.plugins.blob.datastore;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.Random;
 import java.util.Set;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Iterators;
 import com.google.common.collect.Sets;
+import com.google.common.io.Files;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.jackrabbit.core.data.DataIdentifier;
+import org.apache.jackrabbit.core.data.DataRecord;
 import org.apache.jackrabbit.core.data.FileDataStore;
 import org.jetbrains.annotations.Nullable;
 import org.junit.Rule;
@@ -37,7 +42,10 @@ import org.junit.Test;
 import org.junit.rules.ExpectedException;
 import org.junit.rules.TemporaryFolder;
 
+import static org.apache.commons.io.IOUtils.toByteArray;
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 public class OakFileDataStoreTest {
@@ -97,6 +105,163 @@ public class OakFileDataStoreTest {
         assertTrue(noop.isEmpty());
     }
 
+    @Test
+    public void testPackedRecords() throws Exception {
+        File root = folder.newFolder();
+        OakFileDataStore fds = packingDatastore(root.getPath());
+
+        byte[] small = randomBytes(8192);
+        byte[] large = randomBytes(65536);
+        DataRecord smallRecord = fds.addRecord(new ByteArrayInputStream(small));
+        DataRecord largeRecord = fds.addRecord(new ByteArrayInputStream(large));
+
+        File packs = new File(root, OakFileDataStore.PACK_DIRECTORY);
+        assertEquals(2, packs.list().length);
+        assertEquals(smallRecord.getIdentifier(),
+                fds.addRecord(new ByteArrayInputStream(small)).getIdentifier());
+
+        assertArrayEquals(small, toByteArray(fds.getRecord(smallRecord.getIdentifier()).getStream()));
+        assertArrayEquals(large, toByteArray(fds.getRecord(largeRecord.getIdentifier()).getStream()));
+        assertEquals(8192, fds.getRecord(smallRecord.getIdentifier()).getLength());
+
+        Set<DataIdentifier> ids = Sets.newHashSet(fds.getAllIdentifiers());
+        assertEquals(Sets.newHashSet(smallRecord.getIdentifier(), largeRecord.getIdentifier()), ids);
+        assertEquals(2, Iterators.size(fds.getAllRecords()));
+        fds.close();
+
+        fds = packingDatastore(root.getPath());
+        assertArrayEquals(small, toByteArray(fds.getRecord(smallRecord.getIdentifier()).getStream()));
+
+        fds.deleteRecord(smallRecord.getIdentifier());
+        assertNull(fds.getRecordIfStored(smallRecord.getIdentifier()));
+        assertEquals(Sets.newHashSet(largeRecord.getIdentifier()), Sets.newHashSet(fds.getAllIdentifiers()));
+        assertEquals(0, packs.list().length);
+        fds.close();
+    }
+
+    @Test
+    public void testPackedRecordsDeleteAllOlderThan() throws Exception {
+        File root = folder.newFolder();
+        OakFileDataStore fds = packingDatastore(root.getPath());
+
+        DataRecord record = fds.addRecord(new ByteArrayInputStream(randomBytes(8192)));
+        assertEquals(0, fds.deleteAllOlderThan(record.getLastModified()));
+        assertEquals(1, fds.deleteAllOlderThan(record.getLastModified() + 1));
+        assertNull(fds.getRecordIfStored(record.getIdentifier()));
+        fds.close();
+    }
+
+    @Test
+    public void testDeleteAllOlderThanKeepsPackFiles() throws Exception {
+        File root = folder.newFolder();
+        OakFileDataStore fds = packingDatastore(root.getPath());
+
+        byte[] small = randomBytes(8192);
+        DataRecord packed = fds.addRecord(new ByteArrayInputStream(small));
+        DataRecord regular = fds.addRecord(new ByteArrayInputStream(randomBytes(65536)));
+        long min = packed.getLastModified();
+
+        // The pack files are old, but the packed record has been used recently
+        File packs = new File(root, OakFileDataStore.PACK_DIRECTORY);
+        for (File file : packs.listFiles()) {
+            assertTrue(file.setLastModified(min - 60000));
+        }
+        assertTrue(findFile(root, regular.getIdentifier().toString()).setLastModified(min - 60000));
+        fds.addRecord(new ByteArrayInputStream(small));
+
+        assertEquals(1, fds.deleteAllOlderThan(min));
+        assertNull(fds.getRecordIfStored(regular.getIdentifier()));
+        assertEquals(2, packs.list().length);
+        assertArrayEquals(small, toByteArray(fds.getRecord(packed.getIdentifier()).getStream()));
+        fds.close();
+    }
+
+    @Test
+    public void testPackedRecordsCompaction() throws Exception {
+        File root = folder.newFolder();
+        OakFileDataStore fds = new OakFileDataStore();
+        fds.setPath(root.getPath());
+        fds.setPackThreshold(16384);
+        fds.setMaxPackSize(16384);
+        fds.init(null);
+
+        byte[] b = randomBytes(4000);
+        DataRecord recordA = fds.addRecord(new ByteArrayInputStream(randomBytes(8000)));
+        DataRecord recordB = fds.addRecord(new ByteArrayInputStream(b));
+        DataRecord recordC = fds.addRecord(new ByteArrayInputStream(randomBytes(8000)));
+        File packs = new File(root, OakFileDataStore.PACK_DIRECTORY);
+        assertEquals(4, packs.list().length);
+
+        // Only a third of the first pack is still live after this
+        fds.deleteRecord(recordA.getIdentifier());
+        assertEquals(0, fds.deleteAllOlderThan(0));
+        assertEquals(2, packs.list().length);
+        assertArrayEquals(b, toByteArray(fds.getRecord(recordB.getIdentifier()).getStream()));
+        assertEquals(recordB.getLastModified(), fds.getRecord(recordB.getIdentifier()).getLastModified());
+        fds.close();
+
+        fds = packingDatastore(root.getPath());
+        assertArrayEquals(b, toByteArray(fds.getRecord(recordB.getIdentifier()).getStream()));
+        assertEquals(Sets.newHashSet(recordB.getIdentifier(), recordC.getIdentifier()),
+                Sets.newHashSet(fds.getAllIdentifiers()));
+        fds.close();
+    }
+
+    @Test
+    public void testPackedRecordsCompactionOnBlobGC() throws Exception {
+        File root = folder.newFolder();
+        OakFileDataStore fds = new OakFileDataStore();
+        fds.setPath(root.getPath());
+        fds.setPackThreshold(16384);
+        fds.setMaxPackSize(16384);
+        fds.init(null);
+        DataStoreBlobStore blobStore = new DataStoreBlobStore(fds);
+
+        byte[] b = randomBytes(4000);
+        DataRecord recordA = fds.addRecord(new ByteArrayInputStream(randomBytes(8000)));
+        DataRecord recordB = fds.addRecord(new ByteArrayInputStream(b));
+        DataRecord recordC = fds.addRecord(new ByteArrayInputStream(randomBytes(8000)));
+        File packs = new File(root, OakFileDataStore.PACK_DIRECTORY);
+        assertEquals(4, packs.list().length);
+
+        // Blob garbage collection deletes the records one by one; only a
+        // third of the first pack is still live after this
+        assertEquals(1, blobStore.countDeleteChunks(
+                Collections.singletonList(recordA.getIdentifier().toString()), 0));
+        assertEquals(2, packs.list().length);
+        assertArrayEquals(b, toByteArray(fds.getRecord(recordB.getIdentifier()).getStream()));
+        fds.close();
+
+        fds = packingDatastore(root.getPath());
+        assertArrayEquals(b, toByteArray(fds.getRecord(recordB.getIdentifier()).getStream()));
+        assertEquals(Sets.newHashSet(recordB.getIdentifier(), recordC.getIdentifier()),
+                Sets.newHashSet(fds.getAllIdentifiers()));
+        fds.close();
+    }
+
+    private static File findFile(File root, String name) {
+        for (File file : Files.fileTreeTraverser().preOrderTraversal(root)) {
+            if (file.getName().equals(name)) {
+                return file;
+            }
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    private static OakFileDataStore packingDatastore(String path) {
+        OakFileDataStore fds = new OakFileDataStore();
+        fds.setPath(path);
+        fds.setPackThreshold(16384);
+        fds.init(null);
+        return fds;
+    }
+
+    private static byte[] randomBytes(int size) {
+        byte[] data = new byte[size];
+        new Random().nextBytes(data);
+        return data;
+    }
+
     private static OakFileDataStore datastore(String path) {
         OakFileDataStore fds = new OakFileDataStore();
         fds.setPath(path);
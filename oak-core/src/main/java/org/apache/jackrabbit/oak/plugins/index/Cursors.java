@@ -16,11 +16,18 @@
  */
 package org.apache.jackrabbit.oak.plugins.index;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
 
 import org.apache.jackrabbit.oak.api.Result.SizePrecision;
 import org.apache.jackrabbit.oak.commons.PathUtils;
@@ -126,6 +133,51 @@ public class Cursors {
         return new AncestorCursor(c, level, settings);
     }
 
+    /**
+     * Returns a cursor wrapper, which reads the rows of the wrapped cursor
+     * <code>c</code> in batches, using the given executor. The first batch is
+     * read right away, so that index lookups of multiple cursors (for example
+     * the branches of a union) run in parallel. The first batch is small, and
+     * each following batch is twice as large, up to the given batch size, so
+     * that little is read ahead for queries that only use the first rows. The
+     * next batch is read once half of the current batch was used. The wrapped
+     * cursor must not be used afterwards. If the executor rejects a task, the
+     * batch is read in the calling thread.
+     *
+     * @param c the cursor to wrap.
+     * @param executor the executor used to read the batches.
+     * @param batchSize the maximum number of rows per batch. Must be {@code >= 1}.
+     * @return the prefetching cursor.
+     */
+    public static Cursor newPrefetchCursor(Cursor c, Executor executor, int batchSize) {
+        return newPrefetchCursor(c, executor, batchSize, null, null);
+    }
+
+    /**
+     * Returns a prefetching cursor wrapper, see
+     * {@link #newPrefetchCursor(Cursor, Executor, int)}. If a root state is
+     * given, then the nodes of the rows are also read in the background (from
+     * this root state), so that they are already cached when the rows are
+     * processed.
+     *
+     * @param c the cursor to wrap.
+     * @param executor the executor used to read the batches.
+     * @param batchSize the maximum number of rows per batch. Must be {@code >= 1}.
+     * @param rootState the root state to read the nodes from, or null to only
+     *            read the index rows.
+     * @param settings the query limits, used to check whether the query was
+     *            cancelled before each batch is scheduled and while it is read,
+     *            or null
+     * @return the prefetching cursor.
+     */
+    public static Cursor newPrefetchCursor(Cursor c, Executor executor, int batchSize,
+            @Nullable NodeState rootState, @Nullable QueryLimits settings) {
+        checkNotNull(c);
+        checkNotNull(executor);
+        checkArgument(batchSize >= 1);
+        return new PrefetchCursor(c, executor, batchSize, rootState, settings);
+    }
+
     /**
      * A Cursor implementation where the remove method throws an
      * UnsupportedOperationException.
@@ -554,4 +606,187 @@ public class Cursors {
         }
 
     }
+
+    /**
+     * A cursor that reads the rows of another cursor in the background, one
+     * batch ahead. Batches grow from a small size to the maximum batch size.
+     * If the query is cancelled, the batch that is read is stopped, and no
+     * further batches are scheduled.
+     */
+    private static class PrefetchCursor extends AbstractCursor {
+
+        private static final Logger LOG = LoggerFactory.getLogger(PrefetchCursor.class);
+
+        /**
+         * The number of rows of the first batch.
+         */
+        static final int INITIAL_BATCH_SIZE = 8;
+
+        private final Cursor base;
+        private final Executor executor;
+        private final int maxBatchSize;
+        private final NodeState rootState;
+        private final QueryLimits settings;
+        private Iterator<IndexRow> current = Collections.emptyIterator();
+        private int currentSize;
+        private int used;
+        private FutureTask<List<IndexRow>> nextBatch;
+        private int nextBatchSize;
+        private boolean exhausted;
+
+        PrefetchCursor(Cursor base, Executor executor, int maxBatchSize,
+                @Nullable NodeState rootState, @Nullable QueryLimits settings) {
+            this.base = base;
+            this.executor = executor;
+            this.maxBatchSize = maxBatchSize;
+            this.rootState = rootState;
+            this.settings = settings;
+            submit(Math.min(INITIAL_BATCH_SIZE, maxBatchSize));
+        }
+
+        /**
+         * Check whether the query was cancelled. If yes, the batch that is
+         * scheduled or read is cancelled, and the cursor is closed.
+         */
+        private void checkCancelled() {
+            if (settings == null) {
+                return;
+            }
+            try {
+                settings.checkCancelled();
+            } catch (RuntimeException e) {
+                stop();
+                throw e;
+            }
+        }
+
+        private void stop() {
+            if (nextBatch != null) {
+                // a batch that is already read stops at the next row
+                nextBatch.cancel(false);
+                nextBatch = null;
+            }
+            exhausted = true;
+            current = Collections.emptyIterator();
+        }
+
+        private void submit(int batchSize) {
+            checkCancelled();
+            FutureTask<List<IndexRow>> task = new FutureTask<List<IndexRow>>(() -> readBatch(batchSize));
+            nextBatch = task;
+            nextBatchSize = batchSize;
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                LOG.debug("Prefetching rejected, reading the batch in the calling thread");
+                task.run();
+            }
+        }
+
+        private List<IndexRow> readBatch(int batchSize) {
+            // the base cursor is only used by one thread at a time
+            synchronized (base) {
+                List<IndexRow> list = new ArrayList<IndexRow>(batchSize);
+                while (list.size() < batchSize && base.hasNext()) {
+                    if (settings != null) {
+                        // stop reading if the query was cancelled
+                        settings.checkCancelled();
+                    }
+                    list.add(base.next());
+                }
+                if (rootState != null) {
+                    readNodes(list);
+                }
+                return list;
+            }
+        }
+
+        private void readNodes(List<IndexRow> list) {
+            // node states are immutable and can be read concurrently;
+            // reading them here fills the cache of the node store
+            for (IndexRow row : list) {
+                if (row.isVirtualRow()) {
+                    continue;
+                }
+                String path = row.getPath();
+                if (isAbsolute(path) && !NodeStateUtils.isHiddenPath(path)) {
+                    try {
+                        NodeStateUtils.getNode(rootState, path).exists();
+                    } catch (RuntimeException e) {
+                        // this is only an optimization; the node is read again later
+                        LOG.debug("Could not read node {} ahead", path, e);
+                    }
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            checkCancelled();
+            while (!current.hasNext()) {
+                if (nextBatch == null) {
+                    if (exhausted) {
+                        return false;
+                    }
+                    submit(nextBatchSize);
+                }
+                List<IndexRow> batch;
+                try {
+                    batch = getBatch(nextBatch);
+                } catch (RuntimeException e) {
+                    // the batch failed, for example because the
+                    // query was cancelled while it was read
+                    stop();
+                    throw e;
+                }
+                // a short batch means the base cursor is exhausted
+                exhausted = batch.size() < nextBatchSize;
+                nextBatch = null;
+                nextBatchSize = Math.min(maxBatchSize, nextBatchSize * 2);
+                current = batch.iterator();
+                currentSize = batch.size();
+                used = 0;
+            }
+            return true;
+        }
+
+        @Override
+        public IndexRow next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            IndexRow row = current.next();
+            used++;
+            if (nextBatch == null && !exhausted && used * 2 >= currentSize) {
+                // read ahead only once the rows are actually used
+                submit(nextBatchSize);
+            }
+            return row;
+        }
+
+        private static List<IndexRow> getBatch(FutureTask<List<IndexRow>> task) {
+            try {
+                return task.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while reading the index", e);
+            } catch (ExecutionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException) {
+                    throw (RuntimeException) cause;
+                } else if (cause instanceof Error) {
+                    throw (Error) cause;
+                }
+                throw new IllegalStateException(cause);
+            }
+        }
+
+        @Override
+        public long getSize(SizePrecision precision, long max) {
+            synchronized (base) {
+                return base.getSize(precision, max);
+            }
+        }
+
+    }
 }
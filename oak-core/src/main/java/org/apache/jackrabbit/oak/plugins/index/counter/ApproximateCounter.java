@@ -111,20 +111,33 @@ public class ApproximateCounter {
      * @param offset the offset
      */
     public static void adjustCountSync(NodeBuilder builder, long offset) {
+        adjustCountSync(builder, offset, COUNT_PROPERTY_PREFIX);
+    }
+
+    /**
+     * Adjust a counter in the given node, using the given property name
+     * prefix. This allows to keep multiple independent counters in the same
+     * node.
+     * 
+     * @param builder the node builder
+     * @param offset the offset
+     * @param prefix the property name prefix of the counter
+     */
+    public static void adjustCountSync(NodeBuilder builder, long offset, String prefix) {
         if (offset == 0) {
             return;
         }
         boolean added = offset > 0;
         for (long i = 0; i < Math.abs(offset); i++) {
-            adjustCountSync(builder, added);
+            adjustCountSync(builder, added, prefix);
         }
     }
     
-    private static void adjustCountSync(NodeBuilder builder, boolean added) {
+    private static void adjustCountSync(NodeBuilder builder, boolean added, String prefix) {
         if (RANDOM.nextInt(COUNT_RESOLUTION) != 0) {
             return;
         }
-        int max = getMaxCount(builder, added);
+        int max = getMaxCount(builder, added, prefix);
         if (max >= COUNT_MAX) {
             return;
         }
@@ -134,14 +147,14 @@ public class ApproximateCounter {
             return;
         }
         long value = x * COUNT_RESOLUTION;
-        String propertyName = COUNT_PROPERTY_PREFIX + UUID.randomUUID();
+        String propertyName = prefix + UUID.randomUUID();
         builder.setProperty(propertyName, added ? value : -value);
     }
     
-    private static int getMaxCount(NodeBuilder node, boolean added) {
+    private static int getMaxCount(NodeBuilder node, boolean added, String prefix) {
         long max = 0;
         for (PropertyState p : node.getProperties()) {
-            if (!p.getName().startsWith(COUNT_PROPERTY_PREFIX)) {
+            if (!p.getName().startsWith(prefix)) {
                 continue;
             }
             long x = p.getValue(Type.LONG);
@@ -160,11 +173,23 @@ public class ApproximateCounter {
      * @return the estimation (-1 if no estimation is available)
      */
     public static long getCountSync(NodeState node) {
+        return getCountSync(node, COUNT_PROPERTY_PREFIX);
+    }
+
+    /**
+     * Get the count estimation of the counter with the given property name
+     * prefix.
+     *
+     * @param node the node
+     * @param prefix the property name prefix of the counter
+     * @return the estimation (-1 if no estimation is available)
+     */
+    public static long getCountSync(NodeState node, String prefix) {
         boolean hasCountProperty = false;
         long added = 0;
         long removed = 0;
         for (PropertyState p : node.getProperties()) {
-            if (!p.getName().startsWith(COUNT_PROPERTY_PREFIX)) {
+            if (!p.getName().startsWith(prefix)) {
                 continue;
             }
             hasCountProperty = true;
@@ -80,6 +80,23 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
      */
     public static final int TRAVERSING_WARN = Integer.getInteger("oak.traversing.warn", 10000);
 
+    /**
+     * The property name prefix of the approximate number of distinct keys,
+     * stored in the index content node (next to the approximate number of
+     * entries). Together with the approximate number of entries per key, this
+     * is used to estimate the cost of a lookup.
+     */
+    public static final String KEY_COUNT_PROPERTY_PREFIX = ":keycount_";
+
+    /**
+     * The name of the property that marks index content nodes whose distinct
+     * key count was maintained since the node was created (for example by a
+     * reindex). The key count of older index content is incomplete, as the
+     * keys that existed before the key count was introduced were never
+     * counted, and is not used.
+     */
+    public static final String KEY_COUNT_COMPLETE_PROPERTY_NAME = ":keycountComplete";
+
     private final String indexName;
     private final String pathPrefix;
     private final boolean prependPathPrefix;
@@ -116,6 +133,10 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
             @Nullable final String indexName,
             @Nullable final NodeBuilder indexMeta,
             Set<String> beforeKeys, Set<String> afterKeys) {
+        if (indexMeta != null && !indexMeta.hasChildNode(getIndexNodeName())) {
+            // the index content is created now, so all its keys are counted
+            index.get().setProperty(KEY_COUNT_COMPLETE_PROPERTY_NAME, true);
+        }
         for (String key : beforeKeys) {
             remove(index.get(), key, path);
         }
@@ -146,11 +167,17 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
 
             // Prune all index nodes that are no longer needed
             prune(index, builders, key);
+            if (!index.hasChildNode(key)) {
+                ApproximateCounter.adjustCountSync(index, -1, KEY_COUNT_PROPERTY_PREFIX);
+            }
         }
     }
 
     private void insert(NodeBuilder index, String key, String value) {
         ApproximateCounter.adjustCountSync(index, 1);
+        if (!index.hasChildNode(key)) {
+            ApproximateCounter.adjustCountSync(index, 1, KEY_COUNT_PROPERTY_PREFIX);
+        }
         // NodeBuilder builder = index.child(key);
         NodeBuilder builder = fetchKeyNode(index, key);
         ApproximateCounter.adjustCountSync(builder, 1);
@@ -247,6 +274,14 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
                     ec = indexMeta.getProperty(KEY_COUNT_PROPERTY_NAME);
                     if (ec != null) {
                         keyCount = ec.getValue(Type.LONG);
+                    } else if (index.getBoolean(KEY_COUNT_COMPLETE_PROPERTY_NAME)) {
+                        // use the number of distinct keys
+                        // maintained by the index, if available
+                        long approxKeyCount = ApproximateCounter.getCountSync(
+                                index, KEY_COUNT_PROPERTY_PREFIX);
+                        if (approxKeyCount > 0) {
+                            keyCount = approxKeyCount;
+                        }
                     }
                     // cast to double to avoid overflow 
                     // (entryCount could be Long.MAX_VALUE)
@@ -262,20 +297,30 @@ public class ContentMirrorStoreStrategy implements IndexStoreStrategy {
                 if (approxCount != -1) {
                     // approximate count is available for the index:
                     // check approximate counts for each value
+                    int keysWithoutCount = 0;
                     for (String p : values) {
                         NodeState s = index.getChildNode(p);
                         if (s.exists()) {
                             long a = ApproximateCounter.getCountSync(s);
                             if (a != -1) {
                                 approxMax += a;
-                            } else if (approxMax > 0) {
-                                // in absence of approx count for a key we should be conservative
-                                approxMax += 10 * NodeCounterEditor.DEFAULT_RESOLUTION;
+                            } else {
+                                keysWithoutCount++;
                             }
                         }
                     }
                     if (approxMax > 0) {
-                        count = approxMax;
+                        // in absence of approx count for a key we should be conservative
+                        long perKey = 10 * NodeCounterEditor.DEFAULT_RESOLUTION;
+                        long approxKeyCount = index.getBoolean(KEY_COUNT_COMPLETE_PROPERTY_NAME)
+                                ? ApproximateCounter.getCountSync(index, KEY_COUNT_PROPERTY_PREFIX)
+                                : -1;
+                        if (approxKeyCount > 0) {
+                            // keys without approx count are the less frequent ones,
+                            // so assume they have at most the average number of entries
+                            perKey = Math.min(perKey, Math.max(1, approxCount / approxKeyCount));
+                        }
+                        count = approxMax + keysWithoutCount * perKey;
                     }
                 }
             }
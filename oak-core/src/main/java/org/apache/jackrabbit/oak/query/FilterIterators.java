@@ -13,17 +13,36 @@
  */
 package org.apache.jackrabbit.oak.query;
 
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
+import java.util.function.Function;
 
+import org.apache.jackrabbit.oak.commons.sort.ExternalSort;
 import org.apache.jackrabbit.oak.spi.query.QueryLimits;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
+
 /**
  * Filtering iterators that are useful for queries with limit, offset, order by,
  * or distinct.
@@ -56,13 +75,15 @@ public class FilterIterators {
     }
     
     /**
-     * Verify the number of node read operations is below the limit.
+     * Verify the number of node read operations is below the limit, and that
+     * the query was not cancelled.
      * 
      * @param count the number of read operations
      * @param settings the query engine settings
      * @throws UnsupportedOperationException if the limit was exceeded
      */
     public static void checkReadLimit(long count, QueryLimits settings) {
+        settings.checkCancelled();
         long maxReadEntries = settings.getLimitReads();
         if (count > maxReadEntries) {
             String message = "The query read or traversed more than " + 
@@ -78,15 +99,36 @@ public class FilterIterators {
     public static <K> Iterator<K> newCombinedFilter(
             Iterator<K> it, boolean distinct, long limit, long offset, 
             Comparator<K> orderBy, QueryLimits settings) {
+        return newCombinedFilter(it, distinct, limit, offset, orderBy, settings, null);
+    }
+
+    /**
+     * Combine the filters for distinct, order by, offset, and limit. If a
+     * codec is set, sorting and filtering of duplicates continue in temporary
+     * files once the in-memory limit is reached, instead of failing.
+     * 
+     * @param it the source iterator
+     * @param distinct whether to filter duplicate entries
+     * @param limit the maximum number of entries
+     * @param offset the number of entries to skip
+     * @param orderBy the sort order, or null
+     * @param settings the query limits
+     * @param codec the codec used to spill entries to disk, or null to keep
+     *            all entries in memory
+     * @return the filtered iterator
+     */
+    public static <K> Iterator<K> newCombinedFilter(
+            Iterator<K> it, boolean distinct, long limit, long offset, 
+            Comparator<K> orderBy, QueryLimits settings, @Nullable SpillCodec<K> codec) {
         if (distinct) {
-            it = FilterIterators.newDistinct(it, settings);
+            it = FilterIterators.newDistinct(it, settings, codec);
         }
         if (orderBy != null) {
             // avoid overflow (both offset and limit could be Long.MAX_VALUE)
             int max = (int) Math.min(Integer.MAX_VALUE, 
                     Math.min(Integer.MAX_VALUE, offset) + 
                     Math.min(Integer.MAX_VALUE, limit));
-            it = FilterIterators.newSort(it, orderBy, max, settings);
+            it = FilterIterators.newSort(it, orderBy, max, settings, codec);
         }
         if (offset != 0) {
             it = FilterIterators.newOffset(it, offset);
@@ -97,8 +139,30 @@ public class FilterIterators {
         return it;
     }
     
+    /**
+     * Close an iterator created by this class, so that the temporary files
+     * it holds, if any, are deleted. This is done automatically once all
+     * entries were read, and once the limit is reached.
+     * 
+     * @param it the iterator
+     */
+    public static void close(Iterator<?> it) {
+        if (it instanceof Closeable) {
+            try {
+                ((Closeable) it).close();
+            } catch (IOException e) {
+                LOG.debug("Could not close {}", it, e);
+            }
+        }
+    }
+
     public static <K> DistinctIterator<K> newDistinct(Iterator<K> it, QueryLimits settings) {
-        return new DistinctIterator<K>(it, settings);
+        return newDistinct(it, settings, null);
+    }
+
+    public static <K> DistinctIterator<K> newDistinct(Iterator<K> it, QueryLimits settings, 
+            @Nullable SpillCodec<K> codec) {
+        return new DistinctIterator<K>(it, settings, codec);
     }
     
     public static <K> Iterator<K> newLimit(Iterator<K> it, long limit) {
@@ -110,7 +174,60 @@ public class FilterIterators {
     }
     
     public static <K> Iterator<K> newSort(Iterator<K> it, Comparator<K> orderBy, int max, QueryLimits settings) {
-        return new SortIterator<K>(it, orderBy, max, settings);
+        return newSort(it, orderBy, max, settings, null);
+    }
+
+    public static <K> Iterator<K> newSort(Iterator<K> it, Comparator<K> orderBy, int max, QueryLimits settings, 
+            @Nullable SpillCodec<K> codec) {
+        return new SortIterator<K>(it, orderBy, max, settings, codec);
+    }
+
+    /**
+     * Converts entries to and from single lines of text, so that sorting and
+     * filtering of duplicates can continue in temporary files once the
+     * in-memory limit is reached.
+     * 
+     * @param <K> the entry type
+     */
+    public interface SpillCodec<K> {
+
+        /**
+         * Convert an entry to a line of text.
+         * 
+         * @param entry the entry
+         * @return the line (without line breaks), or null if the entry can not
+         *         be written
+         */
+        @Nullable
+        String encode(K entry);
+
+        /**
+         * Convert a line that was created by {@link #encode(Object)} back to an
+         * entry.
+         * 
+         * @param line the line
+         * @return the entry
+         */
+        K decode(String line);
+
+        /**
+         * Get the key of an entry. Two entries are equal if and only if their
+         * keys are equal.
+         * 
+         * @param entry the entry
+         * @return the key (without line breaks or tab characters), or null if
+         *         the entry can not be written
+         */
+        @Nullable
+        String getKey(K entry);
+
+        /**
+         * Called whenever data was written to a temporary file.
+         * 
+         * @param bytes the number of bytes written
+         */
+        void spilled(long bytes);
+
     }
 
     /**
@@ -120,17 +237,21 @@ public class FilterIterators {
      * 
      * @param <K> the entry type
      */
-    static class DistinctIterator<K> implements Iterator<K> {
+    static class DistinctIterator<K> implements Iterator<K>, Closeable {
 
         private final Iterator<K> source;
         private final QueryLimits settings;
+        private final SpillCodec<K> codec;
         private final HashSet<K> distinctSet;
+        private MergedRun<String> spilledRun;
+        private Iterator<K> spilled;
         private K current;
         private boolean end;
 
-        DistinctIterator(Iterator<K> source, QueryLimits settings) {
+        DistinctIterator(Iterator<K> source, QueryLimits settings, SpillCodec<K> codec) {
             this.source = source;
             this.settings = settings;
+            this.codec = codec;
             distinctSet = new HashSet<K>();
         }
 
@@ -138,17 +259,115 @@ public class FilterIterators {
             if (end) {
                 return;
             }
-            while (source.hasNext()) {
-                current = source.next();
-                if (distinctSet.add(current)) {
-                    checkMemoryLimit(distinctSet.size(), settings);
+            if (spilled != null) {
+                if (spilled.hasNext()) {
+                    current = spilled.next();
                     return;
                 }
+                close();
+            } else {
+                while (source.hasNext()) {
+                    current = source.next();
+                    if (distinctSet.add(current)) {
+                        if (codec != null && distinctSet.size() > settings.getLimitInMemory()) {
+                            distinctSet.remove(current);
+                            spilled = spill(current);
+                            fetchNext();
+                            return;
+                        }
+                        checkMemoryLimit(distinctSet.size(), settings);
+                        return;
+                    }
+                }
             }
             current = null;
             end = true;
         }
 
+        /**
+         * Filter the remaining entries using temporary files. The lines of the
+         * first pass are sorted by key, so that duplicates are adjacent. The
+         * keys of the entries that were already returned are marked with "0",
+         * all other entries with "1" and their position, so that only the
+         * first occurrence of each new key is kept. The second pass restores
+         * the original order.
+         * 
+         * @param first the first entry that was not returned yet
+         * @return the remaining unique entries
+         */
+        private Iterator<K> spill(K first) {
+            SortedRuns<String> byKey = new SortedRuns<String>(
+                    Comparator.<String>naturalOrder(), Function.identity(), Function.identity(), codec);
+            SortedRuns<String> byPosition = new SortedRuns<String>(
+                    Comparator.<String>naturalOrder(), Function.identity(), Function.identity(), codec);
+            try {
+                return spill(first, byKey, byPosition);
+            } catch (RuntimeException e) {
+                byKey.delete();
+                byPosition.delete();
+                throw e;
+            }
+        }
+
+        private Iterator<K> spill(K first, SortedRuns<String> byKey, SortedRuns<String> byPosition) {
+            int limit = (int) Math.min(Integer.MAX_VALUE, settings.getLimitInMemory());
+            ArrayList<String> list = new ArrayList<String>();
+            for (K x : distinctSet) {
+                list.add(getKey(x) + "\t0");
+                if (list.size() >= limit) {
+                    byKey.save(list, limit);
+                }
+            }
+            distinctSet.clear();
+            long pos = 0;
+            K x = first;
+            while (true) {
+                String line = codec.encode(x);
+                if (line == null) {
+                    checkMemoryLimit(Long.MAX_VALUE, settings);
+                }
+                list.add(getKey(x) + "\t1" + String.format("%019d", pos++) + "\t" + line);
+                if (list.size() >= limit) {
+                    byKey.save(list, limit);
+                }
+                if (!source.hasNext()) {
+                    break;
+                }
+                x = source.next();
+            }
+            byKey.save(list, limit);
+            try (MergedRun<String> it = byKey.merge()) {
+                String lastKey = null;
+                while (it.hasNext()) {
+                    String line = it.next();
+                    int tab = line.indexOf('\t');
+                    String key = line.substring(0, tab);
+                    if (key.equals(lastKey)) {
+                        continue;
+                    }
+                    lastKey = key;
+                    if (line.charAt(tab + 1) == '1') {
+                        list.add(line.substring(tab + 2));
+                        if (list.size() >= limit) {
+                            byPosition.save(list, limit);
+                        }
+                    }
+                }
+            }
+            byPosition.save(list, limit);
+            spilledRun = byPosition.merge();
+            return Iterators.transform(spilledRun,
+                    line -> codec.decode(line.substring(line.indexOf('\t') + 1)));
+        }
+
+        private String getKey(K x) {
+            String key = codec.getKey(x);
+            if (key == null) {
+                checkMemoryLimit(Long.MAX_VALUE, settings);
+            }
+            return key;
+        }
+
         @Override
         public boolean hasNext() {
             if (current == null) {
@@ -175,6 +394,13 @@ public class FilterIterators {
             throw new UnsupportedOperationException();
         }
 
+        @Override
+        public void close() {
+            if (spilledRun != null) {
+                spilledRun.close();
+            }
+        }
+
     }
     
     /**
@@ -184,19 +410,23 @@ public class FilterIterators {
      * 
      * @param <K> the entry type
      */
-    static class SortIterator<K> implements Iterator<K> {
+    static class SortIterator<K> implements Iterator<K>, Closeable {
 
         private final Iterator<K> source;
         private final QueryLimits settings;
         private final Comparator<K> orderBy;
+        private final SpillCodec<K> codec;
         private Iterator<K> result;
+        private MergedRun<K> merged;
         private final int max;
 
-        SortIterator(Iterator<K> source, Comparator<K> orderBy, int max, QueryLimits settings) {
+        SortIterator(Iterator<K> source, Comparator<K> orderBy, int max, QueryLimits settings, 
+                SpillCodec<K> codec) {
             this.source = source;
             this.orderBy = orderBy;
             this.max = max;
             this.settings = settings;
+            this.codec = codec;
         }
         
         private void init() {
@@ -204,23 +434,56 @@ public class FilterIterators {
                 return;
             }
             ArrayList<K> list = new ArrayList<K>();
-            while (source.hasNext()) {
-                K x = source.next();
-                list.add(x);
-                checkMemoryLimit(list.size(), settings);
-                // from time to time, sort and truncate
-                // this should need less than O(n*log(3*keep)) operations,
-                // which is close to the optimum O(n*log(keep))
-                if (list.size() > (long) max * 2) {
-                    // remove tail entries right now, to save memory
-                    Collections.sort(list, orderBy);
-                    keepFirst(list, max);
+            SortedRuns<K> runs = null;
+            try {
+                while (source.hasNext()) {
+                    K x = source.next();
+                    list.add(x);
+                    // from time to time, sort and truncate
+                    // this should need less than O(n*log(3*keep)) operations,
+                    // which is close to the optimum O(n*log(keep))
+                    if (list.size() > (long) max * 2) {
+                        // remove tail entries right now, to save memory
+                        Collections.sort(list, orderBy);
+                        keepFirst(list, max);
+                    }
+                    if (codec != null && list.size() > settings.getLimitInMemory()) {
+                        // write a sorted run; only the first entries of 
+                        // each run can be part of the result
+                        if (runs == null) {
+                            runs = new SortedRuns<K>(orderBy, this::encode, codec::decode, codec);
+                        }
+                        runs.save(list, max);
+                    } else {
+                        checkMemoryLimit(list.size(), settings);
+                    }
+                }
+                if (runs != null) {
+                    runs.save(list, max);
+                }
+            } catch (RuntimeException e) {
+                if (runs != null) {
+                    runs.delete();
                 }
+                throw e;
+            }
+            if (runs != null) {
+                merged = runs.merge();
+                result = new LimitIterator<K>(merged, max);
+                return;
             }
             Collections.sort(list, orderBy);
             keepFirst(list, max);
             result = list.iterator();
         }
+
+        private String encode(K x) {
+            String line = codec.encode(x);
+            if (line == null) {
+                checkMemoryLimit(Long.MAX_VALUE, settings);
+            }
+            return line;
+        }
         
         /**
          * Truncate a list.
@@ -239,7 +502,19 @@ public class FilterIterators {
         @Override
         public boolean hasNext() {
             init();
-            return result.hasNext();
+            if (merged != null) {
+                try {
+                    settings.checkCancelled();
+                } catch (RuntimeException e) {
+                    close();
+                    throw e;
+                }
+            }
+            if (result.hasNext()) {
+                return true;
+            }
+            close();
+            return false;
         }
 
         @Override
@@ -252,16 +527,205 @@ public class FilterIterators {
         public void remove() {
             throw new UnsupportedOperationException();
         }
+
+        @Override
+        public void close() {
+            if (merged != null) {
+                merged.close();
+            }
+        }
         
     }
     
+    /**
+     * Sorted runs of entries in temporary files, which are merged when all
+     * entries were added.
+     * 
+     * @param <T> the entry type
+     */
+    private static class SortedRuns<T> {
+
+        private static final Charset CHARSET = StandardCharsets.UTF_8;
+
+        private final Comparator<T> comparator;
+        private final Function<T, String> toLine;
+        private final Function<String, T> fromLine;
+        private final SpillCodec<?> codec;
+        private final List<File> runs = new ArrayList<File>();
+
+        SortedRuns(Comparator<T> comparator, Function<T, String> toLine, 
+                Function<String, T> fromLine, SpillCodec<?> codec) {
+            this.comparator = comparator;
+            this.toLine = toLine;
+            this.fromLine = fromLine;
+            this.codec = codec;
+        }
+
+        /**
+         * Sort the entries, and write the first entries to a new run.
+         * 
+         * @param list the entries (the list is cleared afterwards)
+         * @param keep the maximum number of entries to write
+         */
+        void save(ArrayList<T> list, int keep) {
+            if (list.isEmpty()) {
+                return;
+            }
+            Collections.sort(list, comparator);
+            SortIterator.keepFirst(list, keep);
+            try {
+                File file = write(list);
+                runs.add(file);
+                codec.spilled(file.length());
+            } catch (IOException e) {
+                delete();
+                throw new UncheckedIOException("Could not write the query result to a temporary file", e);
+            } catch (RuntimeException e) {
+                delete();
+                throw e;
+            }
+            list.clear();
+        }
+
+        /**
+         * Write the (sorted) entries to a new temporary file. Unlike
+         * ExternalSort.sortAndSave, the file is not registered to be deleted
+         * on exit, as this would keep its name in memory until the JVM stops;
+         * it is deleted explicitly instead.
+         * 
+         * @param list the sorted entries
+         * @return the file
+         */
+        private File write(List<T> list) throws IOException {
+            File file = File.createTempFile("oak-query", ".tmp");
+            try (BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(file), CHARSET))) {
+                for (T entry : list) {
+                    writer.write(toLine.apply(entry));
+                    writer.newLine();
+                }
+            } catch (IOException | RuntimeException e) {
+                if (!file.delete()) {
+                    LOG.debug("Could not delete {}", file);
+                }
+                throw e;
+            }
+            return file;
+        }
+
+        /**
+         * Merge all runs into one file, and read the entries from that file.
+         * The file is deleted when all entries were read, or when the
+         * returned iterator is closed.
+         * 
+         * @return the sorted entries
+         */
+        MergedRun<T> merge() {
+            if (runs.isEmpty()) {
+                return new MergedRun<T>(null, null, fromLine);
+            }
+            final File file;
+            try {
+                file = File.createTempFile("oak-query", ".tmp");
+            } catch (IOException e) {
+                delete();
+                throw new UncheckedIOException("Could not create a temporary file", e);
+            }
+            final BufferedReader reader;
+            try {
+                ExternalSort.mergeSortedFiles(new ArrayList<File>(runs), file, comparator, 
+                        CHARSET, false, false, false, toLine, 
+                        line -> line == null ? null : fromLine.apply(line));
+                runs.clear();
+                codec.spilled(file.length());
+                reader = new BufferedReader(new InputStreamReader(
+                        new FileInputStream(file), CHARSET));
+            } catch (IOException e) {
+                delete();
+                file.delete();
+                throw new UncheckedIOException("Could not merge the temporary query results", e);
+            }
+            return new MergedRun<T>(file, reader, fromLine);
+        }
+
+        void delete() {
+            for (File f : runs) {
+                if (!f.delete()) {
+                    LOG.debug("Could not delete {}", f);
+                }
+            }
+            runs.clear();
+        }
+
+    }
+
+    /**
+     * The entries of a merged run. The temporary file is deleted right away
+     * where the file system allows this for open files, so that nothing is
+     * left behind if the result is abandoned; otherwise it is deleted once
+     * all entries were read, or when the iterator is closed.
+     * 
+     * @param <T> the entry type
+     */
+    static class MergedRun<T> extends AbstractIterator<T> implements Closeable {
+
+        private final Function<String, T> fromLine;
+        private File file;
+        private BufferedReader reader;
+
+        MergedRun(@Nullable File file, @Nullable BufferedReader reader, Function<String, T> fromLine) {
+            this.fromLine = fromLine;
+            this.reader = reader;
+            this.file = file;
+            if (file != null && file.delete()) {
+                this.file = null;
+            }
+        }
+
+        @Override
+        protected T computeNext() {
+            if (reader != null) {
+                try {
+                    String line = reader.readLine();
+                    if (line != null) {
+                        return fromLine.apply(line);
+                    }
+                } catch (IOException e) {
+                    close();
+                    throw new UncheckedIOException("Could not read the temporary query results", e);
+                }
+            }
+            close();
+            return endOfData();
+        }
+
+        @Override
+        public void close() {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (IOException e) {
+                    LOG.debug("Could not close the temporary query results", e);
+                }
+                reader = null;
+            }
+            if (file != null) {
+                if (!file.delete()) {
+                    LOG.debug("Could not delete {}", file);
+                }
+                file = null;
+            }
+        }
+
+    }
+
     /**
      * An iterator that ignores the first number of entries. Entries are only
      * read when needed (on demand).
      * 
      * @param <K> the entry type
      */
-    static class OffsetIterator<K> implements Iterator<K> {
+    static class OffsetIterator<K> implements Iterator<K>, Closeable {
 
         private final Iterator<K> source;
         private final long offset;
@@ -298,6 +762,11 @@ public class FilterIterators {
         public void remove() {
             throw new UnsupportedOperationException();
         }
+
+        @Override
+        public void close() {
+            FilterIterators.close(source);
+        }
         
     }
     
@@ -307,7 +776,7 @@ public class FilterIterators {
      * 
      * @param <K> the entry type
      */
-    static class LimitIterator<K> implements Iterator<K> {
+    static class LimitIterator<K> implements Iterator<K>, Closeable {
 
         private final Iterator<K> source;
         private final long limit;
@@ -328,14 +797,23 @@ public class FilterIterators {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            count++;
-            return source.next();
+            K x = source.next();
+            if (++count >= limit) {
+                // the remaining entries are not needed
+                close();
+            }
+            return x;
         }
 
         @Override
         public void remove() {
             throw new UnsupportedOperationException();
         }
+
+        @Override
+        public void close() {
+            FilterIterators.close(source);
+        }
         
     }
 
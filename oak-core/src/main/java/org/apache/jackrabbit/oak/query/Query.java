@@ -21,6 +21,7 @@ import org.jetbrains.annotations.Nullable;
 import org.osgi.annotation.versioning.ProviderType;
 
 import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.QueryControl;
 import org.apache.jackrabbit.oak.api.Result;
 import org.apache.jackrabbit.oak.api.Tree;
 import org.apache.jackrabbit.oak.query.ast.ColumnImpl;
@@ -47,6 +48,14 @@ public interface Query {
 
     void setTraversalEnabled(boolean traversalEnabled);
 
+    /**
+     * Set the control used to cancel the query, or to stop it once the
+     * deadline is reached.
+     * 
+     * @param control the control, or null
+     */
+    void setQueryControl(QueryControl control);
+
     Result executeQuery();
 
     List<String> getBindVariableNames();
@@ -81,6 +90,14 @@ public interface Query {
 
     void setMeasure(boolean measure);
 
+    /**
+     * Run the query when it is explained, so that the plan contains the
+     * row counts and timings of the selectors ("explain profile").
+     *
+     * @param profile whether to run the query when explaining it
+     */
+    void setProfile(boolean profile);
+
     void setOrderings(OrderingImpl[] orderings);
     
     /**
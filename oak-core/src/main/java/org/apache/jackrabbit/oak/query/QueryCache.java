@@ -0,0 +1,294 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.base.Ticker;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.CacheStats;
+import com.google.common.collect.ImmutableMap;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.apache.jackrabbit.oak.spi.state.NodeStateUtils.isHidden;
+
+/**
+ * A bounded cache for the per statement work of the query engine that does
+ * not depend on the content: the conversion of XPath statements to SQL-2,
+ * and which of the original and the alternative (union) query was the
+ * cheapest one the last time the statement was run with the same bind
+ * variable values.
+ * <p>
+ * Parsed queries and prepared plans themselves are not cached, as query
+ * objects hold the bind variables, limits and execution context of one
+ * execution, and can not be copied once initialised. Plan selections are
+ * dropped as soon as index definitions change (see
+ * {@link #checkIndexDefinitions(NodeState)}), and expire after a while,
+ * so that changed index content is taken into account. {@link #invalidate()}
+ * clears everything immediately.
+ */
+public class QueryCache {
+
+    /**
+     * The maximum number of entries per cache. Use 0 to disable the cache.
+     */
+    public static final int DEFAULT_SIZE =
+            Integer.getInteger("oak.query.cacheSize", 1000);
+
+    /**
+     * The number of seconds a plan selection stays valid.
+     */
+    public static final int DEFAULT_SELECTION_EXPIRY_SECONDS =
+            Integer.getInteger("oak.query.cacheSelectionExpiry", 60);
+
+    private final int size;
+
+    private final Cache<String, String> conversions;
+
+    private final Cache<List<Object>, Integer> selections;
+
+    private volatile CacheStats conversionBaseline = new CacheStats(0, 0, 0, 0, 0, 0);
+
+    private volatile CacheStats selectionBaseline = new CacheStats(0, 0, 0, 0, 0, 0);
+
+    /**
+     * The root node state the index definitions were last checked against.
+     */
+    private volatile NodeState lastRoot;
+
+    public QueryCache() {
+        this(DEFAULT_SIZE, DEFAULT_SELECTION_EXPIRY_SECONDS, TimeUnit.SECONDS);
+    }
+
+    public QueryCache(int size, long selectionExpiry, @NotNull TimeUnit unit) {
+        this(size, selectionExpiry, unit, Ticker.systemTicker());
+    }
+
+    QueryCache(int size, long selectionExpiry, @NotNull TimeUnit unit, @NotNull Ticker ticker) {
+        this.size = size;
+        this.conversions = CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .recordStats()
+                .build();
+        this.selections = CacheBuilder.newBuilder()
+                .maximumSize(size)
+                .expireAfterWrite(selectionExpiry, unit)
+                .ticker(ticker)
+                .recordStats()
+                .build();
+    }
+
+    public boolean isEnabled() {
+        return size > 0;
+    }
+
+    /**
+     * Get the cached SQL-2 conversion of an XPath statement.
+     *
+     * @param xpath the XPath statement
+     * @return the SQL-2 statement, or null if not cached
+     */
+    @Nullable
+    String getConversion(@NotNull String xpath) {
+        return conversions.getIfPresent(xpath);
+    }
+
+    void putConversion(@NotNull String xpath, @NotNull String sql2) {
+        if (isEnabled()) {
+            conversions.put(xpath, sql2);
+        }
+    }
+
+    /**
+     * Get the index of the query (0 for the original, 1 for the alternative)
+     * that was selected the last time the given statement was prepared with
+     * the same bind variable values.
+     *
+     * @return the index, or -1 if not known or expired
+     */
+    int getSelection(@NotNull String statement, @NotNull String language,
+            @NotNull Map<String, String> mappings,
+            @NotNull Map<String, ? extends PropertyValue> bindings) {
+        Integer index = selections.getIfPresent(key(statement, language, mappings, bindings));
+        return index == null ? -1 : index;
+    }
+
+    void putSelection(@NotNull String statement, @NotNull String language,
+            @NotNull Map<String, String> mappings,
+            @NotNull Map<String, ? extends PropertyValue> bindings, int index) {
+        if (isEnabled()) {
+            selections.put(key(statement, language, mappings, bindings), index);
+        }
+    }
+
+    void removeSelection(@NotNull String statement, @NotNull String language,
+            @NotNull Map<String, String> mappings,
+            @NotNull Map<String, ? extends PropertyValue> bindings) {
+        selections.invalidate(key(statement, language, mappings, bindings));
+    }
+
+    private static List<Object> key(String statement, String language,
+            Map<String, String> mappings, Map<String, ? extends PropertyValue> bindings) {
+        return Arrays.asList(statement, language,
+                ImmutableMap.copyOf(mappings), ImmutableMap.copyOf(bindings));
+    }
+
+    /**
+     * Drop all plan selections if the index definitions changed since the
+     * last call. The root is compared against the one of the last call, so
+     * the cost depends on the size of the changes, and is low if the
+     * revision did not change. Only changes of the (not hidden) content of
+     * {@code oak:index} nodes count, so that updates of the index data do not
+     * invalidate the cache. Added or removed subtrees are only checked for an
+     * {@code oak:index} child node at their top; for deeper nested index
+     * definitions, the selections expire after a while.
+     *
+     * @param root the root node state of the current revision
+     */
+    void checkIndexDefinitions(@NotNull NodeState root) {
+        NodeState before = lastRoot;
+        lastRoot = root;
+        if (before != null && before != root
+                && !root.compareAgainstBaseState(before, new IndexDefinitionDiff(false))) {
+            // the diff was aborted at the first changed index definition
+            selections.invalidateAll();
+        }
+    }
+
+    /**
+     * Remove all cached entries, for example after index definitions have
+     * been changed.
+     */
+    public void invalidate() {
+        conversions.invalidateAll();
+        selections.invalidateAll();
+    }
+
+    public void resetStats() {
+        conversionBaseline = conversions.stats();
+        selectionBaseline = selections.stats();
+    }
+
+    public long getConversionHits() {
+        return conversions.stats().minus(conversionBaseline).hitCount();
+    }
+
+    public long getConversionMisses() {
+        return conversions.stats().minus(conversionBaseline).missCount();
+    }
+
+    public long getSelectionHits() {
+        return selections.stats().minus(selectionBaseline).hitCount();
+    }
+
+    public long getSelectionMisses() {
+        return selections.stats().minus(selectionBaseline).missCount();
+    }
+
+    public long getConversionCount() {
+        conversions.cleanUp();
+        return conversions.size();
+    }
+
+    public long getSelectionCount() {
+        selections.cleanUp();
+        return selections.size();
+    }
+
+    @Override
+    public String toString() {
+        return "{\n" +
+                "  \"conversionHits\": " + getConversionHits() + ",\n" +
+                "  \"conversionMisses\": " + getConversionMisses() + ",\n" +
+                "  \"conversionCount\": " + getConversionCount() + ",\n" +
+                "  \"selectionHits\": " + getSelectionHits() + ",\n" +
+                "  \"selectionMisses\": " + getSelectionMisses() + ",\n" +
+                "  \"selectionCount\": " + getSelectionCount() + "\n" +
+                "}";
+    }
+
+    /**
+     * A diff that is aborted at the first change of an index definition.
+     */
+    private static class IndexDefinitionDiff implements NodeStateDiff {
+
+        /**
+         * Whether the compared node is an {@code oak:index} node or below one.
+         */
+        private final boolean definitions;
+
+        IndexDefinitionDiff(boolean definitions) {
+            this.definitions = definitions;
+        }
+
+        @Override
+        public boolean propertyAdded(PropertyState after) {
+            return !definitions || isHidden(after.getName());
+        }
+
+        @Override
+        public boolean propertyChanged(PropertyState before, PropertyState after) {
+            return !definitions || isHidden(after.getName());
+        }
+
+        @Override
+        public boolean propertyDeleted(PropertyState before) {
+            return !definitions || isHidden(before.getName());
+        }
+
+        @Override
+        public boolean childNodeAdded(String name, NodeState after) {
+            return !containsDefinitions(name, after);
+        }
+
+        @Override
+        public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+            if (isHidden(name)) {
+                return true;
+            }
+            return after.compareAgainstBaseState(before, 
+                    new IndexDefinitionDiff(definitions || INDEX_DEFINITIONS_NAME.equals(name)));
+        }
+
+        @Override
+        public boolean childNodeDeleted(String name, NodeState before) {
+            return !containsDefinitions(name, before);
+        }
+
+        private boolean containsDefinitions(String name, NodeState state) {
+            if (isHidden(name)) {
+                return false;
+            }
+            return definitions || INDEX_DEFINITIONS_NAME.equals(name)
+                    || state.hasChildNode(INDEX_DEFINITIONS_NAME);
+        }
+
+    }
+
+}
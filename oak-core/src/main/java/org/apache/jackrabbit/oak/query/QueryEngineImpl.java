@@ -28,6 +28,7 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.QueryControl;
 import org.apache.jackrabbit.oak.api.QueryEngine;
 import org.apache.jackrabbit.oak.api.Result;
 import org.apache.jackrabbit.oak.namepath.impl.LocalNameMapper;
@@ -144,6 +145,24 @@ public abstract class QueryEngineImpl implements QueryEngine {
     private static List<Query> parseQuery(
             String statement, String language, ExecutionContext context,
             Map<String, String> mappings) throws ParseException {
+        return parseQuery(statement, language, context, mappings, false);
+    }
+
+    /**
+     * Parse the query.
+     * 
+     * @param statement the statement
+     * @param language the language
+     * @param context the context
+     * @param mappings the mappings
+     * @param originalOnly whether to skip building the alternative query
+     *            (because the original one is known to be the cheapest)
+     * @return the list of queries, where the first is the original, and all
+     *         others are alternatives (for example, a "union" query)
+     */
+    private static List<Query> parseQuery(
+            String statement, String language, ExecutionContext context,
+            Map<String, String> mappings, boolean originalOnly) throws ParseException {
         
         boolean isInternal = SQL2Parser.isInternal(statement);
         if (isInternal) {
@@ -176,8 +195,13 @@ public abstract class QueryEngineImpl implements QueryEngine {
             parser.setSupportSQL1(true);
             q = parser.parse(statement, false);
         } else if (XPATH.equals(language)) {
-            XPathToSQL2Converter converter = new XPathToSQL2Converter();
-            String sql2 = converter.convert(statement);
+            QueryCache cache = settings.getQueryCache();
+            String sql2 = cache.getConversion(statement);
+            if (sql2 == null) {
+                XPathToSQL2Converter converter = new XPathToSQL2Converter();
+                sql2 = converter.convert(statement);
+                cache.putConversion(statement, sql2);
+            }
             LOG.debug("XPath > SQL2: {}", sql2);
             try {
                 // OAK-874: No artificial XPath selector name in wildcards
@@ -201,7 +225,9 @@ public abstract class QueryEngineImpl implements QueryEngine {
         queries.add(q);
         
         if (settings.isSql2Optimisation()) {
-            if (q.isInternal()) {
+            if (originalOnly) {
+                LOG.trace("Skipping optimisation as the original query was selected before.");
+            } else if (q.isInternal()) {
                 LOG.trace("Skipping optimisation as internal query.");
             } else {
                 LOG.trace("Attempting optimisation");
@@ -240,6 +266,14 @@ public abstract class QueryEngineImpl implements QueryEngine {
             String statement, String language, long limit, long offset,
             Map<String, ? extends PropertyValue> bindings,
             Map<String, String> mappings) throws ParseException {
+        return executeQuery(statement, language, limit, offset, bindings, mappings, null);
+    }
+
+    @Override
+    public Result executeQuery(
+            String statement, String language, long limit, long offset,
+            Map<String, ? extends PropertyValue> bindings,
+            Map<String, String> mappings, QueryControl control) throws ParseException {
         if (limit < 0) {
             throw new IllegalArgumentException("Limit may not be negative, is: " + limit);
         }
@@ -256,24 +290,41 @@ public abstract class QueryEngineImpl implements QueryEngine {
         }
 
         ExecutionContext context = getExecutionContext();
-        List<Query> queries = parseQuery(statement, language, context, mappings);
-        
-        for (Query q : queries) {
-            q.setExecutionContext(context);
-            q.setLimit(limit);
-            q.setOffset(offset);
-            if (bindings != null) {
-                for (Entry<String, ? extends PropertyValue> e : bindings.entrySet()) {
-                    q.bindValue(e.getKey(), e.getValue());
-                }
-            }
-            q.setTraversalEnabled(traversalEnabled);            
+        QueryCache cache = context.getSettings().getQueryCache();
+        int selection = -1;
+        if (querySelectionMode == QuerySelectionMode.CHEAPEST && cache.isEnabled()) {
+            cache.checkIndexDefinitions(context.getBaseState());
+            selection = cache.getSelection(statement, language, mappings, bindings);
         }
+        List<Query> queries = parseQuery(statement, language, context, mappings, selection == 0);
+        bind(queries, context, limit, offset, bindings, control);
 
         boolean mdc = false;
         try {
             long start = System.nanoTime();
-            Query query = prepareAndSelect(queries); 
+            Query query = null;
+            if (selection >= 0 && selection < queries.size()) {
+                query = queries.get(selection);
+                query.prepare();
+                if (query.isPotentiallySlow()) {
+                    // the indexes changed since the selection was made:
+                    // consider all alternatives again
+                    LOG.debug("Cached selection is potentially slow: {}", query);
+                    cache.removeSelection(statement, language, mappings, bindings);
+                    query = null;
+                    if (selection == 0) {
+                        queries = parseQuery(statement, language, context, mappings);
+                        bind(queries, context, limit, offset, bindings, control);
+                    }
+                }
+            }
+            if (query == null) {
+                query = prepareAndSelect(queries);
+                if (querySelectionMode == QuerySelectionMode.CHEAPEST
+                        && !query.isPotentiallySlow()) {
+                    cache.putSelection(statement, language, mappings, bindings, queries.indexOf(query));
+                }
+            }
             query.getQueryExecutionStats().execute(System.nanoTime() - start);
             mdc = setupMDC(query);
             return query.executeQuery();
@@ -284,6 +335,23 @@ public abstract class QueryEngineImpl implements QueryEngine {
         }
     }
     
+    private void bind(List<Query> queries, ExecutionContext context,
+            long limit, long offset, Map<String, ? extends PropertyValue> bindings,
+            QueryControl control) {
+        for (Query q : queries) {
+            q.setExecutionContext(context);
+            q.setLimit(limit);
+            q.setOffset(offset);
+            if (bindings != null) {
+                for (Entry<String, ? extends PropertyValue> e : bindings.entrySet()) {
+                    q.bindValue(e.getKey(), e.getValue());
+                }
+            }
+            q.setTraversalEnabled(traversalEnabled);            
+            q.setQueryControl(control);
+        }
+    }
+
     /**
      * Prepare all the available queries and by based on the {@link QuerySelectionMode} flag return
      * the appropriate.
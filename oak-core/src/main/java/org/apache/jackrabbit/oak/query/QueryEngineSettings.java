@@ -18,6 +18,11 @@
  */
 package org.apache.jackrabbit.oak.query;
 
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
 import org.apache.jackrabbit.oak.api.jmx.QueryEngineSettingsMBean;
 import org.apache.jackrabbit.oak.query.stats.QueryStatsMBean;
 import org.apache.jackrabbit.oak.query.stats.QueryStatsMBeanImpl;
@@ -25,6 +30,8 @@ import org.apache.jackrabbit.oak.query.stats.QueryStatsReporter;
 import org.apache.jackrabbit.oak.spi.query.QueryLimits;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 /**
  * Settings of the query engine.
  */
@@ -57,6 +64,27 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
     private static final boolean DEFAULT_FAIL_TRAVERSAL =
             Boolean.getBoolean(OAK_QUERY_FAIL_TRAVERSAL);
 
+    public static final String OAK_QUERY_SPILL_TO_DISK = "oak.querySpillToDisk";
+    private static final boolean DEFAULT_SPILL_TO_DISK =
+            Boolean.getBoolean(OAK_QUERY_SPILL_TO_DISK);
+
+    public static final String OAK_QUERY_PARALLEL_UNION = "oak.queryParallelUnion";
+    private static final boolean DEFAULT_PARALLEL_UNION =
+            Boolean.getBoolean(OAK_QUERY_PARALLEL_UNION);
+
+    public static final String OAK_QUERY_PREFETCH = "oak.queryPrefetch";
+    private static final boolean DEFAULT_PREFETCH =
+            Boolean.getBoolean(OAK_QUERY_PREFETCH);
+
+    public static final String OAK_QUERY_TRAVERSAL_GUARD_SAMPLE = "oak.queryTraversalGuardSample";
+    private static final long DEFAULT_TRAVERSAL_GUARD_SAMPLE =
+            Long.getLong(OAK_QUERY_TRAVERSAL_GUARD_SAMPLE, 1000);
+
+    public static final String OAK_QUERY_PARALLEL_UNION_THREADS = "oak.queryParallelUnionThreads";
+    private static final int DEFAULT_PARALLEL_UNION_THREADS =
+            Integer.getInteger(OAK_QUERY_PARALLEL_UNION_THREADS, 
+                    Runtime.getRuntime().availableProcessors());
+
     private static final boolean DEFAULT_FULL_TEXT_COMPARISON_WITHOUT_INDEX =
             Boolean.getBoolean("oak.queryFullTextComparisonWithoutIndex");
     
@@ -66,6 +94,16 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
     
     private boolean failTraversal = DEFAULT_FAIL_TRAVERSAL;
     
+    private boolean spillToDisk = DEFAULT_SPILL_TO_DISK;
+    
+    private boolean parallelUnion = DEFAULT_PARALLEL_UNION;
+
+    private boolean prefetch = DEFAULT_PREFETCH;
+
+    private long traversalGuardSample = DEFAULT_TRAVERSAL_GUARD_SAMPLE;
+
+    private ThreadPoolExecutor queryExecutor;
+    
     private boolean fullTextComparisonWithoutIndex = 
             DEFAULT_FULL_TEXT_COMPARISON_WITHOUT_INDEX;
     
@@ -78,6 +116,8 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
 
     private QueryStatsMBeanImpl queryStats = new QueryStatsMBeanImpl(this);
 
+    private final QueryCache queryCache = new QueryCache();
+
     /**
      * StatisticsProvider used to record query side metrics.
      */
@@ -132,6 +172,86 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
         System.setProperty(OAK_FAST_QUERY_SIZE, String.valueOf(fastQuerySize));
     }
 
+    /**
+     * Whether sorting and filtering of duplicate rows may use temporary files
+     * once the in-memory limit is reached, instead of failing the query.
+     *
+     * @return true if spilling to disk is enabled
+     */
+    public boolean isSpillToDisk() {
+        return spillToDisk;
+    }
+
+    public void setSpillToDisk(boolean spillToDisk) {
+        this.spillToDisk = spillToDisk;
+    }
+
+    /**
+     * Whether the branches of union queries read from their indexes in
+     * parallel, using the query executor.
+     *
+     * @return true if parallel execution of unions is enabled
+     */
+    public boolean isParallelUnion() {
+        return parallelUnion;
+    }
+
+    public void setParallelUnion(boolean parallelUnion) {
+        this.parallelUnion = parallelUnion;
+    }
+
+    /**
+     * Whether queries read the next batch of index rows, and the nodes of
+     * these rows, in the background using the query executor, while the
+     * current batch is processed.
+     *
+     * @return true if prefetching is enabled
+     */
+    public boolean isPrefetch() {
+        return prefetch;
+    }
+
+    public void setPrefetch(boolean prefetch) {
+        this.prefetch = prefetch;
+    }
+
+    /**
+     * The number of nodes a potentially slow traversal reads before the
+     * total number of nodes it will read is estimated. If the estimate is
+     * high, a warning is logged. If it is taken from the node counter and is
+     * higher than the read limit, a query without limit and offset fails
+     * early.
+     *
+     * @return the number of nodes, or 0 if the guard is disabled
+     */
+    public long getTraversalGuardSample() {
+        return traversalGuardSample;
+    }
+
+    public void setTraversalGuardSample(long traversalGuardSample) {
+        this.traversalGuardSample = traversalGuardSample;
+    }
+
+    /**
+     * Get the executor used to read from indexes in parallel. The number of
+     * threads and queued tasks is bounded; tasks that are rejected are
+     * expected to run in the calling thread. Idle threads are stopped after
+     * one minute.
+     *
+     * @return the executor
+     */
+    public synchronized Executor getQueryExecutor() {
+        if (queryExecutor == null) {
+            int threads = Math.max(1, DEFAULT_PARALLEL_UNION_THREADS);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 
+                    1, TimeUnit.MINUTES, new ArrayBlockingQueue<Runnable>(threads * 16),
+                    new ThreadFactoryBuilder().setNameFormat("oak-query-%d").setDaemon(true).build());
+            executor.allowCoreThreadTimeOut(true);
+            queryExecutor = executor;
+        }
+        return queryExecutor;
+    }
+
     public void setFullTextComparisonWithoutIndex(boolean fullTextComparisonWithoutIndex) {
         this.fullTextComparisonWithoutIndex = fullTextComparisonWithoutIndex;
     }
@@ -152,6 +272,16 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
         return queryStats;
     }
 
+    /**
+     * Get the cache of XPath conversions and plan selections, which is shared
+     * by all query engines using these settings.
+     *
+     * @return the query cache
+     */
+    public QueryCache getQueryCache() {
+        return queryCache;
+    }
+
     public StatisticsProvider getStatisticsProvider() {
         return statisticsProvider;
     }
@@ -162,6 +292,10 @@ public class QueryEngineSettings implements QueryEngineSettingsMBean, QueryLimit
                 "limitInMemory=" + limitInMemory +
                 ", limitReads=" + limitReads +
                 ", failTraversal=" + failTraversal +
+                ", spillToDisk=" + spillToDisk +
+                ", parallelUnion=" + parallelUnion +
+                ", prefetch=" + prefetch +
+                ", traversalGuardSample=" + traversalGuardSample +
                 ", fullTextComparisonWithoutIndex=" + fullTextComparisonWithoutIndex +
                 ", sql2Optimisation=" + sql2Optimisation +
                 ", fastQuerySize=" + fastQuerySize +
@@ -28,8 +28,10 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 
 import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.QueryControl;
 import org.apache.jackrabbit.oak.api.Result.SizePrecision;
 import org.apache.jackrabbit.oak.api.Tree;
 import org.apache.jackrabbit.oak.namepath.JcrPathParser;
@@ -90,6 +92,7 @@ import org.apache.jackrabbit.oak.spi.query.QueryIndex.IndexPlan;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex.OrderEntry;
 import org.apache.jackrabbit.oak.spi.query.QueryIndex.OrderEntry.Order;
 import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
+import org.apache.jackrabbit.oak.spi.query.QueryLimits;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 import org.apache.jackrabbit.oak.stats.HistogramStats;
@@ -101,6 +104,7 @@ import org.slf4j.LoggerFactory;
 
 import com.google.common.base.Strings;
 import com.google.common.collect.AbstractIterator;
+import com.google.common.collect.Iterators;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Ordering;
@@ -122,6 +126,8 @@ public class QueryImpl implements Query {
 
     private boolean potentiallySlowTraversalQueryLogged;
 
+    private boolean traversalEstimateLogged;
+
     private static final Ordering<QueryIndex> MINIMAL_COST_ORDERING = new Ordering<QueryIndex>() {
         @Override
         public int compare(QueryIndex left, QueryIndex right) {
@@ -142,6 +148,11 @@ public class QueryImpl implements Query {
      * purposes.
      */
     private boolean traversalEnabled = true;
+
+    /**
+     * The control used to cancel the query, or null.
+     */
+    private QueryControl control;
     
     /**
      * The query option to be used for this query.
@@ -157,7 +168,7 @@ public class QueryImpl implements Query {
      */
     private boolean[] distinctColumns;
     
-    private boolean explain, measure;
+    private boolean explain, measure, profile;
     private boolean distinct;
     private long limit = Long.MAX_VALUE;
     private long offset;
@@ -184,6 +195,11 @@ public class QueryImpl implements Query {
 
     private boolean potentiallySlowTraversalQuery;
 
+    /**
+     * Whether the source was already executed by {@link #startPrefetch}.
+     */
+    private boolean prefetchStarted;
+
     QueryImpl(String statement, SourceImpl source, ConstraintImpl constraint,
         ColumnImpl[] columns, NamePathMapper mapper, QueryEngineSettings settings,
         QueryExecutionStats stats) {
@@ -481,6 +497,11 @@ public class QueryImpl implements Query {
     public void setMeasure(boolean measure) {
         this.measure = measure;
     }
+
+    @Override
+    public void setProfile(boolean profile) {
+        this.profile = profile;
+    }
     
     public void setDistinct(boolean distinct) {
         this.distinct = distinct;
@@ -491,10 +512,36 @@ public class QueryImpl implements Query {
         return new ResultImpl(this);
     }
 
+    /**
+     * Start reading the rows from the index in the background, so that the
+     * index lookups of multiple queries can run in parallel. If prefetching is
+     * enabled in the settings, the nodes of the rows are read as well. This is only
+     * supported for queries without joins; for other queries, and if the
+     * query was already started, this method does nothing.
+     * 
+     * @param executor the executor used to read from the index
+     */
+    void startPrefetch(Executor executor) {
+        prepare();
+        if (explain || prefetchStarted || !(source instanceof SelectorImpl)) {
+            return;
+        }
+        SelectorImpl s = (SelectorImpl) source;
+        s.setPrefetchExecutor(executor);
+        s.setPrefetchNodes(settings.isPrefetch());
+        s.execute(context.getBaseState());
+        prefetchStarted = true;
+    }
+
     @Override
     public Iterator<ResultRowImpl> getRows() {
         prepare();
         if (explain) {
+            if (profile) {
+                // run the query, so that the plan contains
+                // the row counts and timings of the selectors
+                Iterators.size(getRowsInternal());
+            }
             String plan = getPlan();
             if (measure) {
                 plan += " cost: { " + getIndexCostInfo() + " }";
@@ -506,19 +553,28 @@ public class QueryImpl implements Query {
                     null, null);
             return Arrays.asList(r).iterator();
         }
+        return getRowsInternal();
+    }
+
+    private Iterator<ResultRowImpl> getRowsInternal() {
         if (LOG.isDebugEnabled()) {
             logDebug("query execute " + statement);
             logDebug("query plan " + getPlan());
         }
-        final RowIterator rowIt = new RowIterator(context.getBaseState());
+        if (settings.isPrefetch()) {
+            startPrefetch(settings.getQueryExecutor());
+        }
+        final RowIterator rowIt = new RowIterator(context.getBaseState(), prefetchStarted);
+        prefetchStarted = false;
         Comparator<ResultRowImpl> orderBy;
         if (isSortedByIndex) {
             orderBy = null;
         } else {
             orderBy = ResultRowImpl.getComparator(orderings);
         }
+        ResultRowSpillCodec codec = settings.isSpillToDisk() ? new ResultRowSpillCodec(this) : null;
         Iterator<ResultRowImpl> it =
-                FilterIterators.newCombinedFilter(rowIt, distinct, limit, offset, orderBy, settings);
+                FilterIterators.newCombinedFilter(rowIt, distinct, limit, offset, orderBy, settings, codec);
         if (orderBy != null) {
             // this will force the rows to be read, so that the size is known
             it.hasNext();
@@ -807,8 +863,9 @@ public class QueryImpl implements Query {
         private boolean started, end;
         private long rowIndex;
 
-        RowIterator(NodeState rootState) {
+        RowIterator(NodeState rootState, boolean started) {
             this.rootState = rootState;
+            this.started = started;
         }
 
         public long getReadCount() {
@@ -959,6 +1016,23 @@ public class QueryImpl implements Query {
         this.traversalEnabled = traversalEnabled;
     }
 
+    @Override
+    public void setQueryControl(QueryControl control) {
+        this.control = control;
+    }
+
+    /**
+     * Check whether the query may continue.
+     * 
+     * @throws UnsupportedOperationException if the query was cancelled, or
+     *             reached its deadline
+     */
+    public void checkCancelled() {
+        if (control != null) {
+            control.check();
+        }
+    }
+
     @Override
     public void setQueryOptions(QueryOptions options) {
         this.queryOptions = options;
@@ -966,12 +1040,32 @@ public class QueryImpl implements Query {
 
     public SelectorExecutionPlan getBestSelectorExecutionPlan(FilterImpl filter) {
         return getBestSelectorExecutionPlan(context.getBaseState(), filter,
-                context.getIndexProvider(), traversalEnabled);
+                context.getIndexProvider(), traversalEnabled, true);
+    }
+
+    /**
+     * Get the best index plan to read all rows of a selector at once, as
+     * needed for the build side of a hash join. Traversal is not considered,
+     * and the statistics and the "potentially slow" flag of this query are
+     * not changed.
+     *
+     * @param filter the filter
+     * @return the plan (the index of the plan is null if no index can be used)
+     */
+    public SelectorExecutionPlan getBestIndexExecutionPlan(FilterImpl filter) {
+        boolean potentiallySlow = potentiallySlowTraversalQuery;
+        try {
+            return getBestSelectorExecutionPlan(context.getBaseState(), filter,
+                    context.getIndexProvider(), false, false);
+        } finally {
+            potentiallySlowTraversalQuery = potentiallySlow;
+        }
     }
 
     private SelectorExecutionPlan getBestSelectorExecutionPlan(
             NodeState rootState, FilterImpl filter,
-            QueryIndexProvider indexProvider, boolean traversalEnabled) {
+            QueryIndexProvider indexProvider, boolean traversalEnabled,
+            boolean recordStats) {
         QueryIndex bestIndex = null;
         if (LOG.isDebugEnabled()) {
             logDebug("cost using filter " + filter);
@@ -1088,7 +1182,7 @@ public class QueryImpl implements Query {
             }
         }
 
-        if (potentiallySlowTraversalQuery || bestIndex == null) {
+        if (recordStats && (potentiallySlowTraversalQuery || bestIndex == null)) {
             LOG.debug("no proper index was found for filter {}", filter);
             StatisticsProvider statisticsProvider = getSettings().getStatisticsProvider();
             if (statisticsProvider != null) {
@@ -1176,6 +1270,47 @@ public class QueryImpl implements Query {
         }
     }
     
+    /**
+     * Verify the estimated number of nodes a traversal reads, after the first
+     * nodes were read. If the estimate is higher than a tenth of the read
+     * limit, a warning is logged, and the estimate and the suggested index
+     * are recorded in the query statistics.
+     * <p>
+     * The query is stopped now, instead of once the limit is reached, only if
+     * the estimate is higher than the limit and was taken from the node
+     * counter, the query has no limit and no offset, and traversal was not
+     * explicitly allowed for this query. Otherwise the query may still stop
+     * before reading that many nodes, for example because it has a limit.
+     * 
+     * @param estimate the estimated number of nodes, or -1 if unknown
+     * @param counted whether the estimate was taken from the node counter
+     *            (otherwise it was extrapolated)
+     * @param suggestedIndex the suggested index definition, or null
+     * @throws UnsupportedOperationException if the query is stopped
+     */
+    public void verifyTraversalEstimate(long estimate, boolean counted, String suggestedIndex) {
+        long limit = settings.getLimitReads();
+        if (estimate < 0 || estimate <= limit / 10) {
+            return;
+        }
+        stats.traversal(estimate, suggestedIndex);
+        String message = "Traversal query (query without index) is estimated to read " + 
+                estimate + " nodes: " + statement + "; consider creating an index" +
+                (suggestedIndex == null ? "" : " such as " + suggestedIndex);
+        if (estimate > limit && counted && this.limit == Long.MAX_VALUE && offset == 0
+                && queryOptions.traversal != Traversal.OK) {
+            UnsupportedOperationException e = new UnsupportedOperationException(
+                    message + ". The query would read or traverse more than " +
+                    limit + " nodes. To avoid affecting other tasks, processing was stopped.");
+            LOG.warn(message, e);
+            throw e;
+        }
+        if (!traversalEstimateLogged && queryOptions.traversal != Traversal.OK) {
+            LOG.warn(message);
+            traversalEstimateLogged = true;
+        }
+    }
+
     private List<OrderEntry> getSortOrder(FilterImpl filter) {
         if (orderings == null) {
             return null;
@@ -1231,7 +1366,7 @@ public class QueryImpl implements Query {
 
     @Override
     public boolean isMeasureOrExplainEnabled() {
-        return explain || measure;
+        return explain || measure || profile;
     }
 
     /**
@@ -1307,6 +1442,47 @@ public class QueryImpl implements Query {
         return settings;
     }
 
+    /**
+     * Get the limits for the indexes: the settings, and, if this query can be
+     * cancelled, its query control.
+     * 
+     * @return the query limits
+     */
+    public QueryLimits getQueryLimits() {
+        if (control == null) {
+            return settings;
+        }
+        final QueryControl c = control;
+        return new QueryLimits() {
+
+            @Override
+            public long getLimitInMemory() {
+                return settings.getLimitInMemory();
+            }
+
+            @Override
+            public long getLimitReads() {
+                return settings.getLimitReads();
+            }
+
+            @Override
+            public boolean getFullTextComparisonWithoutIndex() {
+                return settings.getFullTextComparisonWithoutIndex();
+            }
+
+            @Override
+            public boolean getFailTraversal() {
+                return settings.getFailTraversal();
+            }
+
+            @Override
+            public void checkCancelled() {
+                c.check();
+            }
+
+        };
+    }
+
     @Override
     public void setInternal(boolean isInternal) {
         this.isInternal = isInternal;
@@ -1411,6 +1587,7 @@ public class QueryImpl implements Query {
             this.settings);
         u.setExplain(explain);
         u.setMeasure(measure);
+        u.setProfile(profile);
         u.setInternal(isInternal);
         return u;
     }
@@ -1435,6 +1612,7 @@ public class QueryImpl implements Query {
             this.settings,
             this.stats);
         copy.explain = this.explain;
+        copy.profile = this.profile;
         copy.distinct = this.distinct;
         
         return copy;        
@@ -65,6 +65,14 @@ public class ResultRowImpl implements ResultRow {
         return orderValues;
     }
 
+    Query getQuery() {
+        return query;
+    }
+
+    boolean[] getDistinctValues() {
+        return distinctValues;
+    }
+
     @Override
     public String getPath() {
         return getPath(null);
@@ -212,7 +220,7 @@ public class ResultRowImpl implements ResultRow {
         return true;
     }
 
-    private String[] getPaths() {
+    String[] getPaths() {
         String[] paths = new String[trees.length];
         for (int i = 0; i < trees.length; i++) {
             if (trees[i] != null) {
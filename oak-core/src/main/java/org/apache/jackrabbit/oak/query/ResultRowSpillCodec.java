@@ -0,0 +1,246 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.jcr.PropertyType;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
+import org.apache.jackrabbit.oak.commons.json.JsopReader;
+import org.apache.jackrabbit.oak.commons.json.JsopTokenizer;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyStates;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
+import org.apache.jackrabbit.oak.query.FilterIterators.SpillCodec;
+
+/**
+ * Converts result rows to and from JSON arrays, so that sorting and filtering
+ * of duplicate rows can use temporary files. The trees of the rows are stored
+ * as paths, and read again when the row is decoded. Rows with binary values
+ * can not be converted.
+ */
+class ResultRowSpillCodec implements SpillCodec<ResultRowImpl> {
+
+    /**
+     * The query that is executed (used for the statistics).
+     */
+    private final Query query;
+
+    /**
+     * The queries of the rows that were encoded. For a union, the rows of the
+     * subqueries are kept apart, as the selector names can differ.
+     */
+    private final List<Query> queries = new ArrayList<Query>();
+
+    ResultRowSpillCodec(Query query) {
+        this.query = query;
+    }
+
+    @Override
+    public String encode(ResultRowImpl row) {
+        int queryIndex = getQueryIndex(row.getQuery());
+        JsopBuilder buff = new JsopBuilder();
+        buff.array().value(queryIndex);
+        buff.array();
+        for (String p : row.getPaths()) {
+            buff.value(p);
+        }
+        buff.endArray();
+        boolean[] distinctValues = row.getDistinctValues();
+        if (distinctValues == null) {
+            buff.value(null);
+        } else {
+            buff.array();
+            for (boolean d : distinctValues) {
+                buff.value(d);
+            }
+            buff.endArray();
+        }
+        if (!encodeValues(buff, row.getValues()) || 
+                !encodeValues(buff, row.getOrderValues())) {
+            return null;
+        }
+        return buff.endArray().toString();
+    }
+
+    @Override
+    public ResultRowImpl decode(String line) {
+        JsopTokenizer t = new JsopTokenizer(line);
+        t.read('[');
+        Query query = queries.get(Integer.parseInt(t.read(JsopReader.NUMBER)));
+        t.read(',');
+        t.read('[');
+        List<Tree> trees = new ArrayList<Tree>();
+        if (!t.matches(']')) {
+            do {
+                if (t.matches(JsopReader.NULL)) {
+                    trees.add(null);
+                } else {
+                    trees.add(query.getTree(t.readString()));
+                }
+            } while (t.matches(','));
+            t.read(']');
+        }
+        t.read(',');
+        boolean[] distinctValues = null;
+        if (!t.matches(JsopReader.NULL)) {
+            t.read('[');
+            List<Boolean> list = new ArrayList<Boolean>();
+            if (!t.matches(']')) {
+                do {
+                    list.add(t.matches(JsopReader.TRUE));
+                    if (!list.get(list.size() - 1)) {
+                        t.read(JsopReader.FALSE);
+                    }
+                } while (t.matches(','));
+                t.read(']');
+            }
+            distinctValues = new boolean[list.size()];
+            for (int i = 0; i < distinctValues.length; i++) {
+                distinctValues[i] = list.get(i);
+            }
+        }
+        t.read(',');
+        PropertyValue[] values = decodeValues(t);
+        t.read(',');
+        PropertyValue[] orderValues = decodeValues(t);
+        t.read(']');
+        return new ResultRowImpl(query, trees.toArray(new Tree[trees.size()]), 
+                values, distinctValues, orderValues);
+    }
+
+    @Override
+    public String getKey(ResultRowImpl row) {
+        JsopBuilder buff = new JsopBuilder();
+        buff.array();
+        for (String p : row.getPaths()) {
+            buff.value(p);
+        }
+        buff.endArray();
+        boolean[] distinctValues = row.getDistinctValues();
+        PropertyValue[] values = row.getValues();
+        buff.array();
+        for (int i = 0; i < values.length; i++) {
+            if (distinctValues == null || distinctValues[i]) {
+                if (!encodeValue(buff, values[i])) {
+                    return null;
+                }
+            } else {
+                // the mask is part of equals as well
+                buff.value(false);
+            }
+        }
+        return buff.endArray().toString();
+    }
+
+    @Override
+    public void spilled(long bytes) {
+        query.getQueryExecutionStats().spill(bytes);
+    }
+
+    private int getQueryIndex(Query q) {
+        for (int i = 0; i < queries.size(); i++) {
+            if (queries.get(i) == q) {
+                return i;
+            }
+        }
+        queries.add(q);
+        return queries.size() - 1;
+    }
+
+    private static boolean encodeValues(JsopBuilder buff, PropertyValue[] values) {
+        if (values == null) {
+            buff.value(null);
+            return true;
+        }
+        buff.array();
+        for (PropertyValue v : values) {
+            if (!encodeValue(buff, v)) {
+                return false;
+            }
+        }
+        buff.endArray();
+        return true;
+    }
+
+    private static boolean encodeValue(JsopBuilder buff, PropertyValue v) {
+        if (v == null) {
+            buff.value(null);
+            return true;
+        }
+        Type<?> type = v.getType();
+        if (type.tag() == PropertyType.BINARY) {
+            return false;
+        }
+        buff.array().value(type.tag()).value(type.isArray());
+        if (type.isArray()) {
+            for (int i = 0; i < v.count(); i++) {
+                buff.value(v.getValue(Type.STRING, i));
+            }
+        } else {
+            buff.value(v.getValue(Type.STRING));
+        }
+        buff.endArray();
+        return true;
+    }
+
+    private static PropertyValue[] decodeValues(JsopTokenizer t) {
+        if (t.matches(JsopReader.NULL)) {
+            return null;
+        }
+        t.read('[');
+        List<PropertyValue> list = new ArrayList<PropertyValue>();
+        if (!t.matches(']')) {
+            do {
+                list.add(decodeValue(t));
+            } while (t.matches(','));
+            t.read(']');
+        }
+        return list.toArray(new PropertyValue[list.size()]);
+    }
+
+    private static PropertyValue decodeValue(JsopTokenizer t) {
+        if (t.matches(JsopReader.NULL)) {
+            return null;
+        }
+        t.read('[');
+        int tag = Integer.parseInt(t.read(JsopReader.NUMBER));
+        t.read(',');
+        boolean isArray = t.matches(JsopReader.TRUE);
+        if (!isArray) {
+            t.read(JsopReader.FALSE);
+        }
+        List<String> strings = new ArrayList<String>();
+        while (t.matches(',')) {
+            strings.add(t.readString());
+        }
+        t.read(']');
+        PropertyState state;
+        if (isArray) {
+            state = PropertyStates.createProperty("", strings, Type.STRINGS);
+        } else {
+            state = PropertyStates.createProperty("", strings.get(0), Type.STRING);
+        }
+        return PropertyValues.create(PropertyStates.convert(state, Type.fromTag(tag, isArray)));
+    }
+
+}
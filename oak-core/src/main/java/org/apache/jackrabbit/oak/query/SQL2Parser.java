@@ -148,9 +148,12 @@ public class SQL2Parser {
         expected = new ArrayList<String>();
         bindVariables = new HashMap<String, BindVariableValueImpl>();
         read();
-        boolean explain = false, measure = false;
+        boolean explain = false, measure = false, profile = false;
         if (readIf("EXPLAIN")) {
             explain = true;
+            if (readIf("PROFILE")) {
+                profile = true;
+            }
         }
         if (readIf("MEASURE")) {
             measure = true;
@@ -195,6 +198,7 @@ public class SQL2Parser {
         q.setOrderings(orderings);
         q.setExplain(explain);
         q.setMeasure(measure);
+        q.setProfile(profile);
         q.setInternal(isInternal(query));
         q.setQueryOptions(options);
 
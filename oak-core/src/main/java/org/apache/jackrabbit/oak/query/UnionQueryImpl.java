@@ -20,6 +20,8 @@ import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
 
 import com.google.common.collect.AbstractIterator;
 import com.google.common.collect.ImmutableList;
@@ -27,6 +29,7 @@ import com.google.common.collect.Iterators;
 import com.google.common.collect.Maps;
 import com.google.common.collect.PeekingIterator;
 import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.QueryControl;
 import org.apache.jackrabbit.oak.api.Result;
 import org.apache.jackrabbit.oak.api.Result.SizePrecision;
 import org.apache.jackrabbit.oak.api.ResultRow;
@@ -55,11 +58,17 @@ public class UnionQueryImpl implements Query {
     private OrderingImpl[] orderings;
     private boolean explain;
     private boolean measure;
+    private boolean profile;
     private long limit = Long.MAX_VALUE;
     private long offset;
     private long size = -1;
     private final QueryEngineSettings settings;
     private boolean isInternal;
+
+    /**
+     * The row counts and timings of the branches, once they were executed.
+     */
+    private BranchIterator leftBranch, rightBranch;
     
     UnionQueryImpl(final boolean unionAll, final Query left, final Query right,
                    final QueryEngineSettings settings) {
@@ -123,6 +132,12 @@ public class UnionQueryImpl implements Query {
         left.setTraversalEnabled(traversal);
         right.setTraversalEnabled(traversal);
     }
+
+    @Override
+    public void setQueryControl(QueryControl control) {
+        left.setQueryControl(control);
+        right.setQueryControl(control);
+    }
     
     @Override
     public  void setQueryOptions(QueryOptions options) {
@@ -205,6 +220,13 @@ public class UnionQueryImpl implements Query {
         this.measure = measure;
     }
 
+    @Override
+    public void setProfile(boolean profile) {
+        left.setProfile(profile);
+        right.setProfile(profile);
+        this.profile = profile;
+    }
+
     @Override
     public void init() {
         left.init();
@@ -242,11 +264,17 @@ public class UnionQueryImpl implements Query {
     public String getPlan() {
         StringBuilder buff = new StringBuilder();
         buff.append(left.getPlan());
+        if (leftBranch != null) {
+            buff.append(" /* ").append(leftBranch).append(" */");
+        }
         buff.append(" union ");
         if (unionAll) {
             buff.append("all ");
         }
         buff.append(right.getPlan());
+        if (rightBranch != null) {
+            buff.append(" /* ").append(rightBranch).append(" */");
+        }
         return buff.toString();
     }
     
@@ -268,7 +296,7 @@ public class UnionQueryImpl implements Query {
 
     @Override
     public boolean isMeasureOrExplainEnabled() {
-        return explain || measure;
+        return explain || measure || profile;
     }
 
     @Override
@@ -279,10 +307,33 @@ public class UnionQueryImpl implements Query {
         return QueryImpl.getColumnIndex(columns, columnName);
     }
     
+    /**
+     * Start reading from the indexes of all branches in the background.
+     * 
+     * @param executor the executor used to read from the indexes
+     */
+    void startPrefetch(Executor executor) {
+        startPrefetch(left, executor);
+        startPrefetch(right, executor);
+    }
+
+    private static void startPrefetch(Query q, Executor executor) {
+        if (q instanceof QueryImpl) {
+            ((QueryImpl) q).startPrefetch(executor);
+        } else if (q instanceof UnionQueryImpl) {
+            ((UnionQueryImpl) q).startPrefetch(executor);
+        }
+    }
+
     @Override
     public Iterator<ResultRowImpl> getRows() {
         prepare();
         if (explain) {
+            if (profile) {
+                // run the query, so that the plan contains
+                // the row counts and timings of the branches
+                Iterators.size(getRowsInternal());
+            }
             String plan = getPlan();
             columns = new ColumnImpl[] { new ColumnImpl("explain", "plan", "plan")};
             ResultRowImpl r = new ResultRowImpl(this,
@@ -291,6 +342,10 @@ public class UnionQueryImpl implements Query {
                     null, null);
             return Arrays.asList(r).iterator();
         }
+        return getRowsInternal();
+    }
+
+    private Iterator<ResultRowImpl> getRowsInternal() {
         if (LOG.isDebugEnabled()) {
             if (isInternal) {
                 LOG.trace("query union plan {}", getPlan());
@@ -301,7 +356,17 @@ public class UnionQueryImpl implements Query {
         boolean distinct = !unionAll;
         Comparator<ResultRowImpl> orderBy = ResultRowImpl.getComparator(orderings);
 
-        FacetMerger facetMerger = new FacetMerger(left, right);
+        boolean parallel = settings.isParallelUnion();
+        if (parallel) {
+            startPrefetch(settings.getQueryExecutor());
+        }
+        long start = System.nanoTime();
+        Iterator<ResultRowImpl> l = left.getRows();
+        long leftNanos = System.nanoTime() - start;
+        start = System.nanoTime();
+        Iterator<ResultRowImpl> r = right.getRows();
+        long rightNanos = System.nanoTime() - start;
+        FacetMerger facetMerger = new FacetMerger(left, l, r);
 
         Iterator<ResultRowImpl> it;
         final Iterator<ResultRowImpl> leftRows = facetMerger.getLeftIterator();;
@@ -314,14 +379,18 @@ public class UnionQueryImpl implements Query {
             leftIter = ((MeasuringIterator) leftRows).getDelegate();
             rightIter = ((MeasuringIterator) rightRows).getDelegate();
         }
+        leftIter = leftBranch = new BranchIterator(leftIter, leftNanos, parallel);
+        rightIter = rightBranch = new BranchIterator(rightIter, rightNanos, parallel);
+        ResultRowSpillCodec codec = settings.isSpillToDisk() ? new ResultRowSpillCodec(this) : null;
         // Since sorted by index use a merge iterator
         if (isSortedByIndex()) {
             it = FilterIterators
                 .newCombinedFilter(Iterators.mergeSorted(ImmutableList.of(leftIter, rightIter), orderBy), distinct,
-                    limit, offset, null, settings);
+                    limit, offset, null, settings, codec);
         } else {
             it = FilterIterators
-            .newCombinedFilter(Iterators.concat(leftIter, rightIter), distinct, limit, offset, orderBy, settings);
+            .newCombinedFilter(Iterators.concat(leftIter, rightIter), distinct, limit, offset, orderBy, settings, 
+                    codec);
         }
 
         if (measure) {
@@ -425,14 +494,11 @@ public class UnionQueryImpl implements Query {
         private final Iterator<ResultRowImpl> leftIterator;
         private final Iterator<ResultRowImpl> rightIterator;
 
-        FacetMerger(Query left, Query right) {
+        FacetMerger(Query left, Iterator<ResultRowImpl> lIter, Iterator<ResultRowImpl> rIter) {
             ColumnImpl[] columns = left.getColumns();
             String[] columnNames = new String[columns.length];
             Arrays.setAll(columnNames, i -> columns[i].getColumnName());
 
-            Iterator<ResultRowImpl> lIter = left.getRows();
-            Iterator<ResultRowImpl> rIter = right.getRows();
-
             if (!hasFacets(columnNames) || !bothHaveRows(lIter, rIter)) {
                 this.leftIterator = lIter;
                 this.rightIterator = rIter;
@@ -484,6 +550,46 @@ public class UnionQueryImpl implements Query {
         }
     }
 
+    /**
+     * An iterator over the rows of a branch, which counts the rows and
+     * measures the time spent reading them.
+     */
+    static class BranchIterator extends AbstractIterator<ResultRowImpl> {
+
+        private final Iterator<ResultRowImpl> delegate;
+        private final boolean parallel;
+        private long rows;
+        private long nanos;
+
+        BranchIterator(Iterator<ResultRowImpl> delegate, long nanos, boolean parallel) {
+            this.delegate = delegate;
+            this.nanos = nanos;
+            this.parallel = parallel;
+        }
+
+        @Override
+        protected ResultRowImpl computeNext() {
+            long start = System.nanoTime();
+            try {
+                if (delegate.hasNext()) {
+                    rows++;
+                    return delegate.next();
+                }
+                return endOfData();
+            } finally {
+                nanos += System.nanoTime() - start;
+            }
+        }
+
+        @Override
+        public String toString() {
+            return "rows: " + rows + 
+                    ", time: " + TimeUnit.NANOSECONDS.toMillis(nanos) + " ms" + 
+                    (parallel ? ", parallel" : "");
+        }
+
+    }
+
     static class MappingRowIterator extends AbstractIterator<ResultRowImpl> {
 
         private final Map<String, String> columnToFacetMap;
@@ -103,6 +103,34 @@ public class ChildNodeJoinConditionImpl extends JoinConditionImpl {
         return available.contains(childSelector) && available.contains(parentSelector);
     }
 
+    @Override
+    public boolean supportsHashJoin(SelectorImpl s) {
+        return s.equals(childSelector) || s.equals(parentSelector);
+    }
+
+    @Override
+    public Object getBuildKey(SelectorImpl s) {
+        if (s.equals(childSelector)) {
+            return getParentPath(childSelector.currentPath());
+        }
+        return parentSelector.currentPath();
+    }
+
+    @Override
+    public Object getProbeKey(SelectorImpl s) {
+        if (s.equals(childSelector)) {
+            return parentSelector.currentPath();
+        }
+        return getParentPath(childSelector.currentPath());
+    }
+
+    private static String getParentPath(String path) {
+        if (path == null || PathUtils.denotesRoot(path)) {
+            return null;
+        }
+        return PathUtils.getParentPath(path);
+    }
+
     @Override
     public AstElement copyOf() {
         return new ChildNodeJoinConditionImpl(childSelectorName, parentSelectorName);
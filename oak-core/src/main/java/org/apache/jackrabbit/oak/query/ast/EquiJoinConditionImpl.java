@@ -20,7 +20,10 @@ package org.apache.jackrabbit.oak.query.ast;
 
 import java.util.Set;
 
+import javax.jcr.PropertyType;
+
 import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
 import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
 
@@ -172,6 +175,47 @@ public class EquiJoinConditionImpl extends JoinConditionImpl {
         return available.contains(selector1) && available.contains(selector2);
     }
 
+    @Override
+    public boolean supportsHashJoin(SelectorImpl s) {
+        return s.equals(selector1) || s.equals(selector2);
+    }
+
+    @Override
+    public Object getBuildKey(SelectorImpl s) {
+        if (s.equals(selector2)) {
+            return getHashKey(selector2.currentProperty(property2Name));
+        }
+        return getHashKey(selector1.currentProperty(property1Name));
+    }
+
+    @Override
+    public Object getProbeKey(SelectorImpl s) {
+        if (s.equals(selector2)) {
+            return getHashKey(selector1.currentProperty(property1Name));
+        }
+        return getHashKey(selector2.currentProperty(property2Name));
+    }
+
+    private static Object getHashKey(PropertyValue v) {
+        if (v == null) {
+            return null;
+        }
+        if (v.isArray()) {
+            return NOT_HASHABLE;
+        }
+        switch (v.getType().tag()) {
+        case PropertyType.STRING:
+        case PropertyType.REFERENCE:
+        case PropertyType.WEAKREFERENCE:
+        case PropertyType.URI:
+            // converting between those types doesn't change the value
+            return v.getValue(Type.STRING);
+        default:
+            // converting for example "01" to a long changes the value
+            return NOT_HASHABLE;
+        }
+    }
+
     @Override
     public AstElement copyOf() {
         return new EquiJoinConditionImpl(selector1Name, property1Name, selector2Name, property2Name);
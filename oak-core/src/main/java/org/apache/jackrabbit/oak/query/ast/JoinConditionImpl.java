@@ -39,6 +39,12 @@ public abstract class JoinConditionImpl extends AstElement {
     
     protected static final String KNOWN_VALUE = "valueFromTheJoinSelector";
 
+    /**
+     * The hash join key of a row that can not be matched using a hash key
+     * (for example because of the property type).
+     */
+    protected static final Object NOT_HASHABLE = new Object();
+
     /**
      * Evaluate the result using the currently set values.
      * 
@@ -81,4 +87,39 @@ public abstract class JoinConditionImpl extends AstElement {
      */
     public abstract boolean canEvaluate(Set<SourceImpl> available);
 
+    /**
+     * Whether the condition can be evaluated as a hash join, where the rows of
+     * the given selector are read once and grouped by their key.
+     * 
+     * @param s the selector on the build side
+     * @return true if a hash join is supported
+     */
+    public boolean supportsHashJoin(SelectorImpl s) {
+        return false;
+    }
+
+    /**
+     * Get the hash join key of the current row of the given selector. Rows
+     * with the same key are not guaranteed to match, so the condition is
+     * still evaluated for them.
+     * 
+     * @param s the selector on the build side
+     * @return the key, null if the row can never match, or
+     *         {@link #NOT_HASHABLE}
+     */
+    public Object getBuildKey(SelectorImpl s) {
+        return NOT_HASHABLE;
+    }
+
+    /**
+     * Get the hash join key of the current row of the other selector, that
+     * is, the key of the rows of the given selector that may match.
+     * 
+     * @param s the selector on the build side
+     * @return the key, null if no row can match, or {@link #NOT_HASHABLE}
+     */
+    public Object getProbeKey(SelectorImpl s) {
+        return NOT_HASHABLE;
+    }
+
 }
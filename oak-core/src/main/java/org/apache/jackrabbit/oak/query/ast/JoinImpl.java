@@ -16,19 +16,30 @@ package org.apache.jackrabbit.oak.query.ast;
 import static org.apache.jackrabbit.oak.query.ast.AstElementFactory.copyElementAndCheckReference;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 
 import org.apache.jackrabbit.oak.api.Result.SizePrecision;
 import org.apache.jackrabbit.oak.query.plan.ExecutionPlan;
 import org.apache.jackrabbit.oak.query.plan.JoinExecutionPlan;
+import org.apache.jackrabbit.oak.query.plan.SelectorExecutionPlan;
 import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.IndexPlan;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * A join. This object contains the left hand side source, the right hand side
  * source, the join type, and the join condition.
  */
 public class JoinImpl extends SourceImpl {
+
+    private static final Logger LOG = LoggerFactory.getLogger(JoinImpl.class);
+
+    private static final boolean HASH_JOIN_DISABLED = Boolean.getBoolean("oak.query.hashJoinDisabled");
+
     private final JoinConditionImpl joinCondition;
     private JoinType joinType;
     private SourceImpl left;
@@ -42,6 +53,12 @@ public class JoinImpl extends SourceImpl {
     
     private JoinExecutionPlan plan;
 
+    /**
+     * The paths of the rows of the right hand side, by hash join key, or null
+     * if the join is executed as a nested loop join.
+     */
+    private Map<Object, List<String>> hashTable;
+
     public JoinImpl(SourceImpl left, SourceImpl right, JoinType joinType,
             JoinConditionImpl joinCondition) {
         this.left = left;
@@ -191,10 +208,59 @@ public class JoinImpl extends SourceImpl {
         ExecutionPlan leftPlan = left.prepare();
         ExecutionPlan rightPlan = right.prepare();
         double cost = leftPlan.getEstimatedCost() + 2 * rightPlan.getEstimatedCost();
-        plan = new JoinExecutionPlan(this, leftPlan, rightPlan, cost);
+        SelectorExecutionPlan buildPlan = prepareHashJoin(leftPlan, rightPlan);
+        plan = new JoinExecutionPlan(this, leftPlan, rightPlan, buildPlan, cost);
         return plan;
     }
 
+    /**
+     * Decide whether to use a hash join, where the rows of the right hand side
+     * are read once (using an index) and kept in memory, instead of a nested
+     * loop join, where the right hand side is queried once per row on the
+     * left hand side.
+     * 
+     * @param leftPlan the plan of the left hand side
+     * @param rightPlan the plan of the right hand side
+     * @return the plan to read the rows of the right hand side, or null to
+     *         use a nested loop join
+     */
+    private SelectorExecutionPlan prepareHashJoin(ExecutionPlan leftPlan, ExecutionPlan rightPlan) {
+        if (HASH_JOIN_DISABLED || !(right instanceof SelectorImpl)) {
+            return null;
+        }
+        SelectorImpl s = (SelectorImpl) right;
+        if (!joinCondition.supportsHashJoin(s)) {
+            return null;
+        }
+        SelectorExecutionPlan buildPlan = s.prepareHashJoinBuild();
+        if (buildPlan == null) {
+            return null;
+        }
+        IndexPlan p = buildPlan.getIndexPlan();
+        long buildRows = p.getEstimatedEntryCount();
+        if (buildRows > s.getQuery().getSettings().getLimitInMemory()) {
+            return null;
+        }
+        double leftRows = getEstimatedRows(leftPlan);
+        double nestedLoopCost = leftRows * rightPlan.getEstimatedCost();
+        double hashJoinCost = p.getCostPerExecution() + buildRows * p.getCostPerEntry() + leftRows;
+        if (hashJoinCost >= nestedLoopCost) {
+            return null;
+        }
+        LOG.debug("hash join (cost {} instead of {}) for {}", hashJoinCost, nestedLoopCost, this);
+        return buildPlan;
+    }
+
+    private static double getEstimatedRows(ExecutionPlan plan) {
+        if (plan instanceof SelectorExecutionPlan) {
+            IndexPlan p = ((SelectorExecutionPlan) plan).getIndexPlan();
+            if (p != null) {
+                return p.getEstimatedEntryCount();
+            }
+        }
+        return plan.getEstimatedCost();
+    }
+
     @Override
     public SelectorImpl getSelector(String selectorName) {
         SelectorImpl s = left.getSelector(selectorName);
@@ -209,6 +275,7 @@ public class JoinImpl extends SourceImpl {
         this.rootState = rootState;
         leftNeedExecute = true;
         end = false;
+        hashTable = null;
     }
 
     @Override
@@ -241,6 +308,13 @@ public class JoinImpl extends SourceImpl {
             return false;
         }
         if (leftNeedExecute) {
+            SelectorExecutionPlan buildPlan = plan == null ? null : plan.getHashJoinBuildPlan();
+            if (buildPlan != null) {
+                // null if there are too many rows, in which case
+                // a nested loop join is used
+                hashTable = ((SelectorImpl) right).readHashJoinBuild(rootState, buildPlan,
+                        joinCondition, buildPlan.getSelector().getQuery().getSettings().getLimitInMemory());
+            }
             left.execute(rootState);
             leftNeedExecute = false;
             leftNeedNext = true;
@@ -255,7 +329,7 @@ public class JoinImpl extends SourceImpl {
                 rightNeedExecute = true;
             }
             if (rightNeedExecute) {
-                right.execute(rootState);
+                executeRight();
                 foundJoinedRow = false;
                 rightNeedExecute = false;
             }
@@ -275,6 +349,19 @@ public class JoinImpl extends SourceImpl {
         }
     }
     
+    private void executeRight() {
+        if (hashTable != null) {
+            SelectorImpl s = (SelectorImpl) right;
+            Object key = joinCondition.getProbeKey(s);
+            if (key != JoinConditionImpl.NOT_HASHABLE) {
+                List<String> paths = key == null ? null : hashTable.get(key);
+                s.execute(paths == null ? Collections.<String>emptyList() : paths);
+                return;
+            }
+        }
+        right.execute(rootState);
+    }
+
     @Override
     public boolean isOuterJoinRightHandSide() {
         return left.isOuterJoinRightHandSide() || right.isOuterJoinRightHandSide();
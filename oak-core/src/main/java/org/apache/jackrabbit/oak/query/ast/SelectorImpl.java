@@ -27,8 +27,11 @@ import static org.apache.jackrabbit.oak.api.Type.NAME;
 import static org.apache.jackrabbit.oak.api.Type.NAMES;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 
 import org.apache.jackrabbit.oak.api.PropertyState;
@@ -42,8 +45,11 @@ import org.apache.jackrabbit.oak.query.QueryImpl;
 import org.apache.jackrabbit.oak.query.QueryOptions;
 import org.apache.jackrabbit.oak.spi.query.fulltext.FullTextExpression;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
+import org.apache.jackrabbit.oak.query.index.TraversalGuard;
+import org.apache.jackrabbit.oak.query.index.TraversingIndex;
 import org.apache.jackrabbit.oak.query.plan.ExecutionPlan;
 import org.apache.jackrabbit.oak.query.plan.SelectorExecutionPlan;
+import org.apache.jackrabbit.oak.query.stats.QueryStatsData.QueryExecutionStats;
 import org.apache.jackrabbit.oak.spi.query.Cursor;
 import org.apache.jackrabbit.oak.plugins.index.Cursors;
 import org.apache.jackrabbit.oak.plugins.index.IndexConstants;
@@ -71,11 +77,17 @@ public class SelectorImpl extends SourceImpl {
     
     private static final Boolean TIMER_DISABLED = Boolean.getBoolean("oak.query.timerDisabled");
     
+    // The maximum number of index rows that are read ahead when prefetching.
+    private static final int PREFETCH_BATCH_SIZE = Integer.getInteger("oak.query.prefetchBatchSize", 128);
+
     // The sample rate. Must be a power of 2.
     private static final Long TIMER_SAMPLE_RATE = Long.getLong("oak.query.timerSampleRate", 0x100);
     
     private static long timerSampleCounter;
     
+    // The sample rate of the profile (0 to disable timing). It is rounded down to a power of 2.
+    private static final long PROFILE_SAMPLE_RATE = Long.getLong("oak.query.profileSampleRate", 0x40);
+    
     // TODO possibly support using multiple indexes (using index intersection / index merge)
     private SelectorExecutionPlan plan;
     
@@ -164,6 +176,12 @@ public class SelectorImpl extends SourceImpl {
     private Cursor cursor;
     private IndexRow currentRow;
     private int scanCount;
+
+    /**
+     * The row counts and timings of the stages, created when the first row is
+     * read.
+     */
+    private SelectorProfile profile;
     
     private Tree lastTree;
     private String lastPath;
@@ -171,6 +189,29 @@ public class SelectorImpl extends SourceImpl {
     private String planIndexName;
     private TimerStats timerDuration;
 
+    /**
+     * Whether the rows for the build side of a hash join are read, in which
+     * case the join condition is not evaluated.
+     */
+    private boolean hashJoinBuild;
+
+    /**
+     * The guard that estimates the number of nodes read, if this selector
+     * traverses, and the number of nodes read so far.
+     */
+    private TraversalGuard traversalGuard;
+    private long traversalReadCount;
+
+    /**
+     * The executor used to read the index rows in the background, or null.
+     */
+    private Executor prefetchExecutor;
+
+    /**
+     * Whether the nodes of the index rows are also read in the background.
+     */
+    private boolean prefetchNodes;
+
     public SelectorImpl(NodeTypeInfo nodeTypeInfo, String selectorName) {
         this.nodeTypeInfo = checkNotNull(nodeTypeInfo);
         this.selectorName = checkNotNull(selectorName);
@@ -337,24 +378,161 @@ public class SelectorImpl extends SourceImpl {
     private void executeInternal(NodeState rootState) {
         QueryIndex index = plan.getIndex();
         timerDuration = null;
+        traversalGuard = null;
+        traversalReadCount = 0;
         if (index == null) {
             cursor = Cursors.newPathCursor(new ArrayList<String>(), query.getSettings());
             planIndexName = "traverse";
             return;
         }
         IndexPlan p = plan.getIndexPlan();
+        FilterImpl f;
         if (p != null) {
             planIndexName = p.getPlanName();
-            p.setFilter(createFilter(false));
+            f = createFilter(false);
+            p.setFilter(f);
             AdvancedQueryIndex adv = (AdvancedQueryIndex) index;
             cursor = adv.query(p, rootState);
         } else {
-            FilterImpl f = createFilter(false);
+            f = createFilter(false);
             planIndexName = index.getIndexName(f, rootState);
             cursor = index.query(f, rootState);
+            if (index instanceof TraversingIndex) {
+                traversalGuard = ((TraversingIndex) index).getTraversalGuard(
+                        f, rootState, query.getSettings().getTraversalGuardSample());
+            }
+        }
+        if (prefetchExecutor != null && canPrefetch(f)) {
+            cursor = Cursors.newPrefetchCursor(cursor, prefetchExecutor, PREFETCH_BATCH_SIZE,
+                    prefetchNodes ? rootState : null, query.getQueryLimits());
         }
     }
+
+    /**
+     * Whether the index rows can be read in the background. For full-text
+     * conditions, native queries (including spell checking and suggestions),
+     * and facets, indexes check access rights while reading the rows, using
+     * the permission provider of the session, which is not thread-safe.
+     * 
+     * @param f the filter
+     * @return true if the rows can be read in another thread
+     */
+    private static boolean canPrefetch(FilterImpl f) {
+        return f.getFullTextConstraint() == null && !f.containsNativeConstraint()
+                && f.getPropertyRestriction(QueryConstants.REP_FACET) == null;
+    }
+
+    /**
+     * Read the index rows in the background when this selector is executed,
+     * so that the index lookups of multiple queries (for example the branches
+     * of a union) can run in parallel. Only the reading from the index is
+     * done in the background; the rows are still filtered, and access rights
+     * are checked, in the thread that reads the result. Queries with
+     * full-text conditions, native queries, and facets are always read in the
+     * calling thread, as the indexes check access rights for them.
+     * 
+     * @param executor the executor, or null to read in the calling thread
+     */
+    public void setPrefetchExecutor(Executor executor) {
+        this.prefetchExecutor = executor;
+    }
+
+    /**
+     * Also read the nodes of the index rows in the background, so that they
+     * are cached when the rows are filtered and their access rights are
+     * checked. This only has an effect if a prefetch executor is set.
+     * 
+     * @param prefetchNodes whether to read the nodes in the background
+     */
+    public void setPrefetchNodes(boolean prefetchNodes) {
+        this.prefetchNodes = prefetchNodes;
+    }
     
+    /**
+     * Prepare the plan to read all rows of this selector at once, ignoring the
+     * join condition, as needed for the build side of a hash join.
+     * 
+     * @return the plan, or null if the rows can not be read using an index
+     */
+    public SelectorExecutionPlan prepareHashJoinBuild() {
+        FilterImpl f = createFilter(true, false);
+        if (f.getFullTextConstraint() != null || f.containsNativeConstraint()
+                || f.getPropertyRestriction(QueryConstants.REP_EXCERPT) != null
+                || f.getPropertyRestriction(QueryConstants.REP_FACET) != null
+                || f.getPropertyRestriction(QueryConstants.OAK_SCORE_EXPLANATION) != null) {
+            // the rows returned by the index contain data (score, excerpt,
+            // facets) that would be lost
+            return null;
+        }
+        SelectorExecutionPlan p = query.getBestIndexExecutionPlan(f);
+        if (p.getIndexPlan() == null) {
+            // without index plan, the number of rows is not known
+            return null;
+        }
+        return p;
+    }
+
+    /**
+     * Read all rows of this selector, grouped by the hash join key of the
+     * given join condition.
+     * 
+     * @param rootState the root
+     * @param buildPlan the plan returned by {@link #prepareHashJoinBuild()}
+     * @param condition the join condition
+     * @param maxRows the maximum number of rows to keep in memory
+     * @return the paths of the rows by key, or null if a row can not be
+     *         hashed, or if there are too many rows
+     */
+    public Map<Object, List<String>> readHashJoinBuild(NodeState rootState,
+            SelectorExecutionPlan buildPlan, JoinConditionImpl condition, long maxRows) {
+        long start = startTimer();
+        IndexPlan p = buildPlan.getIndexPlan();
+        planIndexName = p.getPlanName();
+        timerDuration = null;
+        p.setFilter(createFilter(false, false));
+        cursor = ((AdvancedQueryIndex) buildPlan.getIndex()).query(p, rootState);
+        traversalGuard = null;
+        hashJoinBuild = true;
+        try {
+            Map<Object, List<String>> rows = new HashMap<Object, List<String>>();
+            long count = 0;
+            while (nextInternal()) {
+                if (currentRow.isVirtualRow() || ++count > maxRows) {
+                    return null;
+                }
+                Object key = condition.getBuildKey(this);
+                if (key == JoinConditionImpl.NOT_HASHABLE) {
+                    return null;
+                }
+                if (key != null) {
+                    List<String> list = rows.get(key);
+                    if (list == null) {
+                        list = new ArrayList<String>();
+                        rows.put(key, list);
+                    }
+                    list.add(currentRow.getPath());
+                }
+            }
+            return rows;
+        } finally {
+            hashJoinBuild = false;
+            cursor = null;
+            currentRow = null;
+            stopTimer(start, true);
+        }
+    }
+
+    /**
+     * Execute the selector over the given rows, which were read before using
+     * {@link #readHashJoinBuild}.
+     * 
+     * @param paths the paths of the rows
+     */
+    public void execute(List<String> paths) {
+        cursor = new Cursors.PathCursor(paths.iterator(), false, query.getSettings());
+        traversalGuard = null;
+    }
+
     private long startTimer() {
         if (TIMER_DISABLED) {
             return -1;
@@ -408,6 +586,10 @@ public class SelectorImpl extends SourceImpl {
             buff.append(" where ").append(new AndImpl(selectorConstraints).toString());
         }
         buff.append(" */");
+        if (profile != null && query.isMeasureOrExplainEnabled()) {
+            // the selector was executed by "explain profile"
+            buff.append(" /* ").append(profile).append(" */");
+        }
         return buff.toString();
     }
 
@@ -438,9 +620,13 @@ public class SelectorImpl extends SourceImpl {
      */
     @Override
     public FilterImpl createFilter(boolean preparing) {
-        FilterImpl f = new FilterImpl(this, query.getStatement(), query.getSettings());
+        return createFilter(preparing, true);
+    }
+
+    private FilterImpl createFilter(boolean preparing, boolean withJoinCondition) {
+        FilterImpl f = new FilterImpl(this, query.getStatement(), query.getQueryLimits());
         f.setPreparing(preparing);
-        if (joinCondition != null) {
+        if (joinCondition != null && withJoinCondition) {
             joinCondition.restrict(f);
         }
         // rep:excerpt handling: create a (fake) restriction
@@ -501,10 +687,26 @@ public class SelectorImpl extends SourceImpl {
     }
     
     private boolean nextInternal() {
-        while (cursor != null && cursor.hasNext()) {
+        SelectorProfile p = getProfile();
+        QueryExecutionStats stats = query.getQueryExecutionStats();
+        while (true) {
+            p.startRow();
+            if (cursor == null || !cursor.hasNext()) {
+                p.cursor(stats);
+                break;
+            }
+            query.checkCancelled();
             scanCount++;
-            query.getQueryExecutionStats().scan(1, scanCount);
+            stats.scan(1, scanCount);
             currentRow = cursor.next();
+            if (traversalGuard != null 
+                    && ++traversalReadCount == traversalGuard.getSampleSize()) {
+                long estimate = traversalGuard.estimate(currentRow.getPath());
+                query.verifyTraversalEstimate(estimate, 
+                        traversalGuard.isCounted(), traversalGuard.suggestIndex());
+            }
+            p.read();
+            p.cursor(stats);
             if (isParent) {
                 // we must not check whether the _parent_ is readable
                 // for joins of type
@@ -517,6 +719,7 @@ public class SelectorImpl extends SourceImpl {
                 // correct results
             } else if (currentRow.isVirtualRow()) {
                 // this is a virtual row and should be selected as is
+                p.returned();
                 return true;
             } else {
                 // we must check whether the _child_ is readable
@@ -529,19 +732,35 @@ public class SelectorImpl extends SourceImpl {
                 // because not checking would reveal existence
                 // of the child node
                 Tree tree = getTree(currentRow.getPath());
-                if (tree == null || !tree.exists()) {
+                boolean readable = tree != null && tree.exists();
+                p.access(stats);
+                if (!readable) {
+                    p.denied(stats);
                     continue;
                 }
             }
-            if (evaluateCurrentRow()) {
+            boolean match = evaluateCurrentRow();
+            p.filter(stats);
+            if (match) {
+                p.returned();
                 return true;
             }
+            p.filtered(stats);
         }
         cursor = null;
         currentRow = null;
         return false;
     }
 
+    private SelectorProfile getProfile() {
+        if (profile == null) {
+            // time all rows if the profile is shown in the plan
+            profile = new SelectorProfile(
+                    query.isMeasureOrExplainEnabled() ? 1 : PROFILE_SAMPLE_RATE);
+        }
+        return profile;
+    }
+
     private boolean evaluateCurrentRow() {
         if (currentRow.isVirtualRow()) {
             //null path implies that all checks are already done -- we just need to pass it through
@@ -559,7 +778,7 @@ public class SelectorImpl extends SourceImpl {
                 return false;
             }
         }
-        if (joinCondition != null && !joinCondition.evaluate()) {
+        if (joinCondition != null && !hashJoinBuild && !joinCondition.evaluate()) {
             return false;
         }
         return true;
@@ -0,0 +1,156 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.query.ast;
+
+import org.apache.jackrabbit.oak.query.stats.QueryStatsData.QueryExecutionStats;
+
+/**
+ * The number of rows a selector processed in each stage, and the time spent
+ * in each stage. The stages are: reading from the index cursor, reading the
+ * node (which includes checking the access rights), and evaluating the
+ * conditions. To keep the overhead low, only every xth row is timed, and the
+ * measured time is multiplied by x. The data is also added to the query
+ * statistics.
+ */
+class SelectorProfile {
+
+    /**
+     * The sample rate: 0 to disable timing, otherwise a power of 2.
+     */
+    private final long sampleRate;
+
+    private long sampleCounter;
+
+    private boolean sampling;
+
+    private long time;
+
+    private long rowsRead, rowsDenied, rowsFiltered, rowsReturned;
+
+    private long cursorNanos, accessNanos, filterNanos;
+
+    /**
+     * Create a profile.
+     * 
+     * @param sampleRate the sample rate: 0 or less to disable timing;
+     *            otherwise, it is rounded down to a power of 2
+     */
+    SelectorProfile(long sampleRate) {
+        this.sampleRate = sampleRate <= 0 ? 0 : Long.highestOneBit(sampleRate);
+    }
+
+    long getSampleRate() {
+        return sampleRate;
+    }
+
+    /**
+     * Start processing a row, and decide whether it is timed.
+     */
+    void startRow() {
+        sampling = sampleRate > 0 && (sampleCounter++ & (sampleRate - 1)) == 0;
+        if (sampling) {
+            time = System.nanoTime();
+        }
+    }
+
+    /**
+     * The cursor was read (whether or not it returned a row).
+     * 
+     * @param stats the query statistics
+     */
+    void cursor(QueryExecutionStats stats) {
+        long nanos = lap();
+        if (nanos > 0) {
+            cursorNanos += nanos;
+            stats.time(nanos, 0, 0);
+        }
+    }
+
+    /**
+     * The node of the row was read, and the access rights were checked.
+     * 
+     * @param stats the query statistics
+     */
+    void access(QueryExecutionStats stats) {
+        long nanos = lap();
+        if (nanos > 0) {
+            accessNanos += nanos;
+            stats.time(0, nanos, 0);
+        }
+    }
+
+    /**
+     * The conditions were evaluated.
+     * 
+     * @param stats the query statistics
+     */
+    void filter(QueryExecutionStats stats) {
+        long nanos = lap();
+        if (nanos > 0) {
+            filterNanos += nanos;
+            stats.time(0, 0, nanos);
+        }
+    }
+
+    void read() {
+        rowsRead++;
+    }
+
+    void denied(QueryExecutionStats stats) {
+        rowsDenied++;
+        stats.deny(1);
+    }
+
+    void filtered(QueryExecutionStats stats) {
+        rowsFiltered++;
+        stats.filter(1);
+    }
+
+    void returned() {
+        rowsReturned++;
+    }
+
+    /**
+     * Get the time since the last call, or since the row was started.
+     * 
+     * @return the time in nanoseconds, multiplied by the sample rate, or 0 if
+     *         this row is not timed
+     */
+    private long lap() {
+        if (!sampling) {
+            return 0;
+        }
+        long now = System.nanoTime();
+        long nanos = (now - time) * sampleRate;
+        time = now;
+        return nanos;
+    }
+
+    @Override
+    public String toString() {
+        return "profile: read " + rowsRead + 
+                ", denied " + rowsDenied + 
+                ", filtered " + rowsFiltered + 
+                ", returned " + rowsReturned + 
+                ", cursor " + cursorNanos / 1000000 + " ms" + 
+                ", access " + accessNanos / 1000000 + " ms" + 
+                ", filter " + filterNanos / 1000000 + " ms";
+    }
+
+}
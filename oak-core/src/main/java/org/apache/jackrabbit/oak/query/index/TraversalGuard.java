@@ -0,0 +1,190 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.query.index;
+
+import static org.apache.jackrabbit.JcrConstants.JCR_MIXINTYPES;
+import static org.apache.jackrabbit.JcrConstants.JCR_PRIMARYTYPE;
+import static org.apache.jackrabbit.JcrConstants.NT_BASE;
+
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.commons.json.JsopBuilder;
+import org.apache.jackrabbit.oak.plugins.index.counter.jmx.NodeCounter;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.Filter.PropertyRestriction;
+import org.apache.jackrabbit.oak.spi.query.QueryConstants;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
+
+/**
+ * Estimates the number of nodes a traversal reads, after the first nodes were
+ * read. The estimate is taken from the node counter if available. Otherwise,
+ * it is extrapolated from the position of the traversal within the child nodes
+ * of the root of the traversal, assuming that all child nodes have subtrees of
+ * about the same size.
+ */
+public class TraversalGuard {
+
+    /**
+     * The maximum number of child nodes to read for the extrapolation.
+     */
+    static final int MAX_CHILD_NODES = 10000;
+
+    private final Filter filter;
+    private final NodeState rootState;
+    private final long sampleSize;
+
+    private boolean counted;
+
+    TraversalGuard(Filter filter, NodeState rootState, long sampleSize) {
+        this.filter = filter;
+        this.rootState = rootState;
+        this.sampleSize = sampleSize;
+    }
+
+    /**
+     * The number of nodes to read before estimating the total.
+     * 
+     * @return the number of nodes
+     */
+    public long getSampleSize() {
+        return sampleSize;
+    }
+
+    /**
+     * Estimate the number of nodes the traversal will read.
+     * 
+     * @param currentPath the path of the last node that was read
+     * @return the estimated number of nodes, or -1 if unknown
+     */
+    public long estimate(String currentPath) {
+        String path = getTraversalRoot();
+        long count = NodeCounter.getEstimatedNodeCount(rootState, path, true);
+        counted = count >= 0;
+        if (counted) {
+            return Math.max(count, sampleSize);
+        }
+        return extrapolate(path, currentPath);
+    }
+
+    /**
+     * Whether the last estimate was taken from the node counter. Otherwise,
+     * it was extrapolated, which is much less reliable.
+     * 
+     * @return true if the node counter was used
+     */
+    public boolean isCounted() {
+        return counted;
+    }
+
+    private String getTraversalRoot() {
+        switch (filter.getPathRestriction()) {
+        case NO_RESTRICTION:
+            return "/";
+        default:
+            return filter.getPath();
+        }
+    }
+
+    private long extrapolate(String path, String currentPath) {
+        if (currentPath == null || !PathUtils.isAncestor(path, currentPath)) {
+            return -1;
+        }
+        String relative = PathUtils.relativize(path, currentPath);
+        String child = PathUtils.elements(relative).iterator().next();
+        NodeState node = NodeStateUtils.getNode(rootState, path);
+        long position = 0;
+        long count = 0;
+        for (String name : node.getChildNodeNames()) {
+            if (count >= MAX_CHILD_NODES) {
+                break;
+            }
+            if (NodeStateUtils.isHidden(name)) {
+                continue;
+            }
+            count++;
+            if (name.equals(child)) {
+                position = count;
+            }
+        }
+        if (position == 0) {
+            return -1;
+        }
+        // the nodes read so far are in the subtrees of the
+        // first child nodes, up to and including the current one
+        return sampleSize * count / position;
+    }
+
+    /**
+     * Get the definition of a property index that could be used instead of
+     * traversing (see {@link #suggestIndex(Filter)}).
+     * 
+     * @return the index definition, or null
+     */
+    public String suggestIndex() {
+        return suggestIndex(filter);
+    }
+
+    /**
+     * Get the definition of a property index that could be used instead of
+     * traversing, in the Json format. Only properties of the node itself
+     * (not relative properties) are used.
+     * 
+     * @param filter the filter
+     * @return the index definition, or null if no index can be suggested
+     */
+    public static String suggestIndex(Filter filter) {
+        Set<String> propertyNames = new TreeSet<String>();
+        for (PropertyRestriction r : filter.getPropertyRestrictions()) {
+            String name = r.propertyName;
+            if (name.indexOf('/') >= 0 || name.startsWith(":")
+                    || name.equals(QueryConstants.JCR_PATH)
+                    || name.equals(QueryConstants.JCR_SCORE)
+                    || name.startsWith("rep:")) {
+                continue;
+            }
+            propertyNames.add(name);
+        }
+        String nodeType = filter.getNodeType();
+        boolean declaringNodeType = !filter.matchesAllTypes()
+                && nodeType != null && !nodeType.equals(NT_BASE);
+        if (propertyNames.isEmpty()) {
+            if (!declaringNodeType) {
+                return null;
+            }
+            propertyNames.add(JCR_PRIMARYTYPE);
+            propertyNames.add(JCR_MIXINTYPES);
+        }
+        JsopBuilder buff = new JsopBuilder().object().
+                key("jcr:primaryType").value("oak:QueryIndexDefinition").
+                key("type").value("property").
+                key("propertyNames").array();
+        for (String name : propertyNames) {
+            buff.value(name);
+        }
+        buff.endArray();
+        if (declaringNodeType) {
+            buff.key("declaringNodeTypes").array().value(nodeType).endArray();
+        }
+        return buff.endObject().toString();
+    }
+
+}
@@ -69,6 +69,23 @@ public class TraversingIndex implements QueryIndex {
         }
     }
 
+    /**
+     * Get the guard that estimates the number of nodes a traversal reads, if
+     * the traversal is potentially slow.
+     * 
+     * @param filter the filter
+     * @param rootState the root state
+     * @param sampleSize the number of nodes to read before estimating the total
+     * @return the guard, or null if not needed
+     */
+    public TraversalGuard getTraversalGuard(Filter filter, NodeState rootState, long sampleSize) {
+        if (sampleSize <= 0 || !isPotentiallySlow(filter, rootState)
+                || filter.getPath().startsWith(JoinConditionImpl.SPECIAL_PATH_PREFIX)) {
+            return null;
+        }
+        return new TraversalGuard(filter, rootState, sampleSize);
+    }
+
     @Override
     public double getCost(Filter filter, NodeState rootState) {
         if (filter.getFullTextConstraint() != null) {
@@ -26,12 +26,19 @@ public class JoinExecutionPlan implements ExecutionPlan {
 
     private final JoinImpl join;
     private final ExecutionPlan leftPlan, rightPlan;
+    private final SelectorExecutionPlan hashJoinBuildPlan;
     private final double estimatedCost;
     
     public JoinExecutionPlan(JoinImpl join, ExecutionPlan leftPlan, ExecutionPlan rightPlan, double estimatedCost) {
+        this(join, leftPlan, rightPlan, null, estimatedCost);
+    }
+
+    public JoinExecutionPlan(JoinImpl join, ExecutionPlan leftPlan, ExecutionPlan rightPlan,
+            SelectorExecutionPlan hashJoinBuildPlan, double estimatedCost) {
         this.join = join;
         this.leftPlan = leftPlan;
         this.rightPlan = rightPlan;
+        this.hashJoinBuildPlan = hashJoinBuildPlan;
         this.estimatedCost = estimatedCost;
     }
     
@@ -52,4 +59,14 @@ public class JoinExecutionPlan implements ExecutionPlan {
         return rightPlan;
     }
 
+    /**
+     * Get the plan to read all rows of the right hand side at once, if the
+     * join is executed as a hash join.
+     * 
+     * @return the plan, or null for a nested loop join
+     */
+    public SelectorExecutionPlan getHashJoinBuildPlan() {
+        return hashJoinBuildPlan;
+    }
+
 }
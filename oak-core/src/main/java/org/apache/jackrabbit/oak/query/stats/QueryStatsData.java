@@ -39,6 +39,35 @@ public class QueryStatsData {
      */
     private long totalRowsScanned;
     private long maxRowsScanned;
+
+    /**
+     * Bytes written to temporary files, when sorting or filtering duplicate
+     * rows needed more than the in-memory limit.
+     */
+    private long totalBytesSpilled;
+
+    /**
+     * Rows returned by the index that were not readable, and rows that did
+     * not match the conditions.
+     */
+    private long totalRowsDenied;
+    private long totalRowsFiltered;
+
+    /**
+     * The (sampled) time spent reading from index cursors, reading nodes and
+     * checking access rights, and evaluating conditions.
+     */
+    private long cursorNanos;
+    private long accessNanos;
+    private long filterNanos;
+
+    /**
+     * The highest estimated number of nodes read by traversing, if the
+     * traversal guard warned or stopped the query, and the index that was
+     * suggested instead.
+     */
+    private long traversalEstimate;
+    private String suggestedIndex;
     private long planNanos;
     private long readNanos;
     private long maxTimeNanos;
@@ -91,6 +120,38 @@ public class QueryStatsData {
         return totalRowsScanned;
     }
 
+    public long getTotalBytesSpilled() {
+        return totalBytesSpilled;
+    }
+
+    public long getTotalRowsDenied() {
+        return totalRowsDenied;
+    }
+
+    public long getTotalRowsFiltered() {
+        return totalRowsFiltered;
+    }
+
+    public long getCursorNanos() {
+        return cursorNanos;
+    }
+
+    public long getAccessNanos() {
+        return accessNanos;
+    }
+
+    public long getFilterNanos() {
+        return filterNanos;
+    }
+
+    public long getTraversalEstimate() {
+        return traversalEstimate;
+    }
+
+    public String getSuggestedIndex() {
+        return suggestedIndex;
+    }
+
     public String getLanguage() {
         return language;
     }
@@ -121,6 +182,14 @@ public class QueryStatsData {
             key("maxRowsRead").value(maxRowsRead).
             key("totalRowsScanned").value(totalRowsScanned).
             key("maxRowsScanned").value(maxRowsScanned).
+            key("totalBytesSpilled").value(totalBytesSpilled).
+            key("totalRowsDenied").value(totalRowsDenied).
+            key("totalRowsFiltered").value(totalRowsFiltered).
+            key("cursorNanos").value(cursorNanos).
+            key("accessNanos").value(accessNanos).
+            key("filterNanos").value(filterNanos).
+            key("traversalEstimate").value(traversalEstimate).
+            key("suggestedIndex").value(suggestedIndex).
             key("planNanos").value(planNanos).
             key("readNanos").value(readNanos).
             key("maxTimeNanos").value(maxTimeNanos).
@@ -174,7 +243,32 @@ public class QueryStatsData {
         public void scan(long count, long max) {
             totalRowsScanned += count;
             maxRowsScanned = Math.max(maxRowsScanned, max);
-        }        
+        }
+
+        public void spill(long bytes) {
+            totalBytesSpilled += bytes;
+        }
+
+        public void deny(long count) {
+            totalRowsDenied += count;
+        }
+
+        public void filter(long count) {
+            totalRowsFiltered += count;
+        }
+
+        public void time(long cursor, long access, long filter) {
+            cursorNanos += cursor;
+            accessNanos += access;
+            filterNanos += filter;
+        }
+
+        public void traversal(long estimate, String suggestedIndex) {
+            traversalEstimate = Math.max(traversalEstimate, estimate);
+            if (suggestedIndex != null) {
+                QueryStatsData.this.suggestedIndex = suggestedIndex;
+            }
+        }
     }
 
 }
\ No newline at end of file
@@ -38,12 +38,34 @@ public interface QueryStatsMBean {
     @Description("Get the popular queries (those that take most of the time).")
     TabularData getPopularQueries();
 
+    /**
+     * Get the traversal queries that were estimated to read many nodes after
+     * reading the first nodes, with the estimated number of nodes and the
+     * suggested index definition.
+     * 
+     * @return the traversal queries table
+     */
+    @Description("Get the traversal queries that were stopped or warned early, with the suggested index.")
+    TabularData getTraversalQueries();
+
     @Description("Get all data as Json.")
     String asJson();
    
     @Description("Reset the statistics (clear the list of queries).")
     void resetStats();
 
+    /**
+     * Get the hit and miss counts of the cache of XPath conversions and plan
+     * selections.
+     * 
+     * @return the cache statistics as Json
+     */
+    @Description("Get the hit and miss counts of the query cache as Json.")
+    String getQueryCacheStats();
+
+    @Description("Clear the query cache, for example after index definitions were changed.")
+    void invalidateQueryCache();
+
     /**
      * Whether to capture a thread dump in addition to the thread name.
      * No thread name / thread dump is captures for internal queries.
@@ -90,9 +90,37 @@ public class QueryStatsMBeanImpl extends AnnotatedStandardMBean
         return asTabularData(list);
     }
 
+    @Override
+    public TabularData getTraversalQueries() {
+        ArrayList<QueryStatsData> list = new ArrayList<QueryStatsData>();
+        for(QueryStatsData s : statistics.values()) {
+            if(s.getTraversalEstimate() > 0) {
+                list.add(s);
+            }
+        }
+        Collections.sort(list, new Comparator<QueryStatsData>() {
+            @Override
+            public int compare(QueryStatsData o1, QueryStatsData o2) {
+                return -Long.compare(o1.getTraversalEstimate(), o2.getTraversalEstimate());
+            }
+        });
+        return asTabularData(list);
+    }
+
     @Override
     public void resetStats() {
         statistics.clear();
+        settings.getQueryCache().resetStats();
+    }
+
+    @Override
+    public String getQueryCacheStats() {
+        return settings.getQueryCache().toString();
+    }
+
+    @Override
+    public void invalidateQueryCache() {
+        settings.getQueryCache().invalidate();
     }
     
     @Override
@@ -199,7 +227,10 @@ public class QueryStatsMBeanImpl extends AnnotatedStandardMBean
 
         private final static String[] names = { "position", 
                 "maxTimeMillis", "totalTimeMillis", "executeCount", 
-                "rowsRead", "rowsScanned", "maxRowsScanned",
+                "rowsRead", "rowsScanned", "maxRowsScanned", "bytesSpilled",
+                "rowsDenied", "rowsFiltered",
+                "cursorTimeMillis", "accessTimeMillis", "filterTimeMillis",
+                "traversalEstimate", "suggestedIndex",
                 "language", "statement", "lastExecuted",
                 "lastThread"};
 
@@ -208,7 +239,10 @@ public class QueryStatsMBeanImpl extends AnnotatedStandardMBean
         @SuppressWarnings("rawtypes")
         private final static OpenType[] types = { SimpleType.LONG,
                 SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, 
-                SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, 
+                SimpleType.LONG, SimpleType.LONG, SimpleType.LONG, SimpleType.LONG,
+                SimpleType.LONG, SimpleType.LONG,
+                SimpleType.LONG, SimpleType.LONG, SimpleType.LONG,
+                SimpleType.LONG, SimpleType.STRING,
                 SimpleType.STRING, SimpleType.STRING, SimpleType.STRING,
                 SimpleType.STRING};
 
@@ -221,6 +255,11 @@ public class QueryStatsMBeanImpl extends AnnotatedStandardMBean
             return new Object[] { (long) position,
                     q.getMaxTimeNanos() / 1000000, q.getTotalTimeNanos() / 1000000, q.getExecuteCount(), 
                     q.getTotalRowsRead(), q.getTotalRowsScanned(), q.getMaxRowsScanned(),
+                    q.getTotalBytesSpilled(),
+                    q.getTotalRowsDenied(), q.getTotalRowsFiltered(),
+                    q.getCursorNanos() / 1000000, q.getAccessNanos() / 1000000,
+                    q.getFilterNanos() / 1000000,
+                    q.getTraversalEstimate(), q.getSuggestedIndex(),
                     q.getLanguage(), q.getQuery(), QueryStatsData.getTimeString(q.getLastExecutedMillis()),
                     q.isInternal() ? "(internal query)" : q.getLastThreadName()};
         }
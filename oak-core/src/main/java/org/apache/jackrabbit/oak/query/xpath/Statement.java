@@ -35,6 +35,7 @@ public class Statement {
     private final static int MAX_UNION = Integer.getInteger("oak.xpathMaxUnion", 1000);
 
     boolean explain;
+    boolean profile;
     boolean measure;
     
     /**
@@ -93,6 +94,7 @@ public class Statement {
         union.xpathQuery = xpathQuery;
         union.measure = measure;
         union.explain = explain;
+        union.profile = profile;
         union.queryOptions = queryOptions;
 
         return union;
@@ -164,6 +166,9 @@ public class Statement {
         if (explain) {
             buff.append("explain ");
         } 
+        if (profile) {
+            buff.append("profile ");
+        }
         if (measure) {
             buff.append("measure ");
         }
@@ -257,6 +262,10 @@ public class Statement {
         this.measure = measure;
     }
 
+    public void setProfile(boolean profile) {
+        this.profile = profile;
+    }
+
     public void addSelectColumn(Property p) {
         columnList.add(p);
     }
@@ -303,6 +312,7 @@ public class Statement {
             }
             UnionStatement union = new UnionStatement(s1b, s2b);
             union.explain = explain;
+            union.profile = profile;
             union.measure = measure;
             union.orderList = orderList;
             union.queryOptions = queryOptions;
@@ -317,6 +327,9 @@ public class Statement {
             if (explain) {
                 buff.append("explain ");
             } 
+            if (profile) {
+                buff.append("profile ");
+            }
             if (measure) {
                 buff.append("measure ");
             }
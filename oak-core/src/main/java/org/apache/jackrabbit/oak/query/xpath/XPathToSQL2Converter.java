@@ -98,6 +98,10 @@ public class XPathToSQL2Converter {
         if (query.startsWith("explain ")) {
             query = query.substring("explain".length()).trim();
             statement.setExplain(true);
+            if (query.startsWith("profile ")) {
+                query = query.substring("profile".length()).trim();
+                statement.setProfile(true);
+            }
         }
         if (query.startsWith("measure")) {
             query = query.substring("measure".length()).trim();
@@ -1211,6 +1215,7 @@ public class XPathToSQL2Converter {
         result.queryOptions = queryOptions;
         result.setExplain(statement.explain);
         result.setMeasure(statement.measure);
+        result.setProfile(statement.profile);
         return result;
     }
 
@@ -16,18 +16,28 @@
  */
 package org.apache.jackrabbit.oak.plugins.index;
 
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.jackrabbit.oak.api.PropertyValue;
 import org.apache.jackrabbit.oak.api.Result.SizePrecision;
 import org.apache.jackrabbit.oak.query.QueryEngineSettings;
 import org.apache.jackrabbit.oak.spi.query.Cursor;
 import org.apache.jackrabbit.oak.spi.query.IndexRow;
+import org.apache.jackrabbit.oak.spi.query.QueryLimits;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.junit.Test;
 
 /**
@@ -67,6 +77,130 @@ public class CursorsTest {
         }
     }
 
+    @Test
+    public void prefetchCursor() throws Exception {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.child("a").child("b");
+        builder.child("c");
+        NodeState root = builder.getNodeState();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            for (int batchSize : new int[] { 1, 2, 3, 10 }) {
+                Cursor c = Cursors.newPrefetchCursor(
+                        new SimpleCursor("1:", "/a", "/a/b", "/x/y", "/:hidden", "/c"),
+                        executor, batchSize, batchSize % 2 == 0 ? root : null, null);
+                assertEquals("1:/a, 1:/a/b, 1:/x/y, 1:/:hidden, 1:/c", list(c));
+                assertFalse(c.hasNext());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void prefetchCursorReadsAheadLazily() {
+        String[] paths = new String[100];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = "/" + i;
+        }
+        final AtomicInteger read = new AtomicInteger();
+        Cursor base = new SimpleCursor("", paths) {
+            @Override
+            public IndexRow next() {
+                read.incrementAndGet();
+                return super.next();
+            }
+        };
+        Cursor c = Cursors.newPrefetchCursor(base, Runnable::run, 64);
+        // a small first batch is read right away
+        assertEquals(8, read.get());
+        for (int i = 0; i < 3; i++) {
+            c.next();
+        }
+        assertEquals(8, read.get());
+        // the next batch, twice as large, once half of the batch was used
+        c.next();
+        assertEquals(24, read.get());
+        for (int i = 4; i < 16; i++) {
+            c.next();
+        }
+        assertEquals(56, read.get());
+        // batches do not grow beyond the maximum size
+        for (int i = 16; i < 40; i++) {
+            c.next();
+        }
+        assertEquals(100, read.get());
+        assertEquals(60, list(c).split(", ").length);
+    }
+
+    @Test
+    public void prefetchCursorCancel() {
+        String[] paths = new String[100];
+        for (int i = 0; i < paths.length; i++) {
+            paths[i] = "/" + i;
+        }
+        final AtomicInteger read = new AtomicInteger();
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        Cursor base = new SimpleCursor("", paths) {
+            @Override
+            public IndexRow next() {
+                if (read.incrementAndGet() == 12) {
+                    cancelled.set(true);
+                }
+                return super.next();
+            }
+        };
+        QueryLimits settings = new QueryEngineSettings() {
+            @Override
+            public void checkCancelled() {
+                if (cancelled.get()) {
+                    throw new UnsupportedOperationException("cancelled");
+                }
+            }
+        };
+        List<Runnable> tasks = new ArrayList<Runnable>();
+        Cursor c = Cursors.newPrefetchCursor(base, tasks::add, 64, null, settings);
+        tasks.remove(0).run();
+        assertEquals(8, read.get());
+        for (int i = 0; i < 4; i++) {
+            c.next();
+        }
+        // the query is cancelled while the second batch is read:
+        // reading stops right away
+        tasks.remove(0).run();
+        assertEquals(12, read.get());
+        try {
+            c.hasNext();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assertEquals("cancelled", e.getMessage());
+        }
+        assertTrue(tasks.isEmpty());
+
+        // the query is cancelled before the next batch is read:
+        // the scheduled batch is not read, and no other batch is scheduled
+        read.set(0);
+        cancelled.set(false);
+        base = new SimpleCursor("", paths) {
+            @Override
+            public IndexRow next() {
+                read.incrementAndGet();
+                return super.next();
+            }
+        };
+        c = Cursors.newPrefetchCursor(base, tasks::add, 64, null, settings);
+        cancelled.set(true);
+        try {
+            c.hasNext();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assertEquals("cancelled", e.getMessage());
+        }
+        tasks.remove(0).run();
+        assertEquals(0, read.get());
+        assertTrue(tasks.isEmpty());
+    }
+
     static String list(Cursor c) {
         StringBuilder buff = new StringBuilder();
         while (c.hasNext()) {
@@ -27,6 +27,8 @@ import static org.apache.jackrabbit.oak.plugins.index.counter.NodeCounterEditor.
 import static org.apache.jackrabbit.oak.plugins.index.counter.NodeCounterEditor.DEFAULT_RESOLUTION;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.apache.jackrabbit.oak.plugins.index.counter.ApproximateCounter.COUNT_PROPERTY_PREFIX;
+import static org.apache.jackrabbit.oak.plugins.index.property.strategy.ContentMirrorStoreStrategy.KEY_COUNT_COMPLETE_PROPERTY_NAME;
+import static org.apache.jackrabbit.oak.plugins.index.property.strategy.ContentMirrorStoreStrategy.KEY_COUNT_PROPERTY_PREFIX;
 import static org.hamcrest.Matchers.containsInAnyOrder;
 import static org.junit.Assert.assertThat;
 
@@ -37,6 +39,7 @@ import com.google.common.base.Supplier;
 import org.apache.jackrabbit.oak.api.CommitFailedException;
 import org.apache.jackrabbit.oak.api.Type;
 import org.apache.jackrabbit.oak.commons.PathUtils;
+import org.apache.jackrabbit.oak.plugins.index.counter.ApproximateCounter;
 import org.apache.jackrabbit.oak.query.index.FilterImpl;
 import org.apache.jackrabbit.oak.spi.query.Filter;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
@@ -210,6 +213,85 @@ public class ContentMirrorStoreStrategyTest {
                         maxTraversal));
     }
 
+    @Test
+    public void testKeyCountUsage() {
+        final long approxNodeCount = 100000;
+        final long approxCommonCount = 90000;
+        final long approxKeyCount = 1000;
+        final int maxTraversal = 200;
+        final String approxPropName = COUNT_PROPERTY_PREFIX + "gen_uuid";
+        final String keyCountPropName = KEY_COUNT_PROPERTY_PREFIX + "gen_uuid";
+
+        IndexStoreStrategy store = new ContentMirrorStoreStrategy();
+        NodeState root = EMPTY_NODE;
+        NodeBuilder indexMeta = root.builder();
+        NodeBuilder index = indexMeta.child(INDEX_CONTENT_NODE_NAME);
+        index.setProperty(approxPropName, approxNodeCount, Type.LONG);
+        index.child("common").setProperty(approxPropName, approxCommonCount, Type.LONG);
+        index.child("rare").child("node").setProperty("match", true);
+        Set<String> both = newHashSet("common", "rare");
+
+        // without the number of distinct keys, a key
+        // without approximate count is expected to be large
+        Assert.assertEquals(approxCommonCount + 10 * DEFAULT_RESOLUTION,
+                store.count(root, indexMeta.getNodeState(), both, maxTraversal));
+
+        // the number of distinct keys is not used unless it is complete
+        index.setProperty(keyCountPropName, approxKeyCount, Type.LONG);
+        Assert.assertEquals(approxCommonCount + 10 * DEFAULT_RESOLUTION,
+                store.count(root, indexMeta.getNodeState(), both, maxTraversal));
+
+        // with the number of distinct keys, the average is used instead
+        index.setProperty(KEY_COUNT_COMPLETE_PROPERTY_NAME, true);
+        Assert.assertEquals(approxCommonCount + approxNodeCount / approxKeyCount,
+                store.count(root, indexMeta.getNodeState(), both, maxTraversal));
+
+        // single keys
+        Assert.assertEquals(approxCommonCount,
+                store.count(root, indexMeta.getNodeState(), newHashSet("common"), maxTraversal));
+        Assert.assertEquals(1,
+                store.count(root, indexMeta.getNodeState(), newHashSet("rare"), maxTraversal));
+
+        // with entryCount but without keyCount, the number of distinct keys is used
+        indexMeta.setProperty(ENTRY_COUNT_PROPERTY_NAME, approxNodeCount, Type.LONG);
+        Assert.assertEquals(approxNodeCount / approxKeyCount + 1,
+                store.count(root, indexMeta.getNodeState(), KEY, maxTraversal));
+    }
+
+    @Test
+    public void testKeyCountMaintained() {
+        IndexStoreStrategy store = new ContentMirrorStoreStrategy();
+        NodeBuilder builder = EMPTY_NODE.builder();
+        Supplier<NodeBuilder> index = () -> builder;
+        for (int i = 0; i < 5000; i++) {
+            Set<String> key = newHashSet("key" + i);
+            store.update(index, "a", null, null, EMPTY, key);
+            store.update(index, "b", null, null, EMPTY, key);
+        }
+        long keyCount = ApproximateCounter.getCountSync(
+                builder.getNodeState(), KEY_COUNT_PROPERTY_PREFIX);
+        Assert.assertTrue("keyCount: " + keyCount, keyCount > 500 && keyCount < 50000);
+    }
+
+    @Test
+    public void testKeyCountCompleteOnlyForNewContent() {
+        IndexStoreStrategy store = new ContentMirrorStoreStrategy();
+        Set<String> key = newHashSet("key");
+
+        // index content created by the update, as on reindex
+        NodeBuilder indexMeta = EMPTY_NODE.builder();
+        store.update(() -> indexMeta.child(INDEX_CONTENT_NODE_NAME), "a", null, indexMeta, EMPTY, key);
+        Assert.assertTrue(indexMeta.getChildNode(INDEX_CONTENT_NODE_NAME)
+                .getBoolean(KEY_COUNT_COMPLETE_PROPERTY_NAME));
+
+        // existing index content, where keys were added before
+        NodeBuilder existing = EMPTY_NODE.builder();
+        existing.child(INDEX_CONTENT_NODE_NAME).child("old").child("b").setProperty("match", true);
+        store.update(() -> existing.child(INDEX_CONTENT_NODE_NAME), "a", null, existing, EMPTY, key);
+        Assert.assertFalse(existing.getChildNode(INDEX_CONTENT_NODE_NAME)
+                .hasProperty(KEY_COUNT_COMPLETE_PROPERTY_NAME));
+    }
+
     @Test
     public void testIndexCountersUsageWithPathRestriction() {
         final String subPathName = "sub-path";
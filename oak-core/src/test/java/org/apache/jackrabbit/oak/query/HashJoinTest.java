@@ -0,0 +1,201 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.index.Cursors;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.Filter.PropertyRestriction;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex.AdvancedQueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.jetbrains.annotations.NotNull;
+import org.junit.Test;
+
+import com.google.common.collect.ImmutableList;
+
+/**
+ * Tests joins that are executed as hash joins.
+ */
+public class HashJoinTest extends AbstractQueryTest {
+
+    private final TestIndex index = new TestIndex();
+
+    @Override
+    protected ContentRepository createRepository() {
+        return new Oak()
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .with(new QueryIndexProvider() {
+                    @NotNull
+                    @Override
+                    public List<? extends QueryIndex> getQueryIndexes(NodeState nodeState) {
+                        return ImmutableList.of(index);
+                    }
+                })
+                .createContentRepository();
+    }
+
+    private static final String QUERY = 
+            "select p.[jcr:path], c.[jcr:path] from [nt:base] as p " + 
+            "inner join [nt:base] as c on p.id = c.p " +
+            "where isdescendantnode(p, '/test') and isdescendantnode(c, '/test')";
+
+    private List<String> createContent() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 50; i++) {
+            test.addChild("p" + i).setProperty("id", "" + i);
+        }
+        for (int i = 0; i < 10; i++) {
+            test.addChild("c" + i).setProperty("p", "" + (i * 3));
+            expected.add("/test/p" + (i * 3) + ", /test/c" + i);
+        }
+        root.commit();
+        return expected;
+    }
+
+    @Test
+    public void equiJoin() throws Exception {
+        List<String> expected = createContent();
+        Collections.sort(expected);
+        index.queryCount = 0;
+        assertEquals(expected, executeQuery(QUERY, SQL2));
+        // one query for each side, instead of one query per row
+        assertEquals(2, index.queryCount);
+    }
+
+    @Test
+    public void notHashable() throws Exception {
+        List<String> expected = createContent();
+        // a long value is matched by converting the string value
+        // of the other side, which can't be done using the hash key
+        root.getTree("/test").addChild("d").setProperty("id", 3L);
+        root.commit();
+        expected.add("/test/d, /test/c1");
+        Collections.sort(expected);
+        index.queryCount = 0;
+        assertEquals(expected, executeQuery(QUERY, SQL2));
+        // falls back to a nested loop join
+        assertEquals(12, index.queryCount);
+    }
+
+    /**
+     * An index over the "id" and "p" properties of the nodes below "/test", with a high cost per
+     * execution (as for example a remote index).
+     */
+    private static class TestIndex implements AdvancedQueryIndex, QueryIndex {
+
+        int queryCount;
+
+        @Override
+        public double getMinimumCost() {
+            return 10;
+        }
+
+        @Override
+        public double getCost(Filter filter, NodeState rootState) {
+            return Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public Cursor query(Filter filter, NodeState rootState) {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public String getPlan(Filter filter, NodeState rootState) {
+            return getIndexName();
+        }
+
+        @Override
+        public String getIndexName() {
+            return "test";
+        }
+
+        @Override
+        public List<IndexPlan> getPlans(Filter filter, List<OrderEntry> sortOrder, NodeState rootState) {
+            PropertyRestriction r = getRestriction(filter);
+            if (r == null || filter.getFullTextConstraint() != null) {
+                return Collections.emptyList();
+            }
+            long count = getRows(filter, rootState).size();
+            if (r.first != null) {
+                count = 1;
+            }
+            return ImmutableList.of(new IndexPlan.Builder()
+                    .setCostPerExecution(10)
+                    .setCostPerEntry(1)
+                    .setEstimatedEntryCount(count)
+                    .setFilter(filter)
+                    .setPlanName(getIndexName())
+                    .build());
+        }
+
+        @Override
+        public String getPlanDescription(IndexPlan plan, NodeState root) {
+            return getIndexName();
+        }
+
+        @Override
+        public Cursor query(IndexPlan plan, NodeState rootState) {
+            queryCount++;
+            return new Cursors.PathCursor(getRows(plan.getFilter(), rootState).iterator(), false, null);
+        }
+
+        private static PropertyRestriction getRestriction(Filter filter) {
+            PropertyRestriction r = filter.getPropertyRestriction("id");
+            return r != null ? r : filter.getPropertyRestriction("p");
+        }
+
+        private static List<String> getRows(Filter filter, NodeState rootState) {
+            PropertyRestriction r = getRestriction(filter);
+            List<String> rows = new ArrayList<String>();
+            for (ChildNodeEntry e : rootState.getChildNode("test").getChildNodeEntries()) {
+                PropertyState p = e.getNodeState().getProperty(r.propertyName);
+                if (p == null) {
+                    continue;
+                }
+                PropertyValue first = r.first;
+                if (first != null && first == r.last
+                        && !first.getValue(Type.STRING).equals(p.getValue(Type.STRING))) {
+                    continue;
+                }
+                rows.add("/test/" + e.getName());
+            }
+            return rows;
+        }
+
+    }
+
+}
@@ -20,14 +20,25 @@ import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
+import java.io.File;
+import java.lang.reflect.Field;
 import java.util.Collections;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Comparator;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.NoSuchElementException;
 import java.util.Random;
+import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.atomic.AtomicInteger;
 
+import org.apache.jackrabbit.oak.query.FilterIterators.SpillCodec;
 import org.junit.Test;
 
 import com.google.common.collect.Lists;
@@ -194,6 +205,131 @@ public class IteratorsTest {
 
 }
 
+    @Test
+    public void spillToDisk() {
+        QueryEngineSettings small = new QueryEngineSettings();
+        small.setLimitInMemory(3);
+        IntCodec codec = new IntCodec();
+
+        // distinct keeps the first occurrence, in the original order
+        assertEquals("3, 1, 4, 5, 9, 2, 6", 
+                toString(FilterIterators.newDistinct(
+                it(3, 1, 4, 1, 5, 9, 2, 6, 5, 3, 5), small, codec)));
+        
+        // order by
+        assertEquals("1, 1, 2, 3, 3, 4, 5, 5, 5, 6, 9", 
+                toString(FilterIterators.newSort(
+                it(3, 1, 4, 1, 5, 9, 2, 6, 5, 3, 5), INT_COMP, Integer.MAX_VALUE, small, codec)));
+
+        // distinct & limit & offset & order by
+        assertEquals("3, 4, 5", 
+                toString(FilterIterators.newCombinedFilter(
+                it(3, 1, 4, 1, 5, 9, 2, 6, 5, 3, 5), true, 3, 2, INT_COMP, small, codec)));
+        assertTrue(codec.spilled > 0);
+
+        // a small limit keeps the entries in memory
+        codec.spilled = 0;
+        assertEquals("1", 
+                toString(FilterIterators.newCombinedFilter(
+                it(3, 1, 4, 1, 5, 9, 2, 6, 5, 3, 5), false, 1, 0, INT_COMP, small, codec)));
+        assertEquals(0, codec.spilled);
+
+        // without codec, the in-memory limit applies
+        try {
+            toString(FilterIterators.newSort(
+                    it(3, 1, 4, 1, 5), INT_COMP, Integer.MAX_VALUE, small));
+            fail();
+        } catch (UnsupportedOperationException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void spillToDiskRandom() {
+        QueryEngineSettings small = new QueryEngineSettings();
+        small.setLimitInMemory(100);
+        Random r = new Random(1);
+        List<Integer> list = new ArrayList<Integer>();
+        for (int i = 0; i < 5000; i++) {
+            list.add(r.nextInt(2000));
+        }
+        Integer[] data = list.toArray(new Integer[0]);
+
+        List<Integer> expected = new ArrayList<Integer>(new LinkedHashSet<Integer>(list));
+        assertEquals(expected, Lists.newArrayList(FilterIterators.newDistinct(
+                it(data), small, new IntCodec())));
+
+        expected = new ArrayList<Integer>(list);
+        Collections.sort(expected);
+        assertEquals(expected, Lists.newArrayList(FilterIterators.newSort(
+                it(data), INT_COMP, Integer.MAX_VALUE, small, new IntCodec())));
+
+        expected = new ArrayList<Integer>(new TreeSet<Integer>(list)).subList(10, 160);
+        assertEquals(expected, Lists.newArrayList(FilterIterators.newCombinedFilter(
+                it(data), true, 150, 10, INT_COMP, small, new IntCodec())));
+    }
+
+    @Test
+    public void spillToDiskTemporaryFiles() {
+        QueryEngineSettings small = new QueryEngineSettings();
+        small.setLimitInMemory(3);
+        Set<String> before = temporaryFiles();
+
+        // the limit is reached before all entries were read
+        assertEquals("1, 2", 
+                toString(FilterIterators.newCombinedFilter(
+                it(3, 1, 4, 1, 5, 9, 2, 6, 5, 3, 5), true, 2, 0, INT_COMP, small, new IntCodec())));
+
+        // the result is abandoned
+        Iterator<Integer> it = FilterIterators.newSort(
+                it(3, 1, 4, 1, 5, 9, 2, 6, 5, 3, 5), INT_COMP, Integer.MAX_VALUE, small, new IntCodec());
+        assertEquals(1, (int) it.next());
+        assertEquals(before, temporaryFiles());
+
+        // the result is closed
+        it = FilterIterators.newCombinedFilter(
+                it(3, 1, 4, 1, 5, 9, 2, 6, 5, 3, 5), true, 5, 1, INT_COMP, small, new IntCodec());
+        assertEquals(2, (int) it.next());
+        FilterIterators.close(it);
+        assertFalse(it.hasNext());
+        assertEquals(before, temporaryFiles());
+    }
+
+    @Test
+    public void spillToDiskNotDeletedOnExit() {
+        Class<?> hook;
+        Set<?> files;
+        try {
+            hook = Class.forName("java.io.DeleteOnExitHook");
+            Field f = hook.getDeclaredField("files");
+            f.setAccessible(true);
+            files = (Set<?>) f.get(null);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            // not accessible in this JVM
+            assumeTrue(false);
+            return;
+        }
+        int before;
+        synchronized (hook) {
+            before = files.size();
+        }
+        QueryEngineSettings small = new QueryEngineSettings();
+        small.setLimitInMemory(3);
+        assertEquals("1, 1, 2, 3, 3, 4, 5, 5, 5, 6, 9", toString(FilterIterators.newSort(
+                it(3, 1, 4, 1, 5, 9, 2, 6, 5, 3, 5), INT_COMP, Integer.MAX_VALUE, small, new IntCodec())));
+        // the temporary files are deleted explicitly, and are not
+        // remembered until the JVM stops
+        synchronized (hook) {
+            assertEquals(before, files.size());
+        }
+    }
+
+    private static Set<String> temporaryFiles() {
+        String[] names = new File(System.getProperty("java.io.tmpdir")).list(
+                (dir, name) -> name.startsWith("oak-query") || name.startsWith("sortInBatch"));
+        return new HashSet<String>(Arrays.asList(names));
+    }
+
     private static <K> Iterator<K> it(K... x) {
         return Collections.unmodifiableCollection(Lists.newArrayList(x)).iterator();
     }
@@ -222,5 +358,34 @@ public class IteratorsTest {
         }
         return buff.toString();
     }
+
+    /**
+     * A codec for integers, that counts the spilled bytes.
+     */
+    private static class IntCodec implements SpillCodec<Integer> {
+
+        long spilled;
+
+        @Override
+        public String encode(Integer entry) {
+            return entry.toString();
+        }
+
+        @Override
+        public Integer decode(String line) {
+            return Integer.valueOf(line);
+        }
+
+        @Override
+        public String getKey(Integer entry) {
+            return entry.toString();
+        }
+
+        @Override
+        public void spilled(long bytes) {
+            spilled += bytes;
+        }
+
+    }
     
 }
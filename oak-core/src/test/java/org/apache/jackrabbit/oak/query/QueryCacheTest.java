@@ -0,0 +1,208 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static com.google.common.collect.ImmutableList.of;
+import static org.apache.jackrabbit.oak.plugins.index.IndexConstants.INDEX_DEFINITIONS_NAME;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.google.common.base.Ticker;
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.plugins.index.IndexUtils;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexEditorProvider;
+import org.apache.jackrabbit.oak.plugins.index.property.PropertyIndexProvider;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.junit.Test;
+
+public class QueryCacheTest extends AbstractQueryTest {
+
+    private static final Map<String, String> NO_MAPPINGS = Collections.emptyMap();
+
+    private static final Map<String, PropertyValue> NO_BINDINGS = Collections.emptyMap();
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    @Override
+    protected ContentRepository createRepository() {
+        return new Oak()
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .with(new PropertyIndexEditorProvider())
+                .with(new PropertyIndexProvider())
+                .with(settings)
+                .createContentRepository();
+    }
+
+    @Test
+    public void repeatedQueries() throws Exception {
+        Tree index = root.getTree("/oak:index");
+        IndexUtils.createIndexDefinition(index, "x", false, new String[] {"x"});
+        IndexUtils.createIndexDefinition(index, "y", false, new String[] {"y"});
+        root.commit();
+
+        Tree t = root.getTree("/").addChild("test");
+        t.addChild("a").setProperty("x", "1");
+        t.addChild("b").setProperty("y", "2");
+        t.addChild("c").setProperty("x", "3");
+        root.commit();
+
+        QueryCache cache = settings.getQueryCache();
+        String xpath = "/jcr:root/test/*[@x = '1' or @y = '2']";
+        for (int i = 0; i < 3; i++) {
+            assertEquals(of("/test/a", "/test/b"), executeQuery(xpath, XPATH, true));
+        }
+        assertEquals(1, cache.getConversionMisses());
+        assertEquals(2, cache.getConversionHits());
+        assertEquals(1, cache.getSelectionMisses());
+        assertEquals(2, cache.getSelectionHits());
+        assertTrue(settings.getQueryStats().getQueryCacheStats().contains("\"selectionHits\": 2"));
+
+        settings.getQueryStats().invalidateQueryCache();
+        assertEquals(0, cache.getConversionCount());
+        assertEquals(0, cache.getSelectionCount());
+        assertEquals(of("/test/a", "/test/b"), executeQuery(xpath, XPATH, true));
+        assertEquals(2, cache.getConversionMisses());
+
+        settings.getQueryStats().resetStats();
+        assertEquals(0, cache.getConversionHits());
+        assertEquals(0, cache.getConversionMisses());
+    }
+
+    @Test
+    public void bounded() {
+        QueryCache cache = new QueryCache(2, 1, TimeUnit.HOURS);
+        cache.putConversion("a", "A");
+        cache.putConversion("b", "B");
+        assertEquals("A", cache.getConversion("a"));
+        cache.putConversion("c", "C");
+        assertEquals(2, cache.getConversionCount());
+        // "b" was the least recently used entry
+        assertEquals(null, cache.getConversion("b"));
+        assertEquals("A", cache.getConversion("a"));
+        assertEquals("C", cache.getConversion("c"));
+    }
+
+    @Test
+    public void selectionExpires() {
+        AtomicLong nanos = new AtomicLong();
+        QueryCache cache = new QueryCache(10, 1, TimeUnit.MILLISECONDS, new Ticker() {
+            @Override
+            public long read() {
+                return nanos.get();
+            }
+        });
+        cache.putSelection("x", SQL2, NO_MAPPINGS, NO_BINDINGS, 1);
+        assertEquals(1, cache.getSelection("x", SQL2, NO_MAPPINGS, NO_BINDINGS));
+        nanos.addAndGet(TimeUnit.MILLISECONDS.toNanos(2));
+        assertEquals(-1, cache.getSelection("x", SQL2, NO_MAPPINGS, NO_BINDINGS));
+        assertEquals(0, cache.getSelectionCount());
+    }
+
+    @Test
+    public void selectionDependsOnBindings() {
+        QueryCache cache = new QueryCache(10, 1, TimeUnit.HOURS);
+        Map<String, PropertyValue> a = Collections.singletonMap("v", PropertyValues.newString("a"));
+        Map<String, PropertyValue> b = Collections.singletonMap("v", PropertyValues.newString("b"));
+        cache.putSelection("x", SQL2, NO_MAPPINGS, a, 1);
+        assertEquals(1, cache.getSelection("x", SQL2, NO_MAPPINGS,
+                Collections.singletonMap("v", PropertyValues.newString("a"))));
+        assertEquals(-1, cache.getSelection("x", SQL2, NO_MAPPINGS, b));
+    }
+
+    @Test
+    public void indexDefinitionChangeInvalidatesSelections() throws Exception {
+        Tree index = root.getTree("/oak:index");
+        IndexUtils.createIndexDefinition(index, "x", false, new String[] {"x"});
+        root.commit();
+        Tree t = root.getTree("/").addChild("test");
+        t.addChild("a").setProperty("x", "1");
+        root.commit();
+
+        QueryCache cache = settings.getQueryCache();
+        String sql2 = "select [jcr:path] from [nt:base] where [x] = '1'";
+        executeQuery(sql2, SQL2);
+        assertEquals(1, cache.getSelectionCount());
+
+        // changes of the indexed content keep the selection
+        t.addChild("b").setProperty("x", "1");
+        root.commit();
+        executeQuery(sql2, SQL2);
+        assertEquals(1, cache.getSelectionHits());
+
+        // changes of the index definitions drop it
+        root.getTree("/oak:index/x").setProperty("entryCount", 10L);
+        root.commit();
+        executeQuery(sql2, SQL2);
+        assertEquals(1, cache.getSelectionHits());
+        assertEquals(2, cache.getSelectionMisses());
+    }
+
+    @Test
+    public void nestedIndexDefinitionChangeInvalidatesSelections() throws Exception {
+        Tree index = root.getTree("/oak:index");
+        IndexUtils.createIndexDefinition(index, "x", false, new String[] {"x"});
+        root.commit();
+        Tree t = root.getTree("/").addChild("test");
+        t.addChild("a").setProperty("x", "1");
+        root.commit();
+
+        QueryCache cache = settings.getQueryCache();
+        String sql2 = "select [jcr:path] from [nt:base] where [x] = '1'";
+        executeQuery(sql2, SQL2);
+        assertEquals(1, cache.getSelectionMisses());
+
+        // a child node of an index definition
+        root.getTree("/oak:index/x").addChild("rules").setProperty("y", 1L);
+        root.commit();
+        executeQuery(sql2, SQL2);
+        assertEquals(2, cache.getSelectionMisses());
+
+        // an index definition below the root
+        Tree nested = root.getTree("/test").addChild(INDEX_DEFINITIONS_NAME);
+        IndexUtils.createIndexDefinition(nested, "y", false, new String[] {"y"});
+        root.commit();
+        executeQuery(sql2, SQL2);
+        assertEquals(3, cache.getSelectionMisses());
+
+        root.getTree("/test/oak:index/y").setProperty("entryCount", 10L);
+        root.commit();
+        executeQuery(sql2, SQL2);
+        assertEquals(4, cache.getSelectionMisses());
+        assertEquals(0, cache.getSelectionHits());
+    }
+
+    @Test
+    public void disabled() {
+        QueryCache cache = new QueryCache(0, 1, TimeUnit.HOURS);
+        cache.putConversion("a", "A");
+        cache.putSelection("x", SQL2, NO_MAPPINGS, NO_BINDINGS, 1);
+        assertEquals(null, cache.getConversion("a"));
+        assertEquals(-1, cache.getSelection("x", SQL2, NO_MAPPINGS, NO_BINDINGS));
+    }
+
+}
@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.apache.jackrabbit.oak.api.QueryEngine.NO_BINDINGS;
+import static org.apache.jackrabbit.oak.api.QueryEngine.NO_MAPPINGS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.util.Iterator;
+
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.QueryControl;
+import org.apache.jackrabbit.oak.api.ResultRow;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.junit.Test;
+
+import com.google.common.collect.Iterators;
+
+/**
+ * Tests queries that are cancelled, or that reach their deadline.
+ */
+public class QueryControlTest extends AbstractQueryTest {
+
+    private static final String QUERY =
+            "select [jcr:path] from [nt:base] where isdescendantnode('/test')";
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    @Override
+    protected ContentRepository createRepository() {
+        return new Oak()
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .with(settings)
+                .createContentRepository();
+    }
+
+    private void createContent() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        for (int i = 0; i < 10; i++) {
+            test.addChild("n" + i);
+        }
+        root.commit();
+    }
+
+    @Test
+    public void cancel() throws Exception {
+        createContent();
+        QueryControl control = QueryControl.newInstance();
+        Iterator<? extends ResultRow> it = qe.executeQuery(QUERY, SQL2, 
+                Long.MAX_VALUE, 0, NO_BINDINGS, NO_MAPPINGS, control).getRows().iterator();
+        assertTrue(it.next().getValue("jcr:path").getValue(Type.STRING).startsWith("/test/n"));
+        control.cancel();
+        try {
+            it.next();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assertEquals("The query was cancelled; processing was stopped.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void cancelWithPrefetch() throws Exception {
+        createContent();
+        settings.setPrefetch(true);
+        QueryControl control = QueryControl.newInstance();
+        Iterator<? extends ResultRow> it = qe.executeQuery(QUERY, SQL2, 
+                Long.MAX_VALUE, 0, NO_BINDINGS, NO_MAPPINGS, control).getRows().iterator();
+        assertTrue(it.next().getValue("jcr:path").getValue(Type.STRING).startsWith("/test/n"));
+        // the rows are read in the background
+        control.cancel();
+        try {
+            it.next();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assertEquals("The query was cancelled; processing was stopped.", e.getMessage());
+        }
+    }
+
+    @Test
+    public void deadline() throws Exception {
+        createContent();
+        QueryControl control = QueryControl.withDeadline(System.currentTimeMillis() - 1);
+        try {
+            qe.executeQuery(QUERY, SQL2, Long.MAX_VALUE, 0, NO_BINDINGS, NO_MAPPINGS, 
+                    control).getRows().iterator().hasNext();
+            fail();
+        } catch (UnsupportedOperationException e) {
+            assertEquals("The query reached its deadline; processing was stopped.", e.getMessage());
+        }
+
+        control = QueryControl.withTimeout(Long.MAX_VALUE);
+        assertEquals(Long.MAX_VALUE, control.getDeadline());
+        Iterator<? extends ResultRow> it = qe.executeQuery(QUERY, SQL2, 
+                Long.MAX_VALUE, 0, NO_BINDINGS, NO_MAPPINGS, control).getRows().iterator();
+        assertEquals(10, Iterators.size(it));
+    }
+
+}
@@ -18,15 +18,21 @@
 package org.apache.jackrabbit.oak.query;
 
 import com.google.common.collect.Maps;
+import com.google.common.collect.ImmutableList;
 import org.apache.jackrabbit.oak.api.PropertyValue;
+import org.apache.jackrabbit.oak.api.Tree;
 import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
 import org.junit.Test;
 
 import java.util.Map;
 
+import static org.apache.jackrabbit.oak.plugins.memory.PropertyValues.newLong;
 import static org.apache.jackrabbit.oak.plugins.memory.PropertyValues.newString;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
@@ -53,4 +59,38 @@ public class ResultRowImplTest {
         assertEquals("origVal", mappedVals[0].getValue(Type.STRING));
         assertEquals("val1", mappedVals[1].getValue(Type.STRING));
     }
+
+    @Test
+    public void spillCodec() {
+        Query query = mock(Query.class);
+        Tree tree = mock(Tree.class);
+        when(tree.getPath()).thenReturn("/a\tb");
+        when(query.getTree("/a\tb")).thenReturn(tree);
+
+        PropertyValue[] values = new PropertyValue[]{newString("x\ny"), newLong(1L),
+                PropertyValues.newName(ImmutableList.of("a", "b")), null};
+        PropertyValue[] orderValues = new PropertyValue[]{newLong(1L)};
+        ResultRowImpl row = new ResultRowImpl(query, new Tree[]{tree, null}, values,
+                new boolean[]{true, true, true, false}, orderValues);
+
+        ResultRowSpillCodec codec = new ResultRowSpillCodec(query);
+        String line = codec.encode(row);
+        assertEquals(-1, line.indexOf('\n'));
+        ResultRowImpl copy = codec.decode(line);
+        assertEquals(row, copy);
+        assertArrayEquals(new String[]{"/a\tb", null}, copy.getPaths());
+        assertArrayEquals(values, copy.getValues());
+        assertArrayEquals(orderValues, copy.getOrderValues());
+
+        String key = codec.getKey(row);
+        assertEquals(-1, key.indexOf('\t'));
+        assertEquals(key, codec.getKey(copy));
+        values[1] = newLong(2L);
+        assertNotEquals(key, codec.getKey(new ResultRowImpl(query, new Tree[]{tree, null}, values,
+                new boolean[]{true, true, true, false}, orderValues)));
+
+        values[3] = PropertyValues.newBinary(new byte[1]);
+        assertNull(codec.encode(new ResultRowImpl(query, new Tree[]{tree, null}, values,
+                null, orderValues)));
+    }
 }
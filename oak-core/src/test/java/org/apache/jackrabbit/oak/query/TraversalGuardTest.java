@@ -0,0 +1,84 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query;
+
+import static org.apache.jackrabbit.oak.api.QueryEngine.NO_BINDINGS;
+import static org.apache.jackrabbit.oak.api.QueryEngine.NO_MAPPINGS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.Oak;
+import org.apache.jackrabbit.oak.api.ContentRepository;
+import org.apache.jackrabbit.oak.api.Result;
+import org.apache.jackrabbit.oak.api.ResultRow;
+import org.apache.jackrabbit.oak.api.Tree;
+import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.junit.Test;
+
+/**
+ * Tests the estimate of the number of nodes a traversal reads.
+ */
+public class TraversalGuardTest extends AbstractQueryTest {
+
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    @Override
+    protected ContentRepository createRepository() {
+        settings.setLimitReads(100);
+        settings.setTraversalGuardSample(10);
+        return new Oak()
+                .with(new OpenSecurityProvider())
+                .with(new InitialContent())
+                .with(settings)
+                .createContentRepository();
+    }
+
+    private void createContent() throws Exception {
+        Tree test = root.getTree("/").addChild("test");
+        for (int i = 0; i < 20; i++) {
+            Tree n = test.addChild("n" + i);
+            for (int j = 0; j < 9; j++) {
+                n.addChild("c" + j);
+            }
+        }
+        root.commit();
+    }
+
+    @Test
+    public void extrapolatedEstimateWithLimit() throws Exception {
+        createContent();
+        // after reading the subtree of the first of 20 child nodes,
+        // 200 nodes are estimated, which is above the read limit;
+        // but the estimate is extrapolated, and the query has a limit,
+        // so it reads only the nodes it needs
+        Result result = qe.executeQuery(
+                "select [jcr:path] from [nt:base] as a " + 
+                "where isdescendantnode(a, '/test') and name(a) = 'c0'", SQL2, 
+                2, 0, NO_BINDINGS, NO_MAPPINGS);
+        List<String> paths = new ArrayList<String>();
+        for (ResultRow row : result.getRows()) {
+            assertTrue(row.getPath(), row.getPath().endsWith("/c0"));
+            paths.add(row.getPath());
+        }
+        assertEquals(2, paths.size());
+    }
+
+}
@@ -17,6 +17,7 @@
 
 package org.apache.jackrabbit.oak.query;
 
+import com.google.common.collect.ImmutableList;
 import com.google.common.collect.Lists;
 import org.apache.jackrabbit.oak.Oak;
 import org.apache.jackrabbit.oak.api.ContentRepository;
@@ -25,22 +26,46 @@ import org.apache.jackrabbit.oak.api.Result;
 import org.apache.jackrabbit.oak.api.ResultRow;
 import org.apache.jackrabbit.oak.api.Tree;
 import org.apache.jackrabbit.oak.InitialContent;
+import org.apache.jackrabbit.oak.plugins.index.Cursors;
+import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.Filter;
+import org.apache.jackrabbit.oak.spi.query.IndexRow;
+import org.apache.jackrabbit.oak.spi.query.NodeAggregator;
+import org.apache.jackrabbit.oak.spi.query.QueryIndex;
+import org.apache.jackrabbit.oak.spi.query.QueryIndexProvider;
 import org.apache.jackrabbit.oak.spi.security.OpenSecurityProvider;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.junit.After;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class UnionQueryTest extends AbstractQueryTest {
 
+    private final QueryEngineSettings settings = new QueryEngineSettings();
+
+    private final ThreadRecordingIndex fulltextIndex = new ThreadRecordingIndex();
+
     @Override
     protected ContentRepository createRepository() {
         return new Oak()
                 .with(new OpenSecurityProvider())
                 .with(new InitialContent())
+                .with(settings)
+                .with(new QueryIndexProvider() {
+                    @Override
+                    public List<? extends QueryIndex> getQueryIndexes(NodeState nodeState) {
+                        return ImmutableList.of(fulltextIndex);
+                    }
+                })
                 .createContentRepository();
     }
 
@@ -96,4 +121,118 @@ public class UnionQueryTest extends AbstractQueryTest {
             assertEquals(rr.getPath(), expected[i++]);
         }
     }
+
+    @Test
+    public void explainProfile() throws Exception {
+        String query = "SELECT [jcr:path] FROM [nt:base] AS a " + 
+                "WHERE ISDESCENDANTNODE(a, '/UnionQueryTest/a') AND NAME(a) <> 'c'";
+        String plan = executeQuery("explain profile measure " + query, SQL2).get(0);
+        // the selector was executed, and the plan contains its profile
+        assertTrue(plan, plan.matches(".* /\\* profile: read 4, denied 0, filtered 1, returned 3, " + 
+                "cursor \\d+ ms, access \\d+ ms, filter \\d+ ms \\*/ cost: .*"));
+
+        // "explain measure" does not run the query
+        plan = executeQuery("explain measure " + query, SQL2).get(0);
+        assertFalse(plan, plan.contains("profile:"));
+        assertTrue(plan, plan.contains(" cost: "));
+    }
+
+    @Test
+    public void parallel() throws Exception {
+        String left = "SELECT [jcr:path] FROM [nt:base] AS a WHERE ISDESCENDANTNODE(a, '/UnionQueryTest/a')";
+        String right = "SELECT [jcr:path] FROM [nt:base] AS a WHERE ISDESCENDANTNODE(a, '/UnionQueryTest/a/b/c')";
+        String union = String.format("%s UNION %s ORDER BY [jcr:path]", left, right);
+
+        List<String> serial = executeQuery(union, SQL2);
+        assertEquals("[/UnionQueryTest/a/b, /UnionQueryTest/a/b/c, " + 
+                "/UnionQueryTest/a/b/c/d, /UnionQueryTest/a/b/c/d/e]", serial.toString());
+
+        settings.setParallelUnion(true);
+        try {
+            assertEquals(serial, executeQuery(union, SQL2));
+            assertEquals(serial, executeQuery(String.format("%s UNION %s", left, right), SQL2));
+
+            // the plan contains the row counts and timings of the branches
+            String plan = executeQuery("explain profile " + union, SQL2).get(0);
+            assertTrue(plan, plan.matches(".* /\\* rows: 4, time: \\d+ ms, parallel \\*/ union .*"));
+            assertTrue(plan, plan.matches(".* /\\* rows: 2, time: \\d+ ms, parallel \\*/"));
+        } finally {
+            settings.setParallelUnion(false);
+        }
+    }
+
+    @Test
+    public void parallelFulltextInCallingThread() throws Exception {
+        String left = "SELECT [jcr:path] FROM [nt:base] AS a WHERE CONTAINS(a.*, 'x')";
+        String right = "SELECT [jcr:path] FROM [nt:base] AS a WHERE ISDESCENDANTNODE(a, '/UnionQueryTest/a/b/c')";
+        String union = String.format("%s UNION %s ORDER BY [jcr:path]", left, right);
+
+        settings.setParallelUnion(true);
+        try {
+            assertEquals("[/UnionQueryTest/a, /UnionQueryTest/a/b/c/d, /UnionQueryTest/a/b/c/d/e]",
+                    executeQuery(union, SQL2).toString());
+        } finally {
+            settings.setParallelUnion(false);
+        }
+        // the full-text index checks access rights while reading, so it
+        // must not be read from another thread
+        assertEquals(Collections.singleton(Thread.currentThread()), fulltextIndex.threads);
+    }
+
+    /**
+     * A full-text index that records the threads its rows are read from.
+     */
+    private static class ThreadRecordingIndex implements QueryIndex.FulltextQueryIndex {
+
+        final Set<Thread> threads = Collections.synchronizedSet(new HashSet<Thread>());
+
+        @Override
+        public double getMinimumCost() {
+            return 1;
+        }
+
+        @Override
+        public double getCost(Filter filter, NodeState rootState) {
+            return filter.getFullTextConstraint() != null ? 1 : Double.POSITIVE_INFINITY;
+        }
+
+        @Override
+        public Cursor query(final Filter filter, NodeState rootState) {
+            final Cursor c = Cursors.newPathCursor(
+                    ImmutableList.of("/UnionQueryTest/a"), filter.getQueryLimits());
+            return new Cursors.AbstractCursor() {
+
+                @Override
+                public boolean hasNext() {
+                    threads.add(Thread.currentThread());
+                    return c.hasNext();
+                }
+
+                @Override
+                public IndexRow next() {
+                    threads.add(Thread.currentThread());
+                    IndexRow row = c.next();
+                    filter.isAccessible(row.getPath());
+                    return row;
+                }
+
+            };
+        }
+
+        @Override
+        public String getPlan(Filter filter, NodeState rootState) {
+            return "fulltext";
+        }
+
+        @Override
+        public String getIndexName() {
+            return "fulltext";
+        }
+
+        @Override
+        public NodeAggregator getNodeAggregator() {
+            return null;
+        }
+
+    }
 }
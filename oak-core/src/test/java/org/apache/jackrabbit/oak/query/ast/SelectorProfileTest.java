@@ -0,0 +1,36 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.query.ast;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class SelectorProfileTest {
+
+    @Test
+    public void sampleRate() {
+        assertEquals(0, new SelectorProfile(0).getSampleRate());
+        assertEquals(0, new SelectorProfile(-5).getSampleRate());
+        assertEquals(1, new SelectorProfile(1).getSampleRate());
+        assertEquals(64, new SelectorProfile(64).getSampleRate());
+        // rounded down to a power of 2, as used for the sampling mask
+        assertEquals(64, new SelectorProfile(100).getSampleRate());
+        assertEquals(1L << 62, new SelectorProfile(Long.MAX_VALUE).getSampleRate());
+    }
+
+}
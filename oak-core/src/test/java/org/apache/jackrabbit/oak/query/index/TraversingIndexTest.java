@@ -21,13 +21,17 @@ package org.apache.jackrabbit.oak.query.index;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import org.apache.jackrabbit.oak.plugins.memory.PropertyValues;
+import org.apache.jackrabbit.oak.query.ast.Operator;
 import org.apache.jackrabbit.oak.spi.query.Cursor;
+import org.apache.jackrabbit.oak.spi.query.Filter.PathRestriction;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.junit.Test;
@@ -79,4 +83,45 @@ public class TraversingIndexTest {
         assertFalse(c.hasNext());
     }
 
+    @Test
+    public void traversalGuard() throws Exception {
+        NodeBuilder builder = EMPTY_NODE.builder();
+        NodeBuilder test = builder.child("test");
+        for (int i = 0; i < 20; i++) {
+            NodeBuilder n = test.child("n" + i);
+            for (int j = 0; j < 9; j++) {
+                n.child("c" + j);
+            }
+        }
+        NodeState root = builder.getNodeState();
+
+        TraversingIndex t = new TraversingIndex();
+        FilterImpl f = FilterImpl.newTestInstance();
+        f.restrictPath("/test", PathRestriction.DIRECT_CHILDREN);
+        // not potentially slow
+        assertNull(t.getTraversalGuard(f, root, 50));
+
+        f = FilterImpl.newTestInstance();
+        f.restrictPath("/test", PathRestriction.ALL_CHILDREN);
+        assertNull(t.getTraversalGuard(f, root, 0));
+        TraversalGuard guard = t.getTraversalGuard(f, root, 50);
+        Cursor c = t.query(f, root);
+        String path = null;
+        for (int i = 0; i < guard.getSampleSize(); i++) {
+            path = c.next().getPath();
+        }
+        // there is no node counter: "/test" and the subtrees of 4 child
+        // nodes (10 nodes each) were read, and the 5th child node;
+        // so 50 nodes for 5 of 20 child nodes
+        assertEquals(200, guard.estimate(path));
+        assertFalse(guard.isCounted());
+
+        assertNull(guard.suggestIndex());
+        f.restrictProperty("x", Operator.EQUAL, PropertyValues.newString("1"));
+        f.restrictProperty("a/y", Operator.EQUAL, PropertyValues.newString("1"));
+        assertEquals("{\"jcr:primaryType\":\"oak:QueryIndexDefinition\"," + 
+                "\"type\":\"property\",\"propertyNames\":[\"x\"]}",
+                guard.suggestIndex());
+    }
+
 }
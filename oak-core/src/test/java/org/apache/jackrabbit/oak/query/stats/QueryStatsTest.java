@@ -19,7 +19,10 @@ package org.apache.jackrabbit.oak.query.stats;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import javax.management.openmbean.CompositeData;
+
 import org.apache.jackrabbit.oak.query.QueryEngineSettings;
+import org.apache.jackrabbit.oak.query.stats.QueryStatsData.QueryExecutionStats;
 import org.junit.Test;
 
 public class QueryStatsTest {
@@ -56,4 +59,37 @@ public class QueryStatsTest {
         }
         assertTrue(json.indexOf("old") < 0);
     }
+
+    @Test
+    public void profile() {
+        QueryStatsMBeanImpl bean = new QueryStatsMBeanImpl(new QueryEngineSettings());
+        QueryExecutionStats stats = bean.getQueryExecution("test", "");
+        stats.execute(1000);
+        stats.scan(3, 3);
+        stats.deny(1);
+        stats.filter(1);
+        stats.time(2000000, 3000000, 4000000);
+        CompositeData data = (CompositeData) bean.getPopularQueries().values().iterator().next();
+        assertEquals(1L, data.get("rowsDenied"));
+        assertEquals(1L, data.get("rowsFiltered"));
+        assertEquals(2L, data.get("cursorTimeMillis"));
+        assertEquals(3L, data.get("accessTimeMillis"));
+        assertEquals(4L, data.get("filterTimeMillis"));
+        assertTrue(bean.asJson().indexOf("\"accessNanos\":3000000") >= 0);
+    }
+
+    @Test
+    public void traversal() {
+        QueryStatsMBeanImpl bean = new QueryStatsMBeanImpl(new QueryEngineSettings());
+        bean.getQueryExecution("indexed", "").execute(1000);
+        QueryExecutionStats stats = bean.getQueryExecution("traversal", "");
+        stats.execute(1000);
+        stats.traversal(200000, "{\"type\":\"property\"}");
+        stats.traversal(100000, null);
+        assertEquals(1, bean.getTraversalQueries().size());
+        CompositeData data = (CompositeData) bean.getTraversalQueries().values().iterator().next();
+        assertEquals("traversal", data.get("statement"));
+        assertEquals(200000L, data.get("traversalEstimate"));
+        assertEquals("{\"type\":\"property\"}", data.get("suggestedIndex"));
+    }
 }
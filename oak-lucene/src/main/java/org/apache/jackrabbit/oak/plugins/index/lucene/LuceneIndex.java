@@ -355,6 +355,8 @@ public class LuceneIndex implements AdvanceFulltextQueryIndex {
                 if (noDocs) {
                     return false;
                 }
+                // don't search the next batch if the query was cancelled
+                settings.checkCancelled();
 
                 ScoreDoc lastDocToRecord = null;
 
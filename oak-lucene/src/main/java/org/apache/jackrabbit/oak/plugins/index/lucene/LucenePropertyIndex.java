@@ -318,6 +318,8 @@ public class LucenePropertyIndex extends FulltextIndex {
                 if (noDocs) {
                     return false;
                 }
+                // don't search the next batch if the query was cancelled
+                settings.checkCancelled();
 
                 ScoreDoc lastDocToRecord = null;
 
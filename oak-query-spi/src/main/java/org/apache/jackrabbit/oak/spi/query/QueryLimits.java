@@ -28,4 +28,15 @@ public interface QueryLimits {
 
     boolean getFailTraversal();
 
+    /**
+     * Check whether the query may continue, that is, whether it was not
+     * cancelled and did not reach its deadline. Indexes that read many
+     * entries should call this regularly, for example before reading the
+     * next batch of entries.
+     *
+     * @throws UnsupportedOperationException if the query was stopped
+     */
+    default void checkCancelled() {
+    }
+
 }
@@ -42,6 +42,16 @@ class CheckCommand implements Command {
             .ofType(Long.class)
             .defaultsTo(Long.MAX_VALUE);
         OptionSpec<?> bin = parser.accepts("bin", "read the content of binary properties");
+        OptionSpec<Integer> binSample = parser.accepts("bin-sample", "only read one in this many binary properties (with --bin)")
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(1);
+        OptionSpec<Integer> threads = parser.accepts("threads", "number of threads traversing each content tree")
+            .withRequiredArg()
+            .ofType(Integer.class)
+            .defaultsTo(1);
+        OptionSpec<?> skipVerified = parser.accepts("skip-verified", "do not traverse again subtrees already verified in another revision or checkpoint");
+        OptionSpec<?> progress = parser.accepts("progress", "print the progress as JSON lines to the standard error");
         OptionSpec<String> filter = parser.accepts("filter", "comma separated content paths to be checked")
             .withRequiredArg()
             .ofType(String.class)
@@ -75,9 +85,16 @@ class CheckCommand implements Command {
             .withCheckpoints(toCheckpointsSet(options, head, cp))
             .withFilterPaths(toSet(options, filter))
             .withIOStatistics(options.has(ioStatistics))
+            .withConcurrency(threads.value(options))
+            .withBinarySampleInterval(binSample.value(options))
+            .withSkipVerified(options.has(skipVerified))
             .withOutWriter(new PrintWriter(System.out, true))
             .withErrWriter(new PrintWriter(System.err, true));
 
+        if (options.has(progress)) {
+            builder.withProgressWriter(new PrintWriter(System.err, true));
+        }
+
         if (options.has(journal)) {
             builder.withJournal(journal.value(options));
         }
@@ -22,24 +22,37 @@ import com.microsoft.azure.storage.blob.CloudBlob;
 import com.microsoft.azure.storage.blob.CloudBlobDirectory;
 import com.microsoft.azure.storage.blob.CloudBlockBlob;
 import com.microsoft.azure.storage.blob.CopyStatus;
+import org.apache.jackrabbit.oak.segment.azure.queue.SegmentWriteQueueStats;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.EnumSet;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -53,16 +66,63 @@ public class AzureArchiveManager implements SegmentArchiveManager {
 
     private static final Logger log = LoggerFactory.getLogger(AzureSegmentArchiveReader.class);
 
+    /**
+     * Number of threads used for opening archives and for reading segments
+     * ahead of time.
+     */
+    static final int LOAD_THREADS = Integer.getInteger("oak.segment.azure.loadThreads", 8);
+
+    private static final ThreadPoolExecutor EXECUTOR = newExecutor();
+
     private final CloudBlobDirectory cloudBlobDirectory;
 
     private final IOMonitor ioMonitor;
 
     private final FileStoreMonitor monitor;
 
+    @Nullable
+    private final AzureSegmentDiskCache diskCache;
+
+    private final SegmentWriteQueueStats writeQueueStats;
+
+    /**
+     * Archive readers created in the background for the archives passed to
+     * {@link #preload(Collection)}. Opening an archive requires listing all of
+     * its segment blobs, so opening them in parallel considerably speeds up
+     * the start-up of a store with many archives. A {@code null} reader
+     * denotes an archive that hasn't been closed correctly.
+     */
+    private final Map<String, CompletableFuture<AzureSegmentArchiveReader>> preloaded = new ConcurrentHashMap<>();
+
     public AzureArchiveManager(CloudBlobDirectory cloudBlobDirectory, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor) {
+        this(cloudBlobDirectory, ioMonitor, fileStoreMonitor, null);
+    }
+
+    public AzureArchiveManager(CloudBlobDirectory cloudBlobDirectory, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor,
+                               @Nullable AzureSegmentDiskCache diskCache) {
+        this(cloudBlobDirectory, ioMonitor, fileStoreMonitor, diskCache, new SegmentWriteQueueStats());
+    }
+
+    public AzureArchiveManager(CloudBlobDirectory cloudBlobDirectory, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor,
+                               @Nullable AzureSegmentDiskCache diskCache, SegmentWriteQueueStats writeQueueStats) {
         this.cloudBlobDirectory = cloudBlobDirectory;
         this.ioMonitor = ioMonitor;
         this.monitor = fileStoreMonitor;
+        this.diskCache = diskCache;
+        this.writeQueueStats = writeQueueStats;
+    }
+
+    private static ThreadPoolExecutor newExecutor() {
+        AtomicInteger counter = new AtomicInteger();
+        ThreadFactory threadFactory = r -> {
+            Thread thread = new Thread(r, "oak-segment-azure-loader-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        ThreadPoolExecutor executor = new ThreadPoolExecutor(LOAD_THREADS, LOAD_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), threadFactory);
+        executor.allowCoreThreadTimeOut(true);
+        return executor;
     }
 
     @Override
@@ -84,14 +144,36 @@ public class AzureArchiveManager implements SegmentArchiveManager {
         }
     }
 
+    @Override
+    public Closeable preload(Collection<String> archiveNames) {
+        for (String archiveName : archiveNames) {
+            preloaded.computeIfAbsent(archiveName, name -> CompletableFuture.supplyAsync(() -> {
+                try {
+                    CloudBlobDirectory archiveDirectory = getDirectory(name);
+                    if (!archiveDirectory.getBlockBlobReference("closed").exists()) {
+                        return null;
+                    }
+                    return newReader(archiveDirectory);
+                } catch (IOException | StorageException | URISyntaxException e) {
+                    throw new IllegalStateException(e);
+                }
+            }, EXECUTOR));
+        }
+        return () -> archiveNames.forEach(this::discardPreloaded);
+    }
+
     @Override
     public SegmentArchiveReader open(String archiveName) throws IOException {
+        AzureSegmentArchiveReader reader = getPreloaded(archiveName);
+        if (reader != null) {
+            return reader;
+        }
         try {
             CloudBlobDirectory archiveDirectory = getDirectory(archiveName);
             if (!archiveDirectory.getBlockBlobReference("closed").exists()) {
                 throw new IOException("The archive " + archiveName + " hasn't been closed correctly.");
             }
-            return new AzureSegmentArchiveReader(archiveDirectory, ioMonitor);
+            return newReader(archiveDirectory);
         } catch (StorageException | URISyntaxException e) {
             throw new IOException(e);
         }
@@ -99,17 +181,68 @@ public class AzureArchiveManager implements SegmentArchiveManager {
 
     @Override
     public SegmentArchiveReader forceOpen(String archiveName) throws IOException {
+        AzureSegmentArchiveReader reader = getPreloaded(archiveName);
+        if (reader != null) {
+            return reader;
+        }
         CloudBlobDirectory archiveDirectory = getDirectory(archiveName);
-        return new AzureSegmentArchiveReader(archiveDirectory, ioMonitor);
+        return newReader(archiveDirectory);
+    }
+
+    private AzureSegmentArchiveReader newReader(CloudBlobDirectory archiveDirectory) throws IOException {
+        return new AzureSegmentArchiveReader(archiveDirectory, ioMonitor, diskCache, EXECUTOR);
+    }
+
+    /**
+     * Take the reader preloaded for {@code archiveName} by {@link
+     * #preload(Collection)}, waiting for it to be created if necessary.
+     *
+     * @return the preloaded reader or {@code null} if there is none, if the
+     * archive hasn't been closed correctly or if preloading failed. The caller
+     * is expected to open the archive on its own in this case.
+     */
+    @Nullable
+    private AzureSegmentArchiveReader getPreloaded(String archiveName) throws IOException {
+        CompletableFuture<AzureSegmentArchiveReader> future = preloaded.remove(archiveName);
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            log.warn("Can't preload archive {}", archiveName, e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Drop the reader preloaded for {@code archiveName}, if it hasn't been
+     * taken yet, and close it once it has been created.
+     */
+    private void discardPreloaded(String archiveName) {
+        CompletableFuture<AzureSegmentArchiveReader> future = preloaded.remove(archiveName);
+        if (future == null) {
+            return;
+        }
+        future.thenAccept(reader -> {
+            if (reader != null) {
+                reader.close();
+            }
+        });
     }
 
     @Override
     public SegmentArchiveWriter create(String archiveName) throws IOException {
-        return new AzureSegmentArchiveWriter(getDirectory(archiveName), ioMonitor, monitor);
+        discardPreloaded(archiveName);
+        return new AzureSegmentArchiveWriter(getDirectory(archiveName), ioMonitor, monitor, writeQueueStats);
     }
 
     @Override
     public boolean delete(String archiveName) {
+        discardPreloaded(archiveName);
         try {
             getBlobs(archiveName)
                     .forEach(cloudBlob -> {
@@ -128,6 +261,8 @@ public class AzureArchiveManager implements SegmentArchiveManager {
 
     @Override
     public boolean renameTo(String from, String to) {
+        discardPreloaded(from);
+        discardPreloaded(to);
         try {
             CloudBlobDirectory targetDirectory = getDirectory(to);
             getBlobs(from)
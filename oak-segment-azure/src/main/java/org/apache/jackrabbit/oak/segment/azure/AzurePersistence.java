@@ -22,6 +22,8 @@ import com.microsoft.azure.storage.blob.CloudAppendBlob;
 import com.microsoft.azure.storage.blob.CloudBlobDirectory;
 import com.microsoft.azure.storage.blob.CloudBlockBlob;
 import com.microsoft.azure.storage.blob.ListBlobItem;
+import org.apache.jackrabbit.oak.segment.azure.queue.SegmentWriteQueueMBean;
+import org.apache.jackrabbit.oak.segment.azure.queue.SegmentWriteQueueStats;
 import org.apache.jackrabbit.oak.segment.spi.persistence.GCJournalFile;
 import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFile;
 import org.apache.jackrabbit.oak.segment.spi.persistence.ManifestFile;
@@ -30,6 +32,7 @@ import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -44,13 +47,39 @@ public class AzurePersistence implements SegmentNodeStorePersistence {
 
     private final CloudBlobDirectory segmentstoreDirectory;
 
+    @Nullable
+    private final AzureSegmentDiskCache diskCache;
+
+    private final SegmentWriteQueueStats writeQueueStats = new SegmentWriteQueueStats();
+
     public AzurePersistence(CloudBlobDirectory segmentstoreDirectory) {
+        this(segmentstoreDirectory, null);
+    }
+
+    /**
+     * Create a new persistence, which keeps a copy of the segments read from
+     * Azure in {@code diskCache}.
+     *
+     * @param segmentstoreDirectory the directory containing the segment store
+     * @param diskCache             the local segment cache or {@code null} to
+     *                              read all segments from Azure
+     */
+    public AzurePersistence(CloudBlobDirectory segmentstoreDirectory, @Nullable AzureSegmentDiskCache diskCache) {
         this.segmentstoreDirectory = segmentstoreDirectory;
+        this.diskCache = diskCache;
     }
 
     @Override
     public SegmentArchiveManager createArchiveManager(boolean mmap, boolean offHeapAccess, IOMonitor ioMonitor, FileStoreMonitor fileStoreMonitor) {
-        return new AzureArchiveManager(segmentstoreDirectory, ioMonitor, fileStoreMonitor);
+        return new AzureArchiveManager(segmentstoreDirectory, ioMonitor, fileStoreMonitor, diskCache, writeQueueStats);
+    }
+
+    /**
+     * @return the statistics of the queues uploading the segments written
+     * through the archive managers of this persistence
+     */
+    public SegmentWriteQueueMBean getWriteQueueStats() {
+        return writeQueueStats;
     }
 
     @Override
@@ -22,12 +22,19 @@ import static org.apache.jackrabbit.oak.segment.azure.AzureUtilities.readBufferF
 
 import java.io.File;
 import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -40,23 +47,69 @@ import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
 import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 public class AzureSegmentArchiveReader implements SegmentArchiveReader {
     static final boolean OFF_HEAP = getBoolean("access.off.heap");
 
+    /**
+     * Number of segments following a read segment in the archive to fetch
+     * in the background. Disabled by default.
+     */
+    static final int READ_AHEAD = Integer.getInteger("oak.segment.azure.readAhead", 0);
+
+    private static final Logger log = LoggerFactory.getLogger(AzureSegmentArchiveReader.class);
+
     private final CloudBlobDirectory archiveDirectory;
 
     private final IOMonitor ioMonitor;
 
+    @Nullable
+    private final AzureSegmentDiskCache diskCache;
+
+    @Nullable
+    private final Executor readAheadExecutor;
+
     private final long length;
 
     private final Map<UUID, AzureSegmentArchiveEntry> index = new LinkedHashMap<>();
 
+    /**
+     * The entries of {@link #index} ordered by their position in the archive.
+     */
+    private final List<AzureSegmentArchiveEntry> entries;
+
+    /**
+     * Position of each segment in {@link #entries}.
+     */
+    private final Map<UUID, Integer> entryPositions = new HashMap<>();
+
+    /**
+     * Segments fetched ahead of time, which haven't been read yet. Bounded to
+     * twice the read-ahead distance, evicting the least recently added ones.
+     */
+    private final Map<UUID, CompletableFuture<Buffer>> readAhead = Collections.synchronizedMap(
+            new LinkedHashMap<UUID, CompletableFuture<Buffer>>() {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<UUID, CompletableFuture<Buffer>> eldest) {
+                    return size() > 2 * READ_AHEAD;
+                }
+            });
+
     private Boolean hasGraph;
 
     AzureSegmentArchiveReader(CloudBlobDirectory archiveDirectory, IOMonitor ioMonitor) throws IOException {
+        this(archiveDirectory, ioMonitor, null, null);
+    }
+
+    AzureSegmentArchiveReader(CloudBlobDirectory archiveDirectory, IOMonitor ioMonitor,
+                              @Nullable AzureSegmentDiskCache diskCache, @Nullable Executor readAheadExecutor) throws IOException {
         this.archiveDirectory = archiveDirectory;
         this.ioMonitor = ioMonitor;
+        this.diskCache = diskCache;
+        this.readAheadExecutor = readAheadExecutor;
         long length = 0;
         for (CloudBlob blob : AzureUtilities.getBlobs(archiveDirectory).collect(Collectors.toList())) {
             Map<String, String> metadata = blob.getMetadata();
@@ -67,15 +120,39 @@ public class AzureSegmentArchiveReader implements SegmentArchiveReader {
             length += blob.getProperties().getLength();
         }
         this.length = length;
+        this.entries = new ArrayList<>(index.values());
+        this.entries.sort(Comparator.comparingInt(AzureSegmentArchiveEntry::getPosition));
+        for (int i = 0; i < entries.size(); i++) {
+            AzureSegmentArchiveEntry entry = entries.get(i);
+            entryPositions.put(new UUID(entry.getMsb(), entry.getLsb()), i);
+        }
     }
 
     @Override
     public Buffer readSegment(long msb, long lsb) throws IOException {
-        AzureSegmentArchiveEntry indexEntry = index.get(new UUID(msb, lsb));
+        UUID id = new UUID(msb, lsb);
+        AzureSegmentArchiveEntry indexEntry = index.get(id);
         if (indexEntry == null) {
             return null;
         }
 
+        Buffer buffer = getReadAhead(id);
+        if (buffer == null && diskCache != null) {
+            buffer = diskCache.read(msb, lsb);
+        }
+        if (buffer == null) {
+            buffer = downloadSegment(indexEntry);
+            if (diskCache != null) {
+                diskCache.write(msb, lsb, buffer);
+            }
+        }
+        scheduleReadAhead(id);
+        return buffer;
+    }
+
+    private Buffer downloadSegment(AzureSegmentArchiveEntry indexEntry) throws IOException {
+        long msb = indexEntry.getMsb();
+        long lsb = indexEntry.getLsb();
         Buffer buffer;
         if (OFF_HEAP) {
             buffer = Buffer.allocateDirect(indexEntry.getLength());
@@ -90,6 +167,62 @@ public class AzureSegmentArchiveReader implements SegmentArchiveReader {
         return buffer;
     }
 
+    @Nullable
+    private Buffer getReadAhead(UUID id) throws IOException {
+        CompletableFuture<Buffer> future = readAhead.remove(id);
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            log.debug("Read-ahead of segment {} failed", id, e.getCause());
+            return null;
+        }
+    }
+
+    /**
+     * Fetch the segments following {@code id} in this archive in the
+     * background. Segments in an archive are written in the order they are
+     * created, so segments close to each other are likely to be read together.
+     */
+    private void scheduleReadAhead(UUID id) {
+        if (READ_AHEAD <= 0 || readAheadExecutor == null) {
+            return;
+        }
+        Integer position = entryPositions.get(id);
+        if (position == null) {
+            return;
+        }
+        int end = Math.min(position + 1 + READ_AHEAD, entries.size());
+        for (int i = position + 1; i < end; i++) {
+            AzureSegmentArchiveEntry entry = entries.get(i);
+            UUID next = new UUID(entry.getMsb(), entry.getLsb());
+            synchronized (readAhead) {
+                if (readAhead.containsKey(next)) {
+                    continue;
+                }
+                readAhead.put(next, CompletableFuture.supplyAsync(() -> {
+                    try {
+                        Buffer buffer = diskCache == null ? null : diskCache.read(entry.getMsb(), entry.getLsb());
+                        if (buffer == null) {
+                            buffer = downloadSegment(entry);
+                            if (diskCache != null) {
+                                diskCache.write(entry.getMsb(), entry.getLsb(), buffer);
+                            }
+                        }
+                        return buffer;
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }, readAheadExecutor));
+            }
+        }
+    }
+
     @Override
     public boolean containsSegment(long msb, long lsb) {
         return index.containsKey(new UUID(msb, lsb));
@@ -134,7 +267,9 @@ public class AzureSegmentArchiveReader implements SegmentArchiveReader {
 
     @Override
     public void close() {
-        // do nothing
+        readAhead.values().forEach(future -> future.cancel(false));
+        readAhead.clear();
+        ioMonitor.afterFileClosed(pathAsFile());
     }
 
     @Override
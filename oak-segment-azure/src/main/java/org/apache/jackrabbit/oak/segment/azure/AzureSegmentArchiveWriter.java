@@ -36,6 +36,7 @@ import com.microsoft.azure.storage.blob.CloudBlobDirectory;
 import com.microsoft.azure.storage.blob.CloudBlockBlob;
 import org.apache.jackrabbit.oak.segment.azure.queue.SegmentWriteAction;
 import org.apache.jackrabbit.oak.segment.azure.queue.SegmentWriteQueue;
+import org.apache.jackrabbit.oak.segment.azure.queue.SegmentWriteQueueStats;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
@@ -59,11 +60,20 @@ public class AzureSegmentArchiveWriter implements SegmentArchiveWriter {
 
     private volatile boolean created = false;
 
+    private final SegmentWriteQueueStats queueStats;
+
     public AzureSegmentArchiveWriter(CloudBlobDirectory archiveDirectory, IOMonitor ioMonitor, FileStoreMonitor monitor) {
+        this(archiveDirectory, ioMonitor, monitor, new SegmentWriteQueueStats());
+    }
+
+    public AzureSegmentArchiveWriter(CloudBlobDirectory archiveDirectory, IOMonitor ioMonitor, FileStoreMonitor monitor,
+                                     SegmentWriteQueueStats queueStats) {
         this.archiveDirectory = archiveDirectory;
         this.ioMonitor = ioMonitor;
         this.monitor = monitor;
+        this.queueStats = queueStats;
         this.queue = SegmentWriteQueue.THREADS > 0 ? Optional.of(new SegmentWriteQueue(this::doWriteEntry)) : Optional.empty();
+        this.queue.ifPresent(queueStats::register);
     }
 
     @Override
@@ -164,8 +174,12 @@ public class AzureSegmentArchiveWriter implements SegmentArchiveWriter {
     public void close() throws IOException {
         if (queue.isPresent()) { // required to handle IOException
             SegmentWriteQueue q = queue.get();
-            q.flush();
-            q.close();
+            try {
+                q.flush();
+                q.close();
+            } finally {
+                queueStats.unregister(q);
+            }
         }
         try {
             getBlob("closed").uploadFromByteArray(new byte[0], 0, 0);
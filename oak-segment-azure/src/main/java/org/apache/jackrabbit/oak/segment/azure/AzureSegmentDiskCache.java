@@ -0,0 +1,171 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.azure;
+
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * A size bounded cache of segments on the local disk. Segments are immutable,
+ * so cached segments never need to be invalidated. The least recently used
+ * segments are evicted once the cache grows beyond its maximum size. Segments
+ * found in the cache directory when the cache is created are re-used, which
+ * keeps the cache warm across restarts.
+ */
+public class AzureSegmentDiskCache {
+
+    private static final Logger log = LoggerFactory.getLogger(AzureSegmentDiskCache.class);
+
+    private final File directory;
+
+    private final long maxSize;
+
+    /**
+     * Sizes of the cached segments in access order.
+     */
+    private final LinkedHashMap<UUID, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+
+    private long size;
+
+    /**
+     * Create a new disk cache.
+     *
+     * @param directory The directory to store the segments in.
+     * @param maxSize   The maximum size of the cache in bytes.
+     */
+    public AzureSegmentDiskCache(@NotNull File directory, long maxSize) throws IOException {
+        this.directory = directory;
+        this.maxSize = maxSize;
+
+        Files.createDirectories(directory.toPath());
+
+        File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                try {
+                    entries.put(UUID.fromString(file.getName()), file.length());
+                    size += file.length();
+                } catch (IllegalArgumentException e) {
+                    log.debug("Deleting unexpected file {} from the segment cache", file);
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+        }
+        evict();
+    }
+
+    /**
+     * Read a segment from the cache.
+     *
+     * @return The segment or {@code null} if the segment is not cached.
+     */
+    @Nullable
+    Buffer read(long msb, long lsb) {
+        UUID id = new UUID(msb, lsb);
+        synchronized (this) {
+            if (entries.get(id) == null) {
+                return null;
+            }
+        }
+        try {
+            return Buffer.wrap(Files.readAllBytes(getFile(id).toPath()));
+        } catch (IOException e) {
+            log.debug("Unable to read segment {} from the cache", id, e);
+            synchronized (this) {
+                Long length = entries.remove(id);
+                if (length != null) {
+                    size -= length;
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Add a segment to the cache. The position of {@code buffer} is not
+     * changed.
+     */
+    void write(long msb, long lsb, @NotNull Buffer buffer) {
+        UUID id = new UUID(msb, lsb);
+        synchronized (this) {
+            if (entries.containsKey(id)) {
+                return;
+            }
+        }
+
+        Buffer duplicate = buffer.duplicate();
+        byte[] data = new byte[duplicate.remaining()];
+        duplicate.get(data);
+
+        File file = getFile(id);
+        File tmp = new File(directory, id + ".tmp");
+        try {
+            Files.write(tmp.toPath(), data);
+            Files.move(tmp.toPath(), file.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+        } catch (IOException e) {
+            log.debug("Unable to write segment {} to the cache", id, e);
+            return;
+        }
+
+        synchronized (this) {
+            if (entries.put(id, (long) data.length) == null) {
+                size += data.length;
+            }
+            evict();
+        }
+    }
+
+    /**
+     * @return The number of bytes currently stored in this cache.
+     */
+    synchronized long size() {
+        return size;
+    }
+
+    private synchronized void evict() {
+        Iterator<Map.Entry<UUID, Long>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            Map.Entry<UUID, Long> entry = it.next();
+            it.remove();
+            size -= entry.getValue();
+            try {
+                Files.deleteIfExists(getFile(entry.getKey()).toPath());
+            } catch (IOException e) {
+                log.debug("Unable to delete segment {} from the cache", entry.getKey(), e);
+            }
+        }
+    }
+
+    private File getFile(UUID id) {
+        return new File(directory, id.toString());
+    }
+
+}
@@ -21,7 +21,10 @@ package org.apache.jackrabbit.oak.segment.azure;
 import com.microsoft.azure.storage.CloudStorageAccount;
 import com.microsoft.azure.storage.StorageException;
 import com.microsoft.azure.storage.blob.CloudBlobContainer;
+import org.apache.jackrabbit.oak.osgi.OsgiWhiteboard;
+import org.apache.jackrabbit.oak.segment.azure.queue.SegmentWriteQueueMBean;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
+import org.apache.jackrabbit.oak.spi.whiteboard.Registration;
 import org.osgi.framework.ServiceRegistration;
 import org.osgi.service.component.ComponentContext;
 import org.osgi.service.component.annotations.Activate;
@@ -31,11 +34,14 @@ import org.osgi.service.component.annotations.Deactivate;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
 import java.security.InvalidKeyException;
 import java.util.Properties;
 
+import static org.apache.jackrabbit.oak.spi.whiteboard.WhiteboardUtils.registerMBean;
+
 @Component(
         configurationPolicy = ConfigurationPolicy.REQUIRE,
         configurationPid = {Configuration.PID})
@@ -49,16 +55,29 @@ public class AzureSegmentStoreService {
 
     private ServiceRegistration registration;
 
-    private SegmentNodeStorePersistence persistence;
+    private Registration writeQueueStatsRegistration;
+
+    private AzurePersistence persistence;
 
     @Activate
     public void activate(ComponentContext context, Configuration config) throws IOException {
         persistence = createAzurePersistence(config);
         registration = context.getBundleContext().registerService(SegmentNodeStorePersistence.class.getName(), persistence, new Properties());
+        writeQueueStatsRegistration = registerMBean(
+                new OsgiWhiteboard(context.getBundleContext()),
+                SegmentWriteQueueMBean.class,
+                persistence.getWriteQueueStats(),
+                SegmentWriteQueueMBean.TYPE,
+                "Azure segment write queue"
+        );
     }
 
     @Deactivate
     public void deactivate() throws IOException {
+        if (writeQueueStatsRegistration != null) {
+            writeQueueStatsRegistration.unregister();
+            writeQueueStatsRegistration = null;
+        }
         if (registration != null) {
             registration.unregister();
             registration = null;
@@ -66,7 +85,7 @@ public class AzureSegmentStoreService {
         persistence = null;
     }
 
-    private static SegmentNodeStorePersistence createAzurePersistence(Configuration configuration) throws IOException {
+    private static AzurePersistence createAzurePersistence(Configuration configuration) throws IOException {
         try {
             StringBuilder connectionString = new StringBuilder();
             if (configuration.connectionURL() == null || configuration.connectionURL().trim().isEmpty()) {
@@ -86,7 +105,13 @@ public class AzureSegmentStoreService {
                 path = path.substring(1);
             }
 
-            AzurePersistence persistence = new AzurePersistence(container.getDirectoryReference(path));
+            AzureSegmentDiskCache diskCache = null;
+            String localCachePath = configuration.localCachePath();
+            if (localCachePath != null && !localCachePath.trim().isEmpty()) {
+                diskCache = new AzureSegmentDiskCache(new File(localCachePath.trim()), configuration.localCacheSize() * 1024L * 1024L);
+            }
+
+            AzurePersistence persistence = new AzurePersistence(container.getDirectoryReference(path), diskCache);
             return persistence;
         } catch (StorageException | URISyntaxException | InvalidKeyException e) {
             throw new IOException(e);
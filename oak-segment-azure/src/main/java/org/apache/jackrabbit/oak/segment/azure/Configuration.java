@@ -56,4 +56,15 @@ import static org.apache.jackrabbit.oak.segment.azure.Configuration.PID;
             description = "Connection string to be used to connect to the Azure Storage. " +
                     "Setting it will override the accountName and accessKey properties.")
     String connectionURL() default "";
+
+    @AttributeDefinition(
+            name = "Local segment cache path (optional)",
+            description = "Directory on the local disk to cache segments read from Azure in. " +
+                    "Leave empty to disable the local segment cache.")
+    String localCachePath() default "";
+
+    @AttributeDefinition(
+            name = "Local segment cache size (MB)",
+            description = "Maximum size of the local segment cache in MB.")
+    int localCacheSize() default 1024;
 }
\ No newline at end of file
@@ -47,6 +47,10 @@ public class SegmentWriteAction {
         return new UUID(indexEntry.getMsb(), indexEntry.getLsb());
     }
 
+    int getLength() {
+        return length;
+    }
+
     public Buffer toBuffer() {
         return Buffer.wrap(buffer, offset, length);
     }
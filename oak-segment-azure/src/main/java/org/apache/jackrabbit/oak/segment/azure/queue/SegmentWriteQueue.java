@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.oak.segment.azure.queue;
 
+import com.google.common.base.Ticker;
 import org.apache.jackrabbit.oak.segment.azure.AzureSegmentArchiveEntry;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -39,6 +40,17 @@ public class SegmentWriteQueue implements Closeable {
 
     private static final int QUEUE_SIZE = Integer.getInteger("oak.segment.org.apache.jackrabbit.oak.segment.azure.queue", 20);
 
+    /**
+     * Maximum number of bytes waiting to be uploaded. Writers adding segments
+     * block once this limit is reached.
+     */
+    private static final long MAX_QUEUED_BYTES = Long.getLong("oak.segment.azure.queue.maxBytes", 32 * 1024 * 1024);
+
+    /**
+     * Upload latency above which the number of concurrent uploads is reduced.
+     */
+    private static final long TARGET_LATENCY_MS = Long.getLong("oak.segment.azure.queue.targetLatency", 1000);
+
     private static final Logger log = LoggerFactory.getLogger(SegmentWriteQueue.class);
 
     private final BlockingDeque<SegmentWriteAction> queue;
@@ -57,12 +69,73 @@ public class SegmentWriteQueue implements Closeable {
 
     private volatile boolean broken;
 
+    private final long maxQueuedBytes;
+
+    private final long targetLatencyNanos;
+
+    private final int maxConcurrency;
+
+    /**
+     * Source of the time used to measure the upload latency.
+     */
+    private final Ticker ticker;
+
+    /**
+     * Guards {@link #queuedBytes}, {@link #concurrency}, {@link #activeUploads}
+     * and the upload statistics.
+     */
+    private final Object uploadMonitor = new Object();
+
+    private long queuedBytes;
+
+    private int concurrency;
+
+    private int activeUploads;
+
+    private int successesSinceIncrease;
+
+    private long lastDecrease;
+
+    private long uploadCount;
+
+    private long averageLatencyNanos;
+
+    private long maxLatencyNanos;
+
     public SegmentWriteQueue(SegmentConsumer writer) {
         this(writer, QUEUE_SIZE, THREADS);
     }
 
     SegmentWriteQueue(SegmentConsumer writer, int queueSize, int threadNo) {
+        this(writer, queueSize, threadNo, MAX_QUEUED_BYTES, TimeUnit.MILLISECONDS.toNanos(TARGET_LATENCY_MS));
+    }
+
+    /**
+     * Create a new queue. Up to {@code threadNo} segments are uploaded
+     * concurrently. The actual number of concurrent uploads adapts to the
+     * observed upload latency: it grows by one after a window of uploads
+     * finishing within {@code targetLatencyNanos} and is halved when an upload
+     * takes longer or fails.
+     *
+     * @param writer             the consumer persisting the segments
+     * @param queueSize          the maximum number of queued segments
+     * @param threadNo           the maximum number of concurrent uploads
+     * @param maxQueuedBytes     the maximum number of queued bytes
+     * @param targetLatencyNanos the upload latency above which the
+     *                           concurrency is reduced
+     */
+    SegmentWriteQueue(SegmentConsumer writer, int queueSize, int threadNo, long maxQueuedBytes, long targetLatencyNanos) {
+        this(writer, queueSize, threadNo, maxQueuedBytes, targetLatencyNanos, Ticker.systemTicker());
+    }
+
+    SegmentWriteQueue(SegmentConsumer writer, int queueSize, int threadNo, long maxQueuedBytes, long targetLatencyNanos, Ticker ticker) {
         this.writer = writer;
+        this.maxQueuedBytes = maxQueuedBytes;
+        this.targetLatencyNanos = targetLatencyNanos;
+        this.maxConcurrency = threadNo;
+        this.concurrency = threadNo;
+        this.ticker = ticker;
+        this.lastDecrease = ticker.read() - targetLatencyNanos;
         segmentsByUUID = new ConcurrentHashMap<>();
         flushLock = new ReentrantReadWriteLock();
 
@@ -95,6 +168,17 @@ public class SegmentWriteQueue implements Closeable {
     }
 
     private void consume() throws SegmentConsumeException {
+        if (!acquireUploadSlot()) {
+            return;
+        }
+        try {
+            consumeNext();
+        } finally {
+            releaseUploadSlot();
+        }
+    }
+
+    private void consumeNext() throws SegmentConsumeException {
         SegmentWriteAction segment = null;
         try {
             segment = queue.poll(100, TimeUnit.MILLISECONDS);
@@ -107,12 +191,16 @@ public class SegmentWriteQueue implements Closeable {
     }
 
     private void consume(SegmentWriteAction segment) throws SegmentConsumeException {
+        long start = ticker.read();
         try {
             segment.passTo(writer);
         } catch (IOException e) {
+            onUploadFailed();
             setBroken(true);
             throw new SegmentConsumeException(segment, e);
         }
+        onUploadSucceeded(ticker.read() - start);
+        releaseBytes(segment.getLength());
         synchronized (segmentsByUUID) {
             segmentsByUUID.remove(segment.getUuid());
             segmentsByUUID.notifyAll();
@@ -120,6 +208,113 @@ public class SegmentWriteQueue implements Closeable {
         setBroken(false);
     }
 
+    /**
+     * Wait until the number of active uploads is below the current
+     * concurrency limit and reserve an upload slot.
+     *
+     * @return {@code true} if a slot has been reserved, {@code false} if no
+     * slot became available within 100 ms.
+     */
+    private boolean acquireUploadSlot() {
+        synchronized (uploadMonitor) {
+            long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(100);
+            while (activeUploads >= concurrency && !shutdown) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return false;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(uploadMonitor, remaining);
+                } catch (InterruptedException e) {
+                    log.warn("Interrupted", e);
+                    return false;
+                }
+            }
+            activeUploads++;
+            return true;
+        }
+    }
+
+    private void releaseUploadSlot() {
+        synchronized (uploadMonitor) {
+            activeUploads--;
+            uploadMonitor.notifyAll();
+        }
+    }
+
+    private void onUploadSucceeded(long latencyNanos) {
+        synchronized (uploadMonitor) {
+            uploadCount++;
+            averageLatencyNanos = averageLatencyNanos == 0
+                    ? latencyNanos
+                    : (averageLatencyNanos * 7 + latencyNanos) / 8;
+            maxLatencyNanos = Math.max(maxLatencyNanos, latencyNanos);
+
+            if (latencyNanos > targetLatencyNanos) {
+                decreaseConcurrency();
+            } else if (++successesSinceIncrease >= concurrency && concurrency < maxConcurrency) {
+                successesSinceIncrease = 0;
+                concurrency++;
+                uploadMonitor.notifyAll();
+            }
+        }
+    }
+
+    private void onUploadFailed() {
+        synchronized (uploadMonitor) {
+            decreaseConcurrency();
+        }
+    }
+
+    /**
+     * Halve the concurrency limit. Uploads that were started before the
+     * last decrease don't decrease the limit any further, so that a single
+     * latency spike affecting all in-flight uploads halves it only once.
+     */
+    private void decreaseConcurrency() {
+        long now = ticker.read();
+        if (now - lastDecrease < targetLatencyNanos) {
+            return;
+        }
+        lastDecrease = now;
+        successesSinceIncrease = 0;
+        int newConcurrency = Math.max(1, concurrency / 2);
+        if (newConcurrency != concurrency) {
+            log.debug("Reducing the number of concurrent segment uploads from {} to {}", concurrency, newConcurrency);
+            concurrency = newConcurrency;
+        }
+    }
+
+    /**
+     * Reserve {@code size} bytes in the buffer, waiting for uploads to free
+     * up space if necessary. A segment is always accepted by an empty
+     * buffer, even if it is larger than the limit.
+     */
+    private void reserveBytes(int size) throws IOException {
+        synchronized (uploadMonitor) {
+            long deadline = System.nanoTime() + TimeUnit.MINUTES.toNanos(1);
+            while (queuedBytes > 0 && queuedBytes + size > maxQueuedBytes) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0 || shutdown) {
+                    throw new IOException("Can't add segment to the queue");
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(uploadMonitor, Math.min(remaining, TimeUnit.MILLISECONDS.toNanos(100)));
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+            }
+            queuedBytes += size;
+        }
+    }
+
+    private void releaseBytes(int size) {
+        synchronized (uploadMonitor) {
+            queuedBytes -= size;
+            uploadMonitor.notifyAll();
+        }
+    }
+
     private void emergencyLoop() {
         while (!shutdown) {
             waitUntilBroken();
@@ -160,14 +355,18 @@ public class SegmentWriteQueue implements Closeable {
         }
 
         SegmentWriteAction action = new SegmentWriteAction(indexEntry, data, offset, size);
+        reserveBytes(size);
         flushLock.readLock().lock();
         try {
             segmentsByUUID.put(action.getUuid(), action);
             if (!queue.offer(action, 1, TimeUnit.MINUTES)) {
                 segmentsByUUID.remove(action.getUuid());
+                releaseBytes(size);
                 throw new IOException("Can't add segment to the queue");
             }
         } catch (InterruptedException e) {
+            segmentsByUUID.remove(action.getUuid());
+            releaseBytes(size);
             throw new IOException(e);
         } finally {
             flushLock.readLock().unlock();
@@ -222,6 +421,59 @@ public class SegmentWriteQueue implements Closeable {
         return queue.size();
     }
 
+    /**
+     * @return the number of segments waiting to be uploaded or being uploaded
+     */
+    public int getQueueDepth() {
+        return segmentsByUUID.size();
+    }
+
+    /**
+     * @return the number of bytes waiting to be uploaded or being uploaded
+     */
+    public long getQueuedBytes() {
+        synchronized (uploadMonitor) {
+            return queuedBytes;
+        }
+    }
+
+    /**
+     * @return the current limit of concurrent uploads
+     */
+    public int getConcurrency() {
+        synchronized (uploadMonitor) {
+            return concurrency;
+        }
+    }
+
+    /**
+     * @return the number of successfully uploaded segments
+     */
+    public long getUploadCount() {
+        synchronized (uploadMonitor) {
+            return uploadCount;
+        }
+    }
+
+    /**
+     * @return the exponentially weighted moving average of the upload latency
+     * in milliseconds
+     */
+    public long getAverageUploadLatency() {
+        synchronized (uploadMonitor) {
+            return TimeUnit.NANOSECONDS.toMillis(averageLatencyNanos);
+        }
+    }
+
+    /**
+     * @return the maximum upload latency in milliseconds
+     */
+    public long getMaxUploadLatency() {
+        synchronized (uploadMonitor) {
+            return TimeUnit.NANOSECONDS.toMillis(maxLatencyNanos);
+        }
+    }
+
     private void setBroken(boolean broken) {
         synchronized (brokenMonitor) {
             this.broken = broken;
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.azure.queue;
+
+/**
+ * Exposes the state of the queues uploading segments to Azure.
+ */
+public interface SegmentWriteQueueMBean {
+
+    String TYPE = "SegmentWriteQueue";
+
+    /**
+     * @return the number of segments waiting to be uploaded or being uploaded
+     */
+    int getQueueDepth();
+
+    /**
+     * @return the number of bytes waiting to be uploaded or being uploaded
+     */
+    long getQueuedBytes();
+
+    /**
+     * @return the current limit of concurrent uploads
+     */
+    int getConcurrency();
+
+    /**
+     * @return the number of successfully uploaded segments
+     */
+    long getUploadCount();
+
+    /**
+     * @return the exponentially weighted moving average of the upload latency
+     * in milliseconds
+     */
+    long getAverageUploadLatency();
+
+    /**
+     * @return the maximum upload latency in milliseconds
+     */
+    long getMaxUploadLatency();
+
+}
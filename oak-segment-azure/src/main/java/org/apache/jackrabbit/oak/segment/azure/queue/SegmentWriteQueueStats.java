@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.azure.queue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Aggregates the statistics of the {@link SegmentWriteQueue}s of a
+ * persistence. A queue is registered when its archive writer is created and
+ * unregistered when the writer is closed. The upload count and the maximum
+ * latency of unregistered queues are retained.
+ */
+public class SegmentWriteQueueStats implements SegmentWriteQueueMBean {
+
+    private final Set<SegmentWriteQueue> queues = ConcurrentHashMap.newKeySet();
+
+    private long closedUploadCount;
+
+    private long closedMaxUploadLatency;
+
+    private long lastAverageUploadLatency;
+
+    public void register(SegmentWriteQueue queue) {
+        queues.add(queue);
+    }
+
+    public synchronized void unregister(SegmentWriteQueue queue) {
+        if (queues.remove(queue)) {
+            closedUploadCount += queue.getUploadCount();
+            closedMaxUploadLatency = Math.max(closedMaxUploadLatency, queue.getMaxUploadLatency());
+            if (queue.getUploadCount() > 0) {
+                lastAverageUploadLatency = queue.getAverageUploadLatency();
+            }
+        }
+    }
+
+    @Override
+    public int getQueueDepth() {
+        int depth = 0;
+        for (SegmentWriteQueue queue : queues) {
+            depth += queue.getQueueDepth();
+        }
+        return depth;
+    }
+
+    @Override
+    public long getQueuedBytes() {
+        long bytes = 0;
+        for (SegmentWriteQueue queue : queues) {
+            bytes += queue.getQueuedBytes();
+        }
+        return bytes;
+    }
+
+    @Override
+    public int getConcurrency() {
+        int concurrency = 0;
+        for (SegmentWriteQueue queue : queues) {
+            concurrency += queue.getConcurrency();
+        }
+        return concurrency;
+    }
+
+    @Override
+    public synchronized long getUploadCount() {
+        long count = closedUploadCount;
+        for (SegmentWriteQueue queue : queues) {
+            count += queue.getUploadCount();
+        }
+        return count;
+    }
+
+    /**
+     * @return the average upload latency of the registered queues, weighted
+     * by their upload count, or the average of the last unregistered queue if
+     * no registered queue has uploaded a segment yet
+     */
+    @Override
+    public synchronized long getAverageUploadLatency() {
+        long count = 0;
+        long weighted = 0;
+        for (SegmentWriteQueue queue : queues) {
+            long uploads = queue.getUploadCount();
+            count += uploads;
+            weighted += uploads * queue.getAverageUploadLatency();
+        }
+        if (count == 0) {
+            return lastAverageUploadLatency;
+        }
+        return weighted / count;
+    }
+
+    @Override
+    public synchronized long getMaxUploadLatency() {
+        long max = closedMaxUploadLatency;
+        for (SegmentWriteQueue queue : queues) {
+            max = Math.max(max, queue.getMaxUploadLatency());
+        }
+        return max;
+    }
+
+}
@@ -24,7 +24,9 @@ import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
 import org.apache.jackrabbit.oak.segment.file.FileStore;
 import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
 import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
@@ -33,8 +35,11 @@ import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
 import org.junit.Before;
 import org.junit.ClassRule;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.net.URISyntaxException;
@@ -45,6 +50,7 @@ import java.util.List;
 import java.util.UUID;
 
 import static com.google.common.collect.Lists.newArrayList;
+import static org.apache.jackrabbit.oak.segment.azure.AzureUtilities.getSegmentFileName;
 import static org.junit.Assert.assertEquals;
 
 public class AzureArchiveManagerTest {
@@ -52,6 +58,9 @@ public class AzureArchiveManagerTest {
     @ClassRule
     public static AzuriteDockerRule azurite = new AzuriteDockerRule();
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
     private CloudBlobContainer container;
 
     @Before
@@ -81,6 +90,48 @@ public class AzureArchiveManagerTest {
         assertEquals(uuids.subList(0, 5), newArrayList(recovered.keySet()));
     }
 
+    @Test
+    public void testPreloadedArchiveWithDiskCache() throws Exception {
+        File cacheDirectory = folder.newFolder();
+        AzureSegmentDiskCache diskCache = new AzureSegmentDiskCache(cacheDirectory, 1024 * 1024);
+        SegmentArchiveManager manager = new AzurePersistence(container.getDirectoryReference("oak"), diskCache)
+                .createArchiveManager(false, false, new IOMonitorAdapter(), new FileStoreMonitorAdapter());
+        SegmentArchiveWriter writer = manager.create("data00000a.tar");
+
+        List<UUID> uuids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            UUID u = UUID.randomUUID();
+            byte[] data = new byte[] {(byte) i, (byte) i, (byte) i};
+            writer.writeSegment(u.getMostSignificantBits(), u.getLeastSignificantBits(), data, 0, data.length, 0, 0, false);
+            uuids.add(u);
+        }
+        writer.flush();
+        writer.close();
+
+        assertEquals(newArrayList("data00000a.tar"), manager.listArchives());
+        SegmentArchiveReader reader;
+        try (Closeable ignored = manager.preload(manager.listArchives())) {
+            reader = manager.open("data00000a.tar");
+        }
+        for (int i = 0; i < uuids.size(); i++) {
+            UUID u = uuids.get(i);
+            Buffer buffer = reader.readSegment(u.getMostSignificantBits(), u.getLeastSignificantBits());
+            assertEquals(3, buffer.remaining());
+            assertEquals(i, buffer.get());
+        }
+        reader.close();
+        assertEquals(30, diskCache.size());
+
+        // segments are served from the disk cache once they have been read
+        for (int i = 0; i < uuids.size(); i++) {
+            UUID u = uuids.get(i);
+            container.getBlockBlobReference("oak/data00000a.tar/" + getSegmentFileName(i, u.getMostSignificantBits(), u.getLeastSignificantBits())).delete();
+        }
+        UUID u = uuids.get(7);
+        Buffer cached = new AzureSegmentDiskCache(cacheDirectory, 1024 * 1024).read(u.getMostSignificantBits(), u.getLeastSignificantBits());
+        assertEquals(7, cached.get());
+    }
+
     @Test
     public void testUncleanStop() throws URISyntaxException, IOException, InvalidFileStoreVersionException, CommitFailedException, StorageException {
         AzurePersistence p = new AzurePersistence(container.getDirectoryReference("oak"));
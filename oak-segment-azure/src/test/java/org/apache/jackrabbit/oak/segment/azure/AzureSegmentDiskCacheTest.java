@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.apache.jackrabbit.oak.segment.azure;
+
+import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class AzureSegmentDiskCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void testLeastRecentlyUsedSegmentsAreEvicted() throws Exception {
+        AzureSegmentDiskCache cache = new AzureSegmentDiskCache(folder.newFolder(), 20);
+        UUID a = UUID.randomUUID();
+        UUID b = UUID.randomUUID();
+        UUID c = UUID.randomUUID();
+
+        cache.write(a.getMostSignificantBits(), a.getLeastSignificantBits(), Buffer.wrap(new byte[10]));
+        cache.write(b.getMostSignificantBits(), b.getLeastSignificantBits(), Buffer.wrap(new byte[10]));
+        assertNotNull(cache.read(a.getMostSignificantBits(), a.getLeastSignificantBits()));
+        cache.write(c.getMostSignificantBits(), c.getLeastSignificantBits(), Buffer.wrap(new byte[10]));
+
+        assertEquals(20, cache.size());
+        assertNotNull(cache.read(a.getMostSignificantBits(), a.getLeastSignificantBits()));
+        assertNull(cache.read(b.getMostSignificantBits(), b.getLeastSignificantBits()));
+        assertNotNull(cache.read(c.getMostSignificantBits(), c.getLeastSignificantBits()));
+    }
+
+    @Test
+    public void testSegmentsAreKeptAcrossRestarts() throws Exception {
+        File directory = folder.newFolder();
+        UUID id = UUID.randomUUID();
+        Buffer buffer = Buffer.wrap(new byte[] {1, 2, 3});
+        new AzureSegmentDiskCache(directory, 1024).write(id.getMostSignificantBits(), id.getLeastSignificantBits(), buffer);
+        assertEquals(3, buffer.remaining());
+        assertTrue(new File(directory, "unrelated.tmp").createNewFile());
+
+        AzureSegmentDiskCache cache = new AzureSegmentDiskCache(directory, 1024);
+        assertEquals(3, cache.size());
+        Buffer cached = cache.read(id.getMostSignificantBits(), id.getLeastSignificantBits());
+        assertNotNull(cached);
+        assertEquals(3, cached.remaining());
+        assertEquals(1, cached.get());
+        assertEquals(1, directory.listFiles().length);
+    }
+
+}
@@ -16,6 +16,7 @@
  */
 package org.apache.jackrabbit.oak.segment.azure.queue;
 
+import com.google.common.base.Ticker;
 import org.apache.jackrabbit.oak.segment.azure.AzureSegmentArchiveEntry;
 import org.junit.After;
 import org.junit.Test;
@@ -28,8 +29,11 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
@@ -220,6 +224,91 @@ public class SegmentWriteQueueTest {
         }
     }
 
+    @Test
+    public void testBackpressure() throws Exception {
+        CountDownLatch uploadStarted = new CountDownLatch(1);
+        Semaphore semaphore = new Semaphore(0);
+        queue = new SegmentWriteQueue((tarEntry, data, offset, size) -> {
+            uploadStarted.countDown();
+            try {
+                semaphore.acquire();
+            } catch (InterruptedException e) {
+            }
+        }, 20, 5, 100, TimeUnit.SECONDS.toNanos(1));
+
+        for (int i = 0; i < 2; i++) {
+            queue.addToQueue(tarEntry(i), new byte[50], 0, 50);
+        }
+        assertEquals(100, queue.getQueuedBytes());
+        assertEquals(2, queue.getQueueDepth());
+        assertTrue(uploadStarted.await(10, TimeUnit.SECONDS));
+
+        CountDownLatch addFinished = new CountDownLatch(1);
+        new Thread(() -> {
+            try {
+                queue.addToQueue(tarEntry(2), new byte[50], 0, 50);
+                addFinished.countDown();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }).start();
+
+        assertFalse("Adding segments should be blocked while the buffer is full",
+                addFinished.await(100, TimeUnit.MILLISECONDS));
+
+        semaphore.release();
+        assertTrue("Adding segments should resume once an upload frees the buffer",
+                addFinished.await(10, TimeUnit.SECONDS));
+        semaphore.release(Integer.MAX_VALUE);
+        queue.flush();
+        assertEquals(0, queue.getQueuedBytes());
+        assertEquals(3, queue.getUploadCount());
+    }
+
+    @Test
+    public void testAdaptiveConcurrency() throws IOException {
+        ManualTicker ticker = new ManualTicker();
+        AtomicBoolean slow = new AtomicBoolean(true);
+        queue = new SegmentWriteQueue((tarEntry, data, offset, size) -> {
+            if (slow.get()) {
+                ticker.advance(TimeUnit.MILLISECONDS.toNanos(60));
+            }
+        }, 100, 8, 1024 * 1024, TimeUnit.MILLISECONDS.toNanos(50), ticker);
+        assertEquals(8, queue.getConcurrency());
+
+        for (int i = 0; i < 20; i++) {
+            queue.addToQueue(tarEntry(i), EMPTY_DATA, 0, 0);
+        }
+        queue.flush();
+        assertEquals("Slow uploads should reduce the concurrency", 1, queue.getConcurrency());
+        assertTrue(queue.getAverageUploadLatency() >= 50);
+
+        slow.set(false);
+        for (int i = 20; i < 200; i++) {
+            queue.addToQueue(tarEntry(i), EMPTY_DATA, 0, 0);
+        }
+        queue.flush();
+        assertEquals("Fast uploads should restore the concurrency", 8, queue.getConcurrency());
+    }
+
+    @Test
+    public void testStats() throws IOException {
+        SegmentWriteQueueStats stats = new SegmentWriteQueueStats();
+        queue = new SegmentWriteQueue((tarEntry, data, offset, size) -> {});
+        stats.register(queue);
+        for (int i = 0; i < 3; i++) {
+            queue.addToQueue(tarEntry(i), new byte[10], 0, 10);
+        }
+        queue.flush();
+        assertEquals(3, stats.getUploadCount());
+        assertEquals(0, stats.getQueueDepth());
+        assertEquals(SegmentWriteQueue.THREADS, stats.getConcurrency());
+
+        stats.unregister(queue);
+        assertEquals("Uploads of unregistered queues should be retained", 3, stats.getUploadCount());
+        assertEquals(0, stats.getConcurrency());
+    }
+
     private static AzureSegmentArchiveEntry tarEntry(long i) {
         return new AzureSegmentArchiveEntry(0, i, 0, 0, 0, 0, false);
     }
@@ -228,4 +317,19 @@ public class SegmentWriteQueueTest {
         return new UUID(0, i);
     }
 
+    private static class ManualTicker extends Ticker {
+
+        private final AtomicLong nanos = new AtomicLong();
+
+        void advance(long delta) {
+            nanos.addAndGet(delta);
+        }
+
+        @Override
+        public long read() {
+            return nanos.get();
+        }
+
+    }
+
 }
@@ -20,6 +20,7 @@ package org.apache.jackrabbit.oak.segment;
 
 import static org.apache.jackrabbit.oak.commons.StringUtils.estimateMemoryUsage;
 
+import org.apache.jackrabbit.oak.segment.MapEntryCache.CacheValue;
 import org.apache.jackrabbit.oak.segment.ReaderCache.CacheKey;
 import org.jetbrains.annotations.NotNull;
 
@@ -136,4 +137,16 @@ public final class CacheWeights {
         }
     }
 
+    public static class MapEntryCacheWeigher implements
+            Weigher<MapEntryCache.CacheKey, CacheValue> {
+
+        @Override
+        public int weigh(@NotNull MapEntryCache.CacheKey key, @NotNull CacheValue value) {
+            int size = LIRS_CACHE_OVERHEAD;
+            size += key.estimateMemoryUsage();
+            size += value.estimateMemoryUsage();
+            return size;
+        }
+    }
+
 }
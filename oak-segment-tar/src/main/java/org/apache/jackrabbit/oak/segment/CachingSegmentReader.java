@@ -37,11 +37,13 @@ import org.slf4j.LoggerFactory;
 
 /**
  * This {@code SegmentReader} implementation implements caching for
- * strings and templates. It can also optionally rely on a {@link BlobStore} for resolving blobs.
+ * strings and templates and optionally for the entries of map records.
+ * It can also optionally rely on a {@link BlobStore} for resolving blobs.
  */
 public class CachingSegmentReader implements SegmentReader {
     public static final int DEFAULT_STRING_CACHE_MB = 256;
     public static final int DEFAULT_TEMPLATE_CACHE_MB = 64;
+    public static final int DEFAULT_MAP_ENTRY_CACHE_MB = 0;
 
     private static final Logger LOG = LoggerFactory.getLogger(LoggingHook.class.getName() + ".reader");
 
@@ -63,6 +65,12 @@ public class CachingSegmentReader implements SegmentReader {
     @NotNull
     private final TemplateCache templateCache;
 
+    /**
+     * Cache for the entries of map records
+     */
+    @NotNull
+    private final MapEntryCache mapEntryCache;
+
     private final MeterStats readStats;
 
     /**
@@ -81,11 +89,34 @@ public class CachingSegmentReader implements SegmentReader {
         long stringCacheMB,
         long templateCacheMB,
         MeterStats readStats
+    ) {
+        this(writer, blobStore, stringCacheMB, templateCacheMB, DEFAULT_MAP_ENTRY_CACHE_MB, readStats);
+    }
+
+    /**
+     * Create a new instance based on the supplied arguments.
+     * @param writer          A {@code Supplier} for a the {@code SegmentWriter} used by the segment
+     *                        builders returned from {@link NodeState#builder()} to write ahead changes.
+     *                        {@code writer.get()} must not return {@code null}.
+     * @param blobStore       {@code BlobStore} instance of the underlying {@link SegmentStore}, or
+     *                        {@code null} if none.
+     * @param stringCacheMB   the size of the string cache in MBs or {@code 0} for no cache.
+     * @param templateCacheMB the size of the template cache in MBs or {@code 0} for no cache.
+     * @param mapEntryCacheMB the size of the map entry cache in MBs or {@code 0} for no cache.
+     */
+    public CachingSegmentReader(
+        @NotNull Supplier<SegmentWriter> writer,
+        @Nullable BlobStore blobStore,
+        long stringCacheMB,
+        long templateCacheMB,
+        long mapEntryCacheMB,
+        MeterStats readStats
     ) {
         this.writer = checkNotNull(writer);
         this.blobStore = blobStore;
         stringCache = new StringCache(stringCacheMB * 1024 * 1024);
         templateCache = new TemplateCache(templateCacheMB * 1024 * 1024);
+        mapEntryCache = new MapEntryCache(mapEntryCacheMB * 1024 * 1024);
         this.readStats = readStats;
     }
 
@@ -110,7 +141,7 @@ public class CachingSegmentReader implements SegmentReader {
     @NotNull
     @Override
     public MapRecord readMap(@NotNull RecordId id) {
-        return new MapRecord(this, id);
+        return new MapRecord(this, id, mapEntryCache);
     }
 
     /**
@@ -178,4 +209,9 @@ public class CachingSegmentReader implements SegmentReader {
     public CacheStats getTemplateCacheStats() {
         return templateCache.getStats();
     }
+
+    @NotNull
+    public RecordCacheStats getMapEntryCacheStats() {
+        return mapEntryCache.getStats();
+    }
 }
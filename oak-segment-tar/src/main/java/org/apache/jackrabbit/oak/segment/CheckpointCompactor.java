@@ -87,8 +87,28 @@ public class CheckpointCompactor {
             @NotNull SegmentWriter writer,
             @Nullable BlobStore blobStore,
             @NotNull GCNodeWriteMonitor compactionMonitor) {
+        this(gcListener, reader, writer, blobStore, compactionMonitor, null);
+    }
+
+    /**
+     * Create a new instance based on the passed arguments.
+     * @param reader     segment reader used to read from the segments
+     * @param writer     segment writer used to serialise to segments
+     * @param blobStore  the blob store or {@code null} if none
+     * @param compactionMonitor   notification call back for each compacted nodes,
+     *                            properties, and binaries
+     * @param compactedNodeCache  cache of nodes compacted by this and previous
+     *                            compactions or {@code null} if none
+     */
+    public CheckpointCompactor(
+            @NotNull GCMonitor gcListener,
+            @NotNull SegmentReader reader,
+            @NotNull SegmentWriter writer,
+            @Nullable BlobStore blobStore,
+            @NotNull GCNodeWriteMonitor compactionMonitor,
+            @Nullable CompactedNodeCache compactedNodeCache) {
         this.gcListener = gcListener;
-        this.compactor = new Compactor(reader, writer, blobStore, compactionMonitor);
+        this.compactor = new Compactor(reader, writer, blobStore, compactionMonitor, compactedNodeCache);
         this.nodeWriter = (node, stableId) -> {
             RecordId nodeId = writer.writeNode(node, stableId);
             return new SegmentNodeState(reader, writer, blobStore, nodeId);
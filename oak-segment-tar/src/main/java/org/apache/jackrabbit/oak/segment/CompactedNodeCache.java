@@ -0,0 +1,289 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Preconditions.checkArgument;
+import static com.google.common.base.Preconditions.checkNotNull;
+
+import java.util.Arrays;
+
+import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Deduplication cache mapping the record ids of uncompacted node states to the
+ * record ids of their compacted copies. Unlike the caches of the {@link
+ * WriterCacheManager}, which are bound to a single GC generation, the entries
+ * of this cache survive across compactions as long as the full generation does
+ * not change. This allows a tail compaction to reuse the nodes compacted by
+ * the previous tail compactions instead of diffing and rewriting them.
+ * <p>
+ * Entries are kept in two generations. Entries added during a compaction are
+ * only visible to that compaction until it is {@link #commit() committed}, as
+ * the segments written by a failed compaction are removed by the following
+ * cleanup. The entries are stored in fixed size tables of primitive arrays.
+ * When all slots for a key are taken, an existing entry is overwritten, so
+ * that the memory used by this cache is bounded.
+ * <p>
+ * Instances of this class are not thread safe. They are meant to be used by
+ * the single thread running the compaction.
+ */
+public class CompactedNodeCache {
+
+    /**
+     * Default number of entries of each of the two generations of this cache.
+     */
+    public static final int DEFAULT_CAPACITY =
+            Integer.getInteger("oak.segment.compaction.nodeCacheSize", 262144);
+
+    /**
+     * Number of consecutive slots probed for a key.
+     */
+    private static final int PROBES = 8;
+
+    @NotNull
+    private final SegmentIdProvider idProvider;
+
+    @NotNull
+    private final Table committed;
+
+    @NotNull
+    private final Table pending;
+
+    /**
+     * Full generation of the compacted records in {@link #committed}, {@code
+     * -1} if there are none.
+     */
+    private int committedFullGeneration = -1;
+
+    /**
+     * Generation of the running compaction, {@code null} if none.
+     */
+    @Nullable
+    private GCGeneration generation;
+
+    /**
+     * Create a new instance.
+     * @param idProvider  provider for the segment ids of the compacted records
+     * @param capacity    number of entries of each of the two generations of
+     *                    this cache. Rounded up to the next power of two.
+     */
+    public CompactedNodeCache(@NotNull SegmentIdProvider idProvider, int capacity) {
+        checkArgument(capacity > 0, "capacity must be positive");
+        this.idProvider = checkNotNull(idProvider);
+        this.committed = new Table(capacity);
+        this.pending = new Table(capacity);
+    }
+
+    /**
+     * Prepare this cache for a compaction writing records of the given
+     * generation. Entries added by a previous compaction that has not been
+     * committed are discarded.
+     * @param generation  the generation of the compacted records
+     */
+    public void start(@NotNull GCGeneration generation) {
+        this.generation = checkNotNull(generation);
+        pending.clear();
+    }
+
+    /**
+     * Make the entries added during the current compaction visible to the
+     * following compactions. This method must only be called once the
+     * compacted state has become the new head state. If the full generation
+     * changed since the last commit, all previously committed entries are
+     * discarded.
+     */
+    public void commit() {
+        if (generation == null) {
+            return;
+        }
+        if (generation.getFullGeneration() != committedFullGeneration) {
+            committed.clear();
+            committedFullGeneration = generation.getFullGeneration();
+        }
+        committed.putAll(pending);
+        pending.clear();
+        generation = null;
+    }
+
+    /**
+     * Look up the compacted copy of a node state.
+     * <p>
+     * Node states that are already stored in compacted segments of the full
+     * generation being compacted to are returned as they are. Those segments
+     * are retained by tail cleanup and can thus be referenced from the new
+     * generation.
+     *
+     * @param id  record id of the uncompacted node state
+     * @return  record id of the compacted node state or {@code null} if not
+     *          found or if no compaction is running.
+     */
+    @Nullable
+    public RecordId get(@NotNull RecordId id) {
+        if (generation == null) {
+            return null;
+        }
+
+        GCGeneration gen = id.getSegmentId().getGcGeneration();
+        if (gen.isCompacted() && gen.getFullGeneration() == generation.getFullGeneration()) {
+            return id;
+        }
+
+        SegmentId segmentId = id.getSegmentId();
+        long msb = segmentId.getMostSignificantBits();
+        long lsb = segmentId.getLeastSignificantBits();
+        int recordNumber = id.getRecordNumber();
+
+        RecordId compacted = pending.get(msb, lsb, recordNumber, idProvider);
+        if (compacted == null && committedFullGeneration == generation.getFullGeneration()) {
+            compacted = committed.get(msb, lsb, recordNumber, idProvider);
+        }
+        return compacted;
+    }
+
+    /**
+     * Add the compacted copy of a node state. The entry is discarded if no
+     * compaction is running.
+     * @param id         record id of the uncompacted node state
+     * @param compacted  record id of the compacted node state
+     */
+    public void put(@NotNull RecordId id, @NotNull RecordId compacted) {
+        if (generation != null && !id.equals(compacted)) {
+            SegmentId segmentId = id.getSegmentId();
+            SegmentId compactedId = compacted.getSegmentId();
+            pending.put(
+                    segmentId.getMostSignificantBits(),
+                    segmentId.getLeastSignificantBits(),
+                    id.getRecordNumber(),
+                    compactedId.getMostSignificantBits(),
+                    compactedId.getLeastSignificantBits(),
+                    compacted.getRecordNumber()
+            );
+        }
+    }
+
+    /**
+     * @return  the number of committed entries
+     */
+    public int size() {
+        return committed.size;
+    }
+
+    private static final class Table {
+
+        private final long[] msbs;
+
+        private final long[] lsbs;
+
+        /**
+         * Record number of the key plus one for each slot. A value of {@code
+         * 0} marks an empty slot.
+         */
+        private final int[] recordNumbers;
+
+        private final long[] compactedMsbs;
+
+        private final long[] compactedLsbs;
+
+        private final int[] compactedRecordNumbers;
+
+        private final int mask;
+
+        private int size;
+
+        Table(int capacity) {
+            int n = Integer.highestOneBit(Math.max(capacity - 1, PROBES - 1)) << 1;
+            this.msbs = new long[n];
+            this.lsbs = new long[n];
+            this.recordNumbers = new int[n];
+            this.compactedMsbs = new long[n];
+            this.compactedLsbs = new long[n];
+            this.compactedRecordNumbers = new int[n];
+            this.mask = n - 1;
+        }
+
+        @Nullable
+        RecordId get(long msb, long lsb, int recordNumber, SegmentIdProvider idProvider) {
+            int start = hash(msb, lsb, recordNumber);
+            for (int k = 0; k < PROBES; k++) {
+                int i = (start + k) & mask;
+                if (recordNumbers[i] == 0) {
+                    return null;
+                }
+                if (recordNumbers[i] == recordNumber + 1 && msbs[i] == msb && lsbs[i] == lsb) {
+                    SegmentId id = idProvider.newSegmentId(compactedMsbs[i], compactedLsbs[i]);
+                    return new RecordId(id, compactedRecordNumbers[i]);
+                }
+            }
+            return null;
+        }
+
+        void put(long msb, long lsb, int recordNumber, long compactedMsb, long compactedLsb, int compactedRecordNumber) {
+            int start = hash(msb, lsb, recordNumber);
+            int slot = -1;
+            for (int k = 0; k < PROBES; k++) {
+                int i = (start + k) & mask;
+                if (recordNumbers[i] == 0) {
+                    size++;
+                    slot = i;
+                    break;
+                }
+                if (recordNumbers[i] == recordNumber + 1 && msbs[i] == msb && lsbs[i] == lsb) {
+                    slot = i;
+                    break;
+                }
+            }
+            if (slot == -1) {
+                // All slots taken: overwrite the entry in the first slot
+                slot = start & mask;
+            }
+            msbs[slot] = msb;
+            lsbs[slot] = lsb;
+            recordNumbers[slot] = recordNumber + 1;
+            compactedMsbs[slot] = compactedMsb;
+            compactedLsbs[slot] = compactedLsb;
+            compactedRecordNumbers[slot] = compactedRecordNumber;
+        }
+
+        void putAll(Table other) {
+            for (int i = 0; i < other.recordNumbers.length; i++) {
+                if (other.recordNumbers[i] != 0) {
+                    put(other.msbs[i], other.lsbs[i], other.recordNumbers[i] - 1,
+                            other.compactedMsbs[i], other.compactedLsbs[i], other.compactedRecordNumbers[i]);
+                }
+            }
+        }
+
+        void clear() {
+            if (size > 0) {
+                Arrays.fill(recordNumbers, 0);
+                size = 0;
+            }
+        }
+
+        private int hash(long msb, long lsb, int recordNumber) {
+            long h = msb ^ lsb ^ (recordNumber * 0xC2B2AE3D27D4EB4FL);
+            h ^= h >>> 32;
+            h *= 0x9E3779B97F4A7C15L;
+            return (int) (h ^ (h >>> 29));
+        }
+
+    }
+
+}
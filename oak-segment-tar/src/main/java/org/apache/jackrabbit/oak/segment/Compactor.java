@@ -72,6 +72,9 @@ public class Compactor {
     @NotNull
     private final GCNodeWriteMonitor compactionMonitor;
 
+    @Nullable
+    private final CompactedNodeCache compactedNodeCache;
+
     /**
      * Create a new instance based on the passed arguments.
      * @param reader     segment reader used to read from the segments
@@ -85,10 +88,30 @@ public class Compactor {
             @NotNull SegmentWriter writer,
             @Nullable BlobStore blobStore,
             @NotNull GCNodeWriteMonitor compactionMonitor) {
+        this(reader, writer, blobStore, compactionMonitor, null);
+    }
+
+    /**
+     * Create a new instance based on the passed arguments.
+     * @param reader     segment reader used to read from the segments
+     * @param writer     segment writer used to serialise to segments
+     * @param blobStore  the blob store or {@code null} if none
+     * @param compactionMonitor   notification call back for each compacted nodes,
+     *                            properties, and binaries
+     * @param compactedNodeCache  cache of nodes compacted by this and previous
+     *                            compactions or {@code null} if none
+     */
+    public Compactor(
+            @NotNull SegmentReader reader,
+            @NotNull SegmentWriter writer,
+            @Nullable BlobStore blobStore,
+            @NotNull GCNodeWriteMonitor compactionMonitor,
+            @Nullable CompactedNodeCache compactedNodeCache) {
         this.writer = checkNotNull(writer);
         this.reader = checkNotNull(reader);
         this.blobStore = blobStore;
         this.compactionMonitor = checkNotNull(compactionMonitor);
+        this.compactedNodeCache = compactedNodeCache;
     }
 
     /**
@@ -120,7 +143,29 @@ public class Compactor {
         checkNotNull(before);
         checkNotNull(after);
         checkNotNull(onto);
-        return new CompactDiff(onto, canceller).diff(before, after);
+
+        // Subtrees already compacted by this or a previous compaction are
+        // reused as they are. As the compacted copy is a complete clone of
+        // after, this does not depend on before and onto.
+        RecordId cached = getCompacted(after);
+        if (cached != null) {
+            return new SegmentNodeState(reader, writer, blobStore, cached);
+        }
+
+        SegmentNodeState compacted = new CompactDiff(onto, canceller).diff(before, after);
+        if (compacted != null && compactedNodeCache != null && after instanceof SegmentNodeState) {
+            compactedNodeCache.put(((SegmentNodeState) after).getRecordId(), compacted.getRecordId());
+        }
+        return compacted;
+    }
+
+    @Nullable
+    private RecordId getCompacted(@NotNull NodeState state) {
+        if (compactedNodeCache != null && state instanceof SegmentNodeState) {
+            return compactedNodeCache.get(((SegmentNodeState) state).getRecordId());
+        } else {
+            return null;
+        }
     }
 
     @Nullable
@@ -0,0 +1,188 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static com.google.common.base.Preconditions.checkNotNull;
+import static org.apache.jackrabbit.oak.segment.CacheWeights.OBJECT_HEADER_SIZE;
+
+import com.google.common.base.Function;
+import com.google.common.cache.CacheStats;
+import org.apache.jackrabbit.oak.cache.CacheLIRS;
+import org.apache.jackrabbit.oak.commons.StringUtils;
+import org.apache.jackrabbit.oak.segment.CacheWeights.MapEntryCacheWeigher;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * A cache for looking up child entries by name in {@link MapRecord}s. As
+ * records are immutable the result of looking up a name in a given map
+ * never changes. Caching it saves walking the buckets of large maps (i.e.
+ * nodes with many child nodes) over and over again. Lookups for names not
+ * contained in a map are cached as well.
+ */
+public class MapEntryCache {
+
+    private static final String NAME = "Map Entry Cache";
+
+    /**
+     * The cached entries or {@code null} if this cache is disabled.
+     */
+    @Nullable
+    private final CacheLIRS<CacheKey, CacheValue> cache;
+
+    /**
+     * Create a new map entry cache.
+     *
+     * @param maxWeight the maximum memory in bytes or {@code 0} for no cache.
+     */
+    MapEntryCache(long maxWeight) {
+        if (maxWeight > 0) {
+            cache = CacheLIRS.<CacheKey, CacheValue>newBuilder()
+                    .module(NAME)
+                    .maximumWeight(maxWeight)
+                    .averageWeight(300)
+                    .weigher(new MapEntryCacheWeigher())
+                    .build();
+        } else {
+            cache = null;
+        }
+    }
+
+    /**
+     * Get the entry for {@code name} in the map record identified by
+     * {@code map}, looking it up if necessary.
+     *
+     * @param map    the record id of the map record
+     * @param name   the name of the entry
+     * @param loader the function looking up the entry in the map record
+     * @return the entry or {@code null} if the map has no such entry
+     */
+    @Nullable
+    MapEntry get(@NotNull RecordId map, @NotNull String name, @NotNull Function<String, MapEntry> loader) {
+        if (cache == null) {
+            return loader.apply(name);
+        }
+
+        SegmentId segmentId = map.getSegmentId();
+        CacheKey key = new CacheKey(
+                segmentId.getMostSignificantBits(),
+                segmentId.getLeastSignificantBits(),
+                map.getRecordNumber(),
+                name
+        );
+        CacheValue value = cache.getIfPresent(key);
+        if (value == null) {
+            value = new CacheValue(loader.apply(name));
+            cache.put(key, value);
+        }
+        return value.entry;
+    }
+
+    /**
+     * Clear the cache.
+     */
+    public void clear() {
+        if (cache != null) {
+            cache.invalidateAll();
+        }
+    }
+
+    /**
+     * @return  access statistics for this cache
+     */
+    @NotNull
+    public RecordCacheStats getStats() {
+        if (cache == null) {
+            return new RecordCacheStats(NAME, () -> new CacheStats(0, 0, 0, 0, 0, 0), () -> 0L, () -> 0L);
+        }
+        return new RecordCacheStats(NAME, cache::stats, cache::size, cache::getUsedMemory);
+    }
+
+    static class CacheKey {
+        private final long msb, lsb;
+        private final int recordNumber;
+        private final String name;
+        private final int hash;
+
+        CacheKey(long msb, long lsb, int recordNumber, @NotNull String name) {
+            this.msb = msb;
+            this.lsb = lsb;
+            this.recordNumber = recordNumber;
+            this.name = checkNotNull(name);
+            int hash = (int) (msb ^ lsb) + recordNumber;
+            this.hash = 31 * hash + name.hashCode();
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this) {
+                return true;
+            }
+            if (!(other instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey o = (CacheKey) other;
+            return o.hash == hash && o.msb == msb && o.lsb == lsb
+                    && o.recordNumber == recordNumber && o.name.equals(name);
+        }
+
+        @Override
+        public String toString() {
+            return Long.toHexString(msb) +
+                ':' + Long.toHexString(lsb) +
+                '+' + Integer.toHexString(recordNumber) +
+                '/' + name;
+        }
+
+        int estimateMemoryUsage() {
+            return OBJECT_HEADER_SIZE + 32 + StringUtils.estimateMemoryUsage(name);
+        }
+    }
+
+    /**
+     * Wrapper for the cached entry, which is {@code null} if the map
+     * does not contain an entry for the respective name.
+     */
+    static class CacheValue {
+        @Nullable
+        private final MapEntry entry;
+
+        CacheValue(@Nullable MapEntry entry) {
+            this.entry = entry;
+        }
+
+        int estimateMemoryUsage() {
+            int size = OBJECT_HEADER_SIZE + 8;
+            if (entry != null) {
+                // The name is shared with the key of the cache entry
+                size += OBJECT_HEADER_SIZE + 32;
+                size += entry.getKey().estimateMemoryUsage();
+                size += entry.getValue().estimateMemoryUsage();
+            }
+            return size;
+        }
+    }
+
+}
@@ -37,6 +37,7 @@ import org.apache.jackrabbit.oak.spi.state.DefaultNodeStateDiff;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 /**
  * A map. The top level record is either a record of type "BRANCH" or "LEAF"
@@ -55,6 +56,13 @@ public class MapRecord extends Record {
     @NotNull
     private final SegmentReader reader;
 
+    /**
+     * Cache for the entries looked up through {@link #getEntry(String)} or
+     * {@code null} if none.
+     */
+    @Nullable
+    private final MapEntryCache entryCache;
+
     /**
      * Generates a hash code for the value, using a random number generator
      * to improve the distribution of the hash values.
@@ -98,8 +106,13 @@ public class MapRecord extends Record {
     protected static final int MAX_SIZE = (1 << SIZE_BITS) - 1; // ~268e6
 
     MapRecord(@NotNull SegmentReader reader, @NotNull RecordId id) {
+        this(reader, id, null);
+    }
+
+    MapRecord(@NotNull SegmentReader reader, @NotNull RecordId id, @Nullable MapEntryCache entryCache) {
         super(id);
         this.reader = checkNotNull(reader);
+        this.entryCache = entryCache;
     }
 
     boolean isLeaf() {
@@ -156,6 +169,13 @@ public class MapRecord extends Record {
 
     MapEntry getEntry(String name) {
         checkNotNull(name);
+        if (entryCache != null) {
+            return entryCache.get(getRecordId(), name, this::findEntry);
+        }
+        return findEntry(name);
+    }
+
+    private MapEntry findEntry(String name) {
         int hash = getHash(name);
         Segment segment = getSegment();
 
@@ -169,7 +189,7 @@ public class MapRecord extends Record {
                 }
             }
             RecordId base = segment.readRecordId(getRecordNumber(), 8, 2);
-            return reader.readMap(base).getEntry(name);
+            return reader.readMap(base).findEntry(name);
         }
 
         int size = getSize(head);
@@ -189,7 +209,7 @@ public class MapRecord extends Record {
             if ((bitmap & bit) != 0) {
                 int ids = bitCount(bitmap & (bit - 1));
                 RecordId id = segment.readRecordId(getRecordNumber(), 8, ids);
-                return reader.readMap(id).getEntry(name);
+                return reader.readMap(id).findEntry(name);
             } else {
                 return null;
             }
@@ -20,8 +20,12 @@
 package org.apache.jackrabbit.oak.segment;
 
 import static com.google.common.base.Preconditions.checkNotNull;
+import static java.util.Collections.emptyList;
+import static java.util.Comparator.comparingInt;
+import static java.util.stream.Collectors.toList;
 import static org.apache.jackrabbit.oak.segment.CacheWeights.segmentWeight;
 
+import java.util.List;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -96,6 +100,14 @@ public abstract class SegmentCache {
      */
     public abstract void clear();
 
+    /**
+     * @return  the ids of the segments currently in this cache ordered by
+     *          their approximate access frequency, most frequently accessed
+     *          segments first.
+     */
+    @NotNull
+    public abstract List<SegmentId> getSegmentIds();
+
     /**
      * @return Statistics for this cache.
      */
@@ -203,6 +215,14 @@ public abstract class SegmentCache {
             cache.invalidateAll();
         }
 
+        @Override
+        @NotNull
+        public List<SegmentId> getSegmentIds() {
+            return cache.asMap().keySet().stream()
+                    .sorted(comparingInt(SegmentId::getAccessCount).reversed())
+                    .collect(toList());
+        }
+
         @Override
         @NotNull
         public AbstractCacheStats getCacheStats() {
@@ -245,6 +265,12 @@ public abstract class SegmentCache {
         @Override
         public void clear() {}
 
+        @NotNull
+        @Override
+        public List<SegmentId> getSegmentIds() {
+            return emptyList();
+        }
+
         @NotNull
         @Override
         public AbstractCacheStats getCacheStats() {
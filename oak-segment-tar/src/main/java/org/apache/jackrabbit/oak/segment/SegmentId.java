@@ -84,6 +84,20 @@ public class SegmentId implements Comparable<SegmentId> {
      */
     private volatile Segment segment;
 
+    /**
+     * Whether {@link #accessCount} is maintained. It is only needed to persist
+     * the segment cache for warming it up, and is otherwise not updated to
+     * keep the read path free of writes.
+     */
+    private final boolean countAccess;
+
+    /**
+     * Approximate number of accesses to the memoised segment. This field is
+     * intentionally not synchronised as it is only used as a hint for ordering
+     * segments by their access frequency.
+     */
+    private int accessCount;
+
     /**
      * Create a new segment id with access tracking.
      * @param store  store this is belongs to
@@ -92,10 +106,24 @@ public class SegmentId implements Comparable<SegmentId> {
      * @param onAccess  callback called whenever an underlying and locally memoised segment is accessed.
      */
     public SegmentId(@NotNull SegmentStore store, long msb, long lsb, @NotNull Runnable onAccess) {
+        this(store, msb, lsb, onAccess, false);
+    }
+
+    /**
+     * Create a new segment id with access tracking, optionally counting the
+     * accesses to the memoised segment.
+     * @param store  store this is belongs to
+     * @param msb    most significant bits of this id
+     * @param lsb    least significant bits of this id
+     * @param onAccess  callback called whenever an underlying and locally memoised segment is accessed.
+     * @param countAccess  whether to count the accesses (see {@link #getAccessCount()})
+     */
+    public SegmentId(@NotNull SegmentStore store, long msb, long lsb, @NotNull Runnable onAccess, boolean countAccess) {
         this.store = store;
         this.msb = msb;
         this.lsb = lsb;
         this.onAccess = onAccess;
+        this.countAccess = countAccess;
         this.creationTime = System.currentTimeMillis();
     }
 
@@ -154,10 +182,22 @@ public class SegmentId implements Comparable<SegmentId> {
                 }
             }
         }
+        if (countAccess) {
+            accessCount++;
+        }
         onAccess.run();
         return segment;
     }
 
+    /**
+     * @return  the approximate number of times the memoised segment of this
+     *          id has been accessed, or 0 if the accesses are not counted.
+     * @see #getSegment()
+     */
+    int getAccessCount() {
+        return accessCount;
+    }
+
     /**
      * @return  garbage collection related information like the age of this segment
      *          id, the generation of its segment and information about its gc status.
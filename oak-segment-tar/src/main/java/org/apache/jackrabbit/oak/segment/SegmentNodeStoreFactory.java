@@ -19,6 +19,7 @@ package org.apache.jackrabbit.oak.segment;
 import static com.google.common.base.Strings.isNullOrEmpty;
 import static org.apache.jackrabbit.oak.commons.IOUtils.closeQuietly;
 import static org.apache.jackrabbit.oak.osgi.OsgiUtil.lookupConfigurationThenFramework;
+import static org.apache.jackrabbit.oak.segment.CachingSegmentReader.DEFAULT_MAP_ENTRY_CACHE_MB;
 import static org.apache.jackrabbit.oak.segment.CachingSegmentReader.DEFAULT_STRING_CACHE_MB;
 import static org.apache.jackrabbit.oak.segment.CachingSegmentReader.DEFAULT_TEMPLATE_CACHE_MB;
 import static org.apache.jackrabbit.oak.segment.SegmentCache.DEFAULT_SEGMENT_CACHE_MB;
@@ -125,6 +126,15 @@ public class SegmentNodeStoreFactory {
         )
         int segmentCache_size() default DEFAULT_SEGMENT_CACHE_MB;
 
+        @AttributeDefinition(
+            name = "Segment cache warm-up size (MB)",
+            description = "Maximum amount of data in megabytes to load into the segment cache " +
+                "in the background after a restart, starting with the most frequently accessed " +
+                "segments before the shutdown. A value of '0' disables the warm-up. " +
+                "Default value is '0'."
+        )
+        int segmentCacheWarmUp_size() default 0;
+
         @AttributeDefinition(
             name = "String cache size (MB)",
             description = "Cache size for storing most recently used strings in megabytes. " +
@@ -139,6 +149,14 @@ public class SegmentNodeStoreFactory {
         )
         int templateCache_size() default DEFAULT_TEMPLATE_CACHE_MB;
 
+        @AttributeDefinition(
+            name = "Map entry cache size (MB)",
+            description = "Cache size for storing the most recently looked up child nodes " +
+                "of nodes with many children in megabytes. A value of '0' disables the cache. " +
+                "Default value is '" + DEFAULT_MAP_ENTRY_CACHE_MB + "'."
+        )
+        int mapEntryCache_size() default DEFAULT_MAP_ENTRY_CACHE_MB;
+
         @AttributeDefinition(
             name = "String deduplication cache size (#items)",
             description = "Maximum number of strings to keep in the deduplication cache. " +
@@ -488,6 +506,11 @@ public class SegmentNodeStoreFactory {
                 return getCacheSize("segmentCache.size", configuration.segmentCache_size());
             }
 
+            @Override
+            public int getSegmentCacheWarmUpSize() {
+                return getCacheSize("segmentCacheWarmUp.size", configuration.segmentCacheWarmUp_size());
+            }
+
             @Override
             public int getStringCacheSize() {
                 return getCacheSize("stringCache.size", configuration.stringCache_size());
@@ -498,6 +521,11 @@ public class SegmentNodeStoreFactory {
                 return getCacheSize("templateCache.size", configuration.templateCache_size());
             }
 
+            @Override
+            public int getMapEntryCacheSize() {
+                return getCacheSize("mapEntryCache.size", configuration.mapEntryCache_size());
+            }
+
             @Override
             public int getStringDeduplicationCacheSize() {
                 return getCacheSize("stringDeduplicationCache.size", configuration.stringDeduplicationCache_size());
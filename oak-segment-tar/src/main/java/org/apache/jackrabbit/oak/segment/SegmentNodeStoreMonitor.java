@@ -39,6 +39,16 @@ public interface SegmentNodeStoreMonitor {
         public void onCommitDequeued(Thread t, long time) {
             
         }
+
+        @Override
+        public void onCommitRebased(Thread t, long time) {
+
+        }
+
+        @Override
+        public void onCommitRebaseConflict(Thread t) {
+
+        }
     };
 
     /**
@@ -63,4 +73,19 @@ public interface SegmentNodeStoreMonitor {
      */
     void onCommitDequeued(Thread t, long time);
 
+    /**
+     * Notifies the monitor when a commit prepared optimistically was rebased
+     * onto the changes of concurrent commits.
+     * @param t the thread which initiated the write
+     * @param time the time spent rebasing the commit
+     */
+    void onCommitRebased(Thread t, long time);
+
+    /**
+     * Notifies the monitor when a commit prepared optimistically conflicted
+     * with the changes of concurrent commits and had to be applied again.
+     * @param t the thread which initiated the write
+     */
+    void onCommitRebaseConflict(Thread t);
+
 }
\ No newline at end of file
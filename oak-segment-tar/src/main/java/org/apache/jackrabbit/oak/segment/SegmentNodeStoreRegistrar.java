@@ -56,6 +56,7 @@ import org.apache.jackrabbit.oak.segment.file.FileStore;
 import org.apache.jackrabbit.oak.segment.file.FileStoreBuilder;
 import org.apache.jackrabbit.oak.segment.file.FileStoreGCMonitor;
 import org.apache.jackrabbit.oak.segment.file.FileStoreStatsMBean;
+import org.apache.jackrabbit.oak.segment.file.IOProfilerMBean;
 import org.apache.jackrabbit.oak.segment.file.InvalidFileStoreVersionException;
 import org.apache.jackrabbit.oak.segment.file.MetricsIOMonitor;
 import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
@@ -123,10 +124,14 @@ class SegmentNodeStoreRegistrar {
 
         int getSegmentCacheSize();
 
+        int getSegmentCacheWarmUpSize();
+
         int getStringCacheSize();
 
         int getTemplateCacheSize();
 
+        int getMapEntryCacheSize();
+
         int getStringDeduplicationCacheSize();
 
         int getTemplateDeduplicationCacheSize();
@@ -219,8 +224,10 @@ class SegmentNodeStoreRegistrar {
         // Build the FileStore
         FileStoreBuilder builder = fileStoreBuilder(cfg.getSegmentDirectory())
             .withSegmentCacheSize(cfg.getSegmentCacheSize())
+            .withSegmentCacheWarmUpSize(cfg.getSegmentCacheWarmUpSize())
             .withStringCacheSize(cfg.getStringCacheSize())
             .withTemplateCacheSize(cfg.getTemplateCacheSize())
+            .withMapEntryCacheSize(cfg.getMapEntryCacheSize())
             .withStringDeduplicationCacheSize(cfg.getStringDeduplicationCacheSize())
             .withTemplateDeduplicationCacheSize(cfg.getTemplateDeduplicationCacheSize())
             .withNodeDeduplicationCacheSize(cfg.getNodeDeduplicationCacheSize())
@@ -279,7 +286,7 @@ class SegmentNodeStoreRegistrar {
             segmentCacheStats.getName()
         ));
 
-        // Expose stats about the string and template caches
+        // Expose stats about the string, template and map entry caches
 
         CacheStatsMBean stringCacheStats = store.getStringCacheStats();
         registerCloseable(registerMBean(
@@ -297,6 +304,14 @@ class SegmentNodeStoreRegistrar {
             templateCacheStats.getName()
         ));
 
+        CacheStatsMBean mapEntryCacheStats = store.getMapEntryCacheStats();
+        registerCloseable(registerMBean(
+            CacheStatsMBean.class,
+            mapEntryCacheStats,
+            CacheStats.TYPE,
+            mapEntryCacheStats.getName()
+        ));
+
         WriterCacheManager cacheManager = builder.getCacheManager();
         CacheStatsMBean stringDeduplicationCacheStats = cacheManager.getStringCacheStats();
         if (stringDeduplicationCacheStats != null) {
@@ -360,6 +375,15 @@ class SegmentNodeStoreRegistrar {
             "FileStore statistics"
         ));
 
+        // Expose the segment reads from disk
+
+        registerCloseable(registerMBean(
+            IOProfilerMBean.class,
+            store.getIOProfiler(),
+            IOProfilerMBean.TYPE,
+            "Segment I/O profiler"
+        ));
+
         // register segment node store
 
         SegmentNodeStore.SegmentNodeStoreBuilder segmentNodeStoreBuilder = SegmentNodeStoreBuilders.builder(store).withStatisticsProvider(cfg.getStatisticsProvider());
@@ -52,12 +52,16 @@ public class SegmentNodeStoreStats implements SegmentNodeStoreStatsMBean, Segmen
     public static final String COMMIT_QUEUE_SIZE = "COMMIT_QUEUE_SIZE";
     public static final String COMMIT_TIME = "COMMIT_TIME";
     public static final String QUEUEING_TIME = "QUEUEING_TIME";
+    public static final String REBASE_TIME = "REBASE_TIME";
+    public static final String REBASE_CONFLICTS_COUNT = "REBASE_CONFLICTS_COUNT";
 
     private final StatisticsProvider statisticsProvider;
     private final MeterStats commitsCount;
     private final CounterStats commitQueueSize;
     private final TimerStats commitTime;
     private final TimerStats queueingTime;
+    private final TimerStats rebaseTime;
+    private final MeterStats rebaseConflictsCount;
     
     private volatile CommitsTracker commitsTracker;
     private boolean collectStackTraces = COLLECT_STACK_TRACES;
@@ -72,6 +76,8 @@ public class SegmentNodeStoreStats implements SegmentNodeStoreStatsMBean, Segmen
         this.commitQueueSize = statisticsProvider.getCounterStats(COMMIT_QUEUE_SIZE, StatsOptions.DEFAULT);
         this.commitTime = statisticsProvider.getTimer(COMMIT_TIME, StatsOptions.DEFAULT);
         this.queueingTime = statisticsProvider.getTimer(QUEUEING_TIME, StatsOptions.DEFAULT);
+        this.rebaseTime = statisticsProvider.getTimer(REBASE_TIME, StatsOptions.DEFAULT);
+        this.rebaseConflictsCount = statisticsProvider.getMeter(REBASE_CONFLICTS_COUNT, StatsOptions.DEFAULT);
     }
 
     // ~--------------------------------< SegmentStoreMonitor >
@@ -96,6 +102,16 @@ public class SegmentNodeStoreStats implements SegmentNodeStoreStatsMBean, Segmen
         commitsTracker.trackDequedCommitOf(t);
     }
 
+    @Override
+    public void onCommitRebased(Thread t, long time) {
+        rebaseTime.update(time, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void onCommitRebaseConflict(Thread t) {
+        rebaseConflictsCount.mark();
+    }
+
     // ~--------------------------------< SegmentStoreStatsMBean >
 
     @Override
@@ -118,6 +134,16 @@ public class SegmentNodeStoreStats implements SegmentNodeStoreStatsMBean, Segmen
         return asCompositeData(getTimeSeries(QUEUEING_TIME), QUEUEING_TIME);
     }
 
+    @Override
+    public CompositeData getRebaseTimes() {
+        return asCompositeData(getTimeSeries(REBASE_TIME), REBASE_TIME);
+    }
+
+    @Override
+    public CompositeData getRebaseConflictsCount() {
+        return asCompositeData(getTimeSeries(REBASE_CONFLICTS_COUNT), REBASE_CONFLICTS_COUNT);
+    }
+
     @Override
     public TabularData getCommitsCountPerWriterGroupLastMinute() throws OpenDataException {
         return createTabularDataFromCountMap(commitsTracker.getCommitsCountPerGroupLastMinute(), "commitsPerWriterGroup",
@@ -45,6 +45,18 @@ public interface SegmentNodeStoreStatsMBean {
      * @return  time series of the queuing times
      */
     CompositeData getQueuingTimes();
+
+    /**
+     * @return  time series of the times spent rebasing optimistic commits
+     *          onto concurrent commits
+     */
+    CompositeData getRebaseTimes();
+
+    /**
+     * @return  time series of the number of optimistic commits conflicting
+     *          with concurrent commits
+     */
+    CompositeData getRebaseConflictsCount();
     
     /**
      * @return tabular data of the form &lt;commits,writerGroup&gt; collected 
@@ -73,6 +73,11 @@ public class SegmentGCOptions {
      */
     public static final long SIZE_DELTA_ESTIMATION_DEFAULT = 1024L * 1024L * 1024L;
 
+    /**
+     * Default value for {@link #isLiveSizeEstimation()}.
+     */
+    public static final boolean LIVE_SIZE_ESTIMATION_DEFAULT = false;
+
     /**
      * Default value for the gc progress log
      */
@@ -107,6 +112,15 @@ public class SegmentGCOptions {
             "oak.segment.compaction.gcSizeDeltaEstimation",
             SIZE_DELTA_ESTIMATION_DEFAULT);
 
+    /**
+     * Flag controlling whether the estimation phase of a full GC cycle
+     * considers the garbage written since the last full compaction rather
+     * than the growth of the repository.
+     */
+    private boolean liveSizeEstimation = Boolean.parseBoolean(System.getProperty(
+            "oak.segment.compaction.liveSizeEstimation",
+            Boolean.toString(LIVE_SIZE_ESTIMATION_DEFAULT)));
+
     /**
      * Number of nodes after which an update about the compaction process is logged.
      * -1 for never.
@@ -241,6 +255,7 @@ public class SegmentGCOptions {
                     "paused=" + paused +
                     ", estimationDisabled=" + estimationDisabled +
                     ", gcSizeDeltaEstimation=" + gcSizeDeltaEstimation +
+                    ", liveSizeEstimation=" + liveSizeEstimation +
                     ", retryCount=" + retryCount +
                     ", forceTimeout=" + forceTimeout +
                     ", retainedGenerations=" + retainedGenerations +
@@ -286,6 +301,23 @@ public class SegmentGCOptions {
         return this;
     }
 
+    public boolean isLiveSizeEstimation() {
+        return liveSizeEstimation;
+    }
+
+    /**
+     * Enables the estimation of the gain of a full GC cycle from the live size
+     * of the repository. When enabled, full compaction only runs if the data
+     * written since the last full compaction that isn't reachable from the
+     * head state any more exceeds {@link #getGcSizeDeltaEstimation()}.
+     * @param liveSizeEstimation
+     * @return this instance
+     */
+    public SegmentGCOptions setLiveSizeEstimation(boolean liveSizeEstimation) {
+        this.liveSizeEstimation = liveSizeEstimation;
+        return this;
+    }
+
     /**
      * Get the available memory threshold beyond which revision gc will be
      * canceled. Value represents a percentage so an value between {@code 0} and
@@ -31,6 +31,7 @@ import java.io.IOException;
 
 import com.google.common.base.Function;
 import org.apache.jackrabbit.oak.segment.CheckpointCompactor;
+import org.apache.jackrabbit.oak.segment.CompactedNodeCache;
 import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentWriter;
@@ -138,12 +139,16 @@ abstract class AbstractCompactionStrategy implements CompactionStrategy {
 
             Canceller compactionCanceller = context.getCanceller().withShortCircuit();
 
+            CompactedNodeCache compactedNodeCache = context.getCompactedNodeCache();
+            compactedNodeCache.start(nextGeneration);
+
             CheckpointCompactor compactor = new CheckpointCompactor(
                 context.getGCListener(),
                 context.getSegmentReader(),
                 writer,
                 context.getBlobStore(),
-                context.getCompactionMonitor()
+                context.getCompactionMonitor(),
+                compactedNodeCache
             );
 
             SegmentNodeState head = getHead(context);
@@ -222,6 +227,7 @@ abstract class AbstractCompactionStrategy implements CompactionStrategy {
                 context.getSuccessfulCompactionListener().onSuccessfulCompaction(getCompactionType());
                 writer.flush();
                 context.getFlusher().flush();
+                compactedNodeCache.commit();
                 context.getGCListener().info("compaction succeeded in {}, after {} cycles", watch, cycles);
                 return compactionSucceeded(context, nextGeneration, compacted.getRecordId());
             } else {
@@ -128,12 +128,18 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
 
     protected final IOMonitor ioMonitor;
 
+    @NotNull
+    private final IOProfiler ioProfiler;
+
     AbstractFileStore(final FileStoreBuilder builder) {
         this.directory = builder.getDirectory();
+        // the access counts are only used to order the segments persisted
+        // for warming up the segment cache
+        boolean countAccess = builder.getSegmentCacheWarmUpSize() > 0;
         this.tracker = new SegmentTracker(new SegmentIdFactory() {
             @Override @NotNull
             public SegmentId newSegmentId(long msb, long lsb) {
-                return new SegmentId(AbstractFileStore.this, msb, lsb, segmentCache::recordHit);
+                return new SegmentId(AbstractFileStore.this, msb, lsb, segmentCache::recordHit, countAccess);
             }
         });
         this.blobStore = builder.getBlobStore();
@@ -143,11 +149,13 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
             blobStore,
             builder.getStringCacheSize(),
             builder.getTemplateCacheSize(),
+            builder.getMapEntryCacheSize(),
             builder.getStatsProvider().getMeter("oak.segment.reads", StatsOptions.DEFAULT)
         );
         this.memoryMapping = builder.getMemoryMapping();
         this.offHeapAccess = builder.getOffHeapAccess();
         this.ioMonitor = builder.getIOMonitor();
+        this.ioProfiler = builder.getIOProfiler();
         this.segmentBufferMonitor = new SegmentBufferMonitor(builder.getStatsProvider());
     }
 
@@ -158,6 +166,14 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         return new SegmentNotFoundException(id, e);
     }
 
+    /**
+     * @return  the profiler of the segments read from disk by this store
+     */
+    @NotNull
+    public IOProfiler getIOProfiler() {
+        return ioProfiler;
+    }
+
     @NotNull
     public CacheStatsMBean getSegmentCacheStats() {
         return segmentCache.getCacheStats();
@@ -173,6 +189,11 @@ public abstract class AbstractFileStore implements SegmentStore, Closeable {
         return segmentReader.getTemplateCacheStats();
     }
 
+    @NotNull
+    public CacheStatsMBean getMapEntryCacheStats() {
+        return segmentReader.getMapEntryCacheStats();
+    }
+
     @NotNull
     public abstract SegmentWriter getWriter();
 
@@ -26,6 +26,7 @@ import java.io.IOException;
 import java.util.List;
 
 import com.google.common.base.Predicate;
+import org.apache.jackrabbit.oak.segment.CompactedNodeCache;
 import org.apache.jackrabbit.oak.segment.Revisions;
 import org.apache.jackrabbit.oak.segment.SegmentCache;
 import org.apache.jackrabbit.oak.segment.SegmentReader;
@@ -173,6 +174,26 @@ abstract class AbstractGarbageCollectionStrategy implements GarbageCollectionStr
                 return context.getGCJournal();
             }
 
+            @Override
+            public SegmentGCOptions getGCOptions() {
+                return context.getGCOptions();
+            }
+
+            @Override
+            public Revisions getRevisions() {
+                return context.getRevisions();
+            }
+
+            @Override
+            public TarFiles getTarFiles() {
+                return context.getTarFiles();
+            }
+
+            @Override
+            public Flusher getFlusher() {
+                return context.getFlusher();
+            }
+
         };
     }
 
@@ -184,6 +205,11 @@ abstract class AbstractGarbageCollectionStrategy implements GarbageCollectionStr
                 return context.getSegmentTracker();
             }
 
+            @Override
+            public CompactedNodeCache getCompactedNodeCache() {
+                return context.getCompactedNodeCache();
+            }
+
             @Override
             public GCListener getGCListener() {
                 return context.getGCListener();
@@ -25,7 +25,7 @@ class CleanupFirstGarbageCollectionStrategy extends AbstractGarbageCollectionStr
 
     @Override
     EstimationStrategy getFullEstimationStrategy() {
-        return new FullSizeDeltaEstimationStrategy();
+        return new LiveSizeEstimationStrategy(new FullSizeDeltaEstimationStrategy());
     }
 
     @Override
@@ -21,6 +21,7 @@ package org.apache.jackrabbit.oak.segment.file;
 
 import java.io.IOException;
 
+import org.apache.jackrabbit.oak.segment.CompactedNodeCache;
 import org.apache.jackrabbit.oak.segment.Revisions;
 import org.apache.jackrabbit.oak.segment.SegmentReader;
 import org.apache.jackrabbit.oak.segment.SegmentTracker;
@@ -61,6 +62,8 @@ interface CompactionStrategy {
 
         SegmentTracker getSegmentTracker();
 
+        CompactedNodeCache getCompactedNodeCache();
+
     }
 
     CompactionResult compact(Context context) throws IOException;
@@ -23,7 +23,7 @@ class DefaultGarbageCollectionStrategy extends AbstractGarbageCollectionStrategy
 
     @Override
     EstimationStrategy getFullEstimationStrategy() {
-        return new FullSizeDeltaEstimationStrategy();
+        return new LiveSizeEstimationStrategy(new FullSizeDeltaEstimationStrategy());
     }
 
     @Override
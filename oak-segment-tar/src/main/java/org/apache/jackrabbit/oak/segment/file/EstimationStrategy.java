@@ -19,6 +19,10 @@
 
 package org.apache.jackrabbit.oak.segment.file;
 
+import org.apache.jackrabbit.oak.segment.Revisions;
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
+import org.apache.jackrabbit.oak.segment.file.tar.TarFiles;
+
 interface EstimationStrategy {
 
     interface Context {
@@ -29,6 +33,14 @@ interface EstimationStrategy {
 
         GCJournal getGCJournal();
 
+        SegmentGCOptions getGCOptions();
+
+        Revisions getRevisions();
+
+        TarFiles getTarFiles();
+
+        Flusher getFlusher();
+
     }
 
     EstimationResult estimate(Context context);
@@ -19,12 +19,14 @@
 package org.apache.jackrabbit.oak.segment.file;
 
 import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static java.util.concurrent.TimeUnit.MINUTES;
 import static java.util.concurrent.TimeUnit.SECONDS;
 import static org.apache.jackrabbit.oak.commons.IOUtils.humanReadableByteCount;
 import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
 import static org.apache.jackrabbit.oak.segment.DefaultSegmentWriterBuilder.defaultSegmentWriterBuilder;
 import static org.apache.jackrabbit.oak.segment.file.PrintableBytes.newPrintableBytes;
+import static org.apache.jackrabbit.oak.segment.file.Reclaimers.newOldReclaimer;
 import static org.apache.jackrabbit.oak.stats.StatsOptions.DEFAULT;
 import static org.apache.jackrabbit.oak.stats.StatsOptions.METRICS_ONLY;
 
@@ -59,6 +61,7 @@ import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.TimerStats;
 import org.apache.jackrabbit.oak.stats.TimerStats.Context;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -104,6 +107,24 @@ public class FileStore extends AbstractFileStore {
      */
     private final Scheduler fileStoreScheduler = new Scheduler("FileStore background tasks");
 
+    /**
+     * Scheduler for warming up the segment cache after the store has been opened
+     */
+    private final Scheduler warmUpScheduler = new Scheduler("FileStore segment cache warm-up");
+
+    /**
+     * Snapshot of the segment cache used for warming it up after a restart
+     * or {@code null} if the warm-up is disabled.
+     */
+    @Nullable
+    private final SegmentCacheWarmUp segmentCacheWarmUp;
+
+    /**
+     * Raised when the store is being closed in order to stop an ongoing
+     * segment cache warm-up.
+     */
+    private volatile boolean warmUpCancelled;
+
     /**
      * List of old tar file generations that are waiting to be removed. They can
      * not be removed immediately, because they first need to be closed, and the
@@ -132,11 +153,14 @@ public class FileStore extends AbstractFileStore {
 
     private final GarbageCollectionStrategy garbageCollectionStrategy = newGarbageCollectionStrategy();
 
+    private final SegmentGCOptions gcOptions;
+
     FileStore(final FileStoreBuilder builder) throws InvalidFileStoreVersionException, IOException {
         super(builder);
 
         SegmentNodeStorePersistence persistence = builder.getPersistence();
         repositoryLock = persistence.lockRepository();
+        this.gcOptions = builder.getGcOptions();
         StatisticsProvider statsProvider = builder.getStatsProvider();
 
         this.segmentWriter = defaultSegmentWriterBuilder("sys")
@@ -199,7 +223,7 @@ public class FileStore extends AbstractFileStore {
         this.snfeListener = builder.getSnfeListener();
 
         TimerStats flushTimer = statsProvider.getTimer("oak.segment.flush", METRICS_ONLY);
-        fileStoreScheduler.scheduleWithFixedDelay(format("TarMK flush [%s]", directory), 5, SECONDS, () -> {
+        fileStoreScheduler.scheduleWithFixedDelay(format("TarMK flush [%s]", directory), builder.getFlushInterval(), MILLISECONDS, () -> {
             Context timer = flushTimer.time();
             try {
                 tryFlush();
@@ -221,6 +245,22 @@ public class FileStore extends AbstractFileStore {
            }
         });
 
+        int warmUpSize = Math.min(builder.getSegmentCacheWarmUpSize(), builder.getSegmentCacheSize());
+        if (warmUpSize > 0) {
+            this.segmentCacheWarmUp = new SegmentCacheWarmUp(directory);
+            fileStoreScheduler.scheduleWithFixedDelay(format("TarMK segment cache snapshot [%s]", directory), 5, MINUTES,
+                    this::snapshotSegmentCache);
+            warmUpScheduler.execute(format("TarMK segment cache warm-up [%s]", directory), () ->
+                segmentCacheWarmUp.warmUp(
+                    warmUpSize * (long) MB,
+                    id -> containsSegment(tracker.newSegmentId(id.getMostSignificantBits(), id.getLeastSignificantBits())),
+                    id -> readSegment(tracker.newSegmentId(id.getMostSignificantBits(), id.getLeastSignificantBits())),
+                    () -> warmUpCancelled || shutDown.isShutDown()
+                ));
+        } else {
+            this.segmentCacheWarmUp = null;
+        }
+
         log.info("TarMK opened at {}, mmap={}, offHeapAccess={}, size={}",
             directory,
             memoryMapping,
@@ -312,6 +352,25 @@ public class FileStore extends AbstractFileStore {
         return stats;
     }
 
+    /**
+     * @return  the segment cache warm-up or {@code null} if disabled.
+     */
+    @Nullable
+    SegmentCacheWarmUp getSegmentCacheWarmUp() {
+        return segmentCacheWarmUp;
+    }
+
+    private void snapshotSegmentCache() {
+        if (segmentCacheWarmUp == null || segmentCacheWarmUp.isRunning()) {
+            return;
+        }
+        try {
+            segmentCacheWarmUp.snapshot(segmentCache);
+        } catch (IOException e) {
+            log.warn("Unable to write segment cache snapshot", e);
+        }
+    }
+
     /*
      * Callers of this method must hold the shutdown lock
      */
@@ -458,11 +517,18 @@ public class FileStore extends AbstractFileStore {
 
     @Override
     public void close() {
+        // stop an ongoing segment cache warm-up before acquiring the
+        // shutdown lock as it would otherwise block reading segments
+        warmUpCancelled = true;
+        warmUpScheduler.close();
+
         try (ShutDownCloser ignored = shutDown.shutDown()) {
             // avoid deadlocks by closing (and joining) the background
             // thread before acquiring the synchronization lock
             fileStoreScheduler.close();
 
+            snapshotSegmentCache();
+
             try {
                 doFlush();
             } catch (IOException e) {
@@ -491,6 +557,23 @@ public class FileStore extends AbstractFileStore {
         }
     }
 
+    /**
+     * @return  the ids of the segments in the tar files of this store that
+     *          cleanup would retain with respect to the current head. Data
+     *          segments of generations cleanup would reclaim are left out, bulk
+     *          segments are always included. Segments not yet flushed to a tar
+     *          file are not included. Every segment comes after the segments it
+     *          references.
+     */
+    public Iterable<UUID> getSegmentIds() throws IOException {
+        try (ShutDownCloser ignored = shutDown.keepAlive()) {
+            return tarFiles.getSegmentIds(newOldReclaimer(
+                    SegmentGCOptions.GCType.FULL,
+                    getGcGeneration(),
+                    gcOptions.getRetainedGenerations()));
+        }
+    }
+
     @Override
     @NotNull
     public Segment readSegment(final SegmentId id) {
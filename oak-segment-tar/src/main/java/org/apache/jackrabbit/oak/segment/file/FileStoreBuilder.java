@@ -19,10 +19,12 @@
 
 package org.apache.jackrabbit.oak.segment.file;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
 import static com.google.common.collect.Sets.newHashSet;
 import static java.lang.Boolean.getBoolean;
+import static org.apache.jackrabbit.oak.segment.CachingSegmentReader.DEFAULT_MAP_ENTRY_CACHE_MB;
 import static org.apache.jackrabbit.oak.segment.CachingSegmentReader.DEFAULT_STRING_CACHE_MB;
 import static org.apache.jackrabbit.oak.segment.CachingSegmentReader.DEFAULT_TEMPLATE_CACHE_MB;
 import static org.apache.jackrabbit.oak.segment.SegmentCache.DEFAULT_SEGMENT_CACHE_MB;
@@ -49,7 +51,6 @@ import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
 import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
 import org.apache.jackrabbit.oak.segment.spi.monitor.CompositeIOMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
-import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
 import org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceLogWriter;
 import org.apache.jackrabbit.oak.segment.tool.iotrace.IOTraceMonitor;
@@ -74,6 +75,8 @@ public class FileStoreBuilder {
 
     public static final int DEFAULT_MAX_FILE_SIZE = 256;
 
+    public static final int DEFAULT_FLUSH_INTERVAL = 5000;
+
     @NotNull
     private final File directory;
 
@@ -82,12 +85,20 @@ public class FileStoreBuilder {
 
     private int maxFileSize = DEFAULT_MAX_FILE_SIZE;
 
+    private int flushInterval = DEFAULT_FLUSH_INTERVAL;
+
+    private int followInterval;
+
     private int segmentCacheSize = DEFAULT_SEGMENT_CACHE_MB;
 
+    private int segmentCacheWarmUpSize;
+
     private int stringCacheSize = DEFAULT_STRING_CACHE_MB;
 
     private int templateCacheSize = DEFAULT_TEMPLATE_CACHE_MB;
 
+    private int mapEntryCacheSize = DEFAULT_MAP_ENTRY_CACHE_MB;
+
     private int stringDeduplicationCacheSize = DEFAULT_STRING_CACHE_SIZE;
 
     private int templateDeduplicationCacheSize = DEFAULT_TEMPLATE_CACHE_SIZE;
@@ -135,6 +146,9 @@ public class FileStoreBuilder {
     @NotNull
     private final Set<IOMonitor> ioMonitors = newHashSet();
 
+    @Nullable
+    private IOProfiler ioProfiler;
+
     private boolean strictVersionCheck;
 
     private boolean built;
@@ -177,6 +191,42 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Interval in milliseconds between two background flushes. All segments
+     * and journal entries written within one interval are synced to disk as a
+     * single batch, so this is the upper bound of the time a commit may stay
+     * unsynced. Lower values reduce the amount of work lost on a crash,
+     * higher values reduce the number of syncs on slow disks.
+     * @param flushInterval  positive flush interval in milliseconds
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withFlushInterval(int flushInterval) {
+        checkArgument(flushInterval > 0, "Flush interval must be positive");
+        this.flushInterval = flushInterval;
+        return this;
+    }
+
+    /**
+     * Interval in milliseconds at which a read only file store follows the
+     * writer of the same store running in another process. At each interval
+     * the read only store opens the TAR files sealed by the writer since the
+     * last interval and moves its head to the most recent revision of the
+     * journal it can access. Combined with memory mapping, all processes
+     * share the pages of the TAR files through the OS page cache. This
+     * setting has no effect on a read write file store.
+     * @param followInterval  follow interval in milliseconds or {@code 0}
+     *                        to disable following (the default)
+     * @return this instance
+     * @see ReadOnlyFileStore#refresh()
+     */
+    @NotNull
+    public FileStoreBuilder withFollowInterval(int followInterval) {
+        checkArgument(followInterval >= 0, "Follow interval must not be negative");
+        this.followInterval = followInterval;
+        return this;
+    }
+
     /**
      * Size of the segment cache in MB.
      * @param segmentCacheSize  None negative cache size
@@ -188,6 +238,21 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Maximum amount of data in MB to load into the segment cache when the
+     * store is opened. If greater than {@code 0} the ids of the cached
+     * segments are periodically written to the store directory and the most
+     * frequently accessed of those segments are loaded in the background after
+     * a restart. Disabled by default.
+     * @param segmentCacheWarmUpSize  None negative warm-up size
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withSegmentCacheWarmUpSize(int segmentCacheWarmUpSize) {
+        this.segmentCacheWarmUpSize = segmentCacheWarmUpSize;
+        return this;
+    }
+
     /**
      * Size of the string cache in MB.
      * @param stringCacheSize  None negative cache size
@@ -210,6 +275,18 @@ public class FileStoreBuilder {
         return this;
     }
 
+    /**
+     * Size of the map entry cache in MB. This cache keeps the results of
+     * looking up child nodes by name and is disabled by default.
+     * @param mapEntryCacheSize  None negative cache size
+     * @return this instance
+     */
+    @NotNull
+    public FileStoreBuilder withMapEntryCacheSize(int mapEntryCacheSize) {
+        this.mapEntryCacheSize = mapEntryCacheSize;
+        return this;
+    }
+
     /**
      * Number of items to keep in the string deduplication cache
      * @param stringDeduplicationCacheSize  None negative cache size
@@ -454,10 +531,22 @@ public class FileStoreBuilder {
         return maxFileSize;
     }
 
+    int getFlushInterval() {
+        return flushInterval;
+    }
+
+    int getFollowInterval() {
+        return followInterval;
+    }
+
     int getSegmentCacheSize() {
         return segmentCacheSize;
     }
 
+    int getSegmentCacheWarmUpSize() {
+        return segmentCacheWarmUpSize;
+    }
+
     int getStringCacheSize() {
         return stringCacheSize;
     }
@@ -466,6 +555,10 @@ public class FileStoreBuilder {
         return templateCacheSize;
     }
 
+    int getMapEntryCacheSize() {
+        return mapEntryCacheSize;
+    }
+
     boolean getMemoryMapping() {
         return memoryMapping;
     }
@@ -516,9 +609,37 @@ public class FileStoreBuilder {
     }
 
     IOMonitor getIOMonitor() {
-        return ioMonitors.isEmpty()
-            ? new IOMonitorAdapter()
-            : new CompositeIOMonitor(ioMonitors);
+        Set<IOMonitor> monitors = newHashSet(ioMonitors);
+        monitors.add(getIOProfiler());
+        return new CompositeIOMonitor(monitors);
+    }
+
+    /**
+     * The {@link IOProfiler} of the file store. It is always registered as an
+     * {@link IOMonitor}, as it only keeps counters and samples reads.
+     */
+    @NotNull
+    IOProfiler getIOProfiler() {
+        if (ioProfiler == null) {
+            ioProfiler = new IOProfiler(
+                getAccessType(),
+                IOProfiler.DEFAULT_SAMPLE_INTERVAL,
+                IOProfiler.DEFAULT_SAMPLE_SIZE
+            );
+        }
+        return ioProfiler;
+    }
+
+    private String getAccessType() {
+        if (!(persistence instanceof TarPersistence)) {
+            return persistence.getClass().getSimpleName();
+        } else if (memoryMapping) {
+            return "mapped";
+        } else if (offHeapAccess) {
+            return "random-off-heap";
+        } else {
+            return "random";
+        }
     }
 
     boolean getStrictVersionCheck() {
@@ -532,9 +653,13 @@ public class FileStoreBuilder {
                 ", directory=" + directory +
                 ", blobStore=" + blobStore +
                 ", maxFileSize=" + maxFileSize +
+                ", flushInterval=" + flushInterval +
+                ", followInterval=" + followInterval +
                 ", segmentCacheSize=" + segmentCacheSize +
+                ", segmentCacheWarmUpSize=" + segmentCacheWarmUpSize +
                 ", stringCacheSize=" + stringCacheSize +
                 ", templateCacheSize=" + templateCacheSize +
+                ", mapEntryCacheSize=" + mapEntryCacheSize +
                 ", stringDeduplicationCacheSize=" + stringDeduplicationCacheSize +
                 ", templateDeduplicationCacheSize=" + templateDeduplicationCacheSize +
                 ", nodeDeduplicationCacheSize=" + nodeDeduplicationCacheSize +
@@ -76,6 +76,34 @@ class FileStoreProcBackend implements Backend {
         }
     }
 
+    @Override
+    public Optional<Reads> getTarReads(String name) {
+        IOProfiler.FileReads reads = fileStore.getIOProfiler().getFileReads(name);
+
+        if (reads == null) {
+            return Optional.empty();
+        }
+
+        return Optional.of(new Reads() {
+
+            @Override
+            public long getCount() {
+                return reads.getCount();
+            }
+
+            @Override
+            public long getBytes() {
+                return reads.getBytes();
+            }
+
+            @Override
+            public long getTime() {
+                return reads.getTime();
+            }
+
+        });
+    }
+
     @Override
     public Iterable<String> getTarNames() {
         try {
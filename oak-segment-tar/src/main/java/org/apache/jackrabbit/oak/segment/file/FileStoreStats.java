@@ -121,6 +121,24 @@ public class FileStoreStats implements FileStoreStatsMBean, FileStoreMonitor {
         return asCompositeData(getTimeSeries(JOURNAL_WRITES), JOURNAL_WRITES);
     }
 
+    @Override
+    public int getSegmentCacheWarmUpSegmentCount() {
+        SegmentCacheWarmUp warmUp = store.getSegmentCacheWarmUp();
+        return warmUp == null ? 0 : warmUp.getSegmentCount();
+    }
+
+    @Override
+    public long getSegmentCacheWarmUpSize() {
+        SegmentCacheWarmUp warmUp = store.getSegmentCacheWarmUp();
+        return warmUp == null ? 0 : warmUp.getSize();
+    }
+
+    @Override
+    public boolean isSegmentCacheWarmUpRunning() {
+        SegmentCacheWarmUp warmUp = store.getSegmentCacheWarmUp();
+        return warmUp != null && warmUp.isRunning();
+    }
+
     private TimeSeries getTimeSeries(String name) {
         return statisticsProvider.getStats().getTimeSeries(name, true);
     }
@@ -58,4 +58,19 @@ public interface FileStoreStatsMBean {
      * @return  time series of the writes to journal
      */
     CompositeData getJournalWriteStatsAsCompositeData();
+
+    /**
+     * @return  number of segments loaded by the segment cache warm-up
+     */
+    int getSegmentCacheWarmUpSegmentCount();
+
+    /**
+     * @return  number of bytes loaded by the segment cache warm-up
+     */
+    long getSegmentCacheWarmUpSize();
+
+    /**
+     * @return  {@code true} while the segment cache warm-up is in progress
+     */
+    boolean isSegmentCacheWarmUpRunning();
 }
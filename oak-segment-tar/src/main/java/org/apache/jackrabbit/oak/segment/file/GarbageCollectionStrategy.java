@@ -23,6 +23,7 @@ import java.io.IOException;
 import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
+import org.apache.jackrabbit.oak.segment.CompactedNodeCache;
 import org.apache.jackrabbit.oak.segment.Revisions;
 import org.apache.jackrabbit.oak.segment.SegmentCache;
 import org.apache.jackrabbit.oak.segment.SegmentReader;
@@ -86,6 +87,8 @@ interface GarbageCollectionStrategy {
 
         SegmentReader getSegmentReader();
 
+        CompactedNodeCache getCompactedNodeCache();
+
     }
 
     void collectGarbage(Context context) throws IOException;
@@ -30,6 +30,7 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 
 import com.google.common.base.Supplier;
+import org.apache.jackrabbit.oak.segment.CompactedNodeCache;
 import org.apache.jackrabbit.oak.segment.Revisions;
 import org.apache.jackrabbit.oak.segment.SegmentCache;
 import org.apache.jackrabbit.oak.segment.SegmentReader;
@@ -115,6 +116,12 @@ class GarbageCollector {
 
     private volatile boolean cancelRequested;
 
+    /**
+     * Cache of the nodes compacted by previous compactions. Allocated on the
+     * first compaction, as it is of no use for stores that are never compacted.
+     */
+    private CompactedNodeCache compactedNodeCache;
+
     GarbageCollector(
         SegmentGCOptions gcOptions,
         GCListener gcListener,
@@ -160,6 +167,13 @@ class GarbageCollector {
         return compactionMonitor;
     }
 
+    private CompactedNodeCache compactedNodeCache() {
+        if (compactedNodeCache == null) {
+            compactedNodeCache = new CompactedNodeCache(tracker, CompactedNodeCache.DEFAULT_CAPACITY);
+        }
+        return compactedNodeCache;
+    }
+
     private GarbageCollectionStrategy.Context newGarbageCollectionContext(int gcCount) {
         return new GarbageCollectionStrategy.Context() {
 
@@ -273,6 +287,11 @@ class GarbageCollector {
                 return segmentReader;
             }
 
+            @Override
+            public CompactedNodeCache getCompactedNodeCache() {
+                return compactedNodeCache();
+            }
+
         };
     }
 
@@ -0,0 +1,321 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file;
+
+import static java.util.concurrent.TimeUnit.NANOSECONDS;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map.Entry;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * An {@link IOMonitor} collecting statistics about the segments read from
+ * disk by a live file store. For each read, it updates the counters of the
+ * tar file the segment was read from and a histogram of the read latencies.
+ * Every {@code sampleInterval}-th read is additionally recorded in a bounded
+ * buffer of samples, together with the context that caused the read. The
+ * context is either set by the reading thread via {@link #setContext(String)},
+ * e.g. to the path of the node being read, or defaults to the first caller
+ * outside of the segment store.
+ * <p>
+ * Contrary to the {@code iotrace} tool, which traces all reads of an offline
+ * store, this class is cheap enough to be always enabled.
+ */
+public class IOProfiler extends IOMonitorAdapter implements IOProfilerMBean {
+
+    /**
+     * Default number of reads between two sampled reads.
+     */
+    public static final int DEFAULT_SAMPLE_INTERVAL =
+            Integer.getInteger("oak.segment.io.sampleInterval", 64);
+
+    /**
+     * Default number of sampled reads kept.
+     */
+    public static final int DEFAULT_SAMPLE_SIZE =
+            Integer.getInteger("oak.segment.io.sampleSize", 1024);
+
+    /**
+     * Number of buckets of the latency histogram. Bucket {@code i} counts the
+     * reads that took less than {@code 2^i} microseconds, the last bucket all
+     * the remaining ones.
+     */
+    private static final int LATENCY_BUCKETS = 24;
+
+    private static final ThreadLocal<String> CONTEXT = new ThreadLocal<>();
+
+    /**
+     * Statistics about the reads from a single file.
+     */
+    public static class FileReads {
+
+        private final LongAdder count = new LongAdder();
+
+        private final LongAdder bytes = new LongAdder();
+
+        private final LongAdder time = new LongAdder();
+
+        private void record(int length, long elapsed) {
+            count.increment();
+            bytes.add(length);
+            time.add(elapsed);
+        }
+
+        /**
+         * @return  number of segments read from the file
+         */
+        public long getCount() {
+            return count.sum();
+        }
+
+        /**
+         * @return  number of bytes read from the file
+         */
+        public long getBytes() {
+            return bytes.sum();
+        }
+
+        /**
+         * @return  time spent reading from the file, in nanoseconds
+         */
+        public long getTime() {
+            return time.sum();
+        }
+
+    }
+
+    private static class Sample {
+
+        private final long timestamp = System.currentTimeMillis();
+
+        private final String file;
+
+        private final long msb;
+
+        private final long lsb;
+
+        private final int length;
+
+        private final long elapsed;
+
+        private final String context;
+
+        private Sample(String file, long msb, long lsb, int length, long elapsed, String context) {
+            this.file = file;
+            this.msb = msb;
+            this.lsb = lsb;
+            this.length = length;
+            this.elapsed = elapsed;
+            this.context = context;
+        }
+
+        @Override
+        public String toString() {
+            return new Date(timestamp) + " " + file + " " + new UUID(msb, lsb) + " " +
+                    length + " bytes " + NANOSECONDS.toMicros(elapsed) + " us " + context;
+        }
+
+    }
+
+    @NotNull
+    private final String accessType;
+
+    private final int sampleInterval;
+
+    private final ConcurrentMap<String, FileReads> files = new ConcurrentHashMap<>();
+
+    private final AtomicLongArray latencies = new AtomicLongArray(LATENCY_BUCKETS);
+
+    private final AtomicLong reads = new AtomicLong();
+
+    private final LongAdder readBytes = new LongAdder();
+
+    private final AtomicReferenceArray<Sample> samples;
+
+    /**
+     * Create a new instance.
+     * @param accessType      the type of file access used to read segments
+     * @param sampleInterval  number of reads between two sampled reads, {@code
+     *                        0} to disable sampling
+     * @param sampleSize      number of sampled reads kept
+     */
+    public IOProfiler(@NotNull String accessType, int sampleInterval, int sampleSize) {
+        this.accessType = accessType;
+        this.sampleInterval = sampleInterval;
+        this.samples = new AtomicReferenceArray<>(Math.max(sampleSize, 1));
+    }
+
+    /**
+     * Set the context of the segment reads of the current thread, e.g. the
+     * path of the node being read.
+     * @param context  the context or {@code null} to clear it
+     */
+    public static void setContext(@Nullable String context) {
+        if (context == null) {
+            CONTEXT.remove();
+        } else {
+            CONTEXT.set(context);
+        }
+    }
+
+    @Override
+    public void afterSegmentRead(File file, long msb, long lsb, int length, long elapsed) {
+        String name = file.getName();
+        FileReads fileReads = files.get(name);
+        if (fileReads == null) {
+            fileReads = files.computeIfAbsent(name, k -> new FileReads());
+        }
+        fileReads.record(length, elapsed);
+
+        readBytes.add(length);
+        latencies.incrementAndGet(latencyBucket(elapsed));
+
+        long n = reads.incrementAndGet();
+        if (sampleInterval > 0 && n % sampleInterval == 0) {
+            int slot = (int) ((n / sampleInterval) % samples.length());
+            samples.set(slot, new Sample(name, msb, lsb, length, elapsed, getContext()));
+        }
+    }
+
+    private static int latencyBucket(long elapsed) {
+        long micros = NANOSECONDS.toMicros(elapsed);
+        return Math.min(64 - Long.numberOfLeadingZeros(micros), LATENCY_BUCKETS - 1);
+    }
+
+    private static String getContext() {
+        String context = CONTEXT.get();
+        if (context != null) {
+            return context;
+        }
+        for (StackTraceElement frame : new Throwable().getStackTrace()) {
+            String className = frame.getClassName();
+            if (!className.startsWith("org.apache.jackrabbit.oak.segment.")
+                    && !className.startsWith("java.")
+                    && !className.startsWith("sun.")
+                    && !className.startsWith("jdk.")
+                    && !className.startsWith("com.google.common.")) {
+                return frame.toString();
+            }
+        }
+        return "unknown";
+    }
+
+    /**
+     * @param file  name of a tar file
+     * @return  the statistics about the reads from {@code file} or {@code null}
+     *          if no segment was read from it
+     */
+    @Nullable
+    public FileReads getFileReads(@NotNull String file) {
+        return files.get(file);
+    }
+
+    //------------------------------------------------------------< IOProfilerMBean >--
+
+    @Override
+    public String getAccessType() {
+        return accessType;
+    }
+
+    @Override
+    public long getReadCount() {
+        return reads.get();
+    }
+
+    @Override
+    public long getReadBytes() {
+        return readBytes.sum();
+    }
+
+    @Override
+    public String[] getReadHeatmap() {
+        List<Entry<String, FileReads>> entries = new ArrayList<>(files.entrySet());
+        entries.sort((e1, e2) -> Long.compare(e2.getValue().getCount(), e1.getValue().getCount()));
+        String[] heatmap = new String[entries.size()];
+        for (int i = 0; i < heatmap.length; i++) {
+            FileReads fileReads = entries.get(i).getValue();
+            heatmap[i] = entries.get(i).getKey() +
+                    " reads=" + fileReads.getCount() +
+                    " bytes=" + fileReads.getBytes() +
+                    " time=" + NANOSECONDS.toMillis(fileReads.getTime()) + "ms";
+        }
+        return heatmap;
+    }
+
+    @Override
+    public String[] getReadLatencyHistogram() {
+        String[] histogram = new String[LATENCY_BUCKETS];
+        for (int i = 0; i < LATENCY_BUCKETS - 1; i++) {
+            histogram[i] = accessType + " <" + (1L << i) + "us: " + latencies.get(i);
+        }
+        histogram[LATENCY_BUCKETS - 1] = accessType + " >=" + (1L << (LATENCY_BUCKETS - 2)) + "us: " +
+                latencies.get(LATENCY_BUCKETS - 1);
+        return histogram;
+    }
+
+    @Override
+    public String[] getSampledReads() {
+        List<Sample> sampled = new ArrayList<>();
+        for (int i = 0; i < samples.length(); i++) {
+            Sample sample = samples.get(i);
+            if (sample != null) {
+                sampled.add(sample);
+            }
+        }
+        sampled.sort((s1, s2) -> Long.compare(s2.timestamp, s1.timestamp));
+        return sampled.stream().map(Sample::toString).toArray(String[]::new);
+    }
+
+    /**
+     * Forget the reads of a TAR file once it is closed, so that the files
+     * removed by cleanup don't accumulate.
+     */
+    @Override
+    public void afterFileClosed(File file) {
+        files.remove(file.getName());
+    }
+
+    @Override
+    public void reset() {
+        files.clear();
+        for (int i = 0; i < LATENCY_BUCKETS; i++) {
+            latencies.set(i, 0);
+        }
+        reads.set(0);
+        readBytes.reset();
+        for (int i = 0; i < samples.length(); i++) {
+            samples.set(i, null);
+        }
+    }
+
+}
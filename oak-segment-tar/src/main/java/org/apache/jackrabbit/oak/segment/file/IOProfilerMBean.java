@@ -0,0 +1,70 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.jackrabbit.oak.segment.file;
+
+/**
+ * Exposes the segment reads recorded by the {@link IOProfiler} of a file
+ * store.
+ */
+public interface IOProfilerMBean {
+
+    String TYPE = "IOProfiler";
+
+    /**
+     * @return  the type of file access used to read segments, e.g. {@code
+     *          mapped} or {@code random}
+     */
+    String getAccessType();
+
+    /**
+     * @return  the number of segments read from disk since the last reset
+     */
+    long getReadCount();
+
+    /**
+     * @return  the number of bytes read from disk since the last reset
+     */
+    long getReadBytes();
+
+    /**
+     * @return  one line per tar file with the number of reads, the number of
+     *          bytes and the time spent reading from it, in descending order of
+     *          reads
+     */
+    String[] getReadHeatmap();
+
+    /**
+     * @return  one line per bucket of the read latency histogram. Each bucket
+     *          counts the reads that took at most the given number of
+     *          microseconds.
+     */
+    String[] getReadLatencyHistogram();
+
+    /**
+     * @return  the most recent sampled reads, together with the context that
+     *          caused the read
+     */
+    String[] getSampledReads();
+
+    /**
+     * Clear all recorded statistics.
+     */
+    void reset();
+
+}
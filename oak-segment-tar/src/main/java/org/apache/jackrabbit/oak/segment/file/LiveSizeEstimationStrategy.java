@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static java.lang.String.format;
+import static java.util.Collections.singleton;
+import static org.apache.jackrabbit.oak.segment.file.PrintableBytes.newPrintableBytes;
+
+import java.io.IOException;
+
+import org.apache.jackrabbit.oak.segment.RecordId;
+import org.apache.jackrabbit.oak.segment.file.tar.LiveSizeEstimate;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Estimates the gain of a full garbage collection from the amount of garbage
+ * written since the last full compaction, rather than from the growth of the
+ * repository. The garbage is the size of the segments of the current full
+ * generation that are not reachable from the head state, including the
+ * checkpoints. Reachability is determined from the segment graphs of the TAR
+ * files without reading any segment. A repository growing because of new live
+ * content thus doesn't trigger a compaction, which would copy that content
+ * without reclaiming anything.
+ * <p>
+ * If this kind of estimation is disabled in the {@link
+ * org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions}, or if the
+ * live size can't be determined, the estimation is delegated to another
+ * strategy.
+ */
+class LiveSizeEstimationStrategy implements EstimationStrategy {
+
+    private static final Logger log = LoggerFactory.getLogger(LiveSizeEstimationStrategy.class);
+
+    private final EstimationStrategy delegate;
+
+    LiveSizeEstimationStrategy(EstimationStrategy delegate) {
+        this.delegate = delegate;
+    }
+
+    @Override
+    public EstimationResult estimate(Context context) {
+        if (!context.getGCOptions().isLiveSizeEstimation() || context.getSizeDelta() == 0) {
+            return delegate.estimate(context);
+        }
+
+        LiveSizeEstimate estimate;
+        try {
+            estimate = estimateLiveSize(context);
+        } catch (IOException e) {
+            log.warn("Unable to estimate the live size of the repository", e);
+            return delegate.estimate(context);
+        }
+
+        long written = estimate.getSelectedSize();
+        long garbage = written - estimate.getSelectedLiveSize();
+        boolean gcNeeded = garbage > context.getSizeDelta();
+        String gcInfo = format(
+            "Segmentstore size is %s, of which %s is reachable from the head state. %s have been written since the last full garbage collection, of which %s is garbage. ",
+            newPrintableBytes(estimate.getTotalSize()),
+            newPrintableBytes(estimate.getLiveSize()),
+            newPrintableBytes(written),
+            newPrintableBytes(garbage)
+        );
+        if (gcNeeded) {
+            gcInfo = gcInfo + format(
+                "This is greater than sizeDeltaEstimation=%s, so running garbage collection",
+                newPrintableBytes(context.getSizeDelta())
+            );
+        } else {
+            gcInfo = gcInfo + format(
+                "This is less than sizeDeltaEstimation=%s, so skipping garbage collection",
+                newPrintableBytes(context.getSizeDelta())
+            );
+        }
+        return new EstimationResult(gcNeeded, gcInfo);
+    }
+
+    private static LiveSizeEstimate estimateLiveSize(Context context) throws IOException {
+        // Make sure the head state is persisted, so that its segment is
+        // contained in the TAR files.
+        context.getFlusher().flush();
+
+        RecordId head = context.getRevisions().getHead();
+        int fullGeneration = head.getSegmentId().getGcGeneration().getFullGeneration();
+        return context.getTarFiles().estimateLiveSize(
+            singleton(head.getSegmentId().asUUID()),
+            generation -> generation.getFullGeneration() == fullGeneration
+        );
+    }
+
+}
@@ -23,6 +23,7 @@ import static java.util.concurrent.TimeUnit.NANOSECONDS;
 import java.io.File;
 
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitorAdapter;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
 import org.apache.jackrabbit.oak.stats.MeterStats;
 import org.apache.jackrabbit.oak.stats.StatisticsProvider;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
@@ -41,6 +42,10 @@ import org.jetbrains.annotations.NotNull;
  *          a timer metrics for the time spent reading from tar files</li>
  *     <li>{@link #OAK_SEGMENT_SEGMENT_WRITE_TIME}:
  *          a timer metrics for the time spent writing to tar files</li>
+ *     <li>{@link #OAK_SEGMENT_SEGMENT_SYNC_BATCH}:
+ *          a histogram metrics for the number of segments synced to tar files at once</li>
+ *     <li>{@link #OAK_SEGMENT_SEGMENT_SYNC_TIME}:
+ *          a timer metrics for the time spent syncing tar files</li>
  * </ul>
  */
 public class MetricsIOMonitor extends IOMonitorAdapter {
@@ -48,11 +53,15 @@ public class MetricsIOMonitor extends IOMonitorAdapter {
     public static final String OAK_SEGMENT_SEGMENT_WRITE_BYTES = "oak.segment.segment-write-bytes";
     public static final String OAK_SEGMENT_SEGMENT_READ_TIME = "oak.segment.segment-read-time";
     public static final String OAK_SEGMENT_SEGMENT_WRITE_TIME = "oak.segment.segment-write-time";
+    public static final String OAK_SEGMENT_SEGMENT_SYNC_BATCH = "oak.segment.segment-sync-batch";
+    public static final String OAK_SEGMENT_SEGMENT_SYNC_TIME = "oak.segment.segment-sync-time";
 
     private final MeterStats segmentReadBytes;
     private final MeterStats segmentWriteBytes;
     private final TimerStats segmentReadTime;
     private final TimerStats segmentWriteTime;
+    private final HistogramStats segmentSyncBatch;
+    private final TimerStats segmentSyncTime;
 
     public MetricsIOMonitor(@NotNull StatisticsProvider statisticsProvider) {
         segmentReadBytes = statisticsProvider.getMeter(
@@ -63,6 +72,10 @@ public class MetricsIOMonitor extends IOMonitorAdapter {
                 OAK_SEGMENT_SEGMENT_READ_TIME, StatsOptions.METRICS_ONLY);
         segmentWriteTime = statisticsProvider.getTimer(
                 OAK_SEGMENT_SEGMENT_WRITE_TIME, StatsOptions.METRICS_ONLY);
+        segmentSyncBatch = statisticsProvider.getHistogram(
+                OAK_SEGMENT_SEGMENT_SYNC_BATCH, StatsOptions.METRICS_ONLY);
+        segmentSyncTime = statisticsProvider.getTimer(
+                OAK_SEGMENT_SEGMENT_SYNC_TIME, StatsOptions.METRICS_ONLY);
     }
 
     @Override
@@ -76,4 +89,10 @@ public class MetricsIOMonitor extends IOMonitorAdapter {
         segmentWriteBytes.mark(length);
         segmentWriteTime.update(elapsed, NANOSECONDS);
     }
+
+    @Override
+    public void afterSegmentsSync(File file, int segments, long length, long elapsed) {
+        segmentSyncBatch.update(segments);
+        segmentSyncTime.update(elapsed, NANOSECONDS);
+    }
 }
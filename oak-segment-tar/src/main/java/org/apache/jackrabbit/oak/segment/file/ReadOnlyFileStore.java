@@ -18,6 +18,8 @@
  */
 package org.apache.jackrabbit.oak.segment.file;
 
+import static java.lang.String.format;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 import static org.apache.jackrabbit.oak.segment.DefaultSegmentWriterBuilder.defaultSegmentWriterBuilder;
 import static org.apache.jackrabbit.oak.segment.file.Reclaimers.newOldReclaimer;
 
@@ -47,6 +49,12 @@ import org.slf4j.LoggerFactory;
  * A read only {@link AbstractFileStore} implementation that supports going back
  * to old revisions.
  * <p>
+ * A read only store can follow a writer running in another process by
+ * periodically calling {@link #refresh()}, either explicitly or by setting a
+ * {@link FileStoreBuilder#withFollowInterval(int) follow interval}. Revisions
+ * become visible once the TAR file containing them has been sealed by the
+ * writer.
+ * <p>
  * All write methods are no-ops.
  */
 public class ReadOnlyFileStore extends AbstractFileStore {
@@ -64,6 +72,17 @@ public class ReadOnlyFileStore extends AbstractFileStore {
 
     private RecordId currentHead;
 
+    /**
+     * Most recent journal entry the head of this store has been moved to by
+     * {@link #refresh()}. Used to skip refreshes while the journal does not
+     * change.
+     */
+    private String followedJournalHead;
+
+    private final int followInterval;
+
+    private final Scheduler followScheduler;
+
     ReadOnlyFileStore(FileStoreBuilder builder) throws InvalidFileStoreVersionException, IOException {
         super(builder);
 
@@ -80,24 +99,65 @@ public class ReadOnlyFileStore extends AbstractFileStore {
 
         writer = defaultSegmentWriterBuilder("read-only").withoutCache().build(this);
         gcRetainedGenerations = builder.getGcOptions().getRetainedGenerations();
+        followInterval = builder.getFollowInterval();
+        followScheduler = followInterval > 0 ? new Scheduler("ReadOnlyFileStore follower") : null;
 
-        log.info("TarMK ReadOnly opened: {} (mmap={})", directory,
-                memoryMapping);
+        log.info("TarMK ReadOnly opened: {} (mmap={}, followInterval={})", directory,
+                memoryMapping, followInterval);
     }
 
     ReadOnlyFileStore bind(@NotNull ReadOnlyRevisions revisions) throws IOException {
         this.revisions = revisions;
         this.revisions.bind(this, tracker);
         currentHead = revisions.getHead();
+        if (followScheduler != null) {
+            followScheduler.scheduleWithFixedDelay(format("TarMK follower [%s]", directory), followInterval, MILLISECONDS, () -> {
+                try {
+                    refresh();
+                } catch (IOException e) {
+                    log.warn("Failed to follow the writer of {}", directory, e);
+                }
+            });
+        }
         return this;
     }
 
+    /**
+     * Catch up with a writer appending to the same store from another
+     * process. This opens the TAR files sealed by the writer since the last
+     * refresh, drops the TAR files removed by its cleanup, and moves the head
+     * to the most recent revision in the journal that can be accessed.
+     * Revisions stored in a TAR file still being written to are not
+     * accessible before the writer seals that file.
+     *
+     * @return {@code true} if the head of this store changed
+     * @throws IOException
+     */
+    public synchronized boolean refresh() throws IOException {
+        String journalHead = revisions.getJournalHead();
+        if (journalHead == null || journalHead.equals(followedJournalHead)) {
+            return false;
+        }
+        tarFiles.refresh();
+        RecordId newHead = revisions.refresh(this, tracker);
+        RecordId head = revisions.getHead();
+        if (head.toString().equals(journalHead)) {
+            followedJournalHead = journalHead;
+        }
+        if (newHead == null) {
+            return false;
+        }
+        currentHead = newHead;
+        log.debug("TarMK ReadOnly {} moved to {}", directory, newHead);
+        return true;
+    }
+
     /**
      * Go to the specified {@code revision}
      * 
      * @param revision
      */
-    public void setRevision(String revision) {
+    public synchronized void setRevision(String revision) {
         RecordId newHead = RecordId.fromString(tracker, revision);
         if (revisions.setHead(currentHead, newHead)) {
             currentHead = newHead;
@@ -134,6 +194,10 @@ public class ReadOnlyFileStore extends AbstractFileStore {
         Closer closer = Closer.create();
         closer.register(tarFiles);
         closer.register(revisions);
+        if (followScheduler != null) {
+            // Closed first, as the closer closes in reverse order
+            closer.register(followScheduler);
+        }
         closeAndLogOnFail(closer);
         System.gc(); // for any memory-mappings that are no longer used
         log.info("TarMK closed: {}", directory);
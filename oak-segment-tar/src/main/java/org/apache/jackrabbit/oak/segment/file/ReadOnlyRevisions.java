@@ -34,6 +34,7 @@ import org.apache.jackrabbit.oak.segment.spi.persistence.JournalFile;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
 import org.apache.jackrabbit.oak.segment.SegmentStore;
 import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
 
 public class ReadOnlyRevisions implements Revisions, Closeable {
 
@@ -67,6 +68,53 @@ public class ReadOnlyRevisions implements Revisions, Closeable {
         head.set(persistedId);
     }
 
+    /**
+     * @return  the revision of the most recent entry in the journal or {@code
+     * null} if the journal is empty.
+     * @throws IOException
+     */
+    @Nullable
+    String getJournalHead() throws IOException {
+        try (JournalReader journalReader = new JournalReader(journalFile)) {
+            if (journalReader.hasNext()) {
+                return journalReader.next().getRevision();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Move the head to the most recent revision in the journal that can be
+     * accessed from the {@code store}. Unlike {@link #bind(SegmentStore,
+     * SegmentIdProvider)}, revisions that are not yet accessible are skipped
+     * silently, as they are expected when following a live writer.
+     *
+     * @param store store to read the revisions from
+     * @param idProvider  {@code SegmentIdProvider} of the {@code store}
+     * @return  the new head or {@code null} if the head did not change
+     * @throws IOException
+     */
+    @Nullable
+    synchronized RecordId refresh(@NotNull SegmentStore store, @NotNull SegmentIdProvider idProvider)
+    throws IOException {
+        checkBound();
+        try (JournalReader journalReader = new JournalReader(journalFile)) {
+            while (journalReader.hasNext()) {
+                RecordId id;
+                try {
+                    id = RecordId.fromString(idProvider, journalReader.next().getRevision());
+                } catch (IllegalArgumentException ignore) {
+                    continue;
+                }
+                if (store.containsSegment(id.getSegmentId())) {
+                    RecordId previous = head.getAndSet(id);
+                    return id.equals(previous) ? null : id;
+                }
+            }
+        }
+        return null;
+    }
+
     private void checkBound() {
         checkState(head.get() != null, "Revisions not bound to a store");
     }
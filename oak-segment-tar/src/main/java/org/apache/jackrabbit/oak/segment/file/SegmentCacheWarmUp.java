@@ -0,0 +1,181 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static java.nio.file.StandardCopyOption.ATOMIC_MOVE;
+import static java.nio.file.StandardCopyOption.REPLACE_EXISTING;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.BooleanSupplier;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import org.apache.jackrabbit.oak.segment.Segment;
+import org.apache.jackrabbit.oak.segment.SegmentCache;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentNotFoundException;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Persists the ids of the segments in the {@link SegmentCache} to a file in
+ * the segment store directory and uses them to warm up the cache after a
+ * restart. The ids are stored in descending order of their access frequency
+ * such that the hottest segments are loaded first.
+ */
+class SegmentCacheWarmUp {
+
+    private static final Logger log = LoggerFactory.getLogger(SegmentCacheWarmUp.class);
+
+    /**
+     * Name of the file containing the ids of the cached segments.
+     */
+    static final String SNAPSHOT_FILE_NAME = "segment-cache.ids";
+
+    @NotNull
+    private final File snapshot;
+
+    private final AtomicInteger segmentCount = new AtomicInteger();
+
+    private final AtomicLong size = new AtomicLong();
+
+    private volatile boolean running;
+
+    SegmentCacheWarmUp(@NotNull File directory) {
+        this.snapshot = new File(directory, SNAPSHOT_FILE_NAME);
+    }
+
+    /**
+     * Write the ids of the segments currently in {@code segmentCache} to the
+     * snapshot file, replacing any previous snapshot.
+     */
+    void snapshot(@NotNull SegmentCache segmentCache) throws IOException {
+        List<SegmentId> ids = segmentCache.getSegmentIds();
+        if (ids.isEmpty()) {
+            return;
+        }
+
+        File tmp = new File(snapshot.getParentFile(), SNAPSHOT_FILE_NAME + ".tmp");
+        try (BufferedWriter writer = Files.newBufferedWriter(tmp.toPath(), UTF_8)) {
+            for (SegmentId id : ids) {
+                writer.write(id.asUUID().toString());
+                writer.newLine();
+            }
+        }
+        Files.move(tmp.toPath(), snapshot.toPath(), REPLACE_EXISTING, ATOMIC_MOVE);
+        log.debug("Wrote {} segment ids to {}", ids.size(), snapshot);
+    }
+
+    /**
+     * @return  the segment ids from the snapshot file in the order they have
+     *          been written. An empty list if there is no snapshot.
+     */
+    @NotNull
+    List<UUID> readSnapshot() throws IOException {
+        List<UUID> ids = new ArrayList<>();
+        if (!snapshot.exists()) {
+            return ids;
+        }
+        try (BufferedReader reader = Files.newBufferedReader(snapshot.toPath(), UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                try {
+                    ids.add(UUID.fromString(line.trim()));
+                } catch (IllegalArgumentException e) {
+                    log.warn("Skipping malformed segment id {} in {}", line, snapshot);
+                }
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * Load the segments listed in the snapshot file until either all
+     * segments have been loaded, {@code budget} bytes have been loaded or
+     * {@code cancelled} becomes {@code true}. Segments that do not exist
+     * any more (e.g. because they have been reclaimed by garbage collection)
+     * are skipped.
+     *
+     * @param budget       maximum number of bytes to load
+     * @param contains     predicate determining whether a segment exists
+     * @param reader       function for reading a segment through the cache
+     * @param cancelled    condition for stopping the warm-up prematurely
+     */
+    void warmUp(
+            long budget,
+            @NotNull Predicate<UUID> contains,
+            @NotNull Function<UUID, Segment> reader,
+            @NotNull BooleanSupplier cancelled) {
+        running = true;
+        try {
+            List<UUID> ids = readSnapshot();
+            log.info("Warming up segment cache with up to {} segments from {}", ids.size(), snapshot);
+            for (UUID id : ids) {
+                if (size.get() >= budget || cancelled.getAsBoolean()) {
+                    break;
+                }
+                if (contains.test(id)) {
+                    size.addAndGet(reader.apply(id).size());
+                    segmentCount.incrementAndGet();
+                }
+            }
+            log.info("Segment cache warm-up loaded {} segments ({} bytes)", segmentCount.get(), size.get());
+        } catch (IOException e) {
+            log.warn("Unable to read segment cache snapshot {}", snapshot, e);
+        } catch (SegmentNotFoundException | IllegalStateException e) {
+            log.warn("Segment cache warm-up aborted", e);
+        } finally {
+            running = false;
+        }
+    }
+
+    /**
+     * @return  number of segments loaded by the warm-up so far
+     */
+    int getSegmentCount() {
+        return segmentCount.get();
+    }
+
+    /**
+     * @return  number of bytes loaded by the warm-up so far
+     */
+    long getSize() {
+        return size.get();
+    }
+
+    /**
+     * @return  {@code true} while the warm-up is in progress
+     */
+    boolean isRunning() {
+        return running;
+    }
+
+}
@@ -58,6 +58,16 @@ public class Proc {
 
         }
 
+        interface Reads {
+
+            long getCount();
+
+            long getBytes();
+
+            long getTime();
+
+        }
+
         interface Record {
             int getNumber();
 
@@ -76,6 +86,10 @@ public class Proc {
 
         Optional<Long> getTarSize(String name);
 
+        default Optional<Reads> getTarReads(String name) {
+            return Optional.empty();
+        }
+
         Iterable<String> getTarNames();
 
         boolean segmentExists(String name, String segmentId);
@@ -45,10 +45,15 @@ class TarNode extends AbstractNode {
     @NotNull
     @Override
     public Iterable<? extends PropertyState> getProperties() {
-        return ImmutableList.of(
-            createProperty("name", name),
-            createProperty("size", backend.getTarSize(name).orElse(-1L))
-        );
+        ImmutableList.Builder<PropertyState> properties = ImmutableList.builder();
+        properties.add(createProperty("name", name));
+        properties.add(createProperty("size", backend.getTarSize(name).orElse(-1L)));
+        backend.getTarReads(name).ifPresent(reads -> {
+            properties.add(createProperty("reads", reads.getCount()));
+            properties.add(createProperty("readBytes", reads.getBytes()));
+            properties.add(createProperty("readTime", reads.getTime()));
+        });
+        return properties.build();
     }
 
     @Override
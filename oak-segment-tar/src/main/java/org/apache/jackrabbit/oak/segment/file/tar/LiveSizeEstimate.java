@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import static com.google.common.collect.Sets.newHashSet;
+
+import java.util.Collection;
+import java.util.Set;
+import java.util.UUID;
+
+import com.google.common.base.Predicate;
+
+/**
+ * The result of {@link TarFiles#estimateLiveSize(Collection, Predicate)}: the
+ * size of the segments reachable from a set of root segments, in total and
+ * restricted to the segments of a selection of generations.
+ */
+public final class LiveSizeEstimate {
+
+    /**
+     * Segments reachable from the roots, which have not been visited yet.
+     */
+    final Set<UUID> reachable;
+
+    long totalSize;
+
+    long liveSize;
+
+    long selectedSize;
+
+    long selectedLiveSize;
+
+    LiveSizeEstimate(Collection<UUID> roots) {
+        this.reachable = newHashSet(roots);
+    }
+
+    /**
+     * Account for a segment. Segments have to be visited from the newest to
+     * the oldest, so that the segments referencing a segment are visited
+     * before it.
+     *
+     * @param id       The identifier of the segment.
+     * @param size     The size of the segment in bytes.
+     * @param selected Whether the segment belongs to the selected
+     *                 generations.
+     * @return {@code true} if the segment is reachable from the roots. The
+     * caller is expected to add the segments it references to {@link
+     * #reachable} in this case.
+     */
+    boolean visit(UUID id, long size, boolean selected) {
+        boolean live = reachable.remove(id);
+        totalSize += size;
+        if (selected) {
+            selectedSize += size;
+        }
+        if (live) {
+            liveSize += size;
+            if (selected) {
+                selectedLiveSize += size;
+            }
+        }
+        return live;
+    }
+
+    /**
+     * @return The size in bytes of all the segments.
+     */
+    public long getTotalSize() {
+        return totalSize;
+    }
+
+    /**
+     * @return The size in bytes of the segments reachable from the roots.
+     */
+    public long getLiveSize() {
+        return liveSize;
+    }
+
+    /**
+     * @return The size in bytes of the segments of the selected generations.
+     */
+    public long getSelectedSize() {
+        return selectedSize;
+    }
+
+    /**
+     * @return The size in bytes of the segments of the selected generations
+     * reachable from the roots.
+     */
+    public long getSelectedLiveSize() {
+        return selectedLiveSize;
+    }
+
+}
@@ -0,0 +1,203 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tar;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Immutable map from segment ids to the {@link TarReader} containing the
+ * respective segment. The map uses open addressing with linear probing over
+ * primitive arrays, which avoids boxing the segment ids and allocating an
+ * entry object per segment.
+ * <p>
+ * Instances of this class are never modified. Adding or removing TAR readers
+ * creates a new instance, so that lookups can be performed without any
+ * synchronization once a reference to an instance has been obtained.
+ */
+final class SegmentLocationIndex {
+
+    static final SegmentLocationIndex EMPTY = new SegmentLocationIndex(new TarReader[0], 16);
+
+    /**
+     * The TAR readers referenced from {@link #locations}.
+     */
+    private final TarReader[] readers;
+
+    private final long[] msbs;
+
+    private final long[] lsbs;
+
+    /**
+     * Position of the TAR reader in {@link #readers} plus one for each slot.
+     * A value of {@code 0} marks an empty slot.
+     */
+    private final int[] locations;
+
+    private final int mask;
+
+    private int size;
+
+    private SegmentLocationIndex(TarReader[] readers, int capacity) {
+        this.readers = readers;
+        this.msbs = new long[capacity];
+        this.lsbs = new long[capacity];
+        this.locations = new int[capacity];
+        this.mask = capacity - 1;
+    }
+
+    private SegmentLocationIndex(TarReader[] readers, SegmentLocationIndex other) {
+        this.readers = readers;
+        this.msbs = other.msbs.clone();
+        this.lsbs = other.lsbs.clone();
+        this.locations = other.locations.clone();
+        this.mask = other.mask;
+        this.size = other.size;
+    }
+
+    /**
+     * Create a new index for the segments in {@code readers}. If a segment is
+     * contained in more than one TAR reader, the index points to the one that
+     * comes first in {@code readers}.
+     *
+     * @param readers The TAR readers to index.
+     * @return A new instance of {@link SegmentLocationIndex}.
+     */
+    static SegmentLocationIndex of(Iterable<TarReader> readers) {
+        List<TarReader> list = new ArrayList<>();
+        int count = 0;
+        for (TarReader reader : readers) {
+            list.add(reader);
+            count += reader.getUUIDs().size();
+        }
+
+        SegmentLocationIndex index = new SegmentLocationIndex(
+                list.toArray(new TarReader[0]),
+                capacityFor(count)
+        );
+        for (int i = 0; i < index.readers.length; i++) {
+            for (UUID id : index.readers[i].getUUIDs()) {
+                index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), i + 1, false);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Create a copy of this index with the segments of {@code reader} added to
+     * it. Segments already contained in this index are re-mapped to {@code
+     * reader}, as a newly added TAR reader takes precedence over the existing
+     * ones.
+     *
+     * @param reader The TAR reader to add.
+     * @return A new instance of {@link SegmentLocationIndex}.
+     */
+    SegmentLocationIndex withReader(TarReader reader) {
+        int count = size + reader.getUUIDs().size();
+
+        if (capacityFor(count) > locations.length) {
+            List<TarReader> list = new ArrayList<>();
+            list.add(reader);
+            list.addAll(Arrays.asList(readers));
+            return of(list);
+        }
+
+        TarReader[] newReaders = Arrays.copyOf(readers, readers.length + 1);
+        newReaders[readers.length] = reader;
+
+        SegmentLocationIndex index = new SegmentLocationIndex(newReaders, this);
+        for (UUID id : reader.getUUIDs()) {
+            index.put(id.getMostSignificantBits(), id.getLeastSignificantBits(), newReaders.length, true);
+        }
+        return index;
+    }
+
+    /**
+     * Get the TAR reader containing a segment.
+     *
+     * @param msb The most significant bits of the segment identifier.
+     * @param lsb The least significant bits of the segment identifier.
+     * @return The TAR reader containing the segment or {@code null} if no
+     * TAR reader in this index contains it.
+     */
+    @Nullable
+    TarReader get(long msb, long lsb) {
+        for (int i = hash(msb, lsb) & mask; ; i = (i + 1) & mask) {
+            int location = locations[i];
+            if (location == 0) {
+                return null;
+            }
+            if (msbs[i] == msb && lsbs[i] == lsb) {
+                return readers[location - 1];
+            }
+        }
+    }
+
+    /**
+     * @return The number of segments in this index.
+     */
+    int size() {
+        return size;
+    }
+
+    private void put(long msb, long lsb, int location, boolean replace) {
+        for (int i = hash(msb, lsb) & mask; ; i = (i + 1) & mask) {
+            if (locations[i] == 0) {
+                msbs[i] = msb;
+                lsbs[i] = lsb;
+                locations[i] = location;
+                size++;
+                return;
+            }
+            if (msbs[i] == msb && lsbs[i] == lsb) {
+                if (replace) {
+                    locations[i] = location;
+                }
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return The smallest power of two keeping the load factor for {@code
+     * count} entries below 0.75.
+     */
+    private static int capacityFor(int count) {
+        int capacity = 16;
+        while (capacity * 3L < count * 4L) {
+            capacity <<= 1;
+        }
+        return capacity;
+    }
+
+    private static int hash(long msb, long lsb) {
+        // Segment identifiers are random, but spread the bits nonetheless to
+        // protect against identifiers that differ only in their high bits.
+        long h = msb ^ lsb;
+        h ^= h >>> 32;
+        h *= 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 29));
+    }
+
+}
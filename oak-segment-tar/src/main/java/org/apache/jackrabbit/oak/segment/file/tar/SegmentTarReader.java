@@ -169,6 +169,7 @@ public class SegmentTarReader implements SegmentArchiveReader {
     @Override
     public void close() throws IOException {
         access.close();
+        ioMonitor.afterFileClosed(file);
     }
 
     @Override
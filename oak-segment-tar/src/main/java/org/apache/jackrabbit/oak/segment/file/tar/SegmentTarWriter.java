@@ -26,12 +26,15 @@ import java.io.EOFException;
 import java.io.File;
 import java.io.IOException;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 
 import com.google.common.base.Stopwatch;
@@ -85,6 +88,18 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
 
     private volatile long length;
 
+    /**
+     * Number of segments written since the last time this file has been
+     * synced. Used by {@link #flush()} to skip the sync when there is nothing
+     * to do and to report the size of each sync batch to the {@link IOMonitor}.
+     */
+    private final AtomicInteger unsyncedSegments = new AtomicInteger();
+
+    /**
+     * Number of bytes written since the last time this file has been synced.
+     */
+    private final AtomicLong unsyncedBytes = new AtomicLong();
+
     public SegmentTarWriter(File file, FileStoreMonitor monitor, IOMonitor ioMonitor) {
         this.file = file;
         this.monitor = monitor;
@@ -108,24 +123,29 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
 
         int padding = getPaddingSize(size);
 
-        long initialLength = access.getFilePointer();
+        long initialLength = channel.position();
 
-        access.write(header);
+        long dataOffset = initialLength + header.length;
 
-        long dataOffset = access.getFilePointer();
+        // Write the header, the segment and its padding with a single
+        // gathering write instead of issuing one system call for each of them.
+        ByteBuffer[] buffers = {
+                ByteBuffer.wrap(header),
+                ByteBuffer.wrap(data, offset, size),
+                ByteBuffer.wrap(ZERO_BYTES, 0, padding)
+        };
 
         ioMonitor.beforeSegmentWrite(file, msb, lsb, size);
         Stopwatch stopwatch = Stopwatch.createStarted();
-        access.write(data, offset, size);
+        writeFully(buffers);
         ioMonitor.afterSegmentWrite(file, msb, lsb, size, stopwatch.elapsed(TimeUnit.NANOSECONDS));
 
-        if (padding > 0) {
-            access.write(ZERO_BYTES, 0, padding);
-        }
-
-        long currentLength = access.getFilePointer();
+        long currentLength = channel.position();
         monitor.written(currentLength - initialLength);
 
+        unsyncedSegments.incrementAndGet();
+        unsyncedBytes.addAndGet(currentLength - initialLength);
+
         length = currentLength;
 
         index.put(new UUID(msb, lsb), new SimpleIndexEntry(msb, lsb, (int) dataOffset, size, generation, fullGeneration, compacted));
@@ -230,9 +250,37 @@ public class SegmentTarWriter implements SegmentArchiveWriter {
         return access != null;
     }
 
+    /**
+     * Sync the entries written so far to the storage device. Segments
+     * written between two calls to this method are synced as a single batch.
+     * If no segment has been written since the last call, the sync is
+     * skipped altogether.
+     */
     @Override
     public void flush() throws IOException {
+        int segments = unsyncedSegments.get();
+        long bytes = unsyncedBytes.get();
+        if (segments == 0) {
+            return;
+        }
+        Stopwatch stopwatch = Stopwatch.createStarted();
         access.getFD().sync();
+        // only account for the segments once they are synced, so that a
+        // failed sync is retried by the next flush; segments written
+        // concurrently remain accounted for the next flush
+        unsyncedSegments.addAndGet(-segments);
+        unsyncedBytes.addAndGet(-bytes);
+        ioMonitor.afterSegmentsSync(file, segments, bytes, stopwatch.elapsed(TimeUnit.NANOSECONDS));
+    }
+
+    private void writeFully(ByteBuffer[] buffers) throws IOException {
+        long remaining = 0;
+        for (ByteBuffer buffer : buffers) {
+            remaining += buffer.remaining();
+        }
+        while (remaining > 0) {
+            remaining -= channel.write(buffers);
+        }
     }
 
     @Override
@@ -20,16 +20,23 @@ package org.apache.jackrabbit.oak.segment.file.tar;
 import static com.google.common.base.Preconditions.checkArgument;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Iterables.concat;
 import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 import static com.google.common.collect.Sets.newHashSet;
 import static java.util.Collections.emptySet;
+import static org.apache.jackrabbit.oak.segment.SegmentId.isDataSegmentId;
+import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
 
 import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
@@ -52,6 +59,7 @@ import org.apache.jackrabbit.oak.segment.file.FileReaper;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitor;
 import org.apache.jackrabbit.oak.segment.spi.monitor.FileStoreMonitorAdapter;
 import org.apache.jackrabbit.oak.segment.spi.monitor.IOMonitor;
+import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveEntry;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentNodeStorePersistence;
 import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
@@ -313,6 +321,8 @@ public class TarFiles implements Closeable {
 
     private final long maxFileSize;
 
+    private final boolean readOnly;
+
     private SegmentArchiveManager archiveManager;
 
     /**
@@ -333,6 +343,14 @@ public class TarFiles implements Closeable {
      */
     private Node readers;
 
+    /**
+     * Maps segment identifiers to the TAR reader in {@link #readers} containing
+     * them. It is replaced together with {@link #readers} while holding {@link
+     * #lock} in write mode. As instances are immutable, lookups can be
+     * performed on a copy of this reference without holding the lock.
+     */
+    private volatile SegmentLocationIndex index = SegmentLocationIndex.EMPTY;
+
     /**
      * The currently used TAR writer. Its access is protected by {@link #lock}.
      */
@@ -345,6 +363,14 @@ public class TarFiles implements Closeable {
      */
     private volatile boolean shutdown;
 
+    /**
+     * TAR readers removed by the last {@link #refresh()}. They are closed by
+     * the following refresh or when this instance is closed, so that reads
+     * that started before their removal can complete. Access is guarded by
+     * the monitor of this instance.
+     */
+    private Node retired;
+
     /**
      * Counter exposing the number of {@link TarReader} instances.
      */
@@ -361,6 +387,7 @@ public class TarFiles implements Closeable {
 
     private TarFiles(Builder builder) throws IOException {
         maxFileSize = builder.maxFileSize;
+        readOnly = builder.readOnly;
         archiveManager = builder.buildArchiveManager();
         readerCount = builder.readerCountStats;
         segmentCount = builder.segmentCountStats;
@@ -374,17 +401,29 @@ public class TarFiles implements Closeable {
         // appending - the corresponding TAR readers to the linked list. This
         // results in a properly ordered linked list.
 
+        // Only the latest generation of every TAR file is opened, unless it
+        // turns out to be damaged.
+
+        List<String> latest = new ArrayList<>(indices.length);
         for (Integer index : indices) {
-            TarReader r;
-            if (builder.readOnly) {
-                r = TarReader.openRO(map.get(index), builder.tarRecovery, archiveManager);
-            } else {
-                r = TarReader.open(map.get(index), builder.tarRecovery, archiveManager);
+            Map<Character, String> files = map.get(index);
+            latest.add(files.get(Collections.max(files.keySet())));
+        }
+
+        try (Closeable ignored = archiveManager.preload(latest)) {
+            for (Integer index : indices) {
+                TarReader r;
+                if (builder.readOnly) {
+                    r = TarReader.openRO(map.get(index), builder.tarRecovery, archiveManager);
+                } else {
+                    r = TarReader.open(map.get(index), builder.tarRecovery, archiveManager);
+                }
+                segmentCount.inc(getSegmentCount(r));
+                readers = new Node(r, readers);
+                readerCount.inc();
             }
-            segmentCount.inc(getSegmentCount(r));
-            readers = new Node(r, readers);
-            readerCount.inc();
         }
+        index = SegmentLocationIndex.of(iterable(readers));
         if (builder.readOnly) {
             return;
         }
@@ -420,7 +459,14 @@ public class TarFiles implements Closeable {
             }
         }
 
-        for (TarReader reader : iterable(head)) {
+        Node retired;
+
+        synchronized (this) {
+            retired = this.retired;
+            this.retired = null;
+        }
+
+        for (TarReader reader : concat(iterable(head), iterable(retired))) {
             try {
                 reader.close();
             } catch (IOException e) {
@@ -525,7 +571,7 @@ public class TarFiles implements Closeable {
     }
 
     public boolean containsSegment(long msb, long lsb) {
-        Node head;
+        SegmentLocationIndex index;
 
         lock.readLock().lock();
         try {
@@ -534,22 +580,17 @@ public class TarFiles implements Closeable {
                     return true;
                 }
             }
-            head = readers;
+            index = this.index;
         } finally {
             lock.readLock().unlock();
         }
 
-        for (TarReader reader : iterable(head)) {
-            if (reader.containsEntry(msb, lsb)) {
-                return true;
-            }
-        }
-        return false;
+        return index.get(msb, lsb) != null;
     }
 
     public Buffer readSegment(long msb, long lsb) {
         try {
-            Node head;
+            SegmentLocationIndex index;
 
             lock.readLock().lock();
             try {
@@ -559,16 +600,14 @@ public class TarFiles implements Closeable {
                         return b;
                     }
                 }
-                head = readers;
+                index = this.index;
             } finally {
                 lock.readLock().unlock();
             }
 
-            for (TarReader reader : iterable(head)) {
-                Buffer b = reader.readEntry(msb, lsb);
-                if (b != null) {
-                    return b;
-                }
+            TarReader reader = index.get(msb, lsb);
+            if (reader != null) {
+                return reader.readEntry(msb, lsb);
             }
         } catch (IOException e) {
             log.warn("Unable to read from TAR file", e);
@@ -623,6 +662,7 @@ public class TarFiles implements Closeable {
         }
         TarReader reader = TarReader.open(writer.getFileName(), archiveManager);
         readers = new Node(reader, readers);
+        index = index.withReader(reader);
         segmentCount.inc(getSegmentCount(reader));
         readerCount.inc();
         writer = newWriter;
@@ -637,6 +677,106 @@ public class TarFiles implements Closeable {
         }
     }
 
+    /**
+     * Synchronizes the TAR readers of a read-only instance with the archives
+     * currently found in the persistence. This allows a read-only instance to
+     * follow a writer running in a different process.
+     * <p>
+     * Archives added by the writer are opened once they are sealed, that is
+     * once they contain a valid index. Archives rewritten or removed by a
+     * cleanup of the writer are replaced or dropped. Dropped TAR readers are
+     * only closed by the following refresh, so that concurrent reads which
+     * started before the refresh can complete.
+     *
+     * @return {@code true} if the set of TAR readers changed, {@code false}
+     * otherwise.
+     * @throws IOException If an error occurs while listing the archives.
+     */
+    public synchronized boolean refresh() throws IOException {
+        checkState(readOnly, "Only read-only TAR files can be refreshed");
+
+        for (TarReader reader : iterable(retired)) {
+            closeAndLogOnFail(reader);
+        }
+        retired = null;
+
+        Node head;
+
+        lock.readLock().lock();
+        try {
+            head = readers;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<Integer, TarReader> current = new HashMap<>();
+        Node updated = null;
+        for (TarReader reader : iterable(head)) {
+            Matcher matcher = FILE_NAME_PATTERN.matcher(reader.getFileName());
+            if (matcher.lookingAt()) {
+                current.put(Integer.parseInt(matcher.group(2)), reader);
+            } else {
+                updated = new Node(reader, updated);
+            }
+        }
+
+        Map<Integer, Map<Character, String>> map = collectFiles(archiveManager);
+        Integer[] indices = map.keySet().toArray(new Integer[map.size()]);
+        Arrays.sort(indices);
+
+        boolean changed = false;
+        for (Integer index : indices) {
+            Map<Character, String> files = map.get(index);
+            String file = files.get(Collections.max(files.keySet()));
+            TarReader reader = current.remove(index);
+            if (reader == null || !reader.getFileName().equals(file)) {
+                TarReader opened = TarReader.openSealed(file, archiveManager);
+                if (opened != null) {
+                    segmentCount.inc(getSegmentCount(opened));
+                    readerCount.inc();
+                    if (reader != null) {
+                        retire(reader);
+                    }
+                    reader = opened;
+                    changed = true;
+                }
+            }
+            if (reader != null) {
+                updated = new Node(reader, updated);
+            }
+        }
+
+        for (TarReader reader : current.values()) {
+            retire(reader);
+            changed = true;
+        }
+
+        if (changed) {
+            lock.writeLock().lock();
+            try {
+                readers = updated;
+                index = SegmentLocationIndex.of(iterable(readers));
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+        return changed;
+    }
+
+    private void retire(TarReader reader) {
+        segmentCount.dec(getSegmentCount(reader));
+        readerCount.dec();
+        retired = new Node(reader, retired);
+    }
+
+    private static void closeAndLogOnFail(TarReader reader) {
+        try {
+            reader.close();
+        } catch (IOException e) {
+            log.warn("Unable to close tar reader {}", reader.getFileName(), e);
+        }
+    }
+
     public CleanupResult cleanup(CleanupContext context) throws IOException {
         CleanupResult result = new CleanupResult();
         result.removableFiles = new ArrayList<>();
@@ -745,6 +885,11 @@ public class TarFiles implements Closeable {
 
             swept = reverse(swept);
 
+            // Index the segments of the swept TAR readers before acquiring
+            // the lock, as this is proportional to the number of segments.
+
+            SegmentLocationIndex sweptIndex = SegmentLocationIndex.of(iterable(swept));
+
             // Following is a compare-and-set operation. We based the
             // computation of `swept` of a specific value of `readers`. If
             // `readers` is still the same as the one we started with, we just
@@ -755,6 +900,7 @@ public class TarFiles implements Closeable {
             try {
                 if (readers == head) {
                     readers = swept;
+                    index = sweptIndex;
                     break;
                 } else {
                     head = readers;
@@ -805,6 +951,42 @@ public class TarFiles implements Closeable {
         }
     }
 
+    /**
+     * Compute the size of the segments reachable from {@code roots}, without
+     * reading any segment. Only the segment graphs of the TAR files are used.
+     * The segments of the current TAR writer are taken into account from its
+     * in-memory index, without closing it.
+     *
+     * @param roots    The identifiers of the segments live data is reachable
+     *                 from.
+     * @param selected The generations whose segments should be accounted
+     *                 separately.
+     * @return An instance of {@link LiveSizeEstimate}.
+     */
+    public LiveSizeEstimate estimateLiveSize(Collection<UUID> roots, Predicate<GCGeneration> selected) throws IOException {
+        LiveSizeEstimate estimate = new LiveSizeEstimate(roots);
+
+        // The segments in the writer are the newest ones and have to be
+        // visited first. Holding the read lock keeps the writer from being
+        // swapped while it is visited.
+
+        Node head;
+        lock.readLock().lock();
+        try {
+            if (writer != null) {
+                writer.estimate(estimate, selected);
+            }
+            head = readers;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        for (TarReader reader : iterable(head)) {
+            reader.estimate(estimate, selected);
+        }
+        return estimate;
+    }
+
     public Iterable<UUID> getSegmentIds() {
         Node head;
 
@@ -822,6 +1004,87 @@ public class TarFiles implements Closeable {
         return ids;
     }
 
+    /**
+     * Return the identifiers of the segments in the TAR files, leaving out the
+     * data segments whose generation matches {@code skipGeneration}. Bulk
+     * segments carry no generation and are always included.
+     * <p>
+     * The identifiers are returned in dependency order: every segment comes
+     * after the segments it references, as far as those are returned at all.
+     * Segments that are not related by their references are returned from the
+     * oldest to the most recent TAR file and in the order they have been
+     * written to each TAR file. Segments referencing each other in a cycle are
+     * returned in an arbitrary order.
+     *
+     * @param skipGeneration the generations of the data segments to leave out.
+     * @return the identifiers of the remaining segments.
+     */
+    public Iterable<UUID> getSegmentIds(Predicate<GCGeneration> skipGeneration) throws IOException {
+        Node head;
+
+        lock.readLock().lock();
+        try {
+            head = readers;
+        } finally {
+            lock.readLock().unlock();
+        }
+
+        Map<UUID, List<UUID>> references = new LinkedHashMap<>();
+        for (TarReader reader : iterable(reverse(head))) {
+            Map<UUID, List<UUID>> graph = reader.getGraph();
+            if (graph == null) {
+                graph = Collections.emptyMap();
+            }
+            for (SegmentArchiveEntry entry : reader.getEntries()) {
+                if (isDataSegmentId(entry.getLsb()) && skipGeneration.apply(newGCGeneration(entry))) {
+                    continue;
+                }
+                UUID id = new UUID(entry.getMsb(), entry.getLsb());
+                references.put(id, graph.getOrDefault(id, Collections.emptyList()));
+            }
+        }
+
+        List<UUID> ids = new ArrayList<>(references.size());
+        Set<UUID> visited = new HashSet<>();
+        for (UUID id : references.keySet()) {
+            addInDependencyOrder(id, references, visited, ids);
+        }
+        return ids;
+    }
+
+    /**
+     * Depth first traversal of the references starting at {@code id}, adding
+     * each segment to {@code ids} after the segments it references.
+     * References to segments not contained in {@code references} are
+     * ignored. The traversal keeps its own stack, since chains of references
+     * can be arbitrarily long.
+     */
+    private static void addInDependencyOrder(UUID id, Map<UUID, List<UUID>> references, Set<UUID> visited, List<UUID> ids) {
+        if (!visited.add(id)) {
+            return;
+        }
+
+        Deque<UUID> path = new ArrayDeque<>();
+        Deque<Iterator<UUID>> pending = new ArrayDeque<>();
+        path.push(id);
+        pending.push(references.get(id).iterator());
+
+        while (!pending.isEmpty()) {
+            Iterator<UUID> iterator = pending.peek();
+            if (iterator.hasNext()) {
+                UUID next = iterator.next();
+                List<UUID> nextReferences = references.get(next);
+                if (nextReferences != null && visited.add(next)) {
+                    path.push(next);
+                    pending.push(nextReferences.iterator());
+                }
+            } else {
+                pending.pop();
+                ids.add(path.pop());
+            }
+        }
+    }
+
     public Map<UUID, Set<UUID>> getGraph(String fileName) throws IOException {
         Node head;
 
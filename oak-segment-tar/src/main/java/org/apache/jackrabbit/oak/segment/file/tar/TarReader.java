@@ -133,6 +133,29 @@ public class TarReader implements Closeable {
         throw new IOException("Failed to open tar file " + file);
     }
 
+    /**
+     * Opens a TAR file only if it already contains a valid index. Unlike
+     * {@link #openRO(Map, TarRecovery, SegmentArchiveManager)}, this method
+     * never recovers the file or touches any other file and can thus be used
+     * on files that a concurrent writer is still appending to.
+     *
+     * @param file           The name of the TAR file.
+     * @param archiveManager The archive manager used to open the file.
+     * @return An instance of {@link TarReader} or {@code null} if the file has
+     * no valid index yet.
+     */
+    static TarReader openSealed(String file, SegmentArchiveManager archiveManager) {
+        try {
+            SegmentArchiveReader reader = archiveManager.open(file);
+            if (reader != null) {
+                return new TarReader(archiveManager, reader);
+            }
+        } catch (IOException e) {
+            log.debug("Could not read tar file {}, skipping...", file, e);
+        }
+        return null;
+    }
+
     /**
      * Collects all entries from the given file and optionally backs-up the
      * file, by renaming it to a ".bak" extension
@@ -427,6 +450,34 @@ public class TarReader implements Closeable {
         }
     }
 
+    /**
+     * Account the segments of this TAR file in {@code estimate}. A segment is
+     * live if it is reachable from the roots of the estimate. Like {@link
+     * #mark(Set, Set, CleanupContext)}, this method relies on segments being
+     * referenced only by segments written after them, so that a single
+     * backward iteration over the TAR files from the newest to the oldest
+     * visits every referencing segment before the segments it references.
+     *
+     * @param estimate The estimate to update.
+     * @param selected The generations whose segments should be accounted
+     *                 separately.
+     */
+    void estimate(LiveSizeEstimate estimate, Predicate<GCGeneration> selected) throws IOException {
+        Map<UUID, List<UUID>> graph = getGraph();
+        if (graph == null) {
+            graph = Collections.emptyMap();
+        }
+        SegmentArchiveEntry[] entries = getEntries();
+        for (int i = entries.length - 1; i >= 0; i--) {
+            SegmentArchiveEntry entry = entries[i];
+            UUID id = new UUID(entry.getMsb(), entry.getLsb());
+            long size = archive.getEntrySize(entry.getLength());
+            if (estimate.visit(id, size, selected.apply(GCGeneration.newGCGeneration(entry)))) {
+                estimate.reachable.addAll(getReferences(id, graph));
+            }
+        }
+    }
+
     /**
      * Try to remove every segment contained in a user-provided set.
      * <p>
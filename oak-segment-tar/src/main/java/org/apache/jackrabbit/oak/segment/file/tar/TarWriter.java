@@ -22,6 +22,7 @@ package org.apache.jackrabbit.oak.segment.file.tar;
 import static com.google.common.base.Preconditions.checkNotNull;
 import static com.google.common.base.Preconditions.checkPositionIndexes;
 import static com.google.common.base.Preconditions.checkState;
+import static com.google.common.collect.Lists.newArrayList;
 import static com.google.common.collect.Maps.newHashMap;
 import static com.google.common.collect.Sets.newHashSet;
 import static java.lang.String.format;
@@ -31,12 +32,14 @@ import static org.apache.jackrabbit.oak.segment.file.tar.binaries.BinaryReferenc
 
 import java.io.Closeable;
 import java.io.IOException;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
 import java.util.UUID;
 import java.util.zip.CRC32;
 
+import com.google.common.base.Predicate;
 import org.apache.jackrabbit.oak.segment.file.tar.binaries.BinaryReferencesIndexWriter;
 import org.apache.jackrabbit.oak.segment.spi.persistence.Buffer;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
@@ -73,6 +76,12 @@ class TarWriter implements Closeable {
      */
     private final Map<UUID, Set<UUID>> graph = newHashMap();
 
+    /**
+     * Identifier, size and generation of the segments written so far, in
+     * write order. Should only be accessed from synchronized code.
+     */
+    private final List<WrittenEntry> entries = newArrayList();
+
     private final SegmentArchiveManager archiveManager;
 
     private final SegmentArchiveWriter archive;
@@ -141,9 +150,11 @@ class TarWriter implements Closeable {
         synchronized (this) {
             checkState(!closed);
 
+            long previousLength = archive.getLength();
             archive.writeSegment(msb, lsb, data, offset, size, generation.getGeneration(), generation.getFullGeneration(), generation.isCompacted());
             segmentCount.inc();
             long currentLength = archive.getLength();
+            entries.add(new WrittenEntry(new UUID(msb, lsb), currentLength - previousLength, generation));
 
             checkState(currentLength <= Integer.MAX_VALUE);
 
@@ -165,6 +176,27 @@ class TarWriter implements Closeable {
         graph.computeIfAbsent(from, k -> newHashSet()).add(to);
     }
 
+    /**
+     * Update a live size estimate with the segments written so far, without
+     * closing this writer. See {@link TarReader#estimate(LiveSizeEstimate,
+     * Predicate)}.
+     *
+     * @param estimate The estimate to update.
+     * @param selected The generations whose segments should be accounted
+     *                 separately.
+     */
+    synchronized void estimate(LiveSizeEstimate estimate, Predicate<GCGeneration> selected) {
+        for (int i = entries.size() - 1; i >= 0; i--) {
+            WrittenEntry entry = entries.get(i);
+            if (estimate.visit(entry.id, entry.size, selected.apply(entry.generation))) {
+                Set<UUID> references = graph.get(entry.id);
+                if (references != null) {
+                    estimate.reachable.addAll(references);
+                }
+            }
+        }
+    }
+
     /**
      * Flushes the entries that have so far been written to the disk.
      * This method is <em>not</em> synchronized to allow concurrent reads
@@ -327,4 +359,20 @@ class TarWriter implements Closeable {
         return getFileName();
     }
 
+    private static class WrittenEntry {
+
+        private final UUID id;
+
+        private final long size;
+
+        private final GCGeneration generation;
+
+        WrittenEntry(UUID id, long size, GCGeneration generation) {
+            this.id = id;
+            this.size = size;
+            this.generation = generation;
+        }
+
+    }
+
 }
@@ -19,6 +19,7 @@
 
 package org.apache.jackrabbit.oak.segment.file.tooling;
 
+import static com.google.common.base.Preconditions.checkArgument;
 import static org.apache.jackrabbit.oak.api.Type.BINARIES;
 import static org.apache.jackrabbit.oak.api.Type.BINARY;
 import static org.apache.jackrabbit.oak.commons.PathUtils.concat;
@@ -33,12 +34,17 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicLong;
 
 import org.apache.jackrabbit.oak.api.Blob;
 import org.apache.jackrabbit.oak.api.PropertyState;
 import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.segment.RecordId;
 import org.apache.jackrabbit.oak.segment.SegmentBlob;
 import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
 import org.apache.jackrabbit.oak.segment.SegmentNotFoundException;
 import org.apache.jackrabbit.oak.segment.file.JournalEntry;
@@ -47,8 +53,23 @@ import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStateUtils;
 
+/**
+ * Checks the consistency of the content trees of a segment store.
+ * <p>
+ * Optionally, node states and binaries that have been verified are remembered
+ * by their record id, so that subtrees shared between the revisions and
+ * checkpoints being checked are only traversed once. Subtrees can be traversed
+ * by several threads in parallel, in which case the {@code on*} callbacks are
+ * invoked concurrently.
+ */
 public class ConsistencyChecker {
 
+    /**
+     * Number of queued tasks of a worker thread above which the subtrees are
+     * traversed inline instead of being forked.
+     */
+    private static final int MAX_SURPLUS_TASKS = 3;
+
     private static NodeState getDescendantOrNull(NodeState root, String path) {
         NodeState descendant = NodeStateUtils.getNode(root, path);
         if (descendant.exists()) {
@@ -71,6 +92,44 @@ public class ConsistencyChecker {
 
     }
 
+    private final int concurrency;
+
+    private final int binarySampleInterval;
+
+    private final VerifiedRecordIds verified;
+
+    private final AtomicLong binaryCount = new AtomicLong();
+
+    /**
+     * Create a checker traversing every content tree completely from a single
+     * thread and checking all binaries.
+     */
+    public ConsistencyChecker() {
+        this(1, 1, false);
+    }
+
+    /**
+     * Create a new checker.
+     *
+     * @param concurrency          number of threads traversing a content
+     *                             tree. Must be positive.
+     * @param binarySampleInterval when checking binaries, only every {@code
+     *                             binarySampleInterval}-th binary is read.
+     *                             Must be positive.
+     * @param skipVerified         if {@code true}, subtrees and binaries
+     *                             already verified by this instance are not
+     *                             traversed again. They are reported through
+     *                             {@link #onSkipVerifiedNode(String)} and are
+     *                             not included in the other callbacks.
+     */
+    public ConsistencyChecker(int concurrency, int binarySampleInterval, boolean skipVerified) {
+        checkArgument(concurrency > 0, "concurrency must be positive");
+        checkArgument(binarySampleInterval > 0, "binarySampleInterval must be positive");
+        this.concurrency = concurrency;
+        this.binarySampleInterval = binarySampleInterval;
+        this.verified = skipVerified ? new VerifiedRecordIds() : null;
+    }
+
     protected void onCheckRevision(String revision) {
         // Do nothing.
     }
@@ -123,6 +182,14 @@ public class ConsistencyChecker {
         // Do nothing.
     }
 
+    /**
+     * Invoked instead of {@link #onCheckNode(String)} for a node whose subtree
+     * has already been verified.
+     */
+    protected void onSkipVerifiedNode(String path) {
+        // Do nothing.
+    }
+
     protected void onCheckNodeError(String path, Exception e) {
         // Do nothing.
     }
@@ -192,6 +259,11 @@ public class ConsistencyChecker {
             return true;
         }
 
+        if (isVerified(node)) {
+            onSkipVerifiedNode(path);
+            return false;
+        }
+
         return checkNode(node, path, binaries) != null;
     }
 
@@ -212,7 +284,16 @@ public class ConsistencyChecker {
             return path;
         }
 
-        return checkNodeAndDescendants(node, path, binaries);
+        if (concurrency == 1) {
+            return checkNodeAndDescendants(node, path, binaries);
+        }
+
+        ForkJoinPool pool = new ForkJoinPool(concurrency);
+        try {
+            return pool.invoke(new CheckTreeTask(node, path, binaries));
+        } finally {
+            pool.shutdown();
+        }
     }
 
     private String checkTreeConsistency(NodeState root, String path, Set<String> corruptedPaths, boolean binaries) {
@@ -483,6 +564,11 @@ public class ConsistencyChecker {
      * inconsistency otherwise.
      */
     private String checkNodeAndDescendants(NodeState node, String path, boolean checkBinaries) {
+        if (isVerified(node)) {
+            onSkipVerifiedNode(path);
+            return null;
+        }
+
         String result = checkNode(node, path, checkBinaries);
         if (result != null) {
             return result;
@@ -498,6 +584,7 @@ public class ConsistencyChecker {
                 }
             }
 
+            setVerified(node);
             return null;
         } catch (RuntimeException e) {
             onCheckTreeError(path, e);
@@ -505,8 +592,96 @@ public class ConsistencyChecker {
         }
     }
 
+    /**
+     * Parallel version of {@link #checkNodeAndDescendants(NodeState, String,
+     * boolean)}. The subtrees of the children are forked as long as the
+     * current worker has few queued tasks and are traversed inline otherwise.
+     * All the children are checked, the first inconsistent path in child
+     * order is returned.
+     */
+    private class CheckTreeTask extends RecursiveTask<String> {
+
+        private final NodeState node;
+
+        private final String path;
+
+        private final boolean checkBinaries;
+
+        CheckTreeTask(NodeState node, String path, boolean checkBinaries) {
+            this.node = node;
+            this.path = path;
+            this.checkBinaries = checkBinaries;
+        }
+
+        @Override
+        protected String compute() {
+            if (isVerified(node)) {
+                onSkipVerifiedNode(path);
+                return null;
+            }
+
+            String result = checkNode(node, path, checkBinaries);
+            if (result != null) {
+                return result;
+            }
+
+            try {
+                List<CheckTreeTask> forked = new ArrayList<>();
+                for (ChildNodeEntry cne : node.getChildNodeEntries()) {
+                    String childPath = concat(path, cne.getName());
+                    if (getSurplusQueuedTaskCount() < MAX_SURPLUS_TASKS) {
+                        CheckTreeTask task = new CheckTreeTask(cne.getNodeState(), childPath, checkBinaries);
+                        task.fork();
+                        forked.add(task);
+                    } else if (result == null) {
+                        result = checkNodeAndDescendants(cne.getNodeState(), childPath, checkBinaries);
+                    }
+                }
+
+                String forkedResult = null;
+                for (CheckTreeTask task : forked) {
+                    String r = task.join();
+                    if (forkedResult == null) {
+                        forkedResult = r;
+                    }
+                }
+                if (forkedResult != null) {
+                    return forkedResult;
+                }
+                if (result != null) {
+                    return result;
+                }
+
+                setVerified(node);
+                return null;
+            } catch (RuntimeException e) {
+                onCheckTreeError(path, e);
+                return path;
+            }
+        }
+
+    }
+
+    private boolean isVerified(NodeState node) {
+        return verified != null && node instanceof SegmentNodeState
+            && verified.contains(((SegmentNodeState) node).getRecordId());
+    }
+
+    private void setVerified(NodeState node) {
+        if (verified != null && node instanceof SegmentNodeState) {
+            verified.add(((SegmentNodeState) node).getRecordId());
+        }
+    }
+
     private boolean traverse(Blob blob, boolean checkBinaries) throws IOException {
         if (checkBinaries && !isExternal(blob)) {
+            RecordId id = verified != null && blob instanceof SegmentBlob ? ((SegmentBlob) blob).getRecordId() : null;
+            if (id != null && verified.contains(id)) {
+                return false;
+            }
+            if (binaryCount.getAndIncrement() % binarySampleInterval != 0) {
+                return false;
+            }
             try (InputStream s = blob.getNewStream()) {
                 byte[] buffer = new byte[8192];
                 int l = s.read(buffer, 0, buffer.length);
@@ -514,6 +689,9 @@ public class ConsistencyChecker {
                     l = s.read(buffer, 0, buffer.length);
                 }
             }
+            if (id != null) {
+                verified.add(id);
+            }
             onCheckProperty();
             return true;
         }
@@ -0,0 +1,57 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file.tooling;
+
+import java.util.BitSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.jackrabbit.oak.segment.RecordId;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A thread safe set of record ids, stored as one bitmap of record numbers per
+ * segment. The segments are keyed by their UUID instead of their {@link
+ * SegmentId} so that this set does not keep the segments in memory.
+ */
+final class VerifiedRecordIds {
+
+    private final ConcurrentMap<UUID, BitSet> bitmaps = new ConcurrentHashMap<>();
+
+    boolean contains(@NotNull RecordId id) {
+        BitSet bitmap = bitmaps.get(id.getSegmentId().asUUID());
+        if (bitmap == null) {
+            return false;
+        }
+        synchronized (bitmap) {
+            return bitmap.get(id.getRecordNumber());
+        }
+    }
+
+    void add(@NotNull RecordId id) {
+        BitSet bitmap = bitmaps.computeIfAbsent(id.getSegmentId().asUUID(), k -> new BitSet());
+        synchronized (bitmap) {
+            bitmap.set(id.getRecordNumber());
+        }
+    }
+
+}
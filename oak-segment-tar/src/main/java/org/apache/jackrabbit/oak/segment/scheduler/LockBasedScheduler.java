@@ -68,6 +68,8 @@ public class LockBasedScheduler implements Scheduler {
 
         private boolean dispatchChanges = true;
 
+        private boolean optimisticMerge = OPTIMISTIC_MERGE;
+
         private LockBasedSchedulerBuilder(@NotNull Revisions revisions, @NotNull SegmentReader reader,
                 @NotNull SegmentNodeStoreStats stats) {
             this.revisions = revisions;
@@ -81,6 +83,25 @@ public class LockBasedScheduler implements Scheduler {
             return this;
         }
 
+        /**
+         * Enable or disable optimistic merges. Defaults to the value of the
+         * {@code oak.segmentNodeStore.optimisticMerge} system property.
+         * <p>
+         * With optimistic merges, the commit hooks of a commit are run before
+         * acquiring the commit lock. While holding the lock, the result is
+         * merged with the commits that happened in the meantime if both
+         * touched disjoint parts of the tree. Only if they overlap, the commit
+         * is applied again from scratch while holding the lock. Concurrent
+         * commits to disjoint subtrees thus don't wait for each other's
+         * commit hooks. Note that commit hooks validating content across
+         * subtrees don't see the changes of such concurrent commits.
+         */
+        @NotNull
+        public LockBasedSchedulerBuilder optimisticMerge(boolean optimisticMerge) {
+            this.optimisticMerge = optimisticMerge;
+            return this;
+        }
+
         @NotNull
         public LockBasedScheduler build() {
             if (dispatchChanges) {
@@ -105,6 +126,12 @@ public class LockBasedScheduler implements Scheduler {
     private static final boolean COMMIT_FAIR_LOCK = Boolean
             .parseBoolean(System.getProperty("oak.segmentNodeStore.commitFairLock", "true"));
 
+    /**
+     * Default value of the optimistic merge flag
+     * @see LockBasedSchedulerBuilder#optimisticMerge(boolean)
+     */
+    private static final boolean OPTIMISTIC_MERGE = Boolean.getBoolean("oak.segmentNodeStore.optimisticMerge");
+
     /**
      * Flag controlling the commit time quantile to wait for the lock in order
      * to increase chances of returning an up to date state.
@@ -142,6 +169,8 @@ public class LockBasedScheduler implements Scheduler {
     protected final AtomicReference<SegmentNodeState> head;
 
     private final SegmentNodeStoreStats stats;
+
+    private final boolean optimisticMerge;
     
     private final Histogram commitTimeHistogram = new Histogram(new UniformReservoir());
     
@@ -155,6 +184,7 @@ public class LockBasedScheduler implements Scheduler {
         this.reader = builder.reader;
         this.revisions = builder.revisions;
         this.stats = builder.stats;
+        this.optimisticMerge = builder.optimisticMerge;
         this.head = new AtomicReference<SegmentNodeState>(reader.readHeadState(revisions));
     }
 
@@ -202,6 +232,20 @@ public class LockBasedScheduler implements Scheduler {
         boolean queued = false;
 
         try {
+            SegmentNodeState base = null;
+            SegmentNodeState prepared = null;
+
+            if (optimisticMerge && commit.hasChanges()) {
+                base = reader.readHeadState(revisions);
+                try {
+                    prepared = commit.apply(base);
+                } catch (CommitFailedException e) {
+                    // The commit might succeed on a more recent head, which
+                    // is only known while holding the lock.
+                    log.debug("Optimistic commit failed, retrying while holding the lock", e);
+                }
+            }
+
             long queuedTime = -1;
 
             if (commitSemaphore.availablePermits() < 1) {
@@ -219,7 +263,12 @@ public class LockBasedScheduler implements Scheduler {
 
                 long beforeCommitTime = System.nanoTime();
 
-                SegmentNodeState merged = (SegmentNodeState) execute(commit);
+                SegmentNodeState merged;
+                if (prepared != null) {
+                    merged = (SegmentNodeState) executeOptimistic(commit, base, prepared);
+                } else {
+                    merged = (SegmentNodeState) execute(commit);
+                }
                 commit.applied(merged);
 
                 long afterCommitTime = System.nanoTime();
@@ -273,6 +322,37 @@ public class LockBasedScheduler implements Scheduler {
         return head.get().getChildNode(ROOT);
     }
 
+    /**
+     * Merge a commit whose changes have been applied to {@code base} outside
+     * of the commit lock. Should only be called while holding a permit from
+     * the {@link #commitSemaphore}. Falls back to {@link #execute(Commit)} if
+     * the changes conflict with those of concurrent commits.
+     */
+    private NodeState executeOptimistic(Commit commit, SegmentNodeState base, SegmentNodeState prepared)
+            throws CommitFailedException, InterruptedException {
+        refreshHead(true);
+        SegmentNodeState current = head.get();
+        SegmentNodeState merged = prepared;
+
+        if (!current.getRecordId().equals(base.getRecordId())) {
+            long start = System.nanoTime();
+            merged = ThreeWayMerge.merge(base, prepared, current);
+            if (merged == null) {
+                stats.onCommitRebaseConflict(currentThread());
+                return execute(commit);
+            }
+            stats.onCommitRebased(currentThread(), System.nanoTime() - start);
+        }
+
+        if (revisions.setHead(current.getRecordId(), merged.getRecordId())) {
+            head.set(merged);
+            contentChanged(merged.getChildNode(ROOT), commit.info());
+            return merged.getChildNode(ROOT);
+        }
+
+        return execute(commit);
+    }
+
     @Override
     public String checkpoint(long lifetime, @NotNull Map<String, String> properties) {
         checkArgument(lifetime > 0);
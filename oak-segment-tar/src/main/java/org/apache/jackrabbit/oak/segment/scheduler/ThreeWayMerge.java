@@ -0,0 +1,143 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.scheduler;
+
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStateDiff;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+/**
+ * Three-way merge of two node states derived from a common base state,
+ * succeeding only if the two sets of changes are disjoint. Changes are
+ * disjoint if they don't touch the same property and don't add, remove or
+ * replace the same child node. Both sets of changes are computed by comparing
+ * against the base state, which for segment node states only visits the map
+ * buckets that actually changed. The cost of the merge is therefore
+ * proportional to the size of the changes, not to the size of the tree.
+ */
+final class ThreeWayMerge {
+
+    private ThreeWayMerge() {
+    }
+
+    /**
+     * Apply the changes between {@code base} and {@code ours} on top of
+     * {@code theirs}.
+     *
+     * @param base    the common base state
+     * @param ours    the state containing the changes to apply
+     * @param theirs  the state to apply the changes to
+     * @return  the merged state or {@code null} if the changes of {@code ours}
+     *          and of {@code theirs} overlap.
+     */
+    @Nullable
+    static SegmentNodeState merge(
+            @NotNull SegmentNodeState base,
+            @NotNull SegmentNodeState ours,
+            @NotNull SegmentNodeState theirs) {
+        SegmentNodeBuilder builder = theirs.builder();
+        if (merge(base, ours, theirs, builder)) {
+            return builder.getNodeState();
+        }
+        return null;
+    }
+
+    private static boolean merge(NodeState base, NodeState ours, NodeState theirs, NodeBuilder builder) {
+        return ours.compareAgainstBaseState(base, new NodeStateDiff() {
+
+            @Override
+            public boolean propertyAdded(PropertyState after) {
+                PropertyState other = theirs.getProperty(after.getName());
+                if (other == null) {
+                    builder.setProperty(after);
+                    return true;
+                }
+                return after.equals(other);
+            }
+
+            @Override
+            public boolean propertyChanged(PropertyState before, PropertyState after) {
+                PropertyState other = theirs.getProperty(after.getName());
+                if (before.equals(other)) {
+                    builder.setProperty(after);
+                    return true;
+                }
+                return after.equals(other);
+            }
+
+            @Override
+            public boolean propertyDeleted(PropertyState before) {
+                PropertyState other = theirs.getProperty(before.getName());
+                if (other == null) {
+                    return true;
+                }
+                if (before.equals(other)) {
+                    builder.removeProperty(before.getName());
+                    return true;
+                }
+                return false;
+            }
+
+            @Override
+            public boolean childNodeAdded(String name, NodeState after) {
+                NodeState other = theirs.getChildNode(name);
+                if (!other.exists()) {
+                    builder.setChildNode(name, after);
+                    return true;
+                }
+                return SegmentNodeState.fastEquals(after, other);
+            }
+
+            @Override
+            public boolean childNodeChanged(String name, NodeState before, NodeState after) {
+                NodeState other = theirs.getChildNode(name);
+                if (!other.exists()) {
+                    return false;
+                }
+                if (SegmentNodeState.fastEquals(before, other)) {
+                    builder.setChildNode(name, after);
+                    return true;
+                }
+                if (SegmentNodeState.fastEquals(after, other)) {
+                    return true;
+                }
+                return merge(before, after, other, builder.getChildNode(name));
+            }
+
+            @Override
+            public boolean childNodeDeleted(String name, NodeState before) {
+                NodeState other = theirs.getChildNode(name);
+                if (!other.exists()) {
+                    return true;
+                }
+                if (SegmentNodeState.fastEquals(before, other)) {
+                    builder.getChildNode(name).remove();
+                    return true;
+                }
+                return false;
+            }
+
+        });
+    }
+
+}
@@ -87,4 +87,15 @@ public class CompositeIOMonitor implements IOMonitor {
         ioMonitors.forEach(ioMonitor ->
             ioMonitor.afterSegmentWrite(file, msb, lsb, length, elapsed));
     }
+
+    @Override
+    public void afterSegmentsSync(File file, int segments, long length, long elapsed) {
+        ioMonitors.forEach(ioMonitor ->
+            ioMonitor.afterSegmentsSync(file, segments, length, elapsed));
+    }
+
+    @Override
+    public void afterFileClosed(File file) {
+        ioMonitors.forEach(ioMonitor -> ioMonitor.afterFileClosed(file));
+    }
 }
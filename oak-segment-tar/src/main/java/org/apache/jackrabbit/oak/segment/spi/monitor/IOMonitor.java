@@ -69,4 +69,29 @@ public interface IOMonitor {
      */
     void afterSegmentWrite(File file, long msb, long lsb, int length, long elapsed);
 
+    /**
+     * Called after the segments written to a file since the previous sync
+     * have been forced to the storage device. This is called only in case of
+     * successful operations. Segments written concurrently are synced as a
+     * batch, so a single call may account for more than one segment.
+     *
+     * @param file     File that has been synced.
+     * @param segments Number of segments written since the previous sync.
+     * @param length   Number of bytes written since the previous sync.
+     * @param elapsed  Time spent by the sync operation, in nanoseconds.
+     */
+    default void afterSegmentsSync(File file, int segments, long length, long elapsed) {
+        // nop
+    }
+
+    /**
+     * Called after a file opened for reading segments has been closed. No
+     * further segments are read from it.
+     *
+     * @param file File that has been closed.
+     */
+    default void afterFileClosed(File file) {
+        // nop
+    }
+
 }
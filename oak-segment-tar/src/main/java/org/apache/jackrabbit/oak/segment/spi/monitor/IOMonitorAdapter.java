@@ -45,4 +45,14 @@ public class IOMonitorAdapter implements IOMonitor {
         // Intentionally left blank
     }
 
+    @Override
+    public void afterSegmentsSync(File file, int segments, long length, long elapsed) {
+        // Intentionally left blank
+    }
+
+    @Override
+    public void afterFileClosed(File file) {
+        // Intentionally left blank
+    }
+
 }
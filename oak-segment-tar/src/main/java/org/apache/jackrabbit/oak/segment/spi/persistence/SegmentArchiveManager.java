@@ -18,7 +18,9 @@
  */
 package org.apache.jackrabbit.oak.segment.spi.persistence;
 
+import java.io.Closeable;
 import java.io.IOException;
+import java.util.Collection;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.UUID;
@@ -43,6 +45,25 @@ public interface SegmentArchiveManager {
     @NotNull
     List<String> listArchives() throws IOException;
 
+    /**
+     * Announces that the given archives are about to be opened with {@link
+     * #open(String)} or {@link #forceOpen(String)}. Implementations backed by
+     * a remote storage may start opening them in the background. Readers
+     * that haven't been taken by the time the returned handle is closed must
+     * be released by the implementation.
+     * <p>
+     * The default implementation does nothing.
+     *
+     * @param archiveNames the archives that are about to be opened
+     * @return a handle to close once the archives have been opened
+     */
+    @NotNull
+    default Closeable preload(@NotNull Collection<String> archiveNames) {
+        return () -> {
+            // nop
+        };
+    }
+
     /**
      * Opens a given archive for reading.
      *
@@ -16,13 +16,16 @@
  */
 package org.apache.jackrabbit.oak.segment.split;
 
+import java.io.Closeable;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.UUID;
 
+import com.google.common.io.Closer;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveManager;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveReader;
 import org.apache.jackrabbit.oak.segment.spi.persistence.SegmentArchiveWriter;
@@ -61,6 +64,23 @@ public class SplitSegmentArchiveManager implements SegmentArchiveManager {
         return result;
     }
 
+    @Override
+    public @NotNull Closeable preload(@NotNull Collection<String> archiveNames) {
+        List<String> roArchives = new ArrayList<>();
+        List<String> rwArchives = new ArrayList<>();
+        for (String archiveName : archiveNames) {
+            if (roArchiveList.contains(archiveName)) {
+                roArchives.add(archiveName);
+            } else {
+                rwArchives.add(archiveName);
+            }
+        }
+        Closer closer = Closer.create();
+        closer.register(roArchiveManager.preload(roArchives));
+        closer.register(rwArchiveManager.preload(rwArchives));
+        return closer;
+    }
+
     @Override
     public @Nullable SegmentArchiveReader open(@NotNull String archiveName) throws IOException {
         if (roArchiveList.contains(archiveName)) {
@@ -19,6 +19,12 @@ package org.apache.jackrabbit.oak.segment.standby.client;
 
 import java.io.File;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingDeque;
 import java.util.concurrent.TimeUnit;
@@ -50,10 +56,14 @@ import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesRequest;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponse;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentIdsRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentIdsRequestEncoder;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentIdsResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequest;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentRequestEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponse;
 import org.apache.jackrabbit.oak.segment.standby.codec.ResponseDecoder;
+import org.jetbrains.annotations.NotNull;
 import org.jetbrains.annotations.Nullable;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -70,6 +80,8 @@ class StandbyClient implements AutoCloseable {
 
     private final BlockingQueue<GetReferencesResponse> referencesQueue = new LinkedBlockingDeque<>();
 
+    private final BlockingQueue<GetSegmentIdsResponse> segmentIdsQueue = new LinkedBlockingDeque<>();
+
     private final int readTimeoutMs;
 
     private final String clientId;
@@ -115,6 +127,7 @@ class StandbyClient implements AutoCloseable {
                     p.addLast(new GetSegmentRequestEncoder());
                     p.addLast(new GetBlobRequestEncoder());
                     p.addLast(new GetReferencesRequestEncoder());
+                    p.addLast(new GetSegmentIdsRequestEncoder());
 
                     // Handlers
 
@@ -122,6 +135,7 @@ class StandbyClient implements AutoCloseable {
                     p.addLast(new GetSegmentResponseHandler(segmentQueue));
                     p.addLast(new GetBlobResponseHandler(blobQueue));
                     p.addLast(new GetReferencesResponseHandler(referencesQueue));
+                    p.addLast(new GetSegmentIdsResponseHandler(segmentIdsQueue));
 
                     // Exception handler
 
@@ -171,6 +185,38 @@ class StandbyClient implements AutoCloseable {
         return response.getSegmentData();
     }
 
+    /**
+     * Request all segments in {@code segmentIds} without waiting for the
+     * individual responses in between. The requests are pipelined over the
+     * channel such that fetching many segments costs a single round trip.
+     *
+     * @param segmentIds the ids of the segments to fetch
+     * @return the data of the received segments by segment id. Segments whose
+     * response did not arrive within the read timeout are missing from the
+     * returned map.
+     */
+    @NotNull
+    Map<String, byte[]> getSegments(Collection<String> segmentIds) throws InterruptedException {
+        for (String segmentId : segmentIds) {
+            channel.write(new GetSegmentRequest(clientId, segmentId));
+        }
+        channel.flush();
+
+        Map<String, byte[]> segments = new HashMap<>();
+
+        for (int i = 0; i < segmentIds.size(); i++) {
+            GetSegmentResponse response = segmentQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
+
+            if (response == null) {
+                break;
+            }
+
+            segments.put(response.getSegmentId(), response.getSegmentData());
+        }
+
+        return segments;
+    }
+
     @Nullable
     InputStream getBlob(String blobId) throws InterruptedException {
         channel.writeAndFlush(new GetBlobRequest(clientId, blobId));
@@ -197,6 +243,64 @@ class StandbyClient implements AutoCloseable {
         return response.getReferences();
     }
 
+    /**
+     * Request the references of all segments in {@code segmentIds} without
+     * waiting for the individual responses in between.
+     *
+     * @param segmentIds the ids of the segments whose references to fetch
+     * @return the references by segment id. Segments whose response did not
+     * arrive within the read timeout are missing from the returned map.
+     * @see #getSegments(Collection)
+     */
+    @NotNull
+    Map<String, Iterable<String>> getReferences(Collection<String> segmentIds) throws InterruptedException {
+        for (String segmentId : segmentIds) {
+            channel.write(new GetReferencesRequest(clientId, segmentId));
+        }
+        channel.flush();
+
+        Map<String, Iterable<String>> references = new HashMap<>();
+
+        for (int i = 0; i < segmentIds.size(); i++) {
+            GetReferencesResponse response = referencesQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
+
+            if (response == null) {
+                break;
+            }
+
+            references.put(response.getSegmentId(), response.getReferences());
+        }
+
+        return references;
+    }
+
+    /**
+     * @return the ids of the segments in the tar files of the primary or
+     * {@code null} if the response did not arrive within the read timeout.
+     */
+    @Nullable
+    List<UUID> getSegmentIds() throws InterruptedException {
+        // Drop chunks left over from an earlier request that timed out
+        segmentIdsQueue.clear();
+        channel.writeAndFlush(new GetSegmentIdsRequest(clientId));
+
+        List<UUID> segmentIds = new ArrayList<>();
+
+        while (true) {
+            GetSegmentIdsResponse response = segmentIdsQueue.poll(readTimeoutMs, TimeUnit.MILLISECONDS);
+
+            if (response == null) {
+                return null;
+            }
+
+            segmentIds.addAll(response.getSegmentIds());
+
+            if (response.isLast()) {
+                return segmentIds;
+            }
+        }
+    }
+
     public int getReadTimeoutMs() {
         return readTimeoutMs;
     }
@@ -85,6 +85,8 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
 
     private long syncEndTimestamp;
 
+    private volatile long lastSyncThroughput;
+
     private static String clientId() {
         String s = System.getProperty(CLIENT_ID_PROPERTY_NAME);
 
@@ -160,6 +162,7 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
                 long startTimestamp = System.currentTimeMillis();
 
                 GCGeneration genBefore = headGeneration(fileStore);
+                long bytesBefore = execution.getTransferredSegmentBytes();
 
                 try (StandbyClient client = new StandbyClient(host, port, group, observer.getID(), secure, readTimeoutMs, spoolFolder)) {
                     execution.execute(client);
@@ -178,6 +181,8 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
                 this.syncStartTimestamp = startTimestamp;
                 this.syncEndTimestamp = System.currentTimeMillis();
                 this.lastSuccessfulRequest = syncEndTimestamp / 1000;
+                this.lastSyncThroughput = (execution.getTransferredSegmentBytes() - bytesBefore) * 1000
+                        / Math.max(1, syncEndTimestamp - syncStartTimestamp);
             } catch (Exception e) {
                 this.failedRequests++;
                 log.error("Failed synchronizing state.", e);
@@ -268,6 +273,21 @@ public final class StandbyClientSync implements ClientStandbyStatusMBean, Runnab
         return syncEndTimestamp;
     }
 
+    @Override
+    public long getTransferredSegments() {
+        return execution.getTransferredSegments();
+    }
+
+    @Override
+    public long getTransferredSegmentBytes() {
+        return execution.getTransferredSegmentBytes();
+    }
+
+    @Override
+    public long getLastSyncThroughput() {
+        return lastSyncThroughput;
+    }
+
     private void closeGroup() {
         if (group == null) {
             return;
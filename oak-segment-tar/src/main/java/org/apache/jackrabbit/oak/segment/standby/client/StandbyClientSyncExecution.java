@@ -17,10 +17,14 @@
 
 package org.apache.jackrabbit.oak.segment.standby.client;
 
+import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Stopwatch;
 import com.google.common.base.Supplier;
@@ -45,16 +49,39 @@ class StandbyClientSyncExecution {
 
     private static final Logger log = LoggerFactory.getLogger(StandbyClientSyncExecution.class);
 
+    /**
+     * Maximum number of outstanding requests sent to the primary before
+     * waiting for their responses.
+     */
+    private static final int REQUEST_WINDOW = Integer.getInteger("oak.standby.requestWindow", 64);
+
+    /**
+     * Whether to copy all segments missing locally in bulk before walking
+     * the segment graph from the new head.
+     */
+    private static final boolean BULK_SYNC = Boolean.getBoolean("oak.standby.bulkSync");
+
     private final FileStore store;
 
     private final SegmentIdProvider idProvider;
 
     private final Supplier<Boolean> running;
 
+    private final boolean bulkSync;
+
+    private final AtomicLong transferredSegments = new AtomicLong();
+
+    private final AtomicLong transferredSegmentBytes = new AtomicLong();
+
     StandbyClientSyncExecution(FileStore store, Supplier<Boolean> running) {
+        this(store, running, BULK_SYNC);
+    }
+
+    StandbyClientSyncExecution(FileStore store, Supplier<Boolean> running, boolean bulkSync) {
         this.store = store;
         this.idProvider = store.getSegmentIdProvider();
         this.running = running;
+        this.bulkSync = bulkSync;
     }
 
     void execute(StandbyClient client) throws Exception {
@@ -70,6 +97,11 @@ class StandbyClientSyncExecution {
         }
 
         Stopwatch stopwatch = Stopwatch.createStarted();
+
+        if (bulkSync) {
+            copyMissingSegmentsFromPrimary(client);
+        }
+
         SegmentNodeState before = store.getHead();
         SegmentNodeBuilder builder = before.builder();
         SegmentNodeState current = newSegmentNodeState(remoteHead);
@@ -116,90 +148,148 @@ class StandbyClientSyncExecution {
         Set<UUID> local = new HashSet<>();
 
         while (!batch.isEmpty()) {
-            UUID current = batch.remove();
 
-            log.debug("Inspecting segment {}", current);
-            visited.add(current);
+            // Take up to REQUEST_WINDOW segments from the queue and fetch
+            // their references in a single round trip. This prefetches the
+            // references of the segments queued next instead of waiting for
+            // the response of every single segment in turn.
 
-            // Add the current segment ID at the beginning of the respective
-            // list, depending on its type. This allows to process those
-            // segments in an optimal topological order later on. If the current
-            // segment is a bulk segment, we can skip the rest of the loop,
-            // since bulk segments don't reference any other segment.
+            List<UUID> window = new ArrayList<>(REQUEST_WINDOW);
 
-            if (SegmentId.isDataSegmentId(current.getLeastSignificantBits())) {
-                data.addFirst(current);
-            } else {
-                bulk.addFirst(current);
-                continue;
-            }
+            while (!batch.isEmpty() && window.size() < REQUEST_WINDOW) {
+                UUID current = batch.remove();
 
-            for (String s : readReferences(client, current)) {
-                UUID referenced = UUID.fromString(s);
+                log.debug("Inspecting segment {}", current);
+                visited.add(current);
 
-                // Short circuit for the "backward reference". The segment graph
-                // is not guaranteed to be acyclic, so there might be segments
-                // pointing back to a previously visited (but locally
-                // unavailable) segment.
+                // Add the current segment ID at the beginning of the respective
+                // list, depending on its type. This allows to process those
+                // segments in an optimal topological order later on. If the
+                // current segment is a bulk segment, we don't need to read its
+                // references, since bulk segments don't reference any other
+                // segment.
 
-                if (visited.contains(referenced)) {
-                    continue;
+                if (SegmentId.isDataSegmentId(current.getLeastSignificantBits())) {
+                    data.addFirst(current);
+                    window.add(current);
+                } else {
+                    bulk.addFirst(current);
                 }
+            }
 
-                // Short circuit for the "diamond problem". Imagine that segment
-                // S1 references S2 and S3 and both S2 and S3 reference S4.
-                // These references form the shape of a diamond. If the segments
-                // are processed in the order S1, S2, S3, then S4 is added twice
-                // to the 'batch' queue. The following check prevents processing
-                // S4 twice or more.
+            if (window.isEmpty()) {
+                continue;
+            }
 
-                if (queued.contains(referenced)) {
-                    continue;
+            Map<String, Iterable<String>> references = readReferences(client, window);
+
+            for (UUID current : window) {
+                for (String s : references.get(current.toString())) {
+                    UUID referenced = UUID.fromString(s);
+
+                    // Short circuit for the "backward reference". The segment graph
+                    // is not guaranteed to be acyclic, so there might be segments
+                    // pointing back to a previously visited (but locally
+                    // unavailable) segment.
+
+                    if (visited.contains(referenced)) {
+                        continue;
+                    }
+
+                    // Short circuit for the "diamond problem". Imagine that segment
+                    // S1 references S2 and S3 and both S2 and S3 reference S4.
+                    // These references form the shape of a diamond. If the segments
+                    // are processed in the order S1, S2, S3, then S4 is added twice
+                    // to the 'batch' queue. The following check prevents processing
+                    // S4 twice or more.
+
+                    if (queued.contains(referenced)) {
+                        continue;
+                    }
+
+                    // Short circuit for the "sharing-is-caring problem". If many
+                    // new segments are sharing segments that are already locally
+                    // available, we should not issue a request for it to the
+                    // server. Moreover, if a segment was visited and persisted
+                    // during this synchronization process, it will end up in the
+                    // 'local' set as well.
+
+                    if (local.contains(referenced)) {
+                        continue;
+                    }
+
+                    if (isLocal(referenced)) {
+                        local.add(referenced);
+                        continue;
+                    }
+
+                    // If we arrive at this point, the referenced segment is 1) not
+                    // present locally, 2) not already queued for retrieval and 3)
+                    // never visited before. We can safely add the reference to the
+                    // queue and transfer the segment later.
+
+                    log.debug("Found reference from {} to {}", current, referenced);
+                    batch.add(referenced);
+                    queued.add(referenced);
                 }
+            }
+        }
 
-                // Short circuit for the "sharing-is-caring problem". If many
-                // new segments are sharing segments that are already locally
-                // available, we should not issue a request for it to the
-                // server. Moreover, if a segment was visited and persisted
-                // during this synchronization process, it will end up in the
-                // 'local' set as well.
+        log.info("Copying {} bulk segments from primary", bulk.size());
+        copySegmentsFromPrimary(client, bulk);
 
-                if (local.contains(referenced)) {
-                    continue;
-                }
+        log.info("Copying {} data segments from primary", data.size());
+        copySegmentsFromPrimary(client, data);
+    }
 
-                if (isLocal(referenced)) {
-                    local.add(referenced);
-                    continue;
-                }
+    /**
+     * Copy all segments contained in the tar files of the primary but missing
+     * locally. The set of missing segments is computed from a single summary
+     * of the primary's segment ids instead of discovering them one by one
+     * through their references. Segments not yet flushed to a tar file on the
+     * primary are not covered and are picked up by the subsequent diff.
+     * <p>
+     * The primary sends the ids with every segment after the segments it
+     * references, and this order is kept when copying. If the copy is
+     * interrupted, every segment copied so far has its references available
+     * locally, such that later syncs can safely skip it as local without
+     * looking at its references.
+     */
+    private void copyMissingSegmentsFromPrimary(StandbyClient client) throws Exception {
+        List<UUID> remote = client.getSegmentIds();
+
+        if (remote == null) {
+            log.warn("Unable to read segment ids from primary, falling back to incremental sync");
+            return;
+        }
 
-                // If we arrive at this point, the referenced segment is 1) not
-                // present locally, 2) not already queued for retrieval and 3)
-                // never visited before. We can safely add the reference to the
-                // queue and transfer the segment later.
+        LinkedList<UUID> bulk = new LinkedList<>();
+        LinkedList<UUID> data = new LinkedList<>();
 
-                log.debug("Found reference from {} to {}", current, referenced);
-                batch.add(referenced);
-                queued.add(referenced);
+        for (UUID id : remote) {
+            if (isLocal(id)) {
+                continue;
+            }
+            if (SegmentId.isDataSegmentId(id.getLeastSignificantBits())) {
+                data.add(id);
+            } else {
+                bulk.add(id);
             }
         }
 
-        for (UUID id : bulk) {
-            log.info("Copying bulk segment {} from primary", id);
-            copySegmentFromPrimary(client, id);
-        }
-
-        for (UUID id : data) {
-            log.info("Copying data segment {} from primary", id);
-            copySegmentFromPrimary(client, id);
-        }
+        log.info("Copying {} bulk and {} data segments missing from {} segments on primary",
+                bulk.size(), data.size(), remote.size());
+        copySegmentsFromPrimary(client, bulk);
+        copySegmentsFromPrimary(client, data);
     }
 
-    private Iterable<String> readReferences(StandbyClient client, UUID id) throws InterruptedException {
-        Iterable<String> references = client.getReferences(id.toString());
+    private Map<String, Iterable<String>> readReferences(StandbyClient client, List<UUID> ids) throws InterruptedException {
+        Map<String, Iterable<String>> references = client.getReferences(toStrings(ids));
 
-        if (references == null) {
-            throw new IllegalStateException(String.format("Unable to read references of segment %s from primary", id));
+        for (UUID id : ids) {
+            if (references.get(id.toString()) == null) {
+                throw new IllegalStateException(String.format("Unable to read references of segment %s from primary", id));
+            }
         }
 
         return references;
@@ -212,18 +302,52 @@ class StandbyClientSyncExecution {
         ));
     }
 
-    private void copySegmentFromPrimary(StandbyClient client, UUID uuid) throws Exception {
-        byte[] data = client.getSegment(uuid.toString());
+    private void copySegmentsFromPrimary(StandbyClient client, List<UUID> ids) throws Exception {
+        for (int from = 0; from < ids.size(); from += REQUEST_WINDOW) {
+            List<UUID> window = ids.subList(from, Math.min(from + REQUEST_WINDOW, ids.size()));
+            Map<String, byte[]> segments = client.getSegments(toStrings(window));
+
+            // Write the segments in the order they have been requested in to
+            // preserve the topological order established by the caller.
 
-        if (data == null) {
-            throw new IllegalStateException("Unable to read segment " + uuid);
+            for (UUID uuid : window) {
+                byte[] data = segments.get(uuid.toString());
+
+                if (data == null) {
+                    throw new IllegalStateException("Unable to read segment " + uuid);
+                }
+
+                log.debug("Copying segment {} from primary", uuid);
+                long msb = uuid.getMostSignificantBits();
+                long lsb = uuid.getLeastSignificantBits();
+                SegmentId segmentId = idProvider.newSegmentId(msb, lsb);
+                store.writeSegment(segmentId, data, 0, data.length);
+                transferredSegments.incrementAndGet();
+                transferredSegmentBytes.addAndGet(data.length);
+            }
         }
+    }
 
-        long msb = uuid.getMostSignificantBits();
-        long lsb = uuid.getLeastSignificantBits();
-        SegmentId segmentId = idProvider.newSegmentId(msb, lsb);
-        store.writeSegment(segmentId, data, 0, data.length);
+    private static List<String> toStrings(List<UUID> ids) {
+        List<String> strings = new ArrayList<>(ids.size());
+        for (UUID id : ids) {
+            strings.add(id.toString());
+        }
+        return strings;
     }
 
-}
+    /**
+     * @return the number of segments copied from the primary so far
+     */
+    long getTransferredSegments() {
+        return transferredSegments.get();
+    }
 
+    /**
+     * @return the number of bytes of the segments copied from the primary so far
+     */
+    long getTransferredSegmentBytes() {
+        return transferredSegmentBytes.get();
+    }
+
+}
@@ -0,0 +1,64 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jackrabbit.oak.segment.standby.codec;
+
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Summary of the segments stored in the tar files of the primary. The ids
+ * are sent in their binary form and split over several responses, each
+ * carrying a chunk of the ids. The last chunk is flagged so the client knows
+ * when the summary is complete.
+ */
+public class GetSegmentIdsResponse {
+
+    private final String clientId;
+
+    private final List<UUID> segmentIds;
+
+    private final boolean last;
+
+    public GetSegmentIdsResponse(String clientId, List<UUID> segmentIds) {
+        this(clientId, segmentIds, true);
+    }
+
+    public GetSegmentIdsResponse(String clientId, List<UUID> segmentIds, boolean last) {
+        this.clientId = clientId;
+        this.segmentIds = segmentIds;
+        this.last = last;
+    }
+
+    public String getClientId() {
+        return clientId;
+    }
+
+    public List<UUID> getSegmentIds() {
+        return segmentIds;
+    }
+
+    /**
+     * @return {@code true} if this response carries the last chunk of the
+     * segment ids.
+     */
+    public boolean isLast() {
+        return last;
+    }
+
+}
@@ -0,0 +1,51 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jackrabbit.oak.segment.standby.codec;
+
+import java.util.List;
+import java.util.UUID;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.MessageToByteEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class GetSegmentIdsResponseEncoder extends MessageToByteEncoder<GetSegmentIdsResponse> {
+
+    private static final Logger log = LoggerFactory.getLogger(GetSegmentIdsResponseEncoder.class);
+
+    @Override
+    protected void encode(ChannelHandlerContext ctx, GetSegmentIdsResponse msg, ByteBuf out) throws Exception {
+        log.debug("Sending {} segment ids to client {}", msg.getSegmentIds().size(), msg.getClientId());
+        encode(msg.getSegmentIds(), msg.isLast(), out);
+    }
+
+    private static void encode(List<UUID> segmentIds, boolean last, ByteBuf out) {
+        out.writeInt(1 + 1 + 4 + 16 * segmentIds.size());
+        out.writeByte(Messages.HEADER_SEGMENT_IDS);
+        out.writeBoolean(last);
+        out.writeInt(segmentIds.size());
+        for (UUID id : segmentIds) {
+            out.writeLong(id.getMostSignificantBits());
+            out.writeLong(id.getLeastSignificantBits());
+        }
+    }
+
+}
@@ -29,6 +29,8 @@ final class Messages {
 
     static final byte HEADER_REFERENCES = 0x03;
 
+    static final byte HEADER_SEGMENT_IDS = 0x04;
+
     static final String GET_HEAD = "h";
 
     static final String GET_SEGMENT = "s.";
@@ -37,6 +39,8 @@ final class Messages {
 
     static final String GET_REFERENCES = "r.";
 
+    static final String GET_SEGMENT_IDS = "i";
+
     private static final String MAGIC = "Standby-CMD@";
 
     private static final String SEPARATOR = ":";
@@ -92,6 +96,14 @@ final class Messages {
         return newGetBlobRequest(clientId, blobId, true);
     }
 
+    static String newGetSegmentIdsRequest(String clientId, boolean delimited) {
+        return newRequest(clientId, GET_SEGMENT_IDS, delimited);
+    }
+
+    static String newGetSegmentIdsRequest(String clientId) {
+        return newGetSegmentIdsRequest(clientId, true);
+    }
+
     static String extractMessageFrom(String payload) {
         if (payload.startsWith(MAGIC) && payload.length() > MAGIC.length()) {
             int i = payload.indexOf(SEPARATOR);
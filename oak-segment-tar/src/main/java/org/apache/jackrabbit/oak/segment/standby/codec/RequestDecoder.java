@@ -47,6 +47,9 @@ public class RequestDecoder extends MessageToMessageDecoder<String> {
         } else if (request.startsWith(Messages.GET_REFERENCES)) {
             log.debug("Parsed 'get references' message");
             out.add(new GetReferencesRequest(Messages.extractClientFrom(msg), request.substring(Messages.GET_REFERENCES.length())));
+        } else if (request.equalsIgnoreCase(Messages.GET_SEGMENT_IDS)) {
+            log.debug("Parsed 'get segment ids' message");
+            out.add(new GetSegmentIdsRequest(Messages.extractClientFrom(msg)));
         } else {
             log.debug("Received unrecognizable message {}, dropping", msg);
         }
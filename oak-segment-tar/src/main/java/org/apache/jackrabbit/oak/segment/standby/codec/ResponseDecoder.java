@@ -28,6 +28,7 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.nio.file.Files;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.UUID;
 
@@ -96,6 +97,10 @@ public class ResponseDecoder extends ByteToMessageDecoder {
                 log.debug("Decoding 'get references' response");
                 decodeGetReferencesResponse(length, in, out);
                 break;
+            case Messages.HEADER_SEGMENT_IDS:
+                log.debug("Decoding 'get segment ids' response");
+                decodeGetSegmentIdsResponse(in, out);
+                break;
             default:
                 log.debug("Invalid type, dropping message");
         }
@@ -202,6 +207,21 @@ public class ResponseDecoder extends ByteToMessageDecoder {
         out.add(new GetReferencesResponse(null, segmentId, references));
     }
 
+    private static void decodeGetSegmentIdsResponse(ByteBuf in, List<Object> out) {
+        boolean last = in.readBoolean();
+        int count = in.readInt();
+
+        List<UUID> segmentIds = new ArrayList<>(count);
+
+        for (int i = 0; i < count; i++) {
+            long msb = in.readLong();
+            long lsb = in.readLong();
+            segmentIds.add(new UUID(msb, lsb));
+        }
+
+        out.add(new GetSegmentIdsResponse(null, segmentIds, last));
+    }
+
     private static long hash(byte[] data) {
         return Hashing.murmur3_32().newHasher().putBytes(data).hash().padToLong();
     }
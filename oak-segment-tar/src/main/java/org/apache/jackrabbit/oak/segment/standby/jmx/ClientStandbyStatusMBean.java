@@ -33,6 +33,15 @@ public interface ClientStandbyStatusMBean extends StandbyStatusMBean {
     @Description("Local timestamp of the moment when the last sync cycle ended")
     long getSyncEndTimestamp();
 
+    @Description("number of segments transferred from the primary since the client was started")
+    long getTransferredSegments();
+
+    @Description("number of segment bytes transferred from the primary since the client was started")
+    long getTransferredSegmentBytes();
+
+    @Description("Throughput in bytes per second of segments transferred during the last sync cycle")
+    long getLastSyncThroughput();
+
     // expose the informations as operations, too
 
     @Description("number of consecutive failed requests")
@@ -0,0 +1,74 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.apache.jackrabbit.oak.segment.standby.server;
+
+import java.util.List;
+import java.util.UUID;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentIdsRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentIdsResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+class GetSegmentIdsRequestHandler extends SimpleChannelInboundHandler<GetSegmentIdsRequest> {
+
+    private static final Logger log = LoggerFactory.getLogger(GetSegmentIdsRequestHandler.class);
+
+    /**
+     * Maximum number of segment ids sent in a single response. At 16 bytes per
+     * id this keeps every frame at about 1 MB.
+     */
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private final StandbySegmentIdsReader reader;
+
+    private final int chunkSize;
+
+    GetSegmentIdsRequestHandler(StandbySegmentIdsReader reader) {
+        this(reader, DEFAULT_CHUNK_SIZE);
+    }
+
+    GetSegmentIdsRequestHandler(StandbySegmentIdsReader reader, int chunkSize) {
+        this.reader = reader;
+        this.chunkSize = chunkSize;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, GetSegmentIdsRequest msg) throws Exception {
+        log.debug("Reading segment ids for client {}", msg.getClientId());
+
+        List<UUID> segmentIds = reader.readSegmentIds();
+
+        if (segmentIds.isEmpty()) {
+            ctx.writeAndFlush(new GetSegmentIdsResponse(msg.getClientId(), segmentIds, true));
+            return;
+        }
+
+        for (int from = 0; from < segmentIds.size(); from += chunkSize) {
+            int to = Math.min(from + chunkSize, segmentIds.size());
+            boolean last = to == segmentIds.size();
+            ctx.write(new GetSegmentIdsResponse(msg.getClientId(), segmentIds.subList(from, to), last));
+        }
+
+        ctx.flush();
+    }
+
+}
@@ -46,6 +46,7 @@ import org.apache.jackrabbit.oak.segment.file.FileStore;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetBlobResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetHeadResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetReferencesResponseEncoder;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentIdsResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentResponseEncoder;
 import org.apache.jackrabbit.oak.segment.standby.codec.RequestDecoder;
 import org.apache.jackrabbit.oak.segment.standby.store.CommunicationObserver;
@@ -183,6 +184,7 @@ class StandbyServer implements AutoCloseable {
                 p.addLast(new GetSegmentResponseEncoder());
                 p.addLast(new GetBlobResponseEncoder(builder.blobChunkSize));
                 p.addLast(new GetReferencesResponseEncoder());
+                p.addLast(new GetSegmentIdsResponseEncoder());
                 p.addLast(new ResponseObserverHandler(builder.observer));
 
                 // Handlers
@@ -193,6 +195,7 @@ class StandbyServer implements AutoCloseable {
                 p.addLast(new GetSegmentRequestHandler(new DefaultStandbySegmentReader(store)));
                 p.addLast(new GetBlobRequestHandler(new DefaultStandbyBlobReader(store.getBlobStore())));
                 p.addLast(new GetReferencesRequestHandler(new DefaultStandbyReferencesReader(store)));
+                p.addLast(new GetSegmentIdsRequestHandler(new DefaultStandbySegmentIdsReader(store)));
 
                 // Exception handler
 
@@ -31,6 +31,10 @@ import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 import com.google.common.base.Strings;
@@ -81,6 +85,14 @@ public class Check {
         private Set<String> filterPaths;
 
         private boolean ioStatistics;
+
+        private int concurrency = 1;
+
+        private int binarySampleInterval = 1;
+
+        private boolean skipVerified;
+
+        private PrintWriter progressWriter;
         
         private PrintWriter outWriter;
         
@@ -192,6 +204,68 @@ public class Check {
             return this;
         }
         
+        /**
+         * Number of threads traversing each content tree. This parameter is
+         * not required and defaults to {@code 1}.
+         *
+         * @param concurrency number of threads. It must be positive.
+         * @return this builder.
+         */
+        public Builder withConcurrency(int concurrency) {
+            checkArgument(concurrency > 0);
+            this.concurrency = concurrency;
+            return this;
+        }
+
+        /**
+         * Instruct the command to only scan every {@code
+         * binarySampleInterval}-th binary property when binaries are checked.
+         * This parameter is not required and defaults to {@code 1}, i.e. all
+         * binaries are scanned.
+         *
+         * @param binarySampleInterval the sampling interval. It must be
+         *                             positive.
+         * @return this builder.
+         */
+        public Builder withBinarySampleInterval(int binarySampleInterval) {
+            checkArgument(binarySampleInterval > 0);
+            this.binarySampleInterval = binarySampleInterval;
+            return this;
+        }
+
+        /**
+         * Instruct the command to skip the subtrees and binaries already
+         * verified while checking a previous revision, checkpoint or path.
+         * As revisions and checkpoints share most of their content, this
+         * usually limits the traversal to the parts that changed between
+         * them. Skipped nodes are not included in the number of checked nodes
+         * and properties. This parameter is not required and defaults to
+         * {@code false}.
+         *
+         * @param skipVerified {@code true} if verified subtrees should be
+         *                     skipped, {@code false} otherwise.
+         * @return this builder.
+         */
+        public Builder withSkipVerified(boolean skipVerified) {
+            this.skipVerified = skipVerified;
+            return this;
+        }
+
+        /**
+         * The writer used to report the progress of the check in a machine
+         * readable format: one JSON object per line, written every debug
+         * interval or every minute if no debug interval is set, and once at
+         * the end of the check. This parameter is not required and defaults
+         * to no progress report.
+         *
+         * @param progressWriter the progress writer.
+         * @return this builder.
+         */
+        public Builder withProgressWriter(PrintWriter progressWriter) {
+            this.progressWriter = progressWriter;
+            return this;
+        }
+
         /**
          * The text output stream writer used to print normal output.
          * @param outWriter the output writer.
@@ -263,9 +337,25 @@ public class Check {
 
     private final PrintWriter err;
 
-    private int nodeCount;
+    private final int concurrency;
+
+    private final int binarySampleInterval;
+
+    private final boolean skipVerified;
+
+    private final PrintWriter progress;
+
+    private final AtomicInteger nodeCount = new AtomicInteger();
+
+    private final AtomicInteger propertyCount = new AtomicInteger();
+
+    private final AtomicLong totalNodeCount = new AtomicLong();
+
+    private final AtomicLong totalPropertyCount = new AtomicLong();
 
-    private int propertyCount;
+    private final AtomicLong skippedNodeCount = new AtomicLong();
+
+    private final AtomicInteger revisionCount = new AtomicInteger();
 
     private long lastDebugEvent;
 
@@ -279,6 +369,10 @@ public class Check {
         this.ioStatistics = builder.ioStatistics;
         this.out = builder.outWriter;
         this.err = builder.errWriter;
+        this.concurrency = builder.concurrency;
+        this.binarySampleInterval = builder.binarySampleInterval;
+        this.skipVerified = builder.skipVerified;
+        this.progress = builder.progressWriter;
         this.journal = journalPath(builder.path, builder.journal);
     }
 
@@ -299,12 +393,26 @@ public class Check {
             builder.withIOMonitor(ioMonitor);
         }
 
+        ScheduledExecutorService progressReporter = null;
+        long start = System.nanoTime();
+
+        if (progress != null) {
+            long interval = debugInterval == Long.MAX_VALUE ? 60 : Math.max(1, debugInterval);
+            progressReporter = Executors.newSingleThreadScheduledExecutor();
+            progressReporter.scheduleWithFixedDelay(() -> printProgress(start, false), interval, interval, TimeUnit.SECONDS);
+        }
+
         try (
             ReadOnlyFileStore store = builder.buildReadOnly();
             JournalReader journal = new JournalReader(new LocalJournalFile(this.journal))
         ) {
             run(store, journal);
 
+            if (progressReporter != null) {
+                progressReporter.shutdownNow();
+                printProgress(start, true);
+            }
+
             if (ioStatistics) {
                 print("[I/O] Segment read: Number of operations: {0}", ioMonitor.ops.get());
                 print("[I/O] Segment read: Total size: {0} ({1} bytes)", humanReadableByteCount(ioMonitor.bytes.get()), ioMonitor.bytes.get());
@@ -315,9 +423,26 @@ public class Check {
         } catch (Exception e) {
             e.printStackTrace(err);
             return 1;
+        } finally {
+            if (progressReporter != null) {
+                progressReporter.shutdownNow();
+            }
         }
     }
 
+    private void printProgress(long start, boolean done) {
+        progress.println(String.format(
+            "{\"elapsedMs\":%d,\"revisions\":%d,\"nodes\":%d,\"properties\":%d,\"skippedNodes\":%d,\"done\":%b}",
+            TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start),
+            revisionCount.get(),
+            totalNodeCount.get(),
+            totalPropertyCount.get(),
+            skippedNodeCount.get(),
+            done
+        ));
+        progress.flush();
+    }
+
     private void run(ReadOnlyFileStore store, JournalReader journal) {
         Set<String> checkpoints = requestedCheckpoints;
 
@@ -361,10 +486,11 @@ public class Check {
     }
 
     private ConsistencyChecker newConsistencyChecker() {
-        return new ConsistencyChecker() {
+        return new ConsistencyChecker(concurrency, binarySampleInterval, skipVerified) {
 
             @Override
             protected void onCheckRevision(String revision) {
+                revisionCount.incrementAndGet();
                 print("\nChecking revision {0}", revision);
             }
 
@@ -405,25 +531,33 @@ public class Check {
 
             @Override
             protected void onCheckTree(String path) {
-                nodeCount = 0;
-                propertyCount = 0;
+                nodeCount.set(0);
+                propertyCount.set(0);
                 print("Checking {0}", path);
             }
 
             @Override
             protected void onCheckTreeEnd() {
-                print("Checked {0} nodes and {1} properties", nodeCount, propertyCount);
+                print("Checked {0} nodes and {1} properties", nodeCount.get(), propertyCount.get());
             }
 
             @Override
             protected void onCheckNode(String path) {
                 debug("Traversing {0}", path);
-                nodeCount++;
+                nodeCount.incrementAndGet();
+                totalNodeCount.incrementAndGet();
+            }
+
+            @Override
+            protected void onSkipVerifiedNode(String path) {
+                debug("Skipping verified {0}", path);
+                skippedNodeCount.incrementAndGet();
             }
 
             @Override
             protected void onCheckProperty() {
-                propertyCount++;
+                propertyCount.incrementAndGet();
+                totalPropertyCount.incrementAndGet();
             }
 
             @Override
@@ -247,7 +247,7 @@ public class RecoverJournal {
         // consistent.
 
         SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(fileStore).build();
-        ConsistencyChecker checker = new ConsistencyChecker();
+        ConsistencyChecker checker = new ConsistencyChecker(1, 1, true);
         Set<String> corruptedPaths = new HashSet<>();
 
         ListIterator<Entry> i = entries.listIterator(entries.size());
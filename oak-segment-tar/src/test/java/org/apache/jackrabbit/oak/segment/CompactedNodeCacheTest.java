@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.apache.jackrabbit.oak.segment.DefaultSegmentWriterBuilder.defaultSegmentWriterBuilder;
+import static org.apache.jackrabbit.oak.segment.file.tar.GCGeneration.newGCGeneration;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+
+import org.apache.jackrabbit.oak.segment.file.tar.GCGeneration;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Before;
+import org.junit.Test;
+
+public class CompactedNodeCacheTest {
+
+    private static final GCGeneration TAIL_1 = newGCGeneration(1, 0, true);
+
+    private static final GCGeneration TAIL_2 = newGCGeneration(2, 0, true);
+
+    private static final GCGeneration FULL_3 = newGCGeneration(3, 1, true);
+
+    private MemoryStore store;
+
+    private CompactedNodeCache cache;
+
+    @Before
+    public void setup() throws IOException {
+        store = new MemoryStore();
+        cache = new CompactedNodeCache(store.getSegmentIdProvider(), 16);
+    }
+
+    private RecordId writeNode(GCGeneration generation, String value) throws IOException {
+        SegmentWriter writer = defaultSegmentWriterBuilder("test")
+                .withGeneration(generation)
+                .build(store);
+        NodeBuilder builder = EMPTY_NODE.builder();
+        builder.setProperty("p", value);
+        RecordId id = writer.writeNode(builder.getNodeState());
+        writer.flush();
+        return id;
+    }
+
+    @Test
+    public void noCompactionRunning() throws IOException {
+        RecordId uncompacted = writeNode(GCGeneration.NULL, "a");
+        RecordId compacted = writeNode(TAIL_1, "a");
+
+        cache.put(uncompacted, compacted);
+        assertNull(cache.get(uncompacted));
+
+        cache.start(TAIL_1);
+        assertNull(cache.get(uncompacted));
+    }
+
+    @Test
+    public void entriesSurviveCommittedCompactions() throws IOException {
+        RecordId uncompacted = writeNode(GCGeneration.NULL, "a");
+        RecordId compacted = writeNode(TAIL_1, "a");
+
+        cache.start(TAIL_1);
+        cache.put(uncompacted, compacted);
+        assertEquals(compacted, cache.get(uncompacted));
+        cache.commit();
+        assertEquals(1, cache.size());
+
+        cache.start(TAIL_2);
+        assertEquals(compacted, cache.get(uncompacted));
+    }
+
+    @Test
+    public void entriesOfFailedCompactionsAreDiscarded() throws IOException {
+        RecordId uncompacted = writeNode(GCGeneration.NULL, "a");
+        RecordId compacted = writeNode(TAIL_1, "a");
+
+        cache.start(TAIL_1);
+        cache.put(uncompacted, compacted);
+
+        cache.start(TAIL_1);
+        assertNull(cache.get(uncompacted));
+        cache.commit();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void fullCompactionInvalidatesEntries() throws IOException {
+        RecordId uncompacted = writeNode(GCGeneration.NULL, "a");
+        RecordId compacted = writeNode(TAIL_1, "a");
+
+        cache.start(TAIL_1);
+        cache.put(uncompacted, compacted);
+        cache.commit();
+
+        cache.start(FULL_3);
+        assertNull(cache.get(uncompacted));
+        assertNull(cache.get(compacted));
+        cache.commit();
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void compactedNodesOfSameFullGeneration() throws IOException {
+        RecordId compacted = writeNode(TAIL_1, "a");
+        RecordId uncompacted = writeNode(newGCGeneration(1, 0, false), "b");
+
+        cache.start(TAIL_2);
+        assertEquals(compacted, cache.get(compacted));
+        assertNull(cache.get(uncompacted));
+    }
+
+    @Test
+    public void boundedCapacity() throws IOException {
+        cache.start(TAIL_1);
+        for (int k = 0; k < 100; k++) {
+            cache.put(writeNode(GCGeneration.NULL, "u" + k), writeNode(TAIL_1, "c" + k));
+        }
+        cache.commit();
+        assertEquals(16, cache.size());
+    }
+
+}
@@ -0,0 +1,93 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment;
+
+import static org.apache.jackrabbit.oak.api.Type.LONG;
+import static org.apache.jackrabbit.oak.plugins.memory.EmptyNodeState.EMPTY_NODE;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+
+import org.apache.jackrabbit.oak.api.jmx.CacheStatsMBean;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.stats.NoopStats;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MapEntryCacheTest {
+
+    private static final int CHILD_COUNT = 1000;
+
+    private MemoryStore store;
+
+    private RecordId id;
+
+    @Before
+    public void setup() throws IOException {
+        store = new MemoryStore();
+        NodeBuilder builder = EMPTY_NODE.builder();
+        for (int k = 0; k < CHILD_COUNT; k++) {
+            builder.child("n-" + k).setProperty("k", k);
+        }
+        id = store.getWriter().writeNode(builder.getNodeState());
+        store.getWriter().flush();
+    }
+
+    @Test
+    public void lookupsAreCached() {
+        CachingSegmentReader reader = new CachingSegmentReader(
+                store::getWriter, null, 16, 2, 16, NoopStats.INSTANCE);
+        NodeState node = reader.readNode(id);
+
+        for (int repeat = 0; repeat < 2; repeat++) {
+            for (int k = 0; k < CHILD_COUNT; k++) {
+                NodeState child = node.getChildNode("n-" + k);
+                assertTrue(child.exists());
+                assertEquals(k, (long) child.getProperty("k").getValue(LONG));
+            }
+            assertFalse(node.hasChildNode("missing"));
+        }
+
+        CacheStatsMBean stats = reader.getMapEntryCacheStats();
+        assertEquals(CHILD_COUNT + 1, stats.getMissCount());
+        assertEquals(CHILD_COUNT + 1, stats.getHitCount());
+        assertEquals(CHILD_COUNT + 1, stats.getElementCount());
+    }
+
+    @Test
+    public void disabledCache() {
+        CachingSegmentReader reader = new CachingSegmentReader(
+                store::getWriter, null, 16, 2, 0, NoopStats.INSTANCE);
+        NodeState node = reader.readNode(id);
+
+        for (int k = 0; k < CHILD_COUNT; k++) {
+            assertTrue(node.hasChildNode("n-" + k));
+        }
+
+        CacheStatsMBean stats = reader.getMapEntryCacheStats();
+        assertEquals(0, stats.getRequestCount());
+        assertEquals(0, stats.getElementCount());
+    }
+
+}
@@ -175,6 +175,35 @@ public class FileStoreIT {
         }
     }
 
+    @Test
+    public void followingROStore() throws Exception {
+        ReadOnlyFileStore ro = null;
+        try {
+            RecordId head;
+            try (FileStore store = fileStoreBuilder(getFileStoreFolder()).withMemoryMapping(false).build()) {
+                store.flush();
+                ro = fileStoreBuilder(getFileStoreFolder()).withMemoryMapping(false).buildReadOnly();
+                assertFalse(ro.refresh());
+
+                SegmentNodeState base = store.getHead();
+                SegmentNodeBuilder builder = base.builder();
+                builder.setProperty("step", "a");
+                store.getRevisions().setHead(base.getRecordId(), builder.getNodeState().getRecordId());
+                head = store.getRevisions().getHead();
+            }
+
+            // Closing the writer sealed its TAR file
+            assertTrue(ro.refresh());
+            assertEquals(head, ro.getRevisions().getHead());
+            assertEquals("a", ro.getHead().getString("step"));
+            assertFalse(ro.refresh());
+        } finally {
+            if (ro != null) {
+                ro.close();
+            }
+        }
+    }
+
     @Test
     public void setRevisionTest() throws Exception {
         try (FileStore store = fileStoreBuilder(getFileStoreFolder()).build()) {
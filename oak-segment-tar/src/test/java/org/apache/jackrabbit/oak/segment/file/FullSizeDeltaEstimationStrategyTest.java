@@ -25,7 +25,10 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 
+import org.apache.jackrabbit.oak.segment.Revisions;
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
 import org.apache.jackrabbit.oak.segment.file.EstimationStrategy.Context;
+import org.apache.jackrabbit.oak.segment.file.tar.TarFiles;
 import org.apache.jackrabbit.oak.segment.file.tar.TarPersistence;
 import org.junit.Before;
 import org.junit.Rule;
@@ -117,6 +120,26 @@ public class FullSizeDeltaEstimationStrategyTest {
                 return journal;
             }
 
+            @Override
+            public SegmentGCOptions getGCOptions() {
+                return SegmentGCOptions.defaultGCOptions();
+            }
+
+            @Override
+            public Revisions getRevisions() {
+                return null;
+            }
+
+            @Override
+            public TarFiles getTarFiles() {
+                return null;
+            }
+
+            @Override
+            public Flusher getFlusher() {
+                return null;
+            }
+
         }).isGcNeeded();
     }
 
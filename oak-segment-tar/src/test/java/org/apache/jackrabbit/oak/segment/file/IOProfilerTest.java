@@ -0,0 +1,131 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static java.util.concurrent.TimeUnit.MICROSECONDS;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+
+import org.junit.After;
+import org.junit.Test;
+
+public class IOProfilerTest {
+
+    private final File a = new File("data00000a.tar");
+
+    private final File b = new File("data00001a.tar");
+
+    @After
+    public void tearDown() {
+        IOProfiler.setContext(null);
+    }
+
+    @Test
+    public void readHeatmap() {
+        IOProfiler profiler = new IOProfiler("random", 0, 1);
+        profiler.afterSegmentRead(a, 0, 0, 10, MILLISECONDS.toNanos(1));
+        profiler.afterSegmentRead(b, 0, 0, 20, MILLISECONDS.toNanos(2));
+        profiler.afterSegmentRead(b, 0, 0, 30, MILLISECONDS.toNanos(3));
+
+        assertEquals(3, profiler.getReadCount());
+        assertEquals(60, profiler.getReadBytes());
+
+        IOProfiler.FileReads reads = profiler.getFileReads(b.getName());
+        assertEquals(2, reads.getCount());
+        assertEquals(50, reads.getBytes());
+        assertEquals(MILLISECONDS.toNanos(5), reads.getTime());
+
+        assertArrayEquals(new String[] {
+                "data00001a.tar reads=2 bytes=50 time=5ms",
+                "data00000a.tar reads=1 bytes=10 time=1ms"
+        }, profiler.getReadHeatmap());
+    }
+
+    @Test
+    public void closedFilesAreForgotten() {
+        IOProfiler profiler = new IOProfiler("random", 0, 1);
+        profiler.afterSegmentRead(a, 0, 0, 10, MILLISECONDS.toNanos(1));
+        profiler.afterSegmentRead(b, 0, 0, 20, MILLISECONDS.toNanos(2));
+
+        profiler.afterFileClosed(a);
+
+        assertNull(profiler.getFileReads(a.getName()));
+        assertEquals(1, profiler.getFileReads(b.getName()).getCount());
+        assertEquals(2, profiler.getReadCount());
+    }
+
+    @Test
+    public void readLatencyHistogram() {
+        IOProfiler profiler = new IOProfiler("mapped", 0, 1);
+        profiler.afterSegmentRead(a, 0, 0, 10, 0);
+        profiler.afterSegmentRead(a, 0, 0, 10, MICROSECONDS.toNanos(3));
+        profiler.afterSegmentRead(a, 0, 0, 10, MICROSECONDS.toNanos(3));
+
+        String[] histogram = profiler.getReadLatencyHistogram();
+        assertEquals("mapped <1us: 1", histogram[0]);
+        assertEquals("mapped <2us: 0", histogram[1]);
+        assertEquals("mapped <4us: 2", histogram[2]);
+    }
+
+    @Test
+    public void sampledReads() {
+        IOProfiler profiler = new IOProfiler("random", 2, 4);
+        IOProfiler.setContext("/content/foo");
+        for (int i = 0; i < 20; i++) {
+            profiler.afterSegmentRead(a, 0, i, 10, 0);
+        }
+
+        String[] samples = profiler.getSampledReads();
+        assertEquals(4, samples.length);
+        for (String sample : samples) {
+            assertTrue(sample, sample.endsWith("/content/foo"));
+        }
+    }
+
+    @Test
+    public void sampledReadsWithoutContext() {
+        IOProfiler profiler = new IOProfiler("random", 1, 4);
+        profiler.afterSegmentRead(a, 0, 0, 10, 0);
+
+        String[] samples = profiler.getSampledReads();
+        assertEquals(1, samples.length);
+        assertFalse(samples[0], samples[0].contains("org.apache.jackrabbit.oak.segment."));
+        assertFalse(samples[0], samples[0].endsWith("unknown"));
+    }
+
+    @Test
+    public void reset() {
+        IOProfiler profiler = new IOProfiler("random", 1, 4);
+        profiler.afterSegmentRead(a, 0, 0, 10, 0);
+        profiler.reset();
+
+        assertEquals(0, profiler.getReadCount());
+        assertEquals(0, profiler.getReadBytes());
+        assertNull(profiler.getFileReads(a.getName()));
+        assertEquals(0, profiler.getReadHeatmap().length);
+        assertEquals(0, profiler.getSampledReads().length);
+    }
+
+}
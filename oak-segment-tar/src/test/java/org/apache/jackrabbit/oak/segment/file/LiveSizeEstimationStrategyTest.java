@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions.defaultGCOptions;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.compaction.SegmentGCOptions;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class LiveSizeEstimationStrategyTest {
+
+    private static final int VALUE_SIZE = 64 * 1024;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void testGCSkippedForLiveData() throws Exception {
+        try (FileStore store = newFileStore()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            for (int i = 0; i < 32; i++) {
+                NodeBuilder builder = nodeStore.getRoot().builder();
+                builder.child("n-" + i).setProperty("p", value(i));
+                nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            }
+            store.fullGC();
+            assertEquals(0, getFullGeneration(store));
+        }
+    }
+
+    @Test
+    public void testGCNeededForGarbage() throws Exception {
+        try (FileStore store = newFileStore()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            for (int i = 0; i < 32; i++) {
+                NodeBuilder builder = nodeStore.getRoot().builder();
+                builder.child("n").setProperty("p", value(i));
+                nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+            }
+            store.fullGC();
+            assertEquals(1, getFullGeneration(store));
+        }
+    }
+
+    private FileStore newFileStore() throws Exception {
+        SegmentGCOptions options = defaultGCOptions()
+                .setLiveSizeEstimation(true)
+                .setGcSizeDeltaEstimation(1024 * 1024);
+        return fileStoreBuilder(folder.newFolder()).withGCOptions(options).build();
+    }
+
+    private static int getFullGeneration(FileStore store) {
+        return store.getRevisions().getHead().getSegmentId().getGcGeneration().getFullGeneration();
+    }
+
+    private static String value(int seed) {
+        StringBuilder builder = new StringBuilder(VALUE_SIZE);
+        for (int i = 0; i < VALUE_SIZE; i++) {
+            builder.append((char) ('a' + (seed + i) % 26));
+        }
+        return builder.toString();
+    }
+
+}
@@ -20,6 +20,8 @@ package org.apache.jackrabbit.oak.segment.file;
 
 import static org.apache.jackrabbit.oak.segment.file.MetricsIOMonitor.OAK_SEGMENT_SEGMENT_READ_BYTES;
 import static org.apache.jackrabbit.oak.segment.file.MetricsIOMonitor.OAK_SEGMENT_SEGMENT_READ_TIME;
+import static org.apache.jackrabbit.oak.segment.file.MetricsIOMonitor.OAK_SEGMENT_SEGMENT_SYNC_BATCH;
+import static org.apache.jackrabbit.oak.segment.file.MetricsIOMonitor.OAK_SEGMENT_SEGMENT_SYNC_TIME;
 import static org.apache.jackrabbit.oak.segment.file.MetricsIOMonitor.OAK_SEGMENT_SEGMENT_WRITE_BYTES;
 import static org.apache.jackrabbit.oak.segment.file.MetricsIOMonitor.OAK_SEGMENT_SEGMENT_WRITE_TIME;
 import static org.junit.Assert.assertEquals;
@@ -30,6 +32,7 @@ import java.util.concurrent.ScheduledExecutorService;
 
 import org.apache.jackrabbit.oak.commons.concurrent.ExecutorCloser;
 import org.apache.jackrabbit.oak.stats.DefaultStatisticsProvider;
+import org.apache.jackrabbit.oak.stats.HistogramStats;
 import org.apache.jackrabbit.oak.stats.MeterStats;
 import org.apache.jackrabbit.oak.stats.StatsOptions;
 import org.apache.jackrabbit.oak.stats.TimerStats;
@@ -44,6 +47,8 @@ public class MetricsIOMonitorTest {
     private MeterStats segmentWriteBytes;
     private TimerStats segmentReadTime;
     private TimerStats segmentWriteTime;
+    private HistogramStats segmentSyncBatch;
+    private TimerStats segmentSyncTime;
 
     @Before
     public void setup() {
@@ -58,12 +63,17 @@ public class MetricsIOMonitorTest {
                 OAK_SEGMENT_SEGMENT_READ_TIME, StatsOptions.METRICS_ONLY);
         segmentWriteTime = statisticsProvider.getTimer(
                 OAK_SEGMENT_SEGMENT_WRITE_TIME, StatsOptions.METRICS_ONLY);
+        segmentSyncBatch = statisticsProvider.getHistogram(
+                OAK_SEGMENT_SEGMENT_SYNC_BATCH, StatsOptions.METRICS_ONLY);
+        segmentSyncTime = statisticsProvider.getTimer(
+                OAK_SEGMENT_SEGMENT_SYNC_TIME, StatsOptions.METRICS_ONLY);
 
         File file = new File("");
         ioMonitor.afterSegmentRead(file, 0, 0, 4, 0);
         ioMonitor.afterSegmentRead(file, 0, 0, 5, 0);
         ioMonitor.afterSegmentWrite(file, 0, 0, 3, 0);
         ioMonitor.afterSegmentWrite(file, 0, 0, 4, 0);
+        ioMonitor.afterSegmentsSync(file, 2, 7, 0);
     }
 
     @After
@@ -77,5 +87,7 @@ public class MetricsIOMonitorTest {
         assertEquals(2, segmentReadTime.getCount());
         assertEquals(7, segmentWriteBytes.getCount());
         assertEquals(2, segmentWriteTime.getCount());
+        assertEquals(1, segmentSyncBatch.getCount());
+        assertEquals(1, segmentSyncTime.getCount());
     }
 }
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.file;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+import static org.apache.jackrabbit.oak.segment.file.FileStoreBuilder.fileStoreBuilder;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+import org.apache.jackrabbit.oak.segment.SegmentNodeStore;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SegmentCacheWarmUpTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    @Test
+    public void snapshotWrittenOnClose() throws Exception {
+        File directory = folder.newFolder();
+        try (FileStore store = fileStoreBuilder(directory).withSegmentCacheWarmUpSize(16).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            builder.setChildNode("a").setProperty("p", "v");
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        }
+
+        assertTrue(new File(directory, SegmentCacheWarmUp.SNAPSHOT_FILE_NAME).exists());
+        assertFalse(new SegmentCacheWarmUp(directory).readSnapshot().isEmpty());
+    }
+
+    @Test
+    public void warmUpAfterRestart() throws Exception {
+        File directory = folder.newFolder();
+        try (FileStore store = fileStoreBuilder(directory).withSegmentCacheWarmUpSize(16).build()) {
+            SegmentNodeStore nodeStore = SegmentNodeStoreBuilders.builder(store).build();
+            NodeBuilder builder = nodeStore.getRoot().builder();
+            for (int k = 0; k < 100; k++) {
+                builder.setChildNode("n-" + k).setProperty("p", k);
+            }
+            nodeStore.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+        }
+
+        int snapshotSize = new SegmentCacheWarmUp(directory).readSnapshot().size();
+        try (FileStore store = fileStoreBuilder(directory).withSegmentCacheWarmUpSize(16).build()) {
+            SegmentCacheWarmUp warmUp = store.getSegmentCacheWarmUp();
+            assertNotNull(warmUp);
+            long deadline = System.currentTimeMillis() + 10000;
+            while (warmUp.getSegmentCount() < snapshotSize && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(snapshotSize, store.getStats().getSegmentCacheWarmUpSegmentCount());
+            assertTrue(store.getStats().getSegmentCacheWarmUpSize() > 0);
+        }
+    }
+
+    @Test
+    public void malformedIdsAreSkipped() throws Exception {
+        File directory = folder.newFolder();
+        UUID id = UUID.randomUUID();
+        Files.write(
+            new File(directory, SegmentCacheWarmUp.SNAPSHOT_FILE_NAME).toPath(),
+            Arrays.asList("not-a-uuid", id.toString()),
+            UTF_8
+        );
+
+        List<UUID> ids = new SegmentCacheWarmUp(directory).readSnapshot();
+        assertEquals(1, ids.size());
+        assertEquals(id, ids.get(0));
+    }
+
+    @Test
+    public void disabledByDefault() throws Exception {
+        File directory = folder.newFolder();
+        try (FileStore store = fileStoreBuilder(directory).build()) {
+            assertEquals(null, store.getSegmentCacheWarmUp());
+            assertFalse(store.getStats().isSegmentCacheWarmUpRunning());
+        }
+        assertFalse(new File(directory, SegmentCacheWarmUp.SNAPSHOT_FILE_NAME).exists());
+    }
+
+}
@@ -92,4 +92,22 @@ public class TarNodeTest {
         assertEquals(1L, property.getValue(Type.LONG).longValue());
     }
 
+    @Test
+    public void shouldHaveReadProperties() {
+        Backend.Reads reads = mock(Backend.Reads.class);
+        when(reads.getCount()).thenReturn(1L);
+        when(reads.getBytes()).thenReturn(2L);
+        when(reads.getTime()).thenReturn(3L);
+
+        Backend backend = mock(Backend.class);
+        when(backend.getTarSize("t")).thenReturn(Optional.of(1L));
+        when(backend.getTarReads("t")).thenReturn(Optional.of(reads));
+
+        NodeState n = new TarNode(backend, "t");
+
+        assertEquals(1L, n.getProperty("reads").getValue(Type.LONG).longValue());
+        assertEquals(2L, n.getProperty("readBytes").getValue(Type.LONG).longValue());
+        assertEquals(3L, n.getProperty("readTime").getValue(Type.LONG).longValue());
+    }
+
 }
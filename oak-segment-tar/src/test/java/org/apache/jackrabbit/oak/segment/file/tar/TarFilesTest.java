@@ -32,9 +32,11 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
 import java.util.Set;
@@ -130,6 +132,25 @@ public class TarFilesTest {
         return result;
     }
 
+    @Test
+    public void testEstimateLiveSizeIncludesWriter() throws Exception {
+        UUID a = randomUUID();
+        UUID b = randomUUID();
+        UUID c = randomUUID();
+
+        writeSegment(a);
+        writeSegmentWithReferences(b, a);
+        writeSegment(c);
+
+        LiveSizeEstimate estimate = tarFiles.estimateLiveSize(singleton(b), generation -> true);
+
+        assertEquals("Estimating should not roll the writer", 0, tarFiles.readerCount());
+        assertEquals(3 * estimate.getLiveSize() / 2, estimate.getTotalSize());
+        assertEquals(estimate.getTotalSize(), estimate.getSelectedSize());
+        assertEquals(estimate.getLiveSize(), estimate.getSelectedLiveSize());
+        assertTrue(estimate.getLiveSize() > 0);
+    }
+
     @Test
     public void testInitialSize() throws Exception {
         assertEquals(0, tarFiles.size());
@@ -219,6 +240,33 @@ public class TarFilesTest {
         assertArrayEquals(data, readSegment(id));
     }
 
+    @Test
+    public void testReadSegmentFromManyReaders() throws Exception {
+        List<UUID> ids = new ArrayList<>();
+        List<byte[]> data = new ArrayList<>();
+
+        // Write enough segments to grow the segment location index beyond
+        // its initial capacity.
+
+        for (int i = 0; i < 20; i++) {
+            for (int j = 0; j < 5; j++) {
+                UUID id = randomUUID();
+                byte[] buffer = randomData();
+                writeSegment(id, buffer);
+                ids.add(id);
+                data.add(buffer);
+            }
+            tarFiles.newWriter();
+        }
+
+        for (int i = 0; i < ids.size(); i++) {
+            assertTrue(containsSegment(ids.get(i)));
+            assertArrayEquals(data.get(i), readSegment(ids.get(i)));
+        }
+        assertFalse(containsSegment(randomUUID()));
+        assertNull(readSegment(randomUUID()));
+    }
+
     @Test
     public void testGetIndices() throws Exception {
         UUID a = randomUUID();
@@ -304,6 +352,25 @@ public class TarFilesTest {
         assertEquals(new HashSet<>(asList(a, b, c)), segmentIds);
     }
 
+    @Test
+    public void testGetSegmentIdsInDependencyOrder() throws Exception {
+        UUID a = randomUUID();
+        UUID b = randomUUID();
+        UUID c = randomUUID();
+        UUID d = randomUUID();
+
+        writeSegmentWithReferences(c, a);
+        writeSegmentWithReferences(d, d);
+        tarFiles.newWriter();
+        writeSegment(a);
+        writeSegmentWithReferences(b, c);
+        tarFiles.newWriter();
+
+        List<UUID> segmentIds = new ArrayList<>();
+        tarFiles.getSegmentIds(generation -> false).forEach(segmentIds::add);
+        assertEquals(asList(a, c, d, b), segmentIds);
+    }
+
     @Test
     public void testCleanup() throws Exception {
         UUID a = randomUUID();
@@ -389,4 +456,38 @@ public class TarFilesTest {
         assertTrue(result.getReclaimedSegmentIds().isEmpty());
         assertEquals(0, result.getReclaimedSize());
     }
+
+    @Test
+    public void testRefreshReadOnly() throws Exception {
+        UUID a = randomUUID();
+        writeSegment(a);
+        tarFiles.newWriter();
+
+        try (TarFiles ro = TarFiles.builder()
+                .withDirectory(folder.getRoot())
+                .withTarRecovery((id, data, recovery) -> {
+                    // Intentionally left blank
+                })
+                .withIOMonitor(new IOMonitorAdapter())
+                .withReadOnly()
+                .build()) {
+            assertTrue(ro.containsSegment(a.getMostSignificantBits(), a.getLeastSignificantBits()));
+            assertFalse(ro.refresh());
+
+            // Segments in a TAR file still being written to are not visible
+            UUID b = randomUUID();
+            writeSegment(b);
+            tarFiles.flush();
+            assertFalse(ro.refresh());
+            assertFalse(ro.containsSegment(b.getMostSignificantBits(), b.getLeastSignificantBits()));
+
+            // They become visible once the TAR file is sealed
+            tarFiles.newWriter();
+            assertTrue(ro.refresh());
+            assertTrue(ro.containsSegment(b.getMostSignificantBits(), b.getLeastSignificantBits()));
+            assertTrue(ro.containsSegment(a.getMostSignificantBits(), a.getLeastSignificantBits()));
+            assertEquals(2, ro.readerCount());
+        }
+    }
+
 }
@@ -99,4 +99,40 @@ public class TarWriterTest {
         }
     }
 
+    @Test
+    public void testSegmentsSyncedInBatch() throws Exception {
+        TestIOMonitor ioMonitor = new TestIOMonitor();
+        SegmentArchiveManager manager = new SegmentTarManager(folder.newFolder(), monitor, ioMonitor, false, false);
+        try (TarWriter writer = new TarWriter(manager, 0, NoopStats.INSTANCE)) {
+            writer.writeEntry(0, 1, new byte[42], 0, 42, newGCGeneration(0, 0, false));
+            writer.writeEntry(0, 2, new byte[512], 0, 512, newGCGeneration(0, 0, false));
+            writer.flush();
+            assertEquals(1, ioMonitor.syncs);
+            assertEquals(2, ioMonitor.segments);
+
+            // Nothing written since the last flush, no sync expected
+            writer.flush();
+            assertEquals(1, ioMonitor.syncs);
+
+            writer.writeEntry(0, 3, new byte[42], 0, 42, newGCGeneration(0, 0, false));
+            writer.flush();
+            assertEquals(2, ioMonitor.syncs);
+            assertEquals(3, ioMonitor.segments);
+        }
+    }
+
+    private static class TestIOMonitor extends IOMonitorAdapter {
+
+        int syncs;
+
+        int segments;
+
+        @Override
+        public void afterSegmentsSync(File file, int segments, long length, long elapsed) {
+            this.syncs++;
+            this.segments += segments;
+        }
+
+    }
+
 }
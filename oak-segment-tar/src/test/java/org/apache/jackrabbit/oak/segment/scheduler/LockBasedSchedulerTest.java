@@ -21,7 +21,10 @@ package org.apache.jackrabbit.oak.segment.scheduler;
 
 import static com.google.common.collect.Lists.newArrayList;
 import static java.util.concurrent.Executors.newFixedThreadPool;
+import static org.apache.jackrabbit.oak.spi.state.ConflictAnnotatingRebaseDiff.CONFLICT;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
 
 import java.util.List;
 import java.util.Random;
@@ -37,6 +40,7 @@ import org.apache.jackrabbit.oak.segment.Revisions;
 import org.apache.jackrabbit.oak.segment.SegmentNodeState;
 import org.apache.jackrabbit.oak.segment.SegmentNodeStoreStats;
 import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitHook;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
@@ -108,6 +112,125 @@ public class LockBasedSchedulerTest {
         }
     }
 
+    @Test
+    public void testOptimisticMergeOfDisjointCommits() throws Exception {
+        MemoryStore ms = new MemoryStore();
+        RebaseCountingStats stats = new RebaseCountingStats();
+        LockBasedScheduler scheduler = LockBasedScheduler.builder(ms.getRevisions(), ms.getReader(), stats)
+                .optimisticMerge(true)
+                .build();
+
+        ExecutorService executorService = newFixedThreadPool(10);
+        try {
+            List<Future<?>> results = newArrayList();
+            for (int i = 0; i < 100; i++) {
+                String name = "child" + i;
+                results.add(executorService.submit(() -> {
+                    NodeBuilder builder = getRoot(scheduler).builder();
+                    builder.child(name).setProperty("p", name);
+                    return scheduler.schedule(new Commit(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY));
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            new ExecutorCloser(executorService).close();
+        }
+
+        NodeState root = getRoot(scheduler);
+        for (int i = 0; i < 100; i++) {
+            assertEquals("child" + i, root.getChildNode("child" + i).getString("p"));
+        }
+        // disjoint commits never fall back to the serialized path
+        assertEquals(0, stats.conflicts.get());
+    }
+
+    @Test
+    public void testOptimisticMergeRebasesDisjointCommit() throws Exception {
+        MemoryStore ms = new MemoryStore();
+        RebaseCountingStats stats = new RebaseCountingStats();
+        LockBasedScheduler scheduler = LockBasedScheduler.builder(ms.getRevisions(), ms.getReader(), stats)
+                .optimisticMerge(true)
+                .build();
+
+        NodeBuilder builder = getRoot(scheduler).builder();
+        builder.setProperty("a", "ours");
+        AtomicInteger hookCalls = new AtomicInteger();
+        NodeState root = scheduler.schedule(new Commit(builder,
+                concurrentCommit(scheduler, "b", "theirs", hookCalls), CommitInfo.EMPTY));
+
+        // the prepared commit was merged with the concurrent one,
+        // without running the commit hook again
+        assertEquals(1, stats.rebased.get());
+        assertEquals(0, stats.conflicts.get());
+        assertEquals(1, hookCalls.get());
+        assertEquals("ours", root.getString("a"));
+        assertEquals("theirs", root.getString("b"));
+    }
+
+    @Test
+    public void testOptimisticMergeFallsBackOnConflict() throws Exception {
+        MemoryStore ms = new MemoryStore();
+        RebaseCountingStats stats = new RebaseCountingStats();
+        LockBasedScheduler scheduler = LockBasedScheduler.builder(ms.getRevisions(), ms.getReader(), stats)
+                .optimisticMerge(true)
+                .build();
+
+        NodeBuilder builder = getRoot(scheduler).builder();
+        builder.setProperty("a", "ours");
+        AtomicInteger hookCalls = new AtomicInteger();
+        NodeState root = scheduler.schedule(new Commit(builder,
+                concurrentCommit(scheduler, "a", "theirs", hookCalls), CommitInfo.EMPTY));
+
+        // both commits changed the same property: the commit was rebased
+        // on the new head while holding the lock, annotating the conflict
+        assertEquals(0, stats.rebased.get());
+        assertEquals(1, stats.conflicts.get());
+        assertEquals(2, hookCalls.get());
+        assertEquals("theirs", root.getString("a"));
+        assertTrue(root.hasChildNode(CONFLICT));
+    }
+
+    /**
+     * A commit hook that commits a change of another session the first time
+     * it is called, that is, while the commit is prepared outside of the
+     * commit lock.
+     */
+    private CommitHook concurrentCommit(Scheduler scheduler, String property, String value,
+            AtomicInteger calls) {
+        return (before, after, info) -> {
+            if (calls.incrementAndGet() == 1) {
+                scheduler.schedule(createCommit(scheduler, property, value));
+            }
+            return after;
+        };
+    }
+
+    private static class RebaseCountingStats extends SegmentNodeStoreStats {
+
+        final AtomicInteger rebased = new AtomicInteger();
+
+        final AtomicInteger conflicts = new AtomicInteger();
+
+        RebaseCountingStats() {
+            super(StatisticsProvider.NOOP);
+        }
+
+        @Override
+        public void onCommitRebased(Thread t, long time) {
+            super.onCommitRebased(t, time);
+            rebased.incrementAndGet();
+        }
+
+        @Override
+        public void onCommitRebaseConflict(Thread t) {
+            super.onCommitRebaseConflict(t);
+            conflicts.incrementAndGet();
+        }
+
+    }
+
     private Commit createCommit(final Scheduler scheduler, final String property, String value) {
         NodeBuilder a = getRoot(scheduler).builder();
         a.setProperty(property, value);
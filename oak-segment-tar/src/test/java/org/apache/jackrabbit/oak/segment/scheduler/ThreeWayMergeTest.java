@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.scheduler;
+
+import static org.apache.jackrabbit.oak.api.Type.LONG;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import org.apache.jackrabbit.oak.segment.SegmentNodeBuilder;
+import org.apache.jackrabbit.oak.segment.SegmentNodeState;
+import org.apache.jackrabbit.oak.segment.memory.MemoryStore;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ThreeWayMergeTest {
+
+    private SegmentNodeState base;
+
+    @Before
+    public void setup() throws Exception {
+        MemoryStore store = new MemoryStore();
+        SegmentNodeBuilder builder = store.getReader().readHeadState(store.getRevisions()).builder();
+        builder.child("a").setProperty("p", 1);
+        builder.child("b").setProperty("p", 1);
+        builder.child("c");
+        base = builder.getNodeState();
+    }
+
+    @Test
+    public void disjointChangesAreMerged() {
+        SegmentNodeBuilder ours = base.builder();
+        ours.child("a").setProperty("p", 2);
+        ours.child("a").child("x");
+        ours.child("c").remove();
+
+        SegmentNodeBuilder theirs = base.builder();
+        theirs.child("b").setProperty("p", 2);
+        theirs.child("a").setProperty("q", 1);
+        theirs.child("d");
+
+        SegmentNodeState merged = ThreeWayMerge.merge(base, ours.getNodeState(), theirs.getNodeState());
+        assertNotNull(merged);
+        assertEquals(2, (long) merged.getChildNode("a").getProperty("p").getValue(LONG));
+        assertEquals(1, (long) merged.getChildNode("a").getProperty("q").getValue(LONG));
+        assertEquals(2, (long) merged.getChildNode("b").getProperty("p").getValue(LONG));
+        assertFalse(merged.hasChildNode("c"));
+        assertTrue(merged.getChildNode("a").hasChildNode("x"));
+        assertTrue(merged.hasChildNode("d"));
+    }
+
+    @Test
+    public void identicalChangesAreMerged() {
+        SegmentNodeBuilder ours = base.builder();
+        ours.child("a").setProperty("p", 2);
+
+        SegmentNodeBuilder theirs = base.builder();
+        theirs.child("a").setProperty("p", 2);
+
+        assertNotNull(ThreeWayMerge.merge(base, ours.getNodeState(), theirs.getNodeState()));
+    }
+
+    @Test
+    public void conflictingPropertyChanges() {
+        SegmentNodeBuilder ours = base.builder();
+        ours.child("a").setProperty("p", 2);
+
+        SegmentNodeBuilder theirs = base.builder();
+        theirs.child("a").setProperty("p", 3);
+
+        assertNull(ThreeWayMerge.merge(base, ours.getNodeState(), theirs.getNodeState()));
+    }
+
+    @Test
+    public void changeOfRemovedNode() {
+        SegmentNodeBuilder ours = base.builder();
+        ours.child("a").setProperty("p", 2);
+
+        SegmentNodeBuilder theirs = base.builder();
+        theirs.child("a").remove();
+
+        assertNull(ThreeWayMerge.merge(base, ours.getNodeState(), theirs.getNodeState()));
+    }
+
+    @Test
+    public void conflictingAddedNodes() {
+        SegmentNodeBuilder ours = base.builder();
+        ours.child("d").setProperty("p", 1);
+
+        SegmentNodeBuilder theirs = base.builder();
+        theirs.child("d").setProperty("p", 2);
+
+        assertNull(ThreeWayMerge.merge(base, ours.getNodeState(), theirs.getNodeState()));
+    }
+
+}
@@ -39,12 +39,14 @@ public class CompositeIOMonitorTest {
         ioMonitor.afterSegmentRead(FILE, 0, 0, 1, 0);
         ioMonitor.beforeSegmentWrite(FILE, 0, 0, 2);
         ioMonitor.afterSegmentWrite(FILE, 0, 0, 3, 0);
+        ioMonitor.afterSegmentsSync(FILE, 2, 4, 0);
 
         ioMonitors.forEach(ioMonitorAssertion -> {
             ioMonitorAssertion.assertBeforeReadLength(0);
             ioMonitorAssertion.assertAfterReadLength(1);
             ioMonitorAssertion.assertBeforeWriteLength(2);
             ioMonitorAssertion.assertAfterWriteLength(3);
+            ioMonitorAssertion.assertAfterSyncLength(4);
         });
     }
 
@@ -91,6 +93,7 @@ public class CompositeIOMonitorTest {
         private int afterReadLength = -1;
         private int beforeWriteLength = -1;
         private int afterWriteLength = -1;
+        private long afterSyncLength = -1;
 
         @Override
         public void beforeSegmentRead(File file, long msb, long lsb, int length) {
@@ -112,6 +115,11 @@ public class CompositeIOMonitorTest {
             afterWriteLength = length;
         }
 
+        @Override
+        public void afterSegmentsSync(File file, int segments, long length, long elapsed) {
+            afterSyncLength = length;
+        }
+
         public void assertBeforeReadLength(int length) {
             assertEquals(length, beforeReadLength);
         }
@@ -127,5 +135,9 @@ public class CompositeIOMonitorTest {
         public void assertAfterWriteLength(int length) {
             assertEquals(length, afterWriteLength);
         }
+
+        public void assertAfterSyncLength(long length) {
+            assertEquals(length, afterSyncLength);
+        }
     }
 }
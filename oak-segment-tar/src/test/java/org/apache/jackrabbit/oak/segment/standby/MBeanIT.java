@@ -143,6 +143,10 @@ public class MBeanIT extends TestBase {
 
             assertEquals("1", jmxServer.invoke(status, "calcFailedRequests", null, null).toString());
             assertEquals("-1", jmxServer.invoke(status, "calcSecondsSinceLastSuccess", null, null).toString());
+
+            assertEquals(0L, jmxServer.getAttribute(status, "TransferredSegments"));
+            assertEquals(0L, jmxServer.getAttribute(status, "TransferredSegmentBytes"));
+            assertEquals(0L, jmxServer.getAttribute(status, "LastSyncThroughput"));
         }
         assertTrue(!jmxServer.isRegistered(status));
     }
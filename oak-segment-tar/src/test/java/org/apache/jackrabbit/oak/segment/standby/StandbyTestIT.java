@@ -40,7 +40,9 @@ import org.apache.jackrabbit.oak.segment.standby.server.StandbyServerSync;
 import org.apache.jackrabbit.oak.segment.test.TemporaryFileStore;
 import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
 import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
 import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
 import org.apache.jackrabbit.oak.spi.state.NodeStore;
 import org.junit.Rule;
 import org.junit.Test;
@@ -144,6 +146,61 @@ public class StandbyTestIT extends TestBase {
         }
     }
 
+    @Test
+    public void testPipelinedSync() throws Exception {
+        FileStore primary = serverFileStore.fileStore();
+        FileStore secondary = clientFileStore.fileStore();
+
+        NodeStore store = SegmentNodeStoreBuilders.builder(primary).build();
+        try (
+            StandbyServerSync serverSync = new StandbyServerSync(serverPort.getPort(), primary, MB);
+            StandbyClientSync clientSync = new StandbyClientSync(getServerHost(), serverPort.getPort(), secondary, false, getClientTimeout(), false, folder.newFolder())
+        ) {
+            serverSync.start();
+            addTestContent(store, "server", 25 * 1024, 5000);
+            primary.flush();
+
+            assertEquals(0, clientSync.getTransferredSegments());
+            assertEquals(0, clientSync.getTransferredSegmentBytes());
+
+            clientSync.run();
+
+            long segments = clientSync.getTransferredSegments();
+            long bytes = clientSync.getTransferredSegmentBytes();
+            assertTrue(segments > 1);
+            assertTrue(bytes > 0);
+            assertTrue(clientSync.getLastSyncThroughput() > 0);
+            assertEquals(primary.getHead(), secondary.getHead());
+            assertSameContent(primary.getHead(), secondary.getHead());
+
+            addTestContent(store, "update", 1024, 100);
+            primary.flush();
+
+            clientSync.run();
+
+            assertTrue(clientSync.getTransferredSegments() > segments);
+            assertTrue(clientSync.getTransferredSegmentBytes() > bytes);
+            assertEquals(primary.getHead(), secondary.getHead());
+            assertSameContent(primary.getHead(), secondary.getHead());
+        }
+    }
+
+    /**
+     * Compare the two trees node by node. Every node of {@code actual} is
+     * read from its own store, such that a segment missing on the standby
+     * fails the comparison even though both trees share the same record ids.
+     */
+    private static void assertSameContent(NodeState expected, NodeState actual) {
+        assertEquals(expected.getPropertyCount(), actual.getPropertyCount());
+        for (PropertyState property : expected.getProperties()) {
+            assertEquals(property, actual.getProperty(property.getName()));
+        }
+        assertEquals(expected.getChildNodeCount(Long.MAX_VALUE), actual.getChildNodeCount(Long.MAX_VALUE));
+        for (ChildNodeEntry child : expected.getChildNodeEntries()) {
+            assertSameContent(child.getNodeState(), actual.getChildNode(child.getName()));
+        }
+    }
+
     private static byte[] addTestContent(NodeStore store, String child, int size, int dataNodes) throws Exception {
         NodeBuilder builder = store.getRoot().builder();
         NodeBuilder content = builder.child(child);
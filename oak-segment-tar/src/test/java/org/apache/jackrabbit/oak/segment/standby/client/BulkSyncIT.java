@@ -0,0 +1,230 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ *   http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.client;
+
+import static com.google.common.collect.Lists.newArrayList;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import com.google.common.io.ByteStreams;
+import io.netty.channel.nio.NioEventLoopGroup;
+import org.apache.jackrabbit.oak.api.Blob;
+import org.apache.jackrabbit.oak.api.PropertyState;
+import org.apache.jackrabbit.oak.api.Type;
+import org.apache.jackrabbit.oak.commons.junit.TemporaryPort;
+import org.apache.jackrabbit.oak.segment.Segment;
+import org.apache.jackrabbit.oak.segment.SegmentId;
+import org.apache.jackrabbit.oak.segment.SegmentNodeStoreBuilders;
+import org.apache.jackrabbit.oak.segment.file.FileStore;
+import org.apache.jackrabbit.oak.segment.standby.server.StandbyServerSync;
+import org.apache.jackrabbit.oak.segment.test.TemporaryFileStore;
+import org.apache.jackrabbit.oak.spi.commit.CommitInfo;
+import org.apache.jackrabbit.oak.spi.commit.EmptyHook;
+import org.apache.jackrabbit.oak.spi.state.ChildNodeEntry;
+import org.apache.jackrabbit.oak.spi.state.NodeBuilder;
+import org.apache.jackrabbit.oak.spi.state.NodeState;
+import org.apache.jackrabbit.oak.spi.state.NodeStore;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.RuleChain;
+import org.junit.rules.TemporaryFolder;
+
+public class BulkSyncIT {
+
+    private static final int MB = 1024 * 1024;
+
+    private static final int READ_TIMEOUT_MS = Integer.getInteger("standby.test.timeout", 5000);
+
+    private TemporaryFolder folder = new TemporaryFolder(new File("target"));
+
+    private TemporaryFileStore serverFileStore = new TemporaryFileStore(folder, false);
+
+    private TemporaryFileStore clientFileStore = new TemporaryFileStore(folder, true);
+
+    @Rule
+    public TemporaryPort serverPort = new TemporaryPort();
+
+    @Rule
+    public RuleChain chain = RuleChain.outerRule(folder)
+            .around(serverFileStore)
+            .around(clientFileStore);
+
+    private NioEventLoopGroup group;
+
+    @Before
+    public void setUp() {
+        group = new NioEventLoopGroup();
+    }
+
+    @After
+    public void tearDown() {
+        group.shutdownGracefully(0, 1, TimeUnit.SECONDS).awaitUninterruptibly(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    public void interruptedBulkSyncShouldResume() throws Exception {
+        FileStore primary = serverFileStore.fileStore();
+        FileStore secondary = clientFileStore.fileStore();
+
+        NodeStore store = SegmentNodeStoreBuilders.builder(primary).build();
+        addTestContent(store, MB, 10000);
+        primary.flush();
+
+        List<UUID> segmentIds = newArrayList(primary.getSegmentIds());
+        int limit = segmentIds.size() / 2;
+
+        try (StandbyServerSync serverSync = new StandbyServerSync(serverPort.getPort(), primary, MB)) {
+            serverSync.start();
+
+            StandbyClientSyncExecution execution = new StandbyClientSyncExecution(secondary, () -> true, true);
+
+            try (StandbyClient client = new InterruptedStandbyClient(limit)) {
+                execution.execute(client);
+                fail("The bulk sync should have been interrupted");
+            } catch (IllegalStateException e) {
+                // expected
+            }
+
+            assertEquals(limit, execution.getTransferredSegments());
+            assertNotEquals(primary.getHead().getRecordId(), secondary.getHead().getRecordId());
+
+            // Every segment copied before the interruption has its
+            // references available locally
+
+            for (UUID id : segmentIds) {
+                SegmentId segmentId = newSegmentId(secondary, id);
+                if (!secondary.containsSegment(segmentId)) {
+                    continue;
+                }
+                Segment segment = secondary.readSegment(segmentId);
+                for (int i = 0; i < segment.getReferencedSegmentIdCount(); i++) {
+                    UUID referenced = segment.getReferencedSegmentId(i);
+                    assertTrue("Segment " + id + " copied without its reference " + referenced,
+                            secondary.containsSegment(newSegmentId(secondary, referenced)));
+                }
+            }
+
+            try (StandbyClient client = newStandbyClient()) {
+                execution.execute(client);
+            }
+
+            // Segments copied before the interruption are not copied again
+            assertEquals(segmentIds.size(), execution.getTransferredSegments());
+            assertEquals(primary.getHead(), secondary.getHead());
+            assertSameContent(primary.getHead(), secondary.getHead());
+        }
+    }
+
+    private StandbyClient newStandbyClient() throws Exception {
+        return new StandbyClient("127.0.0.1", serverPort.getPort(), group, "client", false, READ_TIMEOUT_MS, folder.newFolder());
+    }
+
+    private static SegmentId newSegmentId(FileStore store, UUID id) {
+        return store.getSegmentIdProvider().newSegmentId(id.getMostSignificantBits(), id.getLeastSignificantBits());
+    }
+
+    /**
+     * Compare the two trees node by node, reading binaries in full. Every
+     * node of {@code actual} is read from its own store, such that a segment
+     * missing on the standby fails the comparison even though both trees
+     * share the same record ids.
+     */
+    private static void assertSameContent(NodeState expected, NodeState actual) throws Exception {
+        assertEquals(expected.getPropertyCount(), actual.getPropertyCount());
+        for (PropertyState property : expected.getProperties()) {
+            PropertyState other = actual.getProperty(property.getName());
+            assertEquals(property, other);
+            if (property.getType() == Type.BINARY) {
+                Blob blob = property.getValue(Type.BINARY);
+                Blob otherBlob = other.getValue(Type.BINARY);
+                assertArrayEquals(ByteStreams.toByteArray(blob.getNewStream()), ByteStreams.toByteArray(otherBlob.getNewStream()));
+            }
+        }
+        assertEquals(expected.getChildNodeCount(Long.MAX_VALUE), actual.getChildNodeCount(Long.MAX_VALUE));
+        for (ChildNodeEntry child : expected.getChildNodeEntries()) {
+            assertSameContent(child.getNodeState(), actual.getChildNode(child.getName()));
+        }
+    }
+
+    private static void addTestContent(NodeStore store, int blobSize, int dataNodes) throws Exception {
+        NodeBuilder builder = store.getRoot().builder();
+        NodeBuilder content = builder.child("server");
+
+        byte[] data = new byte[blobSize];
+        new Random().nextBytes(data);
+        content.setProperty("testBlob", store.createBlob(new ByteArrayInputStream(data)));
+
+        for (int i = 0; i < dataNodes; i++) {
+            NodeBuilder c = content.child("c" + i);
+            c.setProperty("p", "v" + i);
+            c.setProperty("q", UUID.randomUUID().toString());
+        }
+
+        store.merge(builder, EmptyHook.INSTANCE, CommitInfo.EMPTY);
+    }
+
+    /**
+     * A client whose connection breaks after transferring {@code limit}
+     * segments. The segments are delivered in the order they have been
+     * requested in.
+     */
+    private class InterruptedStandbyClient extends StandbyClient {
+
+        private int remaining;
+
+        InterruptedStandbyClient(int limit) throws Exception {
+            super("127.0.0.1", serverPort.getPort(), group, "client", false, READ_TIMEOUT_MS, folder.newFolder());
+            this.remaining = limit;
+        }
+
+        @Override
+        Map<String, byte[]> getSegments(Collection<String> segmentIds) throws InterruptedException {
+            Map<String, byte[]> segments = super.getSegments(segmentIds);
+            Map<String, byte[]> delivered = new HashMap<>();
+
+            for (String segmentId : segmentIds) {
+                if (remaining == 0) {
+                    break;
+                }
+                delivered.put(segmentId, segments.get(segmentId));
+                remaining--;
+            }
+
+            return delivered;
+        }
+
+    }
+
+}
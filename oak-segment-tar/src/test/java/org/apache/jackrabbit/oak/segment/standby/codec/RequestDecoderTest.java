@@ -60,6 +60,14 @@ public class RequestDecoderTest {
         assertEquals("segmentId", request.getSegmentId());
     }
 
+    @Test
+    public void shouldDecodeValidGetSegmentIdsRequests() throws Exception {
+        EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
+        channel.writeInbound(Messages.newGetSegmentIdsRequest("clientId", false));
+        GetSegmentIdsRequest request = (GetSegmentIdsRequest) channel.readInbound();
+        assertEquals("clientId", request.getClientId());
+    }
+
     @Test
     public void shouldDropInvalidMessages() throws Exception {
         EmbeddedChannel channel = new EmbeddedChannel(new RequestDecoder());
@@ -225,6 +225,25 @@ public class ResponseDecoderTest {
         assertTrue(elementsEqual(emptyList(), response.getReferences()));
     }
 
+    @Test
+    public void shouldDecodeValidGetSegmentIdsResponses() throws Exception {
+        ByteBuf buf = Unpooled.buffer();
+        buf.writeInt(1 + 1 + 4 + 32);
+        buf.writeByte(Messages.HEADER_SEGMENT_IDS);
+        buf.writeBoolean(true);
+        buf.writeInt(2);
+        buf.writeLong(1);
+        buf.writeLong(2);
+        buf.writeLong(3);
+        buf.writeLong(4);
+
+        EmbeddedChannel channel = new EmbeddedChannel(new ResponseDecoder(folder.newFolder()));
+        channel.writeInbound(buf);
+        GetSegmentIdsResponse response = (GetSegmentIdsResponse) channel.readInbound();
+        assertEquals(asList(new UUID(1, 2), new UUID(3, 4)), response.getSegmentIds());
+        assertTrue(response.isLast());
+    }
+
     @Test
     public void shouldDropInvalidGetSegmentResponses() throws Exception {
         UUID uuid = new UUID(1, 2);
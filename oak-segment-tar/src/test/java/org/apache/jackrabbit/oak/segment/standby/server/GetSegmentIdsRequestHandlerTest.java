@@ -0,0 +1,71 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one or more
+ * contributor license agreements.  See the NOTICE file distributed with
+ * this work for additional information regarding copyright ownership.
+ * The ASF licenses this file to You under the Apache License, Version 2.0
+ * (the "License"); you may not use this file except in compliance with
+ * the License.  You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.apache.jackrabbit.oak.segment.standby.server;
+
+import static java.util.Arrays.asList;
+import static java.util.Collections.emptyList;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.util.UUID;
+
+import io.netty.channel.embedded.EmbeddedChannel;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentIdsRequest;
+import org.apache.jackrabbit.oak.segment.standby.codec.GetSegmentIdsResponse;
+import org.junit.Test;
+
+public class GetSegmentIdsRequestHandlerTest {
+
+    @Test
+    public void segmentIdsShouldBeSentInChunks() throws Exception {
+        StandbySegmentIdsReader reader = mock(StandbySegmentIdsReader.class);
+        when(reader.readSegmentIds()).thenReturn(asList(new UUID(1, 2), new UUID(3, 4), new UUID(5, 6)));
+
+        EmbeddedChannel channel = new EmbeddedChannel(new GetSegmentIdsRequestHandler(reader, 2));
+        channel.writeInbound(new GetSegmentIdsRequest("clientId"));
+
+        GetSegmentIdsResponse first = (GetSegmentIdsResponse) channel.readOutbound();
+        assertEquals("clientId", first.getClientId());
+        assertEquals(asList(new UUID(1, 2), new UUID(3, 4)), first.getSegmentIds());
+        assertFalse(first.isLast());
+
+        GetSegmentIdsResponse second = (GetSegmentIdsResponse) channel.readOutbound();
+        assertEquals(asList(new UUID(5, 6)), second.getSegmentIds());
+        assertTrue(second.isLast());
+
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void emptySegmentIdsShouldGenerateLastResponse() throws Exception {
+        StandbySegmentIdsReader reader = mock(StandbySegmentIdsReader.class);
+        when(reader.readSegmentIds()).thenReturn(emptyList());
+
+        EmbeddedChannel channel = new EmbeddedChannel(new GetSegmentIdsRequestHandler(reader, 2));
+        channel.writeInbound(new GetSegmentIdsRequest("clientId"));
+
+        GetSegmentIdsResponse response = (GetSegmentIdsResponse) channel.readOutbound();
+        assertTrue(response.getSegmentIds().isEmpty());
+        assertTrue(response.isLast());
+    }
+
+}
@@ -337,4 +337,43 @@ public class CheckValidRepositoryTest extends CheckRepositoryTestBase {
             "No good revision found"));
         assertExpectedOutput(strErr.toString(), Lists.newArrayList("Checkpoint bogus-checkpoint not found in this revision!"));
     }
+
+    @Test
+    public void testSuccessfulParallelCheckWithProgress() throws Exception {
+        StringWriter strOut = new StringWriter();
+        StringWriter strErr = new StringWriter();
+        StringWriter strProgress = new StringWriter();
+
+        PrintWriter outWriter = new PrintWriter(strOut, true);
+        PrintWriter errWriter = new PrintWriter(strErr, true);
+        PrintWriter progressWriter = new PrintWriter(strProgress, true);
+
+        Set<String> filterPaths = new LinkedHashSet<>();
+        filterPaths.add("/");
+
+        Check.builder()
+            .withPath(new File(temporaryFolder.getRoot().getAbsolutePath()))
+            .withDebugInterval(Long.MAX_VALUE)
+            .withFilterPaths(filterPaths)
+            .withCheckBinaries(true)
+            .withCheckHead(true)
+            .withCheckpoints(checkpoints)
+            .withConcurrency(4)
+            .withBinarySampleInterval(2)
+            .withSkipVerified(true)
+            .withOutWriter(outWriter)
+            .withErrWriter(errWriter)
+            .withProgressWriter(progressWriter)
+            .build()
+            .run();
+
+        outWriter.close();
+        errWriter.close();
+        progressWriter.close();
+
+        assertExpectedOutput(strOut.toString(), Lists.newArrayList("Checking head", "Checking checkpoints",
+            "Searched through 1 revisions and 2 checkpoints", "Checked 7 nodes", "Path / is consistent"));
+        assertExpectedOutput(strErr.toString(), Lists.newArrayList(""));
+        assertExpectedOutput(strProgress.toString(), Lists.newArrayList("\"revisions\":1", "\"done\":true"));
+    }
 }